@@ -0,0 +1,38 @@
+package com.iscp.backend.components;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Splits collections into batches, mainly to keep IN clauses below the SQL Server limit of 2100 parameters.
+ */
+public final class Batches {
+
+    //Number of values bound per IN clause
+    public static final int IN_CLAUSE_SIZE = 1000;
+
+    //Number of statements sent per JDBC batch, as hibernate.jdbc.batch_size
+    public static final int JDBC_BATCH_SIZE = 100;
+
+    private Batches() {
+    }
+
+    //Split the values into consecutive batches of at most the given size
+    public static <T> List<List<T>> partition(Collection<T> values, int size) {
+        List<List<T>> batches = new ArrayList<>();
+        List<T> batch = new ArrayList<>(Math.min(size, values.size()));
+
+        for (T value : values) {
+            batch.add(value);
+            if (batch.size() == size) {
+                batches.add(batch);
+                batch = new ArrayList<>(size);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,100 @@
+package com.iscp.backend.components;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * Estimates column widths of an export from the length of the written values, without measuring fonts.
+ * A histogram of lengths is kept per column while rows are written. At the end, each column is sized to fit
+ * its header and its longest value, unless a few outliers are much longer than the 95th percentile.
+ */
+public class ColumnWidthEstimator {
+
+    //Lengths above this are counted as this, Excel caps column width at 255 characters
+    private static final int MAX_CHARS = 255;
+
+    //Width of a single character in 1/256th of a character, as used by Sheet.setColumnWidth
+    private static final int CHAR_WIDTH = 256;
+
+    //Extra characters so that values do not touch the cell borders
+    private static final int PADDING_CHARS = 2;
+
+    //Headers are written in a larger, bold font than the data
+    private static final double HEADER_FACTOR = 1.3;
+
+    //Values longer than the 95th percentile by more than this factor do not widen the column
+    private static final double OUTLIER_FACTOR = 1.5;
+
+    private static final int MIN_CHARS = 8;
+
+    private final int[] headerLengths;
+
+    private final int[][] histograms;
+
+    private final int[] maxLengths;
+
+    private final long[] counts;
+
+
+    public ColumnWidthEstimator(int columns) {
+        this.headerLengths = new int[columns];
+        this.histograms = new int[columns][MAX_CHARS + 1];
+        this.maxLengths = new int[columns];
+        this.counts = new long[columns];
+    }
+
+
+    //Record the header of a column
+    public void header(int column, String value) {
+        headerLengths[column] = value != null ? value.length() : 0;
+    }
+
+
+    //Record a value written to a column
+    public void value(int column, String value) {
+        int length = value != null ? Math.min(value.length(), MAX_CHARS) : 0;
+        histograms[column][length]++;
+        counts[column]++;
+        if (length > maxLengths[column]) {
+            maxLengths[column] = length;
+        }
+    }
+
+
+    //Set the estimated width of every column
+    public void apply(Sheet sheet) {
+        for (int column = 0; column < counts.length; column++) {
+            sheet.setColumnWidth(column, width(column));
+        }
+    }
+
+
+    /**
+     * Returns the estimated width of a column, in 1/256th of a character.
+     */
+    public int width(int column) {
+        int valueChars = maxLengths[column];
+        int p95 = percentile(column, 0.95);
+        if (valueChars > p95 * OUTLIER_FACTOR) {
+            valueChars = (int) Math.ceil(p95 * OUTLIER_FACTOR);
+        }
+
+        int headerChars = (int) Math.ceil(headerLengths[column] * HEADER_FACTOR);
+        int chars = Math.max(Math.max(valueChars, headerChars) + PADDING_CHARS, MIN_CHARS);
+        return Math.min(chars, MAX_CHARS) * CHAR_WIDTH;
+    }
+
+
+    //Smallest length such that the given fraction of values is not longer
+    private int percentile(int column, double fraction) {
+        long rank = (long) Math.ceil(counts[column] * fraction);
+        long seen = 0;
+        int[] histogram = histograms[column];
+        for (int length = 0; length < histogram.length; length++) {
+            seen += histogram[length];
+            if (seen >= rank && seen > 0) {
+                return length;
+            }
+        }
+        return 0;
+    }
+}
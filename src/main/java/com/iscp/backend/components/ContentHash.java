@@ -0,0 +1,30 @@
+package com.iscp.backend.components;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 content hashes, used as cache keys and to detect changed content.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    //Create a new SHA-256 digest, which every JVM is required to support
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    //Hex encoded SHA-256 of the UTF-8 bytes of the given value
+    public static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(newDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+}
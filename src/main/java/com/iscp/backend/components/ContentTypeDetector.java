@@ -0,0 +1,91 @@
+package com.iscp.backend.components;
+
+import org.apache.tika.Tika;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Detects the content type of evidence files from their first bytes and name.
+ * Detection happens once, when the file is stored, so serving a file only reads the stored type.
+ */
+@Component
+public class ContentTypeDetector {
+
+    //Below this size, compression saves too little to be worth decompressing on every read
+    private static final int MIN_COMPRESSIBLE_SIZE = 1024;
+
+    //Binary types which compress well, on top of every text type
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/msword",
+            "application/vnd.ms-excel",
+            "application/vnd.ms-powerpoint",
+            "application/x-tika-msoffice",
+            "application/rtf"
+    );
+
+    //Tika is thread safe, and loading its type registry is expensive, so a single instance is shared
+    private final Tika tika = new Tika();
+
+    private final MediaTypeRegistry registry = MimeTypes.getDefaultMimeTypes().getMediaTypeRegistry();
+
+
+    /**
+     * Detects the content type of a file.
+     *
+     * @param head the first bytes of the file, such as {@link EvidenceBlobStore.StoredBlob#head()}.
+     * @param fileName the name of the file, used as a hint.
+     * @param declaredType the type declared by the client, used when the content isn't recognized.
+     * @return the detected content type.
+     */
+    public String detect(byte[] head, String fileName, String declaredType) {
+        String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+
+        //Types which are explicitly set, regardless of the content
+        if (name.endsWith(".mp4")) {
+            return "video/mp4";
+        }
+
+        if (name.endsWith(".mp3")) {
+            return "audio/mpeg";
+        }
+
+        if (name.endsWith(".doc") || name.endsWith(".docx")) {
+            return "application/msword";
+        }
+
+        String detected = tika.detect(head, fileName);
+        if (MediaType.OCTET_STREAM.toString().equals(detected) && StringUtils.hasText(declaredType)) {
+            return declaredType;
+        }
+        return detected;
+    }
+
+
+    /**
+     * Checks whether a file is worth storing compressed.
+     * Text, such as CSV, logs, JSON or XML, and the older binary Office formats compress several times, while images,
+     * video, PDF and the zip based Office formats are already compressed.
+     *
+     * @param head the first bytes of the file.
+     * @param fileName the name of the file, used as a hint.
+     * @return true if the file should be compressed.
+     */
+    public boolean isCompressible(byte[] head, String fileName) {
+        if (head.length < MIN_COMPRESSIBLE_SIZE) {
+            return false;
+        }
+        //Detect without the explicit types above, which would for instance make a docx look like a doc
+        MediaType type = MediaType.parse(tika.detect(head, fileName));
+        if (type == null) {
+            return false;
+        }
+        MediaType baseType = type.getBaseType();
+        return COMPRESSIBLE_TYPES.contains(baseType.toString()) || registry.isInstanceOf(baseType, MediaType.TEXT_PLAIN);
+    }
+}
@@ -0,0 +1,96 @@
+package com.iscp.backend.components;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes an export as RFC 4180 CSV: comma separated, CRLF terminated, with fields quoted only when needed.
+ * Values are formatted exactly as in the Excel export.
+ *
+ * @param <T> the exported DTO type.
+ */
+public class CsvExportWriter<T> implements ExportWriter<T> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExportSchema<T> schema;
+
+    private final Writer writer;
+
+
+    public CsvExportWriter(OutputStream outputStream, ExportSchema<T> schema) throws IOException {
+        this.schema = schema;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        writeRecord(schema.getHeaders().toArray(new String[0]));
+    }
+
+
+    @Override
+    public void writeRows(List<T> items) throws IOException {
+        for (T item : items) {
+            writeRecord(schema.format(item));
+        }
+    }
+
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+
+    //The response stream is owned by the caller, so it is flushed but not closed
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+
+    private void writeRecord(String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+
+    private void writeField(String value) throws IOException {
+        if (!needsQuoting(value)) {
+            writer.write(value);
+            return;
+        }
+
+        //Enclose in double quotes and escape embedded double quotes by doubling them
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                writer.write(value, start, i + 1 - start);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,158 @@
+package com.iscp.backend.components;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the records of an RFC 4180 CSV document: comma separated, CRLF or LF terminated, with quoted fields that
+ * may contain commas, line breaks and doubled quotes.
+ * Characters are decoded into one reusable buffer and records are returned one at a time, so memory does not grow
+ * with the size of the file.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position = 0;
+
+    private int limit = 0;
+
+    private boolean ended = false;
+
+    private long recordNumber = 0;
+
+    private final List<String> fields = new ArrayList<>();
+
+    private final StringBuilder field = new StringBuilder();
+
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+
+    /**
+     * Reads the next record.
+     * The returned list is reused by the next call, so callers must copy what they keep.
+     *
+     * @return the fields of the record, or null at the end of the document.
+     * @throws IOException if the content cannot be read or a quoted field is not terminated.
+     */
+    public List<String> readRecord() throws IOException {
+        if (ended) {
+            return null;
+        }
+        fields.clear();
+        field.setLength(0);
+
+        boolean started = false;
+        boolean inQuotes = false;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                ended = true;
+                if (!started) {
+                    return null;
+                }
+                if (inQuotes) {
+                    throw new IOException("Unterminated quoted field in CSV record " + (recordNumber + 1));
+                }
+                return endRecord();
+            }
+            if (!started && recordNumber == 0 && c == BYTE_ORDER_MARK) {
+                continue;
+            }
+            started = true;
+
+            if (inQuotes) {
+                if (c != '"') {
+                    field.append((char) c);
+                }
+                else if (peek() == '"') {
+                    //A doubled quote inside a quoted field is a literal quote
+                    position++;
+                    field.append('"');
+                }
+                else {
+                    inQuotes = false;
+                }
+            }
+            else if (c == '"') {
+                inQuotes = true;
+            }
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else if (c == '\r') {
+                if (peek() == '\n') {
+                    position++;
+                }
+                return endRecord();
+            }
+            else if (c == '\n') {
+                return endRecord();
+            }
+            else {
+                field.append((char) c);
+            }
+        }
+    }
+
+
+    //Number of records read so far, including the header
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+
+    private List<String> endRecord() {
+        fields.add(field.toString());
+        field.setLength(0);
+        recordNumber++;
+        return fields;
+    }
+
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -16,4 +16,8 @@ public class CustomIdGenerator implements IdentifierGenerator {
     public static String generateComplianceId() {
         return UUID.randomUUID().toString();
     }
+
+    public static String generateSecurityId() {
+        return UUID.randomUUID().toString();
+    }
 }
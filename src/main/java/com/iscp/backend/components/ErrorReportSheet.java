@@ -0,0 +1,43 @@
+package com.iscp.backend.components;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sheet of an uploaded file copied for an error report, with the validation errors of its rows.
+ * Rows keep their original row numbers, so the corrected report can be uploaded again.
+ */
+@Getter
+public class ErrorReportSheet {
+
+    private final String name;
+
+    private final Map<Integer, String> errors;
+
+    private final List<Integer> rowNums = new ArrayList<>();
+
+    private final List<String[]> rows = new ArrayList<>();
+
+    private int columnCount = 0;
+
+
+    /**
+     * @param name the name of the sheet.
+     * @param errors the error messages by zero-based row number.
+     */
+    public ErrorReportSheet(String name, Map<Integer, String> errors) {
+        this.name = name;
+        this.errors = errors;
+    }
+
+
+    //Copy a row, the cells are copied as the caller may reuse the list
+    public void addRow(int rowNum, List<String> cells) {
+        rowNums.add(rowNum);
+        rows.add(cells.toArray(new String[0]));
+        columnCount = Math.max(columnCount, cells.size());
+    }
+}
@@ -0,0 +1,287 @@
+package com.iscp.backend.components;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content addressed store of the evidence files.
+ * Every file is kept once under blobs/ab/cd/&lt;sha256&gt; of the upload directory, where ab and cd are the first
+ * characters of its hash, so uploading the same bytes again reuses the stored file instead of writing a copy.
+ * Compressible content is gzipped on the way to disk and stored as &lt;sha256&gt;.gz, the hash and size are always
+ * those of the original content.
+ */
+@Component
+public class EvidenceBlobStore {
+
+    //Bytes kept from the start of stored content, enough for type detection
+    public static final int HEAD_SIZE = 8 * 1024;
+
+    //Content-Encoding of gzipped blobs
+    public static final String GZIP = "gzip";
+
+    private static final String GZIP_EXTENSION = ".gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path blobDir;
+
+    private final Path tempDir;
+
+    public EvidenceBlobStore(@Value("${upload_directory}") String uploadDir) {
+        this.blobDir = Paths.get(uploadDir).toAbsolutePath().normalize().resolve("blobs");
+        this.tempDir = blobDir.resolve("tmp");
+    }
+
+
+    /**
+     * Streams the content to disk while hashing it, and keeps it unless a blob with the same hash is already stored.
+     * The content is written to a temporary file first and moved in place in one step, so a blob path never shows
+     * a partially written file.
+     *
+     * @param content the content to store, closed once read.
+     * @param compress decides from the first bytes of the content whether to gzip it.
+     * @return the hash, size, location and first bytes of the stored blob.
+     * @throws IOException if the content cannot be read or written.
+     */
+    public StoredBlob store(InputStream content, Predicate<byte[]> compress) throws IOException {
+        Path temp = createTempFile("upload-");
+        try {
+            MessageDigest digest = ContentHash.newDigest();
+            byte[] head;
+            long size;
+            boolean compressed;
+            try (InputStream digesting = new DigestInputStream(content, digest)) {
+                //Keep the first bytes on the way, for type detection and to choose the encoding
+                head = digesting.readNBytes(HEAD_SIZE);
+                compressed = compress.test(head);
+                try (OutputStream out = openOutput(temp, compressed)) {
+                    out.write(head);
+                    size = head.length + digesting.transferTo(out);
+                }
+            }
+            return moveInPlace(temp, HexFormat.of().formatHex(digest.digest()), size, head, compressed);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * Moves a complete file into the store as the blob of the given hash, unless that blob is already stored.
+     * The file must be on the same file system as the store, such as a file from {@link #createTempFile(String)},
+     * and is left in place when the blob already exists or is stored compressed.
+     *
+     * @param file the file holding the content.
+     * @param hash the hex encoded SHA-256 of the content, as computed by {@link #hashOf(Path)}.
+     * @param compress decides from the first bytes of the content whether to gzip it.
+     * @return the hash, size, location and first bytes of the stored blob.
+     * @throws IOException if the file cannot be moved.
+     */
+    public StoredBlob adopt(Path file, String hash, Predicate<byte[]> compress) throws IOException {
+        byte[] head = readHead(file);
+        long size = Files.size(file);
+        if (findStored(hash) != null || !compress.test(head)) {
+            return moveInPlace(file, hash, size, head, false);
+        }
+
+        Path compressed = createTempFile("gzip-");
+        try {
+            try (OutputStream out = openOutput(compressed, true)) {
+                Files.copy(file, out);
+            }
+            return moveInPlace(compressed, hash, size, head, true);
+        }
+        finally {
+            Files.deleteIfExists(compressed);
+        }
+    }
+
+
+    private StoredBlob moveInPlace(Path file, String hash, long size, byte[] head, boolean compressed) throws IOException {
+        String normalized = normalize(hash);
+
+        //Content already stored is kept as it is, whatever its encoding
+        Path target = findStored(normalized);
+        if (target == null) {
+            target = compressed ? pathOf(normalized).resolveSibling(normalized + GZIP_EXTENSION) : pathOf(normalized);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (FileAlreadyExistsException e) {
+                //Same content stored by a concurrent upload
+            }
+        }
+        return new StoredBlob(normalized, size, target, head, encodingOf(target), Files.size(target));
+    }
+
+
+    /**
+     * Returns the stored file of the blob with the given hash, compressed or not.
+     *
+     * @param hash the hex encoded SHA-256 of the content.
+     * @return the stored file, or null if the blob isn't stored.
+     */
+    public Path findStored(String hash) {
+        Path path = pathOf(hash);
+        if (Files.exists(path)) {
+            return path;
+        }
+        Path compressed = path.resolveSibling(path.getFileName() + GZIP_EXTENSION);
+        return Files.exists(compressed) ? compressed : null;
+    }
+
+
+    /**
+     * Opens the original content of a stored file, decompressing it if it is stored compressed.
+     *
+     * @param file the stored file.
+     * @return a stream of the original content.
+     * @throws IOException if the file cannot be read.
+     */
+    public static InputStream openContent(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (encodingOf(file) == null) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns the Content-Encoding of a stored file, or null if it is stored as is.
+     */
+    public static String encodingOf(Path file) {
+        return file.getFileName().toString().endsWith(GZIP_EXTENSION) ? GZIP : null;
+    }
+
+
+    /**
+     * Creates an empty temporary file next to the blobs, so that it can be moved into the store in one step.
+     *
+     * @param prefix the prefix of the file name.
+     * @return the path of the new file.
+     * @throws IOException if the file cannot be created.
+     */
+    public Path createTempFile(String prefix) throws IOException {
+        Files.createDirectories(tempDir);
+        return Files.createTempFile(tempDir, prefix, ".part");
+    }
+
+
+    /**
+     * Returns the directory holding temporary files.
+     */
+    public Path getTempDir() {
+        return tempDir;
+    }
+
+
+    /**
+     * Reads the first bytes of the original content of a file, at most {@link #HEAD_SIZE}.
+     *
+     * @param file the file to read, compressed or not.
+     * @return the first bytes of the content.
+     * @throws IOException if the file cannot be read.
+     */
+    public static byte[] readHead(Path file) throws IOException {
+        try (InputStream in = openContent(file)) {
+            return in.readNBytes(HEAD_SIZE);
+        }
+    }
+
+
+    /**
+     * Computes the hex encoded SHA-256 of a file.
+     *
+     * @param file the file to hash.
+     * @return the lower case hash of its content.
+     * @throws IOException if the file cannot be read.
+     */
+    public static String hashOf(Path file) throws IOException {
+        MessageDigest digest = ContentHash.newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+
+    /**
+     * Returns the location of the uncompressed blob with the given hash, whether it is stored or not.
+     *
+     * @param hash the hex encoded SHA-256 of the content.
+     * @throws IllegalArgumentException if the value is not a SHA-256 hash.
+     */
+    public Path pathOf(String hash) {
+        String normalized = normalize(hash);
+        if (normalized == null) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        return blobDir.resolve(normalized.substring(0, 2)).resolve(normalized.substring(2, 4)).resolve(normalized);
+    }
+
+
+    /**
+     * Returns the lower case form of a hex encoded SHA-256 hash, or null if the value is not one.
+     */
+    public static String normalize(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        String normalized = hash.trim().toLowerCase(Locale.ROOT);
+        return SHA256_HEX.matcher(normalized).matches() ? normalized : null;
+    }
+
+
+    private static OutputStream openOutput(Path file, boolean compressed) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (!compressed) {
+            return out;
+        }
+        try {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Hash, original size in bytes, location and first bytes of a stored blob, with its encoding and size on disk.
+     */
+    public record StoredBlob(String hash, long size, Path path, byte[] head, String encoding, long storedSize) {
+    }
+}
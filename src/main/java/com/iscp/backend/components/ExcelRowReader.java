@@ -0,0 +1,262 @@
+package com.iscp.backend.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads the rows of every sheet of an .xlsx workbook using the SAX event model.
+ * Sheets are parsed concurrently on a bounded pool, or in order on the calling thread, sharing the read-only shared
+ * strings and styles, and only the current row of each sheet is held in memory.
+ */
+@Slf4j
+@Component
+public class ExcelRowReader {
+
+    private final ForkJoinPool sheetParsePool;
+
+    public ExcelRowReader(@Qualifier("sheetParsePool") ForkJoinPool sheetParsePool) {
+        this.sheetParsePool = sheetParsePool;
+    }
+
+
+    /**
+     * Parses every sheet with its own parser, concurrently, and returns the results in workbook order.
+     * The upload is spooled to a temporary file first, so the package is read from disk instead of being buffered.
+     *
+     * @param inputStream the .xlsx content.
+     * @param parserFactory creates the parser of a sheet from its zero-based index and name.
+     * @return the result of each sheet's parser, in sheet order.
+     * @throws IOException if the content cannot be read or is not a valid workbook.
+     */
+    public <R> List<R> readSheets(InputStream inputStream, SheetParserFactory<R> parserFactory) throws IOException {
+        return read(inputStream, parserFactory, true);
+    }
+
+
+    /**
+     * Parses every sheet with its own parser on the calling thread, one sheet after the other.
+     * Parsers may then write the rows as they go, within the caller's security context.
+     *
+     * @param inputStream the .xlsx content.
+     * @param parserFactory creates the parser of a sheet from its zero-based index and name.
+     * @return the result of each sheet's parser, in sheet order.
+     * @throws IOException if the content cannot be read or is not a valid workbook.
+     */
+    public <R> List<R> readSheetsInOrder(InputStream inputStream, SheetParserFactory<R> parserFactory) throws IOException {
+        return read(inputStream, parserFactory, false);
+    }
+
+
+    private <R> List<R> read(InputStream inputStream, SheetParserFactory<R> parserFactory, boolean concurrent) throws IOException {
+        Path tempFile = Files.createTempFile("upload-", ".xlsx");
+        try {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+
+            OPCPackage opcPackage = OPCPackage.open(tempFile.toFile(), PackageAccess.READ);
+            try {
+                XSSFReader reader = new XSSFReader(opcPackage);
+                ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage, false);
+                StylesTable styles = reader.getStylesTable();
+
+                //Open the sheet parts up front, as the iterator itself is not thread safe
+                List<InputStream> sheets = new ArrayList<>();
+                List<String> sheetNames = new ArrayList<>();
+                XSSFReader.SheetIterator sheetIterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+                while (sheetIterator.hasNext()) {
+                    sheets.add(sheetIterator.next());
+                    sheetNames.add(sheetIterator.getSheetName());
+                }
+
+                if (!concurrent) {
+                    List<R> results = new ArrayList<>();
+                    for (int sheetIndex = 0; sheetIndex < sheets.size(); sheetIndex++) {
+                        try (InputStream sheet = sheets.get(sheetIndex)) {
+                            results.add(readSheet(sheet, sharedStrings, styles, parserFactory.create(sheetIndex, sheetNames.get(sheetIndex))));
+                        }
+                    }
+                    return results;
+                }
+
+                List<ForkJoinTask<R>> tasks = new ArrayList<>();
+                for (int sheetIndex = 0; sheetIndex < sheets.size(); sheetIndex++) {
+                    InputStream sheet = sheets.get(sheetIndex);
+                    SheetParser<R> parser = parserFactory.create(sheetIndex, sheetNames.get(sheetIndex));
+                    tasks.add(sheetParsePool.submit(() -> {
+                        try (sheet) {
+                            return readSheet(sheet, sharedStrings, styles, parser);
+                        }
+                    }));
+                }
+                return collect(tasks);
+            }
+            finally {
+                //Release the package without trying to save it
+                opcPackage.revert();
+            }
+        }
+        catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Unable to read the excel workbook", e);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+
+    private <R> R readSheet(InputStream sheet, ReadOnlySharedStringsTable sharedStrings, StylesTable styles, SheetParser<R> parser) throws IOException, SAXException, ParserConfigurationException {
+        XMLReader xmlReader = XMLHelper.newXMLReader();
+        xmlReader.setContentHandler(new XSSFSheetXMLHandler(styles, null, sharedStrings, new RowCollector(parser), new NumberFormatter(), false));
+        try {
+            xmlReader.parse(new InputSource(sheet));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return parser.finish();
+    }
+
+
+    //Wait for every sheet in order, cancelling the others as soon as one of them fails
+    private <R> List<R> collect(List<ForkJoinTask<R>> tasks) throws IOException, SAXException {
+        List<R> results = new ArrayList<>();
+        try {
+            for (ForkJoinTask<R> task : tasks) {
+                results.add(task.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Excel parsing interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof SAXException saxException) {
+                throw saxException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Unable to read the excel workbook", e.getCause());
+        }
+        finally {
+            tasks.forEach(task -> task.cancel(true));
+        }
+    }
+
+
+    /**
+     * Creates the parser of each sheet.
+     */
+    @FunctionalInterface
+    public interface SheetParserFactory<R> {
+
+        /**
+         * @param sheetIndex the zero-based index of the sheet.
+         * @param sheetName the name of the sheet.
+         * @return a new parser for the sheet.
+         */
+        SheetParser<R> create(int sheetIndex, String sheetName);
+    }
+
+
+    /**
+     * Parser of the rows of one sheet. Each sheet gets its own instance, so parsers may keep ordering-sensitive state.
+     */
+    public interface SheetParser<R> {
+
+        /**
+         * @param rowNum the zero-based index of the row within its sheet.
+         * @param cells the formatted cell values by column index, with blank cells as empty strings.
+         */
+        void accept(int rowNum, List<String> cells) throws IOException;
+
+        /**
+         * @return the result of the sheet, once all its rows have been accepted.
+         */
+        R finish();
+    }
+
+
+    //Gathers the cells of the current row and hands the row over once it ends
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final SheetParser<?> parser;
+
+        private final List<String> cells = new ArrayList<>();
+
+        private RowCollector(SheetParser<?> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            try {
+                parser.accept(rowNum, cells);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+
+            //Pad skipped blank cells so values stay at their column index
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue == null ? "" : formattedValue);
+        }
+    }
+
+
+    //Formats numbers the same way whatever their cell style, with at most two decimals and no trailing zeros
+    private static class NumberFormatter extends DataFormatter {
+
+        private final DecimalFormat decimalFormat = new DecimalFormat("#.##");
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            return decimalFormat.format(value);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.iscp.backend.components;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Entity listener invalidating the cached exports that read the written entity.
+ */
+public class ExportCacheListener {
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        ExportGenerations.invalidate(entity.getClass());
+    }
+}
@@ -0,0 +1,84 @@
+package com.iscp.backend.components;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Iterates the full result of a filter in fixed-size chunks over a single forward-only cursor.
+ * The persistence context is cleared after each chunk, so memory stays constant whatever the size of the result.
+ */
+@Slf4j
+@Component
+public class ExportCursor {
+
+    //Number of entities mapped and written per chunk
+    public static final int CHUNK_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    /**
+     * Streams every entity matching the specification, in the given order, to the handler in chunks.
+     *
+     * @param repository the repository to query.
+     * @param spec the filter to apply.
+     * @param sort the order of the result.
+     * @param handler the callback receiving each chunk, which must not keep references to the entities.
+     * @return the number of entities streamed.
+     * @throws IOException if the handler fails to write a chunk.
+     */
+    @Transactional(readOnly = true)
+    public <E> long forEachChunk(JpaSpecificationExecutor<E> repository, Specification<E> spec, Sort sort, ChunkHandler<E> handler) throws IOException {
+        long count = 0;
+
+        try (Stream<E> stream = repository.findBy(spec, query -> query.sortBy(sort).stream())) {
+            Iterator<E> iterator = stream.iterator();
+            List<E> chunk = new ArrayList<>(CHUNK_SIZE);
+
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CHUNK_SIZE) {
+                    count += flush(chunk, handler);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                count += flush(chunk, handler);
+            }
+        }
+
+        log.debug("Streamed {} records in chunks of {}", count, CHUNK_SIZE);
+        return count;
+    }
+
+
+    private <E> int flush(List<E> chunk, ChunkHandler<E> handler) throws IOException {
+        handler.accept(chunk);
+
+        //Detach the written entities, and the associations loaded with them
+        entityManager.clear();
+        return chunk.size();
+    }
+
+
+    /**
+     * Callback receiving one chunk of entities.
+     */
+    @FunctionalInterface
+    public interface ChunkHandler<E> {
+        void accept(List<E> chunk) throws IOException;
+    }
+}
@@ -1,144 +1,237 @@
 package com.iscp.backend.components;
 
-import com.iscp.backend.dto.ControlCategoryCreateDTO;
-import com.iscp.backend.dto.FrameworkCategoryCreateDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Slf4j
 @Component
 public class ExportExcel {
 
-    public <T> void exportToExcel(OutputStream outputStream, List<T> data, String sheetName, List<String> fieldsToInclude, Map<String, String> customHeaders) throws IOException {
-        XSSFWorkbook workbook = new XSSFWorkbook();
-        XSSFSheet sheet = workbook.createSheet(sheetName);
+    //Number of rows kept in memory, older rows are flushed to a compressed temp file
+    private static final int ROW_ACCESS_WINDOW = 100;
 
-        // Add "CONFIDENTIAL DATA" header
-        addConfidentialHeader(workbook, sheet);
+    public <T> void exportToExcel(OutputStream outputStream, Class<T> type, List<T> data, String sheetName, List<String> fieldsToInclude, Map<String, String> customHeaders) throws IOException {
+        try (SheetWriter<T> writer = openSheet(outputStream, type, sheetName, fieldsToInclude, customHeaders)) {
+            writer.writeRows(data);
+            writer.finish();
+        }
+    }
 
-        // Add gap
-        addGap(sheet, 2);
+    /**
+     * Opens a workbook with a single sheet to which rows can be written incrementally.
+     * Only the last {@value #ROW_ACCESS_WINDOW} rows are kept in memory, so the number of rows is unbounded.
+     *
+     * @param outputStream the stream the Excel is written to on {@link SheetWriter#finish()}.
+     * @param type the exported DTO class.
+     * @param sheetName the name of the sheet.
+     * @param fieldsToInclude the names of the fields to export.
+     * @param customHeaders the header to use per field name.
+     * @return the writer, which must be closed to delete its temp files.
+     */
+    public <T> SheetWriter<T> openSheet(OutputStream outputStream, Class<T> type, String sheetName, List<String> fieldsToInclude, Map<String, String> customHeaders) {
+        return new SheetWriter<>(outputStream, ExportSchema.of(type, fieldsToInclude, customHeaders), sheetName);
+    }
 
-        // Create Header row Style
-        CellStyle headerStyle = createHeaderStyle(workbook);
+    /**
+     * Writes rows to a sheet of a streaming workbook.
+     */
+    public final class SheetWriter<T> implements ExportWriter<T> {
 
-        // Create Header Row
-        Row headerRow = sheet.createRow(3); // Start from fourth row (index 3)
-        headerRow.setHeightInPoints(25);
+        private final OutputStream outputStream;
 
-        Field[] fields = data.get(0).getClass().getDeclaredFields();
+        private final ExportSchema<T> schema;
 
-        // Filter the fields based on the list of fields name to include
-        List<Field> selectedFields = Stream.of(fields)
-                .filter(field -> fieldsToInclude.contains(field.getName()))
-                .collect(Collectors.toList());
+        private final String sheetName;
 
-        for (int i = 0; i < selectedFields.size(); i++) {
-            Field field = selectedFields.get(i);
-            Cell cell = headerRow.createCell(i);
+        private final SXSSFWorkbook workbook;
 
-            // Create Header cells based on selected fields and custom header mapping
-            String headerName = customHeaders.getOrDefault(field.getName(), field.getName().toUpperCase());
-            cell.setCellValue(headerName);
-            cell.setCellStyle(headerStyle);
+        private final SXSSFSheet sheet;
+
+        private final ColumnWidthEstimator widthEstimator;
+
+        private final long startTime = System.nanoTime();
+
+        private int rowNum = 4; // Start from fifth row (index 4)
+
+        private SheetWriter(OutputStream outputStream, ExportSchema<T> schema, String sheetName) {
+            this.outputStream = outputStream;
+            this.schema = schema;
+            this.sheetName = sheetName;
+
+            this.workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+            this.workbook.setCompressTempFiles(true);
+            this.sheet = workbook.createSheet(sheetName);
+            this.widthEstimator = new ColumnWidthEstimator(schema.getColumns().size());
+
+            writeHeader();
         }
 
-        // Create Data rows
-        int rowNum = 4; // Start from fifth row (index 4)
-        for (T item : data) {
-            Row row = sheet.createRow(rowNum++);
-            for (int i = 0; i < selectedFields.size(); i++) {
-                Field field = selectedFields.get(i);
-                field.setAccessible(true);
-                Cell cell = row.createCell(i);
-                try {
-                    Object value = field.get(item);
-                    log.info("Field: {}, Value: {}", field.getName(), value);
-
-                    if ("controlCategory".equals(field.getName())) {
-                        if (value != null) {
-                            log.info("Control Category value type: {}", value.getClass().getName());
-
-                            if (value instanceof ControlCategoryCreateDTO) {
-                                ControlCategoryCreateDTO category = (ControlCategoryCreateDTO) value;
-                                String categoryName = category.getControlCategoryName();
-                                cell.setCellValue(categoryName != null ? categoryName : "N/A");
-                            } else if (value instanceof String) {
-                                // Handle string value
-                                cell.setCellValue((String) value);
-                            } else {
-                                log.warn("Unexpected type for controlCategory: {}", value.getClass().getName());
-                                cell.setCellValue("N/A");
-                            }
-                        } else {
-                            cell.setCellValue("N/A");
-                        }
-                    }
-                    else if ("frameworkCategory".equals(field.getName())) {
-                        if (value != null) {
-                            log.info("Framework Category value type: {}", value.getClass().getName());
-
-                            if (value instanceof FrameworkCategoryCreateDTO) {
-                                FrameworkCategoryCreateDTO category = (FrameworkCategoryCreateDTO) value;
-                                String categoryName = category.getFrameworkCategoryName();
-                                cell.setCellValue(categoryName != null ? categoryName : "N/A");
-                            }
-                            else if (value instanceof String) {
-                                // Handle string value
-                                cell.setCellValue((String) value);
-                            }
-                            else {
-                                log.warn("Unexpected type for frameworkCategory: {}", value.getClass().getName());
-                                cell.setCellValue("N/A");
-                            }
-                        } else {
-                            cell.setCellValue("N/A");
-                        }
+        private void writeHeader() {
+            writeTableHeader(workbook, sheet, schema.getHeaders(), widthEstimator);
+        }
+
+        @Override
+        public void writeRows(List<T> items) {
+            for (T item : items) {
+                writeRow(sheet, rowNum++, schema.format(item), widthEstimator);
+            }
+        }
+
+        //Size the columns and write the workbook to the output stream
+        @Override
+        public void finish() throws IOException {
+            // Size columns of table as per data
+            widthEstimator.apply(sheet);
+
+            // Write to response
+            workbook.write(outputStream);
+
+            if (log.isDebugEnabled()) {
+                int rows = rowNum - 4;
+                long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+                log.debug("Exported {} rows to sheet {} in {} ms ({} rows/sec)", rows, sheetName, elapsedMillis, rows * 1000L / elapsedMillis);
+            }
+        }
+
+        /**
+         * Deletes the temp files backing the flushed rows.
+         */
+        @Override
+        public void close() throws IOException {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Writes a workbook with one sheet per given sheet, in order, from rows that are already formatted.
+     * The rows are read back from the spool of each sheet, so only the row access window is held in memory.
+     *
+     * @param outputStream the stream the Excel is written to.
+     * @param sheets the sheets to write.
+     * @throws IOException if the workbook cannot be written.
+     */
+    public void exportSheets(OutputStream outputStream, List<ExportSheet> sheets) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            for (ExportSheet exportSheet : sheets) {
+                SXSSFSheet sheet = workbook.createSheet(exportSheet.getName());
+                ColumnWidthEstimator widthEstimator = new ColumnWidthEstimator(exportSheet.getHeaders().size());
+
+                writeTableHeader(workbook, sheet, exportSheet.getHeaders(), widthEstimator);
+                int[] rowNum = {4}; // Start from fifth row (index 4)
+                exportSheet.forEachRow(values -> writeRow(sheet, rowNum[0]++, values, widthEstimator));
+                widthEstimator.apply(sheet);
+            }
+
+            // Write to response
+            workbook.write(outputStream);
+        }
+        finally {
+            // Delete the temp files backing the flushed rows
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Writes a copy of uploaded sheets with the validation errors of each row in an extra column.
+     * Rows keep their original row numbers, the first row of each sheet is taken as its header, and rows with errors
+     * are highlighted.
+     *
+     * @param outputStream the stream the Excel is written to.
+     * @param sheets the copied sheets, in workbook order.
+     */
+    public void exportErrorReport(OutputStream outputStream, List<ErrorReportSheet> sheets) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle errorStyle = createErrorStyle(workbook);
+
+            for (ErrorReportSheet reportSheet : sheets) {
+                SXSSFSheet sheet = workbook.createSheet(reportSheet.getName());
+                int errorColumn = reportSheet.getColumnCount();
+                ColumnWidthEstimator widthEstimator = new ColumnWidthEstimator(errorColumn + 1);
+
+                for (int i = 0; i < reportSheet.getRows().size(); i++) {
+                    int rowNum = reportSheet.getRowNums().get(i);
+                    writeRow(sheet, rowNum, reportSheet.getRows().get(i), widthEstimator);
+
+                    Row row = sheet.getRow(rowNum);
+                    if (i == 0) {
+                        // Add the error column to the header
+                        Cell headerCell = row.createCell(errorColumn);
+                        headerCell.setCellValue("Errors");
+                        headerCell.setCellStyle(headerStyle);
+                        widthEstimator.header(errorColumn, "Errors");
+                        continue;
                     }
-                    else if ("evidenceComplianceStatus".equals(field.getName()) || "status".equals(field.getName())) {
-                        if (value != null && value instanceof Boolean) {
-                            cell.setCellValue((Boolean) value ? "Active" : "Inactive");
-                        } else {
-                            cell.setCellValue("N/A");
-                        }
-                    } else if (value != null) {
-                        if (value instanceof Set) {
-                            cell.setCellValue(String.join(",", (Set<String>) value));
-                        } else {
-                            cell.setCellValue(value.toString());
+
+                    String error = reportSheet.getErrors().get(rowNum);
+                    if (error != null) {
+                        Cell errorCell = row.createCell(errorColumn);
+                        errorCell.setCellValue(error);
+                        widthEstimator.value(errorColumn, error);
+                        for (Cell cell : row) {
+                            cell.setCellStyle(errorStyle);
                         }
-                    } else {
-                        cell.setCellValue("N/A");
                     }
-                } catch (IllegalAccessException e) {
-                    cell.setCellValue("N/A");
                 }
+                widthEstimator.apply(sheet);
             }
+
+            // Write to response
+            workbook.write(outputStream);
+        }
+        finally {
+            // Delete the temp files backing the flushed rows
+            workbook.dispose();
+            workbook.close();
         }
+    }
+
+    private void writeTableHeader(Workbook workbook, Sheet sheet, List<String> headers, ColumnWidthEstimator widthEstimator) {
+        // Add "CONFIDENTIAL DATA" header
+        addConfidentialHeader(workbook, sheet);
+
+        // Add gap
+        addGap(sheet, 2);
 
-        // Auto Size columns of table as per data
-        for (int i = 0; i < selectedFields.size(); i++) {
-            sheet.autoSizeColumn(i);
+        // Create Header row Style
+        CellStyle headerStyle = createHeaderStyle(workbook);
+
+        // Create Header Row
+        Row headerRow = sheet.createRow(3); // Start from fourth row (index 3)
+        headerRow.setHeightInPoints(25);
+
+        for (int i = 0; i < headers.size(); i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers.get(i));
+            cell.setCellStyle(headerStyle);
+            widthEstimator.header(i, headers.get(i));
         }
+    }
 
-        // Write to response
-        workbook.write(outputStream);
-        workbook.close();
+    private void writeRow(Sheet sheet, int rowNum, String[] values, ColumnWidthEstimator widthEstimator) {
+        Row row = sheet.createRow(rowNum);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+            widthEstimator.value(i, values[i]);
+        }
     }
 
-    private void addConfidentialHeader(XSSFWorkbook workbook, XSSFSheet sheet) {
+    private void addConfidentialHeader(Workbook workbook, Sheet sheet) {
         Row confidentialRow = sheet.createRow(0);
         Cell confidentialCell = confidentialRow.createCell(0);
         confidentialCell.setCellValue("CONFIDENTIAL DATA");
@@ -161,12 +254,12 @@ public class ExportExcel {
         confidentialRow.setHeightInPoints(30);
     }
 
-    private void addGap(XSSFSheet sheet, int rowIndex) {
+    private void addGap(Sheet sheet, int rowIndex) {
         Row gapRow = sheet.createRow(rowIndex);
         gapRow.setHeightInPoints(20); // Set the height of the gap
     }
 
-    private CellStyle createHeaderStyle(XSSFWorkbook workbook) {
+    private CellStyle createHeaderStyle(Workbook workbook) {
         CellStyle style = workbook.createCellStyle();
 
         // Set font style
@@ -191,4 +284,14 @@ public class ExportExcel {
 
         return style;
     }
-}
\ No newline at end of file
+
+    private CellStyle createErrorStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+
+        // Set background color
+        style.setFillForegroundColor(IndexedColors.ROSE.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+        return style;
+    }
+}
@@ -0,0 +1,121 @@
+package com.iscp.backend.components;
+
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+
+/**
+ * Output formats of the export endpoints.
+ */
+@Getter
+public enum ExportFormat {
+
+    XLSX("xlsx", ExportFormat.XLSX_VALUE, false),
+    CSV("csv", ExportFormat.CSV_VALUE, false),
+    NDJSON_GZIP("ndjson", ExportFormat.NDJSON_VALUE, true);
+
+    public static final String XLSX_VALUE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    public static final String CSV_VALUE = "text/csv";
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String GZIP_VALUE = "application/gzip";
+
+    private final String extension;
+
+    private final MediaType mediaType;
+
+    //Whether the body is gzip compressed. It is sent as a .gz file rather than with Content-Encoding, which a client
+    //that did not send Accept-Encoding: gzip would not expect
+    private final boolean compressed;
+
+    ExportFormat(String extension, String mediaType, boolean compressed) {
+        this.extension = extension;
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.compressed = compressed;
+    }
+
+
+    /**
+     * Resolves the requested format from the format parameter, or else from the Accept header.
+     * Requests that do not name a format explicitly, such as {@code Accept: *}{@code /*}, get XLSX.
+     *
+     * @param format the format parameter, either xlsx, csv or ndjson.
+     * @param accept the Accept header.
+     * @return the format to export in.
+     * @throws UnsupportedExportFormatException if the format parameter names an unknown format.
+     */
+    public static ExportFormat resolve(String format, String accept) throws UnsupportedExportFormatException {
+        if (format != null && !format.isBlank()) {
+            for (ExportFormat exportFormat : values()) {
+                if (exportFormat.extension.equalsIgnoreCase(format.trim()) || exportFormat.name().equalsIgnoreCase(format.trim())) {
+                    return exportFormat;
+                }
+            }
+            throw new UnsupportedExportFormatException();
+        }
+
+        if (accept == null || accept.isBlank()) {
+            return XLSX;
+        }
+
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        }
+        catch (InvalidMediaTypeException e) {
+            return XLSX;
+        }
+
+        //Pick the format accepted with the highest quality, ignoring wildcards
+        ExportFormat best = XLSX;
+        double bestQuality = -1;
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.isWildcardType()) {
+                continue;
+            }
+            for (ExportFormat exportFormat : values()) {
+                if (exportFormat.mediaType.isCompatibleWith(acceptedType) && acceptedType.getQualityValue() > bestQuality) {
+                    best = exportFormat;
+                    bestQuality = acceptedType.getQualityValue();
+                }
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Builds the attachment response streaming the given body in this format.
+     *
+     * @param baseName the file name without extension.
+     * @param body the body writing the export.
+     * @return the response.
+     */
+    public ResponseEntity<StreamingResponseBody> toResponse(String baseName, StreamingResponseBody body) {
+        return attachment(baseName).body(body);
+    }
+
+
+    /**
+     * Starts an attachment response in this format, with its file name and content type.
+     * Compressed formats are sent as application/gzip files named with a .gz extension.
+     *
+     * @param baseName the file name without extension.
+     * @return the response builder.
+     */
+    public ResponseEntity.BodyBuilder attachment(String baseName) {
+        String fileName = baseName + "." + extension + (compressed ? ".gz" : "");
+        return ResponseEntity.status(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
+                .contentType(compressed ? MediaType.parseMediaType(GZIP_VALUE) : mediaType);
+    }
+}
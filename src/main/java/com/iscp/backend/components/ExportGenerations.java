@@ -0,0 +1,85 @@
+package com.iscp.backend.components;
+
+import com.iscp.backend.models.*;
+import com.iscp.backend.models.Enum;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation counters of the exported data, used to invalidate cached exports.
+ * Every write to an entity bumps its counter, and the generation of an export is the sum of the counters
+ * of every entity its rows are built from. A cached export is only reused while its generation is current.
+ */
+public final class ExportGenerations {
+
+    private static final Map<Class<?>, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+
+    //Entities each export reads, directly or through the names and evidences it displays
+    private static final Map<Enum.ExportEntity, List<Class<?>>> DEPENDENCIES = Map.of(
+            Enum.ExportEntity.SECURITY_COMPLIANCE, List.of(SecurityCompliance.class, Evidence.class, Framework.class, FrameworkCategory.class, Control.class, ControlCategory.class, Checklist.class, Department.class),
+            Enum.ExportEntity.CHECKLIST, List.of(Checklist.class, Control.class),
+            Enum.ExportEntity.CONTROL, List.of(Control.class, ControlCategory.class),
+            Enum.ExportEntity.FRAMEWORK, List.of(Framework.class, FrameworkCategory.class),
+            Enum.ExportEntity.ROLE, List.of(Role.class, Permission.class),
+            Enum.ExportEntity.USERS, List.of(Users.class, Role.class, Department.class)
+    );
+
+    private ExportGenerations() {
+    }
+
+
+    /**
+     * Returns the current generation of the data of an export.
+     */
+    public static long current(Enum.ExportEntity entity) {
+        long generation = 0;
+        for (Class<?> type : DEPENDENCIES.get(entity)) {
+            AtomicLong counter = COUNTERS.get(type);
+            generation += counter != null ? counter.get() : 0;
+        }
+        return generation;
+    }
+
+
+    /**
+     * Invalidates the exports reading the given entity.
+     * The counter is bumped right away and again once the current transaction completes,
+     * so that an export reading uncommitted state is never cached under the new generation.
+     */
+    @SuppressWarnings("unchecked")
+    public static void invalidate(Class<?> type) {
+        bump(type);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        //Register a single synchronization per transaction, collecting the written entity types
+        Set<Class<?>> types = (Set<Class<?>>) TransactionSynchronizationManager.getResource(ExportGenerations.class);
+        if (types == null) {
+            Set<Class<?>> written = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(ExportGenerations.class, written);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ExportGenerations.class);
+                    written.forEach(ExportGenerations::bump);
+                }
+            });
+            types = written;
+        }
+        types.add(type);
+    }
+
+
+    private static void bump(Class<?> type) {
+        COUNTERS.computeIfAbsent(type, t -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,179 @@
+package com.iscp.backend.components;
+
+import com.iscp.backend.dto.ControlCategoryCreateDTO;
+import com.iscp.backend.dto.FrameworkCategoryCreateDTO;
+import lombok.Getter;
+import org.springframework.beans.BeanUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Compiled export layout of a DTO class.
+ * The selected fields are resolved once, in declaration order, into columns holding a getter compiled
+ * through {@link LambdaMetafactory} and a formatter chosen from the field type. Schemas are cached per
+ * DTO class and column selection, so exporting a row involves no reflection.
+ *
+ * @param <T> the exported DTO type.
+ */
+@Getter
+public final class ExportSchema<T> {
+
+    private static final String NOT_AVAILABLE = "N/A";
+
+    private static final Map<Key, ExportSchema<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final List<Column<T>> columns;
+
+
+    private ExportSchema(List<Column<T>> columns) {
+        this.columns = columns;
+    }
+
+
+    /**
+     * Returns the cached schema for the given DTO class and column selection, compiling it on first use.
+     *
+     * @param type the exported DTO class.
+     * @param fieldsToInclude the names of the fields to export.
+     * @param customHeaders the header to use per field name, fields without one use their upper-cased name.
+     * @return the compiled schema.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ExportSchema<T> of(Class<T> type, List<String> fieldsToInclude, Map<String, String> customHeaders) {
+        Key key = new Key(type, List.copyOf(fieldsToInclude), Map.copyOf(customHeaders));
+        return (ExportSchema<T>) CACHE.computeIfAbsent(key, k -> compile(type, fieldsToInclude, customHeaders));
+    }
+
+
+    /**
+     * Returns the header of each column.
+     */
+    public List<String> getHeaders() {
+        return columns.stream().map(Column::getHeader).collect(Collectors.toList());
+    }
+
+
+    /**
+     * Formats every column of the given item as displayed in exports.
+     */
+    public String[] format(T item) {
+        String[] values = new String[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).format(item);
+        }
+        return values;
+    }
+
+
+    private static <T> ExportSchema<T> compile(Class<T> type, List<String> fieldsToInclude, Map<String, String> customHeaders) {
+        List<Column<T>> columns = new ArrayList<>();
+
+        //Keep the declaration order of the DTO, as the column order of existing exports depends on it
+        for (Field field : type.getDeclaredFields()) {
+            String name = field.getName();
+            if (!fieldsToInclude.contains(name)) {
+                continue;
+            }
+            String header = customHeaders.getOrDefault(name, name.toUpperCase());
+            columns.add(new Column<>(name, header, compileGetter(type, name), formatterFor(field.getType())));
+        }
+        return new ExportSchema<>(List.copyOf(columns));
+    }
+
+
+    //Generate a Function calling the getter directly, so the JIT can inline it like hand-written code
+    @SuppressWarnings("unchecked")
+    private static <T> Function<T, Object> compileGetter(Class<T> type, String name) {
+        PropertyDescriptor property = BeanUtils.getPropertyDescriptor(type, name);
+        if (property == null || property.getReadMethod() == null) {
+            throw new IllegalArgumentException("No getter for field " + name + " of " + type.getName());
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle getter = lookup.unreflect(property.getReadMethod());
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    getter,
+                    getter.type().wrap());
+            return (Function<T, Object>) callSite.getTarget().invoke();
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Unable to compile getter for field " + name + " of " + type.getName(), e);
+        }
+    }
+
+
+    private static Function<Object, String> formatterFor(Class<?> fieldType) {
+        if (Boolean.class.equals(fieldType) || boolean.class.equals(fieldType)) {
+            return value -> value == null ? NOT_AVAILABLE : ((Boolean) value ? "Active" : "Inactive");
+        }
+        if (ControlCategoryCreateDTO.class.equals(fieldType)) {
+            return value -> value == null ? NOT_AVAILABLE : orNotAvailable(((ControlCategoryCreateDTO) value).getControlCategoryName());
+        }
+        if (FrameworkCategoryCreateDTO.class.equals(fieldType)) {
+            return value -> value == null ? NOT_AVAILABLE : orNotAvailable(((FrameworkCategoryCreateDTO) value).getFrameworkCategoryName());
+        }
+        if (Set.class.isAssignableFrom(fieldType)) {
+            return value -> value == null ? NOT_AVAILABLE : ((Collection<?>) value).stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+        return value -> value == null ? NOT_AVAILABLE : value.toString();
+    }
+
+
+    private static String orNotAvailable(String value) {
+        return value != null ? value : NOT_AVAILABLE;
+    }
+
+
+    /**
+     * A single exported column with its compiled getter and formatter.
+     */
+    @Getter
+    public static final class Column<T> {
+
+        private final String name;
+
+        private final String header;
+
+        private final Function<T, Object> getter;
+
+        private final Function<Object, String> formatter;
+
+        private Column(String name, String header, Function<T, Object> getter, Function<Object, String> formatter) {
+            this.name = name;
+            this.header = header;
+            this.getter = getter;
+            this.formatter = formatter;
+        }
+
+        //Raw value of the column
+        public Object value(T item) {
+            return getter.apply(item);
+        }
+
+        //Value of the column as displayed in exports
+        public String format(T item) {
+            return formatter.apply(getter.apply(item));
+        }
+    }
+
+
+    private record Key(Class<?> type, List<String> fields, Map<String, String> headers) {
+    }
+}
@@ -0,0 +1,154 @@
+package com.iscp.backend.components;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A sheet of a multi-sheet export. Its rows are spooled to a compressed temp file as they are formatted, so sheets
+ * can be built concurrently without holding their rows in memory until the workbook is written.
+ * The sheet must be closed to delete its temp file.
+ */
+public class ExportSheet implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //Length written in place of a null value
+    private static final int NULL_LENGTH = -1;
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final List<String> headers;
+
+    private final Path file;
+
+    private DataOutputStream output;
+
+    @Getter
+    private long rowCount = 0;
+
+    private ExportSheet(String name, List<String> headers) throws IOException {
+        this.name = name;
+        this.headers = headers;
+        this.file = Files.createTempFile("export-sheet-", ".gz");
+        try {
+            this.output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a sheet from the rows added by the given content, deleting its temp file if the content fails.
+     *
+     * @param name the name of the sheet.
+     * @param headers the headers of the columns.
+     * @param content adds the formatted rows to the sheet.
+     * @return the sheet, ready to be written.
+     * @throws IOException if the rows cannot be read or spooled.
+     */
+    public static ExportSheet spool(String name, List<String> headers, Content content) throws IOException {
+        ExportSheet sheet = new ExportSheet(name, headers);
+        try {
+            content.addRowsTo(sheet);
+            sheet.output.close();
+            sheet.output = null;
+            return sheet;
+        }
+        catch (IOException | RuntimeException e) {
+            sheet.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a formatted row to the sheet.
+     *
+     * @param values the values of the row, which may be null.
+     * @throws IOException if the row cannot be spooled.
+     */
+    public void addRow(String[] values) throws IOException {
+        output.writeInt(values.length);
+        for (String value : values) {
+            if (value == null) {
+                output.writeInt(NULL_LENGTH);
+            }
+            else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+        rowCount++;
+    }
+
+    /**
+     * Reads the rows of the sheet back, in the order they were added.
+     *
+     * @param handler the callback receiving each row.
+     * @throws IOException if the spooled rows cannot be read.
+     */
+    public void forEachRow(RowHandler handler) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            for (long row = 0; row < rowCount; row++) {
+                String[] values = new String[input.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    int length = input.readInt();
+                    if (length != NULL_LENGTH) {
+                        byte[] bytes = new byte[length];
+                        input.readFully(bytes);
+                        values[i] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                }
+                handler.accept(values);
+            }
+        }
+    }
+
+    /**
+     * Deletes the temp file holding the rows.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (output != null) {
+                output.close();
+            }
+        }
+        finally {
+            output = null;
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Adds the rows of a sheet being built.
+     */
+    @FunctionalInterface
+    public interface Content {
+        void addRowsTo(ExportSheet sheet) throws IOException;
+    }
+
+    /**
+     * Callback receiving one spooled row.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(String[] values);
+    }
+}
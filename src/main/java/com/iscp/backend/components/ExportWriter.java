@@ -0,0 +1,23 @@
+package com.iscp.backend.components;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Incremental writer of an export, to which rows are appended chunk by chunk.
+ *
+ * @param <T> the exported DTO type.
+ */
+public interface ExportWriter<T> extends Closeable {
+
+    /**
+     * Appends the given items as rows.
+     */
+    void writeRows(List<T> items) throws IOException;
+
+    /**
+     * Completes the export once every row is written.
+     */
+    void finish() throws IOException;
+}
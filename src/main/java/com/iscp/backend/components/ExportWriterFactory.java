@@ -0,0 +1,44 @@
+package com.iscp.backend.components;
+
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opens the writer of an export in the requested format.
+ * Every format shares the same field selection and headers, compiled once into an {@link ExportSchema}.
+ */
+@Component
+@AllArgsConstructor
+public class ExportWriterFactory {
+
+    private final ExportExcel exportExcel;
+
+
+    /**
+     * Opens a writer of the given format over the output stream.
+     *
+     * @param format the format to write.
+     * @param outputStream the stream the export is written to.
+     * @param type the exported DTO class.
+     * @param sheetName the name of the sheet, used by XLSX only.
+     * @param fieldsToInclude the names of the fields to export.
+     * @param customHeaders the header to use per field name.
+     * @return the writer, which must be closed.
+     * @throws IOException if the writer cannot be opened.
+     */
+    public <T> ExportWriter<T> open(ExportFormat format, OutputStream outputStream, Class<T> type, String sheetName, List<String> fieldsToInclude, Map<String, String> customHeaders) throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvExportWriter<>(outputStream, ExportSchema.of(type, fieldsToInclude, customHeaders));
+            case NDJSON_GZIP:
+                return new NdjsonExportWriter<>(outputStream, ExportSchema.of(type, fieldsToInclude, customHeaders));
+            default:
+                return exportExcel.openSheet(outputStream, type, sheetName, fieldsToInclude, customHeaders);
+        }
+    }
+}
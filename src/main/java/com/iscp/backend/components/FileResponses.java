@@ -0,0 +1,253 @@
+package com.iscp.backend.components;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Responses serving stored files with validators, so that clients can revalidate and resume them.
+ * Whole files and single ranges are written without copying them through the heap: Tomcat sends them with sendfile
+ * once the request completes. Small files, and other containers, get them through {@link FileChannel#transferTo},
+ * which only goes through a small reused buffer. Multiple ranges are left to Spring MVC, which answers conditional
+ * requests once a response has validators and cuts {@link Resource} bodies to multipart/byteranges.
+ * Files stored compressed are sent as is with their Content-Encoding when the client accepts it.
+ */
+public final class FileResponses {
+
+    //Stored privately by browsers, but always revalidated since the content behind a name can change
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    //Request attributes of the Tomcat sendfile support, see org.apache.catalina.Globals
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    //Below this size a plain write is cheaper than handing the file to the poller, as in the Tomcat DefaultServlet
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+
+    private FileResponses() {
+    }
+
+
+    /**
+     * Serves a file with a strong ETag, its Last-Modified time and byte range support.
+     * Conditional requests are answered with 304 or 412, single ranges with 206, and unsatisfiable ranges with 416.
+     *
+     * @param webRequest the request, whose response is written directly unless several ranges are requested.
+     * @param resource the file to serve.
+     * @param contentHash an identifier of the content, such as its SHA-256, when known. Otherwise the ETag is derived from the size and modification time.
+     * @param responseHeaders the content type, disposition and any other header of the response.
+     * @return null once the response is written, or the response of a multiple range request for Spring to write.
+     * @throws IOException if the file cannot be read or the response cannot be written.
+     */
+    public static ResponseEntity<Resource> of(ServletWebRequest webRequest, Resource resource, String contentHash, HttpHeaders responseHeaders) throws IOException {
+        long length = resource.contentLength();
+        long lastModified = resource.lastModified();
+        String eTag = contentHash != null ? "\"" + contentHash + "\"" : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        //A range of an older version of the file must not be served, send the whole file instead
+        List<HttpRange> ranges = List.of();
+        String range = webRequest.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(webRequest.getHeader(HttpHeaders.IF_RANGE), eTag, lastModified)) {
+            try {
+                ranges = HttpRange.parseRanges(range);
+            }
+            catch (IllegalArgumentException e) {
+                //Ignore a malformed Range header, as allowed by RFC 9110
+            }
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(responseHeaders);
+        headers.setCacheControl(CACHE_CONTROL);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (ranges.size() > 1) {
+            headers.setETag(eTag);
+            headers.setLastModified(lastModified);
+            return ResponseEntity.ok().headers(headers).body(resource);
+        }
+
+        //Answers If-None-Match, If-Modified-Since, If-Match and If-Unmodified-Since, and sets the validators
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return null;
+        }
+
+        HttpServletResponse response = webRequest.getResponse();
+        long start = 0;
+        long end = length - 1;
+        if (ranges.size() == 1) {
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            }
+            catch (IllegalArgumentException e) {
+                start = length;
+            }
+            //A range starting at or past the end of the file cannot be satisfied
+            if (start >= length) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return null;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setContentLengthLong(length == 0 ? 0 : end - start + 1);
+
+        HttpServletRequest request = webRequest.getRequest();
+        if (length > 0 && !HttpMethod.HEAD.matches(request.getMethod())) {
+            write(request, response, resource.getFile().toPath(), start, end + 1);
+        }
+        return null;
+    }
+
+
+    /**
+     * Serves a file stored compressed, as is to clients accepting its encoding and decompressed to the others.
+     * Both representations have their own ETag and vary by Accept-Encoding. Compressed responses support ranges of
+     * the compressed bytes, decompressed ones are always sent whole.
+     *
+     * @param webRequest the request, whose response is written directly unless several ranges are requested.
+     * @param resource the compressed file to serve.
+     * @param contentHash an identifier of the original content, such as its SHA-256.
+     * @param encoding the Content-Encoding of the stored file, such as gzip.
+     * @param decodedLength the size of the original content.
+     * @param responseHeaders the content type, disposition and any other header of the response.
+     * @return null once the response is written, or the response of a multiple range request for Spring to write.
+     * @throws IOException if the file cannot be read or the response cannot be written.
+     */
+    public static ResponseEntity<Resource> ofEncoded(ServletWebRequest webRequest, Resource resource, String contentHash, String encoding, long decodedLength, HttpHeaders responseHeaders) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(responseHeaders);
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptsEncoding(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING), encoding)) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+            return of(webRequest, resource, contentHash + "-" + encoding, headers);
+        }
+
+        //Answers If-None-Match, If-Modified-Since, If-Match and If-Unmodified-Since, and sets the validators
+        if (webRequest.checkNotModified("\"" + contentHash + "\"", resource.lastModified())) {
+            return null;
+        }
+
+        HttpServletResponse response = webRequest.getResponse();
+        response.setStatus(HttpStatus.OK.value());
+        headers.setCacheControl(CACHE_CONTROL);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        response.setContentLengthLong(decodedLength);
+
+        if (!HttpMethod.HEAD.matches(webRequest.getRequest().getMethod())) {
+            try (InputStream in = new GZIPInputStream(resource.getInputStream(), DECODE_BUFFER_SIZE)) {
+                in.transferTo(response.getOutputStream());
+            }
+        }
+        return null;
+    }
+
+
+    //Write the bytes from start to end exclusive, from the kernel page cache to the socket where possible
+    private static void write(HttpServletRequest request, HttpServletResponse response, Path file, long start, long end) throws IOException {
+        if (end - start >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            //Tomcat sends the file once the request completes, nothing may be written to the response
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+
+    //Whether Accept-Encoding lists the encoding, or any encoding, without a zero quality
+    private static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.trim().split(";");
+            String coding = parts[0].trim();
+            if (!coding.equalsIgnoreCase(encoding) && !coding.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                    }
+                    catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    //If-Range holds either a strong ETag or the exact Last-Modified date of the representation the client has
+    private static boolean ifRangeMatches(String ifRange, String eTag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals(eTag);
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() == lastModified / 1000;
+        }
+        catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
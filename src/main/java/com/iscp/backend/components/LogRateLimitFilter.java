@@ -0,0 +1,133 @@
+package com.iscp.backend.components;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logback turbo filter limiting how many INFO, DEBUG and TRACE events each logger writes per second.
+ * Past the limit, only one event out of every {@code sampleEvery} is kept until the next second, so a hot loop keeps a
+ * trace in the logs without its cost. WARN and ERROR events always pass.
+ * Limits are configured per logger name prefix in logback-spring.xml, and the longest matching prefix applies.
+ */
+public class LogRateLimitFilter extends TurboFilter {
+
+    private final List<Limit> limits = new ArrayList<>();
+
+    //Limit of each logger by name, resolved once
+    private final ConcurrentHashMap<String, Optional<Limit>> limitsByLogger = new ConcurrentHashMap<>();
+
+    //Events of the current second of each logger by name
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+
+    public void addLimit(Limit limit) {
+        limits.add(limit);
+    }
+
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+
+        //Disabled events are dropped by the level check anyway, don't count them
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        Optional<Limit> limit = limitsByLogger.computeIfAbsent(logger.getName(), this::findLimit);
+        if (limit.isEmpty()) {
+            return FilterReply.NEUTRAL;
+        }
+
+        long count = windows.computeIfAbsent(logger.getName(), name -> new Window()).increment(System.currentTimeMillis() / 1000);
+        int permitsPerSecond = limit.get().getPermitsPerSecond();
+        if (count <= permitsPerSecond) {
+            return FilterReply.NEUTRAL;
+        }
+        int sampleEvery = limit.get().getSampleEvery();
+        return sampleEvery > 0 && (count - permitsPerSecond) % sampleEvery == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+
+    //The limit with the longest logger prefix matching the name
+    private Optional<Limit> findLimit(String loggerName) {
+        Limit match = null;
+        for (Limit limit : limits) {
+            String prefix = limit.getLogger();
+            boolean matches = loggerName.equals(prefix) || loggerName.startsWith(prefix + ".");
+            if (matches && (match == null || prefix.length() > match.getLogger().length())) {
+                match = limit;
+            }
+        }
+        return Optional.ofNullable(match);
+    }
+
+
+    /**
+     * Rate of the loggers under one name prefix.
+     */
+    public static class Limit {
+
+        private String logger = "";
+
+        private int permitsPerSecond = 50;
+
+        private int sampleEvery = 100;
+
+        public String getLogger() {
+            return logger;
+        }
+
+        public void setLogger(String logger) {
+            this.logger = logger;
+        }
+
+        public int getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(int permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getSampleEvery() {
+            return sampleEvery;
+        }
+
+        public void setSampleEvery(int sampleEvery) {
+            this.sampleEvery = sampleEvery;
+        }
+    }
+
+
+    //Counts the events of one logger in the current second
+    private static class Window {
+
+        private volatile long second;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private long increment(long now) {
+            if (now != second) {
+                synchronized (this) {
+                    if (now != second) {
+                        count.set(0);
+                        second = now;
+                    }
+                }
+            }
+            return count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.iscp.backend.components;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes an export as gzip compressed newline delimited JSON, one object per row.
+ * Objects are keyed by field name. Booleans, numbers and collections keep their JSON type,
+ * other values are formatted as in the Excel export.
+ *
+ * @param <T> the exported DTO type.
+ */
+public class NdjsonExportWriter<T> implements ExportWriter<T> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ExportSchema<T> schema;
+
+    private final GZIPOutputStream gzipOutputStream;
+
+    private final JsonGenerator generator;
+
+
+    public NdjsonExportWriter(OutputStream outputStream, ExportSchema<T> schema) throws IOException {
+        this.schema = schema;
+        this.gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        this.generator = JSON_FACTORY.createGenerator(gzipOutputStream);
+
+        //Rows are separated by a newline instead of the default space
+        this.generator.setRootValueSeparator(null);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+
+    @Override
+    public void writeRows(List<T> items) throws IOException {
+        for (T item : items) {
+            generator.writeStartObject();
+            for (ExportSchema.Column<T> column : schema.getColumns()) {
+                generator.writeFieldName(column.getName());
+                writeValue(column, column.value(item));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+
+    private void writeValue(ExportSchema.Column<T> column, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        }
+        else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        }
+        else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        }
+        else if (value instanceof Collection<?>) {
+            generator.writeStartArray();
+            for (Object element : (Collection<?>) value) {
+                generator.writeString(String.valueOf(element));
+            }
+            generator.writeEndArray();
+        }
+        else {
+            generator.writeString(column.getFormatter().apply(value));
+        }
+    }
+
+
+    @Override
+    public void finish() throws IOException {
+        generator.flush();
+        gzipOutputStream.finish();
+    }
+
+
+    //The response stream is owned by the caller, so only the compressor is released
+    @Override
+    public void close() throws IOException {
+        generator.close();
+        gzipOutputStream.finish();
+    }
+}
@@ -16,8 +16,13 @@ public class Pagination {
     //FUNCTION TO CREATE PAGEABLE
     public static Pageable createPageable(int page,int size,String sortBy,Boolean isAscending)
     {
-        Sort sort= isAscending? Sort.by(sortBy).ascending():Sort.by(sortBy).descending();
-        return PageRequest.of(page,size,sort);
+        return PageRequest.of(page,size,createSort(sortBy,isAscending));
+    }
+
+    //FUNCTION TO CREATE SORT
+    public static Sort createSort(String sortBy,Boolean isAscending)
+    {
+        return isAscending? Sort.by(sortBy).ascending():Sort.by(sortBy).descending();
     }
 
     public static Pageable createPageableWithMultipleSort(int page, int size) {
@@ -0,0 +1,67 @@
+package com.iscp.backend.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Applies the schema objects that Hibernate's {@code hbm2ddl.auto=update} cannot express, such as filtered indexes.
+ * Every statement is idempotent, so it is safe to run on each startup.
+ */
+@Slf4j
+@Component
+public class SchemaInitializer implements ApplicationRunner {
+
+    //Derive the position within the compliance series from the record id suffix (e.g. "24-09/24-10/M3" -> 3)
+    private static final String BACKFILL_PERIOD_INDEX =
+            "UPDATE security_compliance SET period_index = TRY_CAST(SUBSTRING(record_id, 14, 4) AS INT) " +
+            "WHERE period_index IS NULL";
+
+    //At most one active compliance per framework, control, checklist, periodicity and period
+    private static final String CREATE_ACTIVE_COMPLIANCE_INDEX =
+            "IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'ux_security_compliance_active_period' " +
+            "AND object_id = OBJECT_ID('security_compliance')) " +
+            "CREATE UNIQUE NONCLUSTERED INDEX ux_security_compliance_active_period " +
+            "ON security_compliance (framework_id, control_id, checklist_id, periodicity, period_index) " +
+            "WHERE evidence_compliance_status = 1 AND period_index IS NOT NULL";
+
+    //Rows created before optimistic locking was introduced start at version 0
+    private static final List<String> VERSIONED_TABLES = List.of("security_compliance", "checklist", "controls", "framework");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaInitializer(@Qualifier("iscpDataSource") DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String table : VERSIONED_TABLES) {
+            try {
+                jdbcTemplate.update("UPDATE " + table + " SET version = 0 WHERE version IS NULL");
+            }
+            catch (DataAccessException e) {
+                //A table that cannot be updated must not abort startup, nor the index creation below
+                log.warn("Unable to initialize version of {} records: {}", table, e.getMostSpecificCause().getMessage());
+            }
+        }
+
+        try {
+            int backfilled = jdbcTemplate.update(BACKFILL_PERIOD_INDEX);
+            log.debug("Backfilled period index of {} security compliance records", backfilled);
+
+            jdbcTemplate.execute(CREATE_ACTIVE_COMPLIANCE_INDEX);
+        }
+        catch (DataAccessException e) {
+            //Index creation fails while duplicate active compliance exists, these have to be resolved manually
+            log.warn("Unable to create unique index on active security compliance: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+}
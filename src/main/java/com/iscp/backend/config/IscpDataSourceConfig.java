@@ -41,6 +41,9 @@ public class IscpDataSourceConfig {
     @Value("${spring.datasource.iscp.driver-class-name}")
     private String driverClassName;
 
+    @Value("${spring.jpa.show-sql:false}")
+    private boolean showSql;
+
 
     @Primary
     @Bean(name = "iscpDataSource")
@@ -79,10 +82,17 @@ public class IscpDataSourceConfig {
         Map<String, Object> jpaProperties = new HashMap<>();
         jpaProperties.put("hibernate.dialect", "org.hibernate.dialect.SQLServerDialect");
         jpaProperties.put("hibernate.hbm2ddl.auto", "update");  // You can change this to "create" or "create-drop" if needed
-        jpaProperties.put("hibernate.format_sql", "true");
-        jpaProperties.put("hibernate.show_sql", "true");
+        // show_sql prints every statement to stdout synchronously, bypassing the async logging; off unless configured
+        jpaProperties.put("hibernate.format_sql", String.valueOf(showSql));
+        jpaProperties.put("hibernate.show_sql", String.valueOf(showSql));
         jpaProperties.put("hibernate.boot.allow_jdbc_metadata_access", "false");
 
+        // Group inserts and updates into JDBC batches, ordered by entity so bulk writes are not split into single statements
+        jpaProperties.put("hibernate.jdbc.batch_size", "100");
+        jpaProperties.put("hibernate.order_inserts", "true");
+        jpaProperties.put("hibernate.order_updates", "true");
+        jpaProperties.put("hibernate.jdbc.batch_versioned_data", "true");
+
         // Set up the entity manager factory
         return builder
                 .dataSource(dataSource)
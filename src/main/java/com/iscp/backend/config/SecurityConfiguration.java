@@ -2,6 +2,7 @@ package com.iscp.backend.config;
 
 import com.iscp.backend.security.JwtAuthenticationEntryPoint;
 import com.iscp.backend.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
@@ -85,6 +86,7 @@ public class SecurityConfiguration {
                 .cors(cors->cors.configurationSource(corsConfig.corsConfigurationSource())) // Attach the CORS configuration
                 .csrf(AbstractHttpConfigurer::disable)  // Disable CSRF protection
                 .authorizeHttpRequests(auth->auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()   // Streamed responses were authorized on the original request
                         .requestMatchers(HttpMethod.POST,"/api/auth/login").permitAll()
                         .requestMatchers("/backend/**").permitAll()
                         .requestMatchers(AuthUrl).permitAll()
@@ -0,0 +1,101 @@
+package com.iscp.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Value("${export.async.timeout}")
+    private long asyncTimeout;
+
+    @Value("${export.async.pool-size}")
+    private int poolSize;
+
+    @Value("${export.job.pool-size}")
+    private int exportJobPoolSize;
+
+    @Value("${export.master-data.pool-size}")
+    private int masterDataPoolSize;
+
+    @Value("${upload.parse.parallelism}")
+    private int parseParallelism;
+
+    @Value("${preview.pool-size}")
+    private int previewPoolSize;
+
+
+    // Define a bounded executor for streamed exports, so large exports cannot exhaust the request threads
+    @Bean(name = "exportTaskExecutor")
+    public ThreadPoolTaskExecutor exportTaskExecutor()
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("export-");
+        return executor;
+    }
+
+
+    // Define a separate bounded executor for background export jobs, so long jobs cannot hold up streamed exports
+    @Bean(name = "exportJobExecutor")
+    public ThreadPoolTaskExecutor exportJobExecutor()
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(exportJobPoolSize);
+        executor.setMaxPoolSize(exportJobPoolSize);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("export-job-");
+        return executor;
+    }
+
+
+    // Define a separate bounded executor for the sheets of the master data export, which is itself running on the export executor
+    @Bean(name = "masterDataExportExecutor")
+    public ThreadPoolTaskExecutor masterDataExportExecutor()
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(masterDataPoolSize);
+        executor.setMaxPoolSize(masterDataPoolSize);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("master-data-export-");
+        return executor;
+    }
+
+
+    // Define a bounded pool for parsing the sheets of uploaded workbooks concurrently
+    @Bean(name = "sheetParsePool", destroyMethod = "shutdown")
+    public ForkJoinPool sheetParsePool()
+    {
+        return new ForkJoinPool(parseParallelism);
+    }
+
+
+    // Define a small bounded executor for evidence previews, generated in the background after uploads
+    @Bean(name = "previewTaskExecutor")
+    public ThreadPoolTaskExecutor previewTaskExecutor()
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(previewPoolSize);
+        executor.setMaxPoolSize(previewPoolSize);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("preview-");
+        return executor;
+    }
+
+
+    // Run StreamingResponseBody writers on the export executor with a timeout long enough for large exports
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer)
+    {
+        configurer.setTaskExecutor(exportTaskExecutor());
+        configurer.setDefaultTimeout(asyncTimeout);
+    }
+}
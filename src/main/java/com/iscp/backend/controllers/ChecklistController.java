@@ -1,10 +1,14 @@
 package com.iscp.backend.controllers;
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.ChecklistAlreadyExistsException;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
 import com.iscp.backend.exceptions.ControlNotFoundException;
+import com.iscp.backend.exceptions.ServiceException;
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
 import com.iscp.backend.services.ChecklistService;
+import com.iscp.backend.services.FileUploadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,12 +17,12 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -34,6 +38,8 @@ public class ChecklistController {
 
     private final  ChecklistService checklistService;
 
+    private final FileUploadService fileUploadService;
+
 
     // GET CHECKLIST ACCORDING TO CHECKLIST NAME
     @Operation(summary = "Get checklist by name", description = "Fetch checklist details from database based on checklist name")
@@ -85,7 +91,7 @@ public class ChecklistController {
     public ResponseEntity<List<ChecklistDTO>> getAllCheckListByControlName(@PathVariable String controlName) throws ControlNotFoundException {
         log.info("Received request to get all checklist associated with control name {}",controlName);
         List<ChecklistDTO> checklistDTOList = checklistService.getChecklistFromControl(controlName);
-        log.info("All Checklists fetched successfully by control: {}",checklistDTOList);
+        log.info("All Checklists fetched successfully by control: {}",checklistDTOList.size());
         return ResponseEntity.status(HttpStatus.OK).body(checklistDTOList);
     }
 
@@ -93,9 +99,9 @@ public class ChecklistController {
     // GET ALL CHECKLIST ASSOCIATED TO LIST OF  CONTROLS
     @PostMapping("/get-checklist-from-control")
     public ResponseEntity<List<ChecklistDTO>> getAllCheckListByControlNameList(@RequestBody List<String> controlName) throws ControlNotFoundException {
-        log.info("Received request to get checklists associated with control name list {}",controlName);
+        log.info("Received request to get checklists associated with {} control names",controlName.size());
         List<ChecklistDTO> checklistDTOList = checklistService.getChecklistFromControlList(controlName);
-        log.info("All Checklists fetched successfully by control name: {}",checklistDTOList);
+        log.info("All Checklists fetched successfully by control name: {}",checklistDTOList.size());
         return ResponseEntity.status(HttpStatus.OK).body(checklistDTOList);
     }
 
@@ -134,33 +140,45 @@ public class ChecklistController {
 
     //EXPORT DATA TO EXCEL
     @Operation(summary = "To export data to excel sheet", description = "To export table data to excel sheet of Checklist")
-    @PostMapping("/export-excel")
-    public ResponseEntity<ByteArrayResource> exportsExcelChecklist(@RequestBody ChecklistFilterDTO filter) throws IOException {
+    @PostMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, ExportFormat.CSV_VALUE, ExportFormat.NDJSON_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportsExcelChecklist(@RequestBody ChecklistFilterDTO filter,
+                                                        @RequestParam(value = "format", required = false) String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws UnsupportedExportFormatException {
         log.info("Received request to export checklist table data to excel sheet");
 
-        ByteArrayResource resource = checklistService.exportExcelChecklist(filter);
-        log.info("Exported checklist data to Excel successfully");
-
-        String fileName = "checklist.xlsx";
+        //Format requested through the format parameter or the Accept header, XLSX by default
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
 
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .contentLength(resource.contentLength())
-                .body(resource);
+        //Stream the export directly to the response as it is written
+        StreamingResponseBody responseBody = outputStream -> {
+            checklistService.exportExcelChecklist(filter, exportFormat, outputStream);
+            log.info("Exported checklist data to {} successfully", exportFormat);
+        };
 
+        return exportFormat.toResponse("checklist", responseBody);
     }
 
-    //UPLOAD FUNCTIONALITY TO INSERT DATA THROUGH CSV FILES
+    //UPLOAD FUNCTIONALITY TO INSERT DATA THROUGH CSV FILES, WRITING NOTHING WHEN A ROW IS INVALID UNLESS VALID ROWS SHOULD BE COMMITTED
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<List<ChecklistDTO>> uploadFile(@RequestParam("file") MultipartFile file) throws ControlNotFoundException, ChecklistAlreadyExistsException, ChecklistNotFoundException, IOException {
+    public ResponseEntity<CsvUploadResponse> uploadFile(@RequestParam("file") MultipartFile file, @RequestParam(value = "commitValid", defaultValue = "false") boolean commitValid) throws ServiceException, IOException {
         if(file.isEmpty())
         {
             return  ResponseEntity.badRequest().body(null);
         }
-        List<ChecklistCreateDTO>  checklistCreateDTOList =checklistService.parseCSVFile(file);
-        List<ChecklistDTO> result=checklistService.addEditCheckList(checklistCreateDTOList);
+        CsvUploadResponse result=fileUploadService.importChecklistCSV(file, commitValid);
         return  ResponseEntity.ok(result);
     }
 
+
+    //DOWNLOAD THE UPLOADED CSV FILE AS AN EXCEL SHEET WITH THE ERRORS OF EACH ROW
+    @PostMapping(value = "/upload/error-report", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = {ExportFormat.XLSX_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> uploadErrorReport(@RequestParam("file") MultipartFile file) {
+        if(file.isEmpty())
+        {
+            return  ResponseEntity.badRequest().body(null);
+        }
+        StreamingResponseBody responseBody = outputStream -> fileUploadService.writeChecklistCSVErrorReport(file, outputStream);
+        return ExportFormat.XLSX.toResponse("checklist-upload-errors", responseBody);
+    }
+
 }
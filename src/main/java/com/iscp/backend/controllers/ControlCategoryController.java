@@ -96,9 +96,9 @@ public class ControlCategoryController {
     @PreAuthorize("hasRole('Admin')")
     @PostMapping("/add-control-category")
     public ResponseEntity<ControlCategoryDTO> addControlCategory(@RequestBody ControlCategoryCreateDTO controlCategoryCreateDTO) throws ControlCategoryAlreadyExistsException {
-        log.info("Received request to add new control category: {}", controlCategoryCreateDTO);
+        log.info("Received request to add new control category: {}", controlCategoryCreateDTO.getControlCategoryName());
         ControlCategoryDTO savedControlCategory = controlCategoryService.addControlCategory(controlCategoryCreateDTO);
-        log.info("Control Category added successfully: {}", savedControlCategory);
+        log.info("Control Category added successfully: {}", savedControlCategory.getControlCategoryId());
         return ResponseEntity.status(HttpStatus.CREATED).body(savedControlCategory);
     }
 
@@ -114,9 +114,9 @@ public class ControlCategoryController {
     @PreAuthorize("hasRole('Admin')")
     @PutMapping("/update-control-category")
     public ResponseEntity<List<ControlCategoryDTO>> updateControlCategories(@RequestBody List<ControlCategoryUpdateDTO> controlCategoryUpdates){
-        log.info("Received request to update existing control categories: {}", controlCategoryUpdates);
+        log.info("Received request to update {} existing control categories", controlCategoryUpdates.size());
         List<ControlCategoryDTO> updatedControlCategories=controlCategoryService.updateControlCategories(controlCategoryUpdates);
-        log.info("Control Categories  updated successfully: {}", updatedControlCategories);
+        log.info("Control Categories  updated successfully: {}", updatedControlCategories.size());
         return  ResponseEntity.status(HttpStatus.OK).body(updatedControlCategories);
     }
 
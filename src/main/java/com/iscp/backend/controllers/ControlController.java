@@ -1,11 +1,15 @@
 package com.iscp.backend.controllers;
 
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.ControlAlreadyExistsException;
 import com.iscp.backend.exceptions.ControlCategoryNotFoundException;
 import com.iscp.backend.exceptions.ControlNotFoundException;
+import com.iscp.backend.exceptions.ServiceException;
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
 import com.iscp.backend.services.ControlService;
+import com.iscp.backend.services.FileUploadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,12 +18,12 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -35,6 +39,8 @@ public class ControlController {
 
     private final  ControlService controlService;
 
+    private final FileUploadService fileUploadService;
+
 
     //GET ALL CONTROLS
     @Operation(summary = "Get all controls", description = "Fetch all controls from the database")
@@ -67,7 +73,7 @@ public class ControlController {
     public ResponseEntity<List<ControlDTO>> getControlFromControlCategory(@PathVariable String controlCategoryName) throws ControlCategoryNotFoundException {
         log.info("Received request to get all controls by using control category name");
         List<ControlDTO> controlDTOList = controlService.getControlFromControlCategory(controlCategoryName);
-        log.info("All Controls fetched successfully using control category name:{}",controlDTOList);
+        log.info("All Controls fetched successfully using control category name:{}",controlDTOList.size());
         return ResponseEntity.status(HttpStatus.OK).body(controlDTOList);
     }
 
@@ -106,36 +112,48 @@ public class ControlController {
 
     //EXPORT DATA TO EXCEL
     @Operation(summary = "To export data to excel sheet", description = "To export table data to excel sheet of Control")
-    @PostMapping("/export-excel")
-    public ResponseEntity<ByteArrayResource> exportsExcelControl(@RequestBody ControlFilterDTO filter) throws IOException {
+    @PostMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, ExportFormat.CSV_VALUE, ExportFormat.NDJSON_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportsExcelControl(@RequestBody ControlFilterDTO filter,
+                                                        @RequestParam(value = "format", required = false) String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws UnsupportedExportFormatException {
         log.info("Received request to export control table data to excel sheet");
 
-        ByteArrayResource resource = controlService.exportExcelControl(filter);
-        log.info("Exported control data to Excel successfully");
-
-        String fileName = "control.xlsx";
+        //Format requested through the format parameter or the Accept header, XLSX by default
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
 
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .contentLength(resource.contentLength())
-                .body(resource);
+        //Stream the export directly to the response as it is written
+        StreamingResponseBody responseBody = outputStream -> {
+            controlService.exportExcelControl(filter, exportFormat, outputStream);
+            log.info("Exported control data to {} successfully", exportFormat);
+        };
 
+        return exportFormat.toResponse("control", responseBody);
     }
 
 
-    //UPLOAD FUNCTIONALITY TO INSERT DATA THROUGH CSV FILES
+    //UPLOAD FUNCTIONALITY TO INSERT DATA THROUGH CSV FILES, WRITING NOTHING WHEN A ROW IS INVALID UNLESS VALID ROWS SHOULD BE COMMITTED
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<List<ControlDTO>> uploadFile(@RequestParam("file") MultipartFile file) throws ControlNotFoundException, ControlAlreadyExistsException, ControlCategoryNotFoundException, IOException {
+    public ResponseEntity<CsvUploadResponse> uploadFile(@RequestParam("file") MultipartFile file, @RequestParam(value = "commitValid", defaultValue = "false") boolean commitValid) throws ServiceException, IOException {
         if(file.isEmpty())
         {
             return  ResponseEntity.badRequest().body(null);
         }
-        List<ControlCreateDTO>  controlCreateDTO=controlService.parseCSVFile(file);
-        List<ControlDTO> result=controlService.addEditControl(controlCreateDTO);
+        CsvUploadResponse result=fileUploadService.importControlCSV(file, commitValid);
         return  ResponseEntity.ok(result);
     }
 
+
+    //DOWNLOAD THE UPLOADED CSV FILE AS AN EXCEL SHEET WITH THE ERRORS OF EACH ROW
+    @PostMapping(value = "/upload/error-report", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = {ExportFormat.XLSX_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> uploadErrorReport(@RequestParam("file") MultipartFile file) {
+        if(file.isEmpty())
+        {
+            return  ResponseEntity.badRequest().body(null);
+        }
+        StreamingResponseBody responseBody = outputStream -> fileUploadService.writeControlCSVErrorReport(file, outputStream);
+        return ExportFormat.XLSX.toResponse("control-upload-errors", responseBody);
+    }
+
 }
 
 
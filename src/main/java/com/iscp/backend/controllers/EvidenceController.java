@@ -1,27 +1,42 @@
 package com.iscp.backend.controllers;
 
+import com.iscp.backend.components.FileResponses;
 import com.iscp.backend.dto.EvidenceDTO;
+import com.iscp.backend.dto.EvidenceUploadDTO;
+import com.iscp.backend.dto.EvidenceUploadRequestDTO;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
+import com.iscp.backend.exceptions.EvidenceBlobNotFoundException;
+import com.iscp.backend.exceptions.EvidenceNotFoundException;
+import com.iscp.backend.exceptions.EvidenceUploadIncompleteException;
+import com.iscp.backend.exceptions.EvidenceUploadNotFoundException;
+import com.iscp.backend.exceptions.EvidenceUploadRejectedException;
 import com.iscp.backend.exceptions.SecurityComplianceNotFoundException;
 import com.iscp.backend.exceptions.UserNotFoundException;
 import com.iscp.backend.models.Evidence;
+import com.iscp.backend.models.EvidenceBlob;
+import com.iscp.backend.services.EvidencePreviewService;
 import com.iscp.backend.services.EvidenceService;
+import com.iscp.backend.services.EvidenceUploadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.PathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -35,6 +50,10 @@ public class EvidenceController {
 
     private final EvidenceService evidenceService;
 
+    private final EvidenceUploadService evidenceUploadService;
+
+    private final EvidencePreviewService evidencePreviewService;
+
     public final static String PATH = "/api/evidence";
 
 
@@ -69,23 +88,290 @@ public class EvidenceController {
     }
 
 
+    /**
+     * Check which files are already stored before uploading them.
+     *
+     * @param contentHashes the SHA-256 hashes of the files about to be uploaded.
+     * @return the hashes among the given ones whose content is stored, which can be attached without uploading them.
+     */
+    @Operation(summary = "Check Stored Evidence Content", description = "Find which content hashes are already stored")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stored hashes returned",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping("/blobs/check")
+    public ResponseEntity<List<String>> checkStoredEvidence(@RequestBody List<String> contentHashes) {
+        log.debug("Received request to check {} evidence hashes", contentHashes.size());
+
+        //Call Service Method to find the hashes which are already stored
+        List<String> storedHashes = evidenceService.findStoredHashes(contentHashes);
+
+        return ResponseEntity.ok(storedHashes);
+    }
+
+
+    /**
+     * Attach already stored content as an evidence of a specific checklist and security compliance.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @param fileName the name the evidence is shown with.
+     * @param fileType the content type of the file, used when the content isn't recognized, optional.
+     * @param checklistName the name of the checklist to associate with the evidence.
+     * @param token JWT token used for authentication.
+     * @param securityId the ID of the security compliance to associate with the evidence.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws EvidenceBlobNotFoundException if no content is stored with the given hash.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     * @throws IOException if the stored content cannot be read.
+     */
+    @Operation(summary = "Attach Stored Evidence", description = "Attach already stored content as Evidence")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Evidence attached successfully",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "404", description = "No content stored with the hash", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping("/attach")
+    public ResponseEntity<EvidenceDTO> attachEvidence(@RequestParam("contentHash") String contentHash, @RequestParam("fileName") String fileName, @RequestParam(value = "fileType", required = false) String fileType, @RequestParam("checklistName") String checklistName, @RequestHeader (name="Authorization", required=false) String token, @RequestParam("securityId") String securityId) throws EvidenceBlobNotFoundException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException {
+        log.info("Received request to attach stored evidence");
+
+        //Call Service Method to save an Evidence referencing the stored content
+        EvidenceDTO evidenceDTO = evidenceService.attachEvidence(contentHash, fileName, fileType, checklistName, token, securityId);
+
+        log.info("Evidence attached successfully");
+        return ResponseEntity.ok(evidenceDTO);
+    }
+
+
+    /**
+     * Start a chunked upload of a large evidence.
+     *
+     * @param request EvidenceUploadRequestDTO containing the name, type, size and owner of the evidence.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} of the upload, with its ID and suggested chunk size.
+     * @throws EvidenceUploadRejectedException if the size is empty or above the limit.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     * @throws IOException if the file cannot be allocated.
+     */
+    @Operation(summary = "Start Chunked Evidence Upload", description = "Start a resumable upload, then send its chunks and complete it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Upload started",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Invalid size or hash", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Checklist or security compliance not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping("/uploads")
+    public ResponseEntity<EvidenceUploadDTO> initiateUpload(@RequestBody EvidenceUploadRequestDTO request, @RequestHeader (name="Authorization", required=false) String token) throws EvidenceUploadRejectedException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException {
+        log.info("Received request to start a chunked evidence upload");
+
+        EvidenceUploadDTO evidenceUploadDTO = evidenceUploadService.initiateUpload(request, token);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(evidenceUploadDTO);
+    }
+
+
+    /**
+     * Send one chunk of a chunked upload, chunks may be sent in any order and in parallel.
+     *
+     * @param uploadId the ID of the upload.
+     * @param offset the position of the first byte of the chunk in the file.
+     * @param content the raw bytes of the chunk.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} with the bytes received so far.
+     * @throws EvidenceUploadNotFoundException if the upload doesn't exist.
+     * @throws EvidenceUploadRejectedException if the chunk goes past the end of the file.
+     * @throws IOException if the chunk cannot be read or written.
+     */
+    @Operation(summary = "Send Evidence Chunk", description = "Write the request body at the given offset of the upload")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Chunk written",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Chunk out of the file", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Upload not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PutMapping(path = "/uploads/{uploadId}/chunks", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<EvidenceUploadDTO> uploadChunk(@PathVariable String uploadId, @RequestParam("offset") long offset, InputStream content, @RequestHeader (name="Authorization", required=false) String token) throws EvidenceUploadNotFoundException, EvidenceUploadRejectedException, IOException {
+        return ResponseEntity.ok(evidenceUploadService.writeChunk(uploadId, offset, content, token));
+    }
+
+
+    /**
+     * Get the state of a chunked upload, with the byte ranges still to be sent.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} of the upload.
+     * @throws EvidenceUploadNotFoundException if the upload doesn't exist.
+     */
+    @Operation(summary = "Get Chunked Evidence Upload", description = "Get the received and missing ranges of an upload, to resume it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Upload state returned",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "404", description = "Upload not found", content = @Content)
+    })
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<EvidenceUploadDTO> getUpload(@PathVariable String uploadId, @RequestHeader (name="Authorization", required=false) String token) throws EvidenceUploadNotFoundException {
+        return ResponseEntity.ok(evidenceUploadService.getUpload(uploadId, token));
+    }
+
+
+    /**
+     * Complete a chunked upload and save its evidence.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws EvidenceUploadNotFoundException if the upload doesn't exist.
+     * @throws EvidenceUploadIncompleteException if some bytes of the file are still missing or being written.
+     * @throws EvidenceUploadRejectedException if the content doesn't match the announced hash.
+     * @throws ChecklistNotFoundException if the checklist was deleted during the upload.
+     * @throws SecurityComplianceNotFoundException if the security compliance was deleted during the upload.
+     * @throws IOException if the file cannot be stored.
+     */
+    @Operation(summary = "Complete Chunked Evidence Upload", description = "Store the uploaded file and save its Evidence")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Evidence uploaded successfully",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Content doesn't match the announced hash", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Upload not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Some chunks are missing or still being written", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<EvidenceDTO> completeUpload(@PathVariable String uploadId, @RequestHeader (name="Authorization", required=false) String token) throws EvidenceUploadNotFoundException, EvidenceUploadIncompleteException, EvidenceUploadRejectedException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException {
+        EvidenceDTO evidenceDTO = evidenceUploadService.completeUpload(uploadId, token);
+
+        log.info("Evidence uploaded successfully");
+        return ResponseEntity.ok(evidenceDTO);
+    }
+
+
+    /**
+     * Cancel a chunked upload.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return an empty response once the upload is deleted.
+     * @throws EvidenceUploadNotFoundException if the upload doesn't exist.
+     */
+    @Operation(summary = "Cancel Chunked Evidence Upload", description = "Cancel an upload and delete its received bytes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Upload cancelled", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Upload not found", content = @Content)
+    })
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> cancelUpload(@PathVariable String uploadId, @RequestHeader (name="Authorization", required=false) String token) throws EvidenceUploadNotFoundException {
+        evidenceUploadService.cancelUpload(uploadId, token);
+        return ResponseEntity.noContent().build();
+    }
+
+
+    /**
+     * View an evidence by its ID.
+     *
+     * @param evidenceId the ID of the evidence to be viewed.
+     * @param webRequest the request, for ranges and conditional requests.
+     * @return a {@link Resource} representing the evidence.
+     * @throws EvidenceNotFoundException if no evidence exists with the given ID.
+     * @throws IOException if an error occurs while accessing the file.
+     */
+    @Operation(summary = "View Evidence By ID", description = "View the file of an evidence")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File viewed",
+                    content = @Content(mediaType = "*/*")),
+            @ApiResponse(responseCode = "206", description = "Requested ranges of the file", content = @Content),
+            @ApiResponse(responseCode = "304", description = "File not modified", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Evidence not found", content = @Content),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @GetMapping("/files/{evidenceId}")
+    public ResponseEntity<Resource> viewEvidenceById(@PathVariable String evidenceId, ServletWebRequest webRequest) throws EvidenceNotFoundException, IOException {
+        Evidence evidence = evidenceService.getEvidenceById(evidenceId);
+        return serveInline(webRequest, evidence, evidenceService.viewEvidence(evidence));
+    }
+
+
+    /**
+     * Preview an evidence by its ID, as a downscaled JPEG image.
+     *
+     * @param evidenceId the ID of the evidence to be previewed.
+     * @param webRequest the request, for ranges and conditional requests.
+     * @return a {@link Resource} representing the preview, or 202 while it is being generated.
+     * @throws EvidenceNotFoundException if no evidence exists with the given ID.
+     * @throws IOException if an error occurs while accessing the preview.
+     */
+    @Operation(summary = "Preview Evidence By ID", description = "Preview the file of an evidence as a downscaled image")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Preview of the file",
+                    content = @Content(mediaType = "image/jpeg")),
+            @ApiResponse(responseCode = "202", description = "Preview being generated, retry later", content = @Content),
+            @ApiResponse(responseCode = "204", description = "No preview available", content = @Content),
+            @ApiResponse(responseCode = "304", description = "Preview not modified", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Evidence not found", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @GetMapping("/files/{evidenceId}/preview")
+    public ResponseEntity<Resource> previewEvidenceById(@PathVariable String evidenceId, ServletWebRequest webRequest) throws EvidenceNotFoundException, IOException {
+        Evidence evidence = evidenceService.getEvidenceById(evidenceId);
+        return servePreview(webRequest, evidence);
+    }
+
+
+    /**
+     * Download an evidence by its ID.
+     *
+     * @param evidenceId the ID of the evidence to be downloaded.
+     * @param webRequest the request, for ranges and conditional requests.
+     * @return a {@link Resource} representing the evidence.
+     * @throws EvidenceNotFoundException if no evidence exists with the given ID.
+     * @throws IOException if an error occurs while accessing the file.
+     */
+    @Operation(summary = "Download Evidence By ID", description = "Download the file of an evidence")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Download the File",
+                    content = @Content(mediaType = "*/*")),
+            @ApiResponse(responseCode = "206", description = "Requested ranges of the file", content = @Content),
+            @ApiResponse(responseCode = "304", description = "File not modified", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Evidence not found", content = @Content),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @GetMapping("/files/{evidenceId}/download")
+    public ResponseEntity<Resource> downloadEvidenceById(@PathVariable String evidenceId, ServletWebRequest webRequest) throws EvidenceNotFoundException, IOException {
+        Evidence evidence = evidenceService.getEvidenceById(evidenceId);
+        return serveAttachment(webRequest, evidence, evidenceService.viewEvidence(evidence), evidenceService.getEvidenceType(evidence), evidence.getFileName());
+    }
+
+
     /**
      * View an evidence with the specified name.
+     * Kept for evidences referred to by name; when several evidences share a name only the latest is served,
+     * use {@link #viewEvidenceById} to reach a specific one.
      *
      * @param filename the name of the evidence file to be viewed.
+     * @param webRequest the request, for ranges and conditional requests.
      * @return a {@link Resource} representing the evidence.
      * @throws IOException if an error occurs while accessing the file.
      * @throws FileNotFoundException if the file does not exist or is not readable.
      */
-    @Operation(summary = "View Evidence", description = "View Evidence")
+    @Operation(summary = "View Evidence", description = "View the latest Evidence with the given name")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "File viewed",
                     content = @Content(mediaType = "multipart/form-data")),
+            @ApiResponse(responseCode = "206", description = "Requested ranges of the file", content = @Content),
+            @ApiResponse(responseCode = "304", description = "File not modified", content = @Content),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable", content = @Content),
             @ApiResponse(responseCode = "204", description = "No file found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     @GetMapping("/view/{filename:.+}")
-    public ResponseEntity<Resource> viewEvidence(@PathVariable String filename) throws IOException {
+    public ResponseEntity<Resource> viewEvidence(@PathVariable String filename, ServletWebRequest webRequest) throws IOException {
         //Call method to get evidence by filename
         Evidence evidence = evidenceService.getEvidenceByFilename(filename);
 
@@ -93,57 +379,132 @@ public class EvidenceController {
         if (evidence == null) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
+        return serveInline(webRequest, evidence, evidenceService.viewEvidence(filename));
+    }
 
-        //Call Service Method to view the Evidence
-        Resource resource = evidenceService.viewEvidence(filename);
-
-        //Invoke Service method to get the Evidence type
-        String contentType = evidenceService.getEvidenceType(filename);
-
-        // Retrieve user ID from the Evidence object
-        String userName = evidence.getUser().getName();
-
-        log.info("Detected content type for {}: {}", filename, contentType);
-        log.info("Serving file: {}", filename);
-        log.info("File path: {}", resource.getURI());
-        log.info("User Name: {}", userName);
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                .header("X-User-Name", userName)
-                .body(resource);
+    /**
+     * Preview an evidence with the specified name, as a downscaled JPEG image.
+     * Kept for evidences referred to by name, use {@link #previewEvidenceById} to reach a specific one.
+     *
+     * @param filename the name of the evidence file to be previewed.
+     * @param webRequest the request, for ranges and conditional requests.
+     * @return a {@link Resource} representing the preview, or 202 while it is being generated.
+     * @throws IOException if an error occurs while accessing the preview.
+     */
+    @Operation(summary = "Preview Evidence", description = "Preview the latest Evidence with the given name as a downscaled image")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Preview of the file",
+                    content = @Content(mediaType = "image/jpeg")),
+            @ApiResponse(responseCode = "202", description = "Preview being generated, retry later", content = @Content),
+            @ApiResponse(responseCode = "204", description = "No preview available", content = @Content),
+            @ApiResponse(responseCode = "304", description = "Preview not modified", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @GetMapping("/preview/{filename:.+}")
+    public ResponseEntity<Resource> previewEvidence(@PathVariable String filename, ServletWebRequest webRequest) throws IOException {
+        //Call method to get evidence by filename
+        Evidence evidence = evidenceService.getEvidenceByFilename(filename);
+        if (evidence == null) {
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+        }
+        return servePreview(webRequest, evidence);
     }
 
 
     /**
      *  Download an evidence with the specified name.
+     *  Kept for evidences referred to by name, use {@link #downloadEvidenceById} to reach a specific one.
      *
      * @param filename the name of the evidence file to be downloaded.
+     * @param webRequest the request, for ranges and conditional requests.
      * @return a {@link Resource} representing the evidence.
      * @throws IOException if an error occurs while accessing the file.
      */
-    @Operation(summary = "Download Evidence", description = "Download Evidence")
+    @Operation(summary = "Download Evidence", description = "Download the latest Evidence with the given name")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Download the File",
                     content = @Content(mediaType = "*/*")),
+            @ApiResponse(responseCode = "206", description = "Requested ranges of the file", content = @Content),
+            @ApiResponse(responseCode = "304", description = "File not modified", content = @Content),
+            @ApiResponse(responseCode = "416", description = "Requested range not satisfiable", content = @Content),
             @ApiResponse(responseCode = "204", description = "No file found", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     @GetMapping("/download/{filename:.+}")
-    public ResponseEntity<Resource> downloadEvidence(@PathVariable String filename) throws IOException {
-        //Call Service Method (ViewEvidence)
-        Resource resource = evidenceService.viewEvidence(filename);
+    public ResponseEntity<Resource> downloadEvidence(@PathVariable String filename, ServletWebRequest webRequest) throws IOException {
+        //Files without an evidence are served from the upload directory
+        Evidence evidence = evidenceService.getEvidenceByFilename(filename);
+        String contentType = evidence != null ? evidenceService.getEvidenceType(evidence) : evidenceService.getEvidenceType(filename);
+        return serveAttachment(webRequest, evidence, evidenceService.viewEvidence(filename), contentType, filename);
+    }
+
+
+    //Serve the file of an evidence to be displayed, with the name of the uploading user
+    private ResponseEntity<Resource> serveInline(ServletWebRequest webRequest, Evidence evidence, Resource resource) throws IOException {
+        //Invoke Service method to get the Evidence type, stored when the file was uploaded
+        String contentType = evidenceService.getEvidenceType(evidence);
+
+        log.debug("Serving evidence {} of type {}", evidence.getEvidenceId(), contentType);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + evidence.getFileName() + "\"");
+        headers.set("X-User-Name", evidence.getUser().getName());
 
-        //Call Service method to get the Evidence type
-        String contentType = evidenceService.getEvidenceType(filename);
+        //Validators and ranges let players seek and browsers revalidate without downloading the file again,
+        //and the file is sent from disk to the socket without going through the heap
+        return serveEvidence(webRequest, evidence, resource, headers);
+    }
+
+
+    //Serve a file to be saved under the given name
+    private ResponseEntity<Resource> serveAttachment(ServletWebRequest webRequest, Evidence evidence, Resource resource, String contentType, String filename) throws IOException {
+        log.debug("Downloading file {} of type {}", filename, contentType);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+
+        //Validators and ranges let interrupted downloads resume, and the file is sent without going through the heap
+        return serveEvidence(webRequest, evidence, resource, headers);
+    }
+
+
+    //Previews are generated from stored content, for the types which can be decoded
+    private ResponseEntity<Resource> servePreview(ServletWebRequest webRequest, Evidence evidence) throws IOException {
+        String contentHash = contentHashOf(evidence);
+        if (contentHash == null || !evidencePreviewService.isPreviewable(evidence.getFileType())) {
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+        }
+
+        Path preview = evidencePreviewService.findPreview(contentHash);
+        if (preview == null) {
+            //Not generated yet, or evicted from the cache
+            evidencePreviewService.schedulePreview(contentHash, evidence.getFileType());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_JPEG);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + evidence.getFileName() + ".jpg\"");
+
+        return FileResponses.of(webRequest, new PathResource(preview), contentHash + "-preview", headers);
+    }
+
+
+    //Compressed content is sent as is to clients accepting its encoding, and decompressed to the others
+    private ResponseEntity<Resource> serveEvidence(ServletWebRequest webRequest, Evidence evidence, Resource resource, HttpHeaders headers) throws IOException {
+        EvidenceBlob blob = evidence != null ? evidence.getBlob() : null;
+        if (blob != null && blob.getEncoding() != null) {
+            return FileResponses.ofEncoded(webRequest, resource, blob.getContentHash(), blob.getEncoding(), blob.getSize(), headers);
+        }
+        return FileResponses.of(webRequest, resource, contentHashOf(evidence), headers);
+    }
 
-        log.info("Downloading file: {}", filename);
-        log.info("Content type : {}", contentType);
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+    //Hash of the stored content, null for evidences stored before content addressed storage
+    private String contentHashOf(Evidence evidence) {
+        return evidence != null && evidence.getBlob() != null ? evidence.getBlob().getContentHash() : null;
     }
-}
\ No newline at end of file
+}
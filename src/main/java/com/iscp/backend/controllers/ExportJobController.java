@@ -0,0 +1,100 @@
+package com.iscp.backend.controllers;
+
+import com.iscp.backend.dto.ExportJobDTO;
+import com.iscp.backend.dto.ExportJobRequestDTO;
+import com.iscp.backend.exceptions.ExportJobNotFoundException;
+import com.iscp.backend.exceptions.ExportJobNotReadyException;
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
+import com.iscp.backend.services.ExportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@Slf4j
+@RequestMapping(path = ExportJobController.PATH, produces = MediaType.APPLICATION_JSON_VALUE)
+@AllArgsConstructor
+public class ExportJobController {
+
+    public final static String PATH = "/api/export-jobs";
+
+    private final ExportJobService exportJobService;
+
+
+    /**
+     * Submits an export to run in the background.
+     *
+     * @param request ExportJobRequestDTO containing the entity, format and filter of the export.
+     * @return a ResponseEntity containing the ExportJobDTO of the job to poll.
+     * @throws UnsupportedExportFormatException if the requested format is unknown.
+     */
+    @Operation(summary = "Submit export job", description = "Submit an export to run in the background, identical exports share a job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Export job submitted",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ExportJobDTO.class))),
+            @ApiResponse(responseCode = "406", description = "Unsupported export format", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping
+    public ResponseEntity<ExportJobDTO> submitExportJob(@RequestBody ExportJobRequestDTO request) throws UnsupportedExportFormatException {
+        log.info("Received request to export {}", request.getEntity());
+        ExportJobDTO exportJob = exportJobService.submitExportJob(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(exportJob);
+    }
+
+
+    /**
+     * Retrieves the state of an export job.
+     *
+     * @param jobId the ID of the export job.
+     * @return a ResponseEntity containing the ExportJobDTO.
+     * @throws ExportJobNotFoundException if the export job does not exist.
+     */
+    @Operation(summary = "Get export job", description = "Get the status of an export job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export job fetched successfully",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = ExportJobDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Export job not found", content = @Content)
+    })
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ExportJobDTO> getExportJob(@PathVariable String jobId) throws ExportJobNotFoundException {
+        ExportJobDTO exportJob = exportJobService.getExportJob(jobId);
+        return ResponseEntity.status(HttpStatus.OK).body(exportJob);
+    }
+
+
+    /**
+     * Downloads the file of a completed export job.
+     *
+     * @param jobId the ID of the export job.
+     * @return a ResponseEntity containing the exported file.
+     * @throws ExportJobNotFoundException if the export job does not exist.
+     * @throws ExportJobNotReadyException if the export job has not completed.
+     */
+    @Operation(summary = "Download export", description = "Download the file of a completed export job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export downloaded successfully"),
+            @ApiResponse(responseCode = "404", description = "Export job not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Export job not completed", content = @Content)
+    })
+    @GetMapping(value = "/{jobId}/download", produces = MediaType.ALL_VALUE)
+    public ResponseEntity<Resource> downloadExport(@PathVariable String jobId) throws ExportJobNotFoundException, ExportJobNotReadyException {
+        ExportJobDTO exportJob = exportJobService.getExportJob(jobId);
+        Resource resource = exportJobService.getExportFile(jobId);
+
+        log.info("Downloading export of job {}", jobId);
+        String baseName = exportJob.getEntity().name().toLowerCase().replace('_', '-');
+        return exportJob.getFormat().attachment(baseName).body(resource);
+    }
+}
@@ -1,11 +1,9 @@
 package com.iscp.backend.controllers;
 
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
-import com.iscp.backend.services.ChecklistService;
-import com.iscp.backend.services.ControlCategoryService;
-import com.iscp.backend.services.ControlService;
 import com.iscp.backend.services.FileUploadService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,9 +14,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.util.List;
 
 @RestController
 @RequestMapping(path = FileUploadController.PATH,produces = MediaType.APPLICATION_JSON_VALUE)
@@ -30,34 +28,35 @@ public class FileUploadController {
 
     private final FileUploadService fileUploadService;
 
-    private final ControlService controlService;
-
-    private final ChecklistService checklistService;
-
-    private final ControlCategoryService controlCategoryService;
-
     //UPLOAD FUNCTIONALITY TO INSERT DATA THROUGH CSV FILES
     @PostMapping(value = "/upload-excel-file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<MultiEntityUploadResponse> uploadFile(@RequestParam("file") MultipartFile file) throws ControlNotFoundException, ControlAlreadyExistsException, ControlCategoryNotFoundException, ChecklistAlreadyExistsException, ChecklistNotFoundException, IOException, ControlCategoryAlreadyExistsException {
-        MultiEntityUploadResponse response = new MultiEntityUploadResponse();
-        if(file.isEmpty())
+    public ResponseEntity<MultiEntityUploadResponse> uploadFile(@RequestParam("file") MultipartFile file, @RequestParam(value = "mode", defaultValue = "apply") String mode,
+                                                                @RequestParam(value = "commitValid", defaultValue = "false") boolean commitValid) throws ServiceException, IOException {
+        boolean apply = "apply".equalsIgnoreCase(mode);
+        if(file.isEmpty() || (!apply && !"diff".equalsIgnoreCase(mode)))
         {
             return  ResponseEntity.badRequest().body(null);
         }
 
-        //Process Control Categories
-        List<ControlCategoryCreateDTO> controlCategoryEntries = fileUploadService.parseControlCategoryEntries(file);
-        List<ControlCategoryDTO> controlCategoryResults = controlCategoryService.addEditControlCategory(controlCategoryEntries);
-        response.setControlCategoryResults(controlCategoryResults);
-
-        List<ControlCreateDTO> controlEntries = fileUploadService.parseControlEntries(file);
-        List<ControlDTO> controlResults = controlService.addEditControl(controlEntries);
-        response.setControlResults(controlResults);
+        //Read the workbook once for all entities, collecting the errors of invalid rows
+        MasterUploadEntries entries = fileUploadService.parseMasterUpload(file);
 
-        List<ChecklistCreateDTO> checklistEntries = fileUploadService.parseChecklistEntries(file);
-        List<ChecklistDTO> checklistResults = checklistService.addEditCheckList(checklistEntries);
-        response.setChecklistResults(checklistResults);
+        //Diff control categories, controls and checklists against the current data, and upsert the changed rows unless only diffing
+        //or some rows are invalid and the valid ones should not be committed on their own
+        MultiEntityUploadResponse response = fileUploadService.importMasterUpload(entries, apply && (commitValid || entries.getErrors().isEmpty()));
 
         return  ResponseEntity.ok(response);
     }
+
+
+    //DOWNLOAD THE UPLOADED WORKBOOK WITH THE ERRORS OF EACH ROW
+    @PostMapping(value = "/error-report", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = {ExportFormat.XLSX_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> uploadErrorReport(@RequestParam("file") MultipartFile file) {
+        if(file.isEmpty())
+        {
+            return  ResponseEntity.badRequest().body(null);
+        }
+        StreamingResponseBody responseBody = outputStream -> fileUploadService.writeMasterErrorReport(file, outputStream);
+        return ExportFormat.XLSX.toResponse("master-upload-errors", responseBody);
+    }
 }
@@ -71,7 +71,7 @@ public class FrameworkCategoryController {
         //call addFrameworkCategory to add a new framework category.
         FrameworkCategoryDTO addedFrameworkCategory = frameworkCategoryService.addFrameworkCategory(frameworkCategoryCreateDTO);
 
-        log.info("Framework Category added successfully: {}", addedFrameworkCategory);
+        log.info("Framework Category added successfully: {}", addedFrameworkCategory.getFrameworkCategoryId());
         return ResponseEntity.status(HttpStatus.CREATED).body(addedFrameworkCategory);
     }
 
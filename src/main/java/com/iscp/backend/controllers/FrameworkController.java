@@ -1,8 +1,10 @@
 package com.iscp.backend.controllers;
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.FrameworkCategoryNotFoundException;
 import com.iscp.backend.exceptions.FrameworkNotFoundException;
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
 import com.iscp.backend.services.FrameworkService;
 import com.iscp.backend.services.impl.FrameworkServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,14 +15,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -110,25 +111,28 @@ public class FrameworkController {
      * Exports framework data to an Excel.
      *
      * @param filter FrameworkFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ResponseEntity containing a ByteArrayResource representing the Excel.
-     * @throws IOException if an error occurs during export.
+     * @param format the format to export in, either xlsx, csv or ndjson.
+     * @param accept the Accept header, used when no format is given.
+     * @return a ResponseEntity streaming the export to the client.
+     * @throws UnsupportedExportFormatException if the format is unknown.
      */
     @Operation(summary = "To export data to excel sheet", description = "To export table data to excel sheet of framework")
-    @PostMapping("/export-excel")
-    public ResponseEntity<ByteArrayResource> exportsExcelFramework(@RequestBody FrameworkFilterDTO filter) throws IOException {
+    @PostMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, ExportFormat.CSV_VALUE, ExportFormat.NDJSON_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportsExcelFramework(@RequestBody FrameworkFilterDTO filter,
+                                                        @RequestParam(value = "format", required = false) String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws UnsupportedExportFormatException {
         log.info("Received request to export framework table data to excel sheet");
 
-        //Export the fetched data to an Excel
-        ByteArrayResource resource = frameworkService.exportExcelFramework(filter);
-        log.info("Exported framework data to Excel successfully");
+        //Format requested through the format parameter or the Accept header, XLSX by default
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
 
-        String fileName = "framework.xlsx";
+        //Stream the export directly to the response as it is written
+        StreamingResponseBody responseBody = outputStream -> {
+            frameworkService.exportExcelFramework(filter, exportFormat, outputStream);
+            log.info("Exported framework data to {} successfully", exportFormat);
+        };
 
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .contentLength(resource.contentLength())
-                .body(resource);
+        return exportFormat.toResponse("framework", responseBody);
     }
 
 
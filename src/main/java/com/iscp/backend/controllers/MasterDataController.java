@@ -0,0 +1,48 @@
+package com.iscp.backend.controllers;
+
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.services.MasterDataExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.media.Content;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@Slf4j
+@RequestMapping(path = MasterDataController.PATH, produces = MediaType.APPLICATION_JSON_VALUE)
+@AllArgsConstructor
+public class MasterDataController {
+
+    public final static String PATH = "/api/master-data";
+
+    private final MasterDataExportService masterDataExportService;
+
+
+    /**
+     * Exports frameworks, controls, checklists, roles and users to a single Excel, with one sheet per entity.
+     *
+     * @return a ResponseEntity streaming the Excel to the client.
+     */
+    @Operation(summary = "Export master data", description = "Export frameworks, controls, checklists, roles and users to one excel workbook")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Master data exported successfully"),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @GetMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportMasterData() {
+        log.info("Received request to export master data to excel");
+
+        //Stream the Excel directly to the response once its sheets are built
+        StreamingResponseBody responseBody = outputStream -> masterDataExportService.exportMasterData(outputStream);
+
+        return ExportFormat.XLSX.toResponse("master-data", responseBody);
+    }
+}
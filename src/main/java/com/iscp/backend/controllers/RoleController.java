@@ -1,5 +1,6 @@
 package com.iscp.backend.controllers;
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
 import com.iscp.backend.services.RoleService;
@@ -11,15 +12,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -111,20 +111,21 @@ public class RoleController {
 
 
     @Operation(summary = "To export data to excel sheet", description = "To export table data to excel sheet of role")
-    @PostMapping("/export-excel")
-    public ResponseEntity<ByteArrayResource> exportsExcelRole(@RequestBody RoleFilterDTO filter) throws IOException {
+    @PostMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, ExportFormat.CSV_VALUE, ExportFormat.NDJSON_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportsExcelRole(@RequestBody RoleFilterDTO filter,
+                                                        @RequestParam(value = "format", required = false) String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws UnsupportedExportFormatException {
         log.info("Received request to export framework table data to excel sheet");
 
-        ByteArrayResource resource = roleService.exportExcelRole(filter);
-        log.info("Exported role data to Excel successfully");
+        //Format requested through the format parameter or the Accept header, XLSX by default
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
 
-        String fileName = "role.xlsx";
-
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .contentLength(resource.contentLength())
-                .body(resource);
+        //Stream the export directly to the response as it is written
+        StreamingResponseBody responseBody = outputStream -> {
+            roleService.exportExcelRole(filter, exportFormat, outputStream);
+            log.info("Exported role data to {} successfully", exportFormat);
+        };
 
+        return exportFormat.toResponse("role", responseBody);
     }
 }
@@ -1,7 +1,9 @@
 package com.iscp.backend.controllers;
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
+import com.iscp.backend.services.SecurityComplianceImportService;
 import com.iscp.backend.services.SecurityComplianceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -11,13 +13,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 import java.io.IOException;
@@ -37,6 +40,8 @@ public class SecurityComplianceController {
 
     private final SecurityComplianceService securityComplianceService;
 
+    private final SecurityComplianceImportService securityComplianceImportService;
+
     /**
      * Add or update a list of security compliance in the database.
      *
@@ -57,12 +62,12 @@ public class SecurityComplianceController {
             @ApiResponse(responseCode = "404",description = "Control Not Found",content = @Content),
             @ApiResponse(responseCode = "407",description = "Checklist Not Found",content = @Content),
             @ApiResponse(responseCode = "408", description = "Framework Not Found", content = @Content),
-            @ApiResponse(responseCode = "409", description = "Department Not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Department Not found or Security Compliance Already Exists", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     @PostMapping("/add-edit-security-compliance")
     @PreAuthorize("hasRole('Admin')")
-    public ResponseEntity<List<SecurityComplianceDTO>> addSecurityCompliance(@RequestBody List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws ControlNotFoundException, ChecklistNotFoundException, FrameworkNotFoundException, DepartmentNotFoundException, SecurityComplianceNotFoundException, PeriodicityUpdateDeniedException {
+    public ResponseEntity<List<SecurityComplianceDTO>> addSecurityCompliance(@RequestBody List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws ControlNotFoundException, ChecklistNotFoundException, FrameworkNotFoundException, DepartmentNotFoundException, SecurityComplianceNotFoundException, PeriodicityUpdateDeniedException, SecurityComplianceAlreadyExistsException {
         log.info("Received request to Add or Update Security Compliance");
 
         //call addEditSecurityCompliance to add or edit security compliance
@@ -73,6 +78,36 @@ public class SecurityComplianceController {
     }
 
 
+    /**
+     * Imports security compliance schedules from an Excel or CSV file, one row per framework and control with its
+     * checklists, departments, periodicity and event dates.
+     *
+     * @param file the .xlsx or .csv file to import.
+     * @return a ResponseEntity containing the number of rows imported and the errors of the others.
+     * @throws IOException if the file cannot be read.
+     */
+    @Operation(summary = "To import Security Compliance", description = "To import security compliance schedules from an excel or csv file in batches")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Security Compliance imported", content = {
+                    @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ImportResultDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Empty file", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<ImportResultDTO> importSecurityCompliance(@RequestParam("file") MultipartFile file) throws IOException {
+        log.info("Received request to import Security Compliance from {}", file.getOriginalFilename());
+        if(file.isEmpty()) {
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        //call importSecurityCompliance to stream the rows into batched creation
+        ImportResultDTO importResult = securityComplianceImportService.importSecurityCompliance(file);
+
+        return ResponseEntity.status(HttpStatus.OK).body(importResult);
+    }
+
+
     /**
      * Retrieves a paginated list of filtered security compliance records based on provided filters.
      *
@@ -103,26 +138,28 @@ public class SecurityComplianceController {
      * Exports security compliance to an Excel.
      *
      * @param filter SecurityComplianceFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ResponseEntity containing a ByteArrayResource representing the Excel.
-     * @throws IOException if an error occurs during export.
+     * @param format the format to export in, either xlsx, csv or ndjson.
+     * @param accept the Accept header, used when no format is given.
+     * @return a ResponseEntity streaming the export to the client.
+     * @throws UnsupportedExportFormatException if the format is unknown.
      */
     @Operation(summary = "To export data to excel sheet", description = "To export table data to excel sheet of Security Compliance")
-    @PostMapping("/export-excel")
-    public ResponseEntity<ByteArrayResource> exportsExcelSecurityCompliance(@RequestBody SecurityComplianceFilterDTO filter) throws IOException {
+    @PostMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, ExportFormat.CSV_VALUE, ExportFormat.NDJSON_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportsExcelSecurityCompliance(@RequestBody SecurityComplianceFilterDTO filter,
+                                                        @RequestParam(value = "format", required = false) String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws UnsupportedExportFormatException {
         log.info("Received request to export security compliance table data to excel sheet");
 
-        //Export the fetched data to an Excel
-        ByteArrayResource resource = securityComplianceService.exportExcelSecurityCompliance(filter);
-        log.info("Exported security compliance data to Excel successfully");
-
-        String fileName = "security-compliance.xlsx";
+        //Format requested through the format parameter or the Accept header, XLSX by default
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
 
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .contentLength(resource.contentLength())
-                .body(resource);
+        //Stream the export directly to the response as it is written
+        StreamingResponseBody responseBody = outputStream -> {
+            securityComplianceService.exportExcelSecurityCompliance(filter, exportFormat, outputStream);
+            log.info("Exported security compliance data to {} successfully", exportFormat);
+        };
 
+        return exportFormat.toResponse("security-compliance", responseBody);
     }
 
 
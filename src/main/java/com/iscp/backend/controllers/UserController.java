@@ -1,7 +1,9 @@
 package com.iscp.backend.controllers;
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
+import com.iscp.backend.services.UserImportService;
 import com.iscp.backend.services.UsersService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -11,13 +13,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -33,6 +36,8 @@ public class UserController {
 
     private final UsersService usersService;
 
+    private final UserImportService userImportService;
+
     public final static String PATH = "/api/users";
 
     /**
@@ -97,6 +102,35 @@ public class UserController {
     }
 
 
+    /**
+     * Imports users from an Excel, CSV or JSON file, creating them in batches.
+     *
+     * @param file the .xlsx, .csv or .json file to import.
+     * @return a ResponseEntity containing the number of users imported and the errors of the others.
+     * @throws IOException if the file cannot be read.
+     */
+    @Operation(summary = "To import users", description = "To provision users in bulk from an excel, csv or json file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Users imported", content = {
+                    @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ImportResultDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Empty file", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<ImportResultDTO> importUsers(@RequestParam("file") MultipartFile file) throws IOException {
+        log.info("Received request to import users from {}", file.getOriginalFilename());
+        if(file.isEmpty()) {
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        //call importUsers to validate and insert the users in batches
+        ImportResultDTO importResult = userImportService.importUsers(file);
+
+        return ResponseEntity.status(HttpStatus.OK).body(importResult);
+    }
+
+
     /**
      * Retrieves a paginated list of filtered user records based on provided filters.
      *
@@ -127,24 +161,27 @@ public class UserController {
      * Exports user records to an Excel.
      *
      * @param filter UserFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ResponseEntity containing a ByteArrayResource representing the Excel.
-     * @throws IOException if an error occurs during export.
+     * @param format the format to export in, either xlsx, csv or ndjson.
+     * @param accept the Accept header, used when no format is given.
+     * @return a ResponseEntity streaming the export to the client.
+     * @throws UnsupportedExportFormatException if the format is unknown.
      */
     @Operation(summary = "To export data to excel sheet", description = "To export table data to excel sheet of Users")
-    @PostMapping("/export-excel")
-    public ResponseEntity<ByteArrayResource> exportsExcelUsers(@RequestBody UserFilterDTO filter) throws IOException {
+    @PostMapping(value = "/export-excel", produces = {ExportFormat.XLSX_VALUE, ExportFormat.CSV_VALUE, ExportFormat.NDJSON_VALUE, MediaType.ALL_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportsExcelUsers(@RequestBody UserFilterDTO filter,
+                                                        @RequestParam(value = "format", required = false) String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws UnsupportedExportFormatException {
         log.info("Received request to export users table data to excel sheet");
 
-        //Export the fetched data to an Excel
-        ByteArrayResource resource = usersService.exportExcelUsers(filter);
-        log.info("Exported users data to Excel successfully");
+        //Format requested through the format parameter or the Accept header, XLSX by default
+        ExportFormat exportFormat = ExportFormat.resolve(format, accept);
 
-        String fileName = "users.xlsx";
+        //Stream the export directly to the response as it is written
+        StreamingResponseBody responseBody = outputStream -> {
+            usersService.exportExcelUsers(filter, exportFormat, outputStream);
+            log.info("Exported users data to {} successfully", exportFormat);
+        };
 
-        return ResponseEntity.status(HttpStatus.OK)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .contentLength(resource.contentLength())
-                .body(resource);
+        return exportFormat.toResponse("users", responseBody);
     }
 }
\ No newline at end of file
@@ -30,4 +30,7 @@ public class ChecklistCreateDTO {
 
     @Schema(description = "Name of the Control", example = "control access")
     private String controlName;
+
+    @Schema(description = "Version of the Checklist, used to detect concurrent updates", example = "3")
+    private Long version;
 }
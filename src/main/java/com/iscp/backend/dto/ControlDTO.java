@@ -31,4 +31,7 @@ public class ControlDTO {
     @Schema(description = "Control  Category DTO to get Control Category Name", example = "ISMS 1")
     private ControlCategoryCreateDTO controlCategory;
 
+    @Schema(description = "Version of the Control, used to detect concurrent updates", example = "3")
+    private Long version;
+
 }
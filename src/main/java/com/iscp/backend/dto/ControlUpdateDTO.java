@@ -31,4 +31,7 @@ public class ControlUpdateDTO {
 
     @Schema(description = "Name of the associated Control Category", example = "ISMS 1")
     private String controlCategoryName;
+
+    @Schema(description = "Version of the Control, used to detect concurrent updates", example = "3")
+    private Long version;
 }
@@ -0,0 +1,21 @@
+package com.iscp.backend.dto;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+@Schema(description = "Outcome of a CSV upload: per-row results of the valid rows and the errors of the others")
+public class CsvUploadResponse {
+    private Boolean applied;
+    private List<UpsertResultDTO> results;
+    private List<RowErrorDTO> errors;
+}
@@ -12,6 +12,9 @@ import java.sql.Timestamp;
 @AllArgsConstructor
 @Schema(description = "DTO for Evidence Upload")
 public class EvidenceDTO {
+    @Schema(description = "ID of the Evidence, to view or download its file", example = "402880e5831d36fd01831d37158e0000")
+    private String evidenceId;
+
     @Schema(description = "Name of File", example = "AccessCard.png")
     private String fileName;
 
@@ -24,6 +27,9 @@ public class EvidenceDTO {
     @Schema(description = "path of file", example = ".\\uploads\\AccessCard.png")
     private String fileReference;
 
+    @Schema(description = "SHA-256 of the file content", example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+    private String contentHash;
+
     @Schema(description = "checklist Name", example = "CCTV")
     private String checklistName;
 
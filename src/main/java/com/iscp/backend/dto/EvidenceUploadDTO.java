@@ -0,0 +1,33 @@
+package com.iscp.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for the state of a chunked evidence upload")
+public class EvidenceUploadDTO {
+
+    @Schema(description = "ID of the upload", example = "0f8fad5b-d9cb-469f-a165-70867728950e")
+    private String uploadId;
+
+    @Schema(description = "Name of File", example = "AccessCard.mp4")
+    private String fileName;
+
+    @Schema(description = "Size of the file in bytes", example = "734003200")
+    private long size;
+
+    @Schema(description = "Suggested size of each chunk in bytes", example = "8388608")
+    private int chunkSize;
+
+    @Schema(description = "Number of bytes received so far", example = "16777216")
+    private long receivedBytes;
+
+    @Schema(description = "Inclusive byte ranges still to be sent", example = "[\"16777216-734003199\"]")
+    private List<String> missingRanges;
+}
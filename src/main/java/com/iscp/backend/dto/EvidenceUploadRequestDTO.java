@@ -0,0 +1,31 @@
+package com.iscp.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for starting a chunked evidence upload")
+public class EvidenceUploadRequestDTO {
+
+    @Schema(description = "Name of File", example = "AccessCard.mp4")
+    private String fileName;
+
+    @Schema(description = "Type of file", example = "video/mp4")
+    private String fileType;
+
+    @Schema(description = "Size of the file in bytes", example = "734003200")
+    private long size;
+
+    @Schema(description = "SHA-256 of the file content, checked on completion when given", example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+    private String contentHash;
+
+    @Schema(description = "checklist Name", example = "CCTV")
+    private String checklistName;
+
+    @Schema(description = "Security Compliance ID", example = "security_456")
+    private String securityId;
+}
@@ -0,0 +1,35 @@
+package com.iscp.backend.dto;
+
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.models.Enum;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for the state of an export job")
+public class ExportJobDTO {
+
+    @Schema(description = "ID of the export job", example = "0f8fad5b-d9cb-469f-a165-70867728950e")
+    private String jobId;
+
+    @Schema(description = "Exported entity", example = "SECURITY_COMPLIANCE")
+    private Enum.ExportEntity entity;
+
+    @Schema(description = "Format of the export", example = "XLSX")
+    private ExportFormat format;
+
+    @Schema(description = "Status of the export job", example = "COMPLETED")
+    private Enum.ExportJobStatus status;
+
+    @Schema(description = "Time the export job was submitted", example = "2024-09-26T11:25:12")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Time the export job completed or failed", example = "2024-09-26T11:25:40")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,20 @@
+package com.iscp.backend.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.iscp.backend.models.Enum;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "DTO for submitting an export job")
+public class ExportJobRequestDTO {
+
+    @Schema(description = "Entity to export", example = "SECURITY_COMPLIANCE")
+    private Enum.ExportEntity entity;
+
+    @Schema(description = "Format of the export, either xlsx, csv or ndjson", defaultValue = "xlsx")
+    private String format;
+
+    @Schema(description = "Filter of the export, as sent to the export-excel endpoint of the entity")
+    private JsonNode filter;
+}
@@ -29,4 +29,7 @@ public class FrameworkDTO {
 
         @Schema(description = "Framework Category DTO to get Framework Name", example = "ISMS 1")
         private FrameworkCategoryCreateDTO frameworkCategory;
+
+        @Schema(description = "Version of the Framework, used to detect concurrent updates", example = "3")
+        private Long version;
 }
\ No newline at end of file
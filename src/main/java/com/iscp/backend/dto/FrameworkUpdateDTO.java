@@ -32,4 +32,7 @@ public class FrameworkUpdateDTO {
 
     @Schema(description = "Framework Category DTO to get Framework Name", example = "ISMS 1")
     private String frameworkCategoryName;
+
+    @Schema(description = "Version of the Framework, used to detect concurrent updates", example = "3")
+    private Long version;
 }
\ No newline at end of file
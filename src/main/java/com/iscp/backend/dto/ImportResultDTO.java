@@ -0,0 +1,31 @@
+package com.iscp.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Outcome of a file import: how many rows were read and imported, and the errors of the others")
+public class ImportResultDTO {
+
+    @Schema(description = "Number of data rows read from the file, without header rows", example = "2500")
+    private long rowsRead;
+
+    @Schema(description = "Number of rows imported", example = "2480")
+    private long rowsImported;
+
+    @Schema(description = "Number of records created from the imported rows", example = "9920")
+    private long recordsCreated;
+
+    @Schema(description = "Errors of the rows that were not imported")
+    @Builder.Default
+    private List<RowErrorDTO> errors = new ArrayList<>();
+}
@@ -0,0 +1,29 @@
+package com.iscp.backend.dto;
+
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+@Schema(description = "Control categories, controls and checklists parsed from a master upload")
+public class MasterUploadEntries {
+    @Builder.Default
+    private List<ControlCategoryCreateDTO> controlCategoryEntries = new ArrayList<>();
+    @Builder.Default
+    private List<ControlCreateDTO> controlEntries = new ArrayList<>();
+    @Builder.Default
+    private List<ChecklistCreateDTO> checklistEntries = new ArrayList<>();
+    @Builder.Default
+    private List<SourceRowDTO> checklistSources = new ArrayList<>();
+    @Builder.Default
+    private List<RowErrorDTO> errors = new ArrayList<>();
+}
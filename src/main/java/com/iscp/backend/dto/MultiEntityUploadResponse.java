@@ -15,7 +15,12 @@ import java.util.List;
 @ToString
 @Schema
 public class MultiEntityUploadResponse {
-    private List<ControlCategoryDTO> controlCategoryResults;
-    private List<ControlDTO> controlResults;
-    private List<ChecklistDTO> checklistResults;
+    private Boolean applied;
+    private List<UpsertResultDTO> controlCategoryResults;
+    private List<UpsertResultDTO> controlResults;
+    private List<UpsertResultDTO> checklistResults;
+    private UpsertCountsDTO controlCategoryCounts;
+    private UpsertCountsDTO controlCounts;
+    private UpsertCountsDTO checklistCounts;
+    private List<RowErrorDTO> errors;
 }
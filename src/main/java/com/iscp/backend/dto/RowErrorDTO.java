@@ -0,0 +1,25 @@
+package com.iscp.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for a validation error of one cell of an uploaded file")
+public class RowErrorDTO {
+
+    @Schema(description = "Name of the sheet, or of the file for CSV uploads", example = "Annex A")
+    private String sheet;
+
+    @Schema(description = "One-based row number, as shown by Excel", example = "42")
+    private int row;
+
+    @Schema(description = "Column letter", example = "C")
+    private String column;
+
+    @Schema(description = "What is wrong with the cell", example = "Control name is required")
+    private String message;
+}
@@ -44,4 +44,7 @@ public class SecurityComplianceCreateDTO {
     @Schema(description = "Comments on Evidence", example = "Evidence uploaded")
     private String evidenceComments;
 
+    @Schema(description = "Version of the Security Compliance, used to detect concurrent updates", example = "3")
+    private Long version;
+
 }
\ No newline at end of file
@@ -42,9 +42,15 @@ public class SecurityComplianceDTO {
     @Schema(description = "List of All associated list", example = "file.pdf")
     private List<String> evidenceList;
 
+    @Schema(description = "IDs of the associated evidences, in the order of evidenceList", example = "402880e5831d36fd01831d37158e0000")
+    private List<String> evidenceIdList;
+
     @Schema(description = "Evidence Compliance Status",example = "True")
     private Boolean evidenceComplianceStatus;
 
     @Schema(description = "Comments on Evidence", example = "Evidence uploaded")
     private String evidenceComments;
+
+    @Schema(description = "Version of the Security Compliance, used to detect concurrent updates", example = "3")
+    private Long version;
 }
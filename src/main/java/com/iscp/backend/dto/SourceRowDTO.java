@@ -0,0 +1,19 @@
+package com.iscp.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for the sheet and row an uploaded entry was read from")
+public class SourceRowDTO {
+
+    @Schema(description = "Name of the sheet, or of the file for CSV uploads", example = "Annex A")
+    private String sheet;
+
+    @Schema(description = "One-based row number, as shown by Excel", example = "42")
+    private int row;
+}
@@ -0,0 +1,22 @@
+package com.iscp.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for the number of rows of a bulk upsert per outcome")
+public class UpsertCountsDTO {
+
+    @Schema(description = "Number of rows that are, or would be, inserted", example = "12")
+    private long inserted;
+
+    @Schema(description = "Number of rows that are, or would be, updated", example = "3")
+    private long updated;
+
+    @Schema(description = "Number of rows matching the current data", example = "480")
+    private long unchanged;
+}
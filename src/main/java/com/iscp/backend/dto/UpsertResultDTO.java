@@ -0,0 +1,26 @@
+package com.iscp.backend.dto;
+
+import com.iscp.backend.models.Enum;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "DTO for the outcome of one row of a bulk upsert")
+public class UpsertResultDTO {
+
+    @Schema(description = "Zero-based index of the row in the request", example = "4")
+    private int row;
+
+    @Schema(description = "ID of the inserted or matched entity", example = "c97d8605-3198-450e-a10d-acdcde222dbb")
+    private String id;
+
+    @Schema(description = "Name of the entity", example = "A.5.1:Policies for information security")
+    private String name;
+
+    @Schema(description = "What the upsert did with the row", example = "INSERTED")
+    private Enum.UpsertAction action;
+}
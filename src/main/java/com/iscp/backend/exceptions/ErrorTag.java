@@ -25,6 +25,16 @@ public enum ErrorTag {
     USER_EMAIL_ALREADY_EXISTS("User Email Already Exist"),
     USER_EMPCODE_ALREADY_EXISTS("User EmpCode Already Exists"),
     PERIODICITY_UPDATE_DENIED("Periodicity Update Denied"),
+    SECURITY_COMPLIANCE_ALREADY_EXISTS("Security Compliance Already Exists"),
+    VERSION_CONFLICT("Record Modified By Another User"),
+    UNSUPPORTED_EXPORT_FORMAT("Unsupported Export Format"),
+    EXPORT_JOB_NOT_FOUND("Export Job Not Found"),
+    EXPORT_JOB_NOT_READY("Export Job Not Ready"),
+    EVIDENCE_NOT_FOUND("Evidence Not Found"),
+    EVIDENCE_BLOB_NOT_FOUND("Evidence Content Not Found"),
+    EVIDENCE_UPLOAD_NOT_FOUND("Evidence Upload Not Found"),
+    EVIDENCE_UPLOAD_REJECTED("Evidence Upload Rejected"),
+    EVIDENCE_UPLOAD_INCOMPLETE("Evidence Upload Incomplete"),
     INVALID_CAPTCHATOKEN("Invalid captcha token");
     private final String tag;
     private final String description;
@@ -0,0 +1,11 @@
+package com.iscp.backend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class EvidenceUploadIncompleteException extends ServiceException {
+    public EvidenceUploadIncompleteException() {
+        super(ErrorTag.EVIDENCE_UPLOAD_INCOMPLETE, HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,11 @@
+package com.iscp.backend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class EvidenceUploadNotFoundException extends ServiceException {
+    public EvidenceUploadNotFoundException() {
+        super(ErrorTag.EVIDENCE_UPLOAD_NOT_FOUND, HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,11 @@
+package com.iscp.backend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class EvidenceUploadRejectedException extends ServiceException {
+    public EvidenceUploadRejectedException() {
+        super(ErrorTag.EVIDENCE_UPLOAD_REJECTED, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,11 @@
+package com.iscp.backend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class ExportJobNotReadyException extends ServiceException {
+    public ExportJobNotReadyException() {
+        super(ErrorTag.EXPORT_JOB_NOT_READY, HttpStatus.CONFLICT);
+    }
+}
@@ -4,6 +4,7 @@ import ch.qos.logback.classic.Logger;
 import com.iscp.backend.dto.ErrorResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -21,4 +22,12 @@ public class GlobalExceptionHandler {
         ErrorResponse response=new ErrorResponse(ex.getErrorTag(),ex.getErrorTag().getTag());
         return new ResponseEntity<>(response,HttpStatus.valueOf(ex.getStatusCode()));
     }
+
+    //Stale expected version or a concurrent commit detected by the version column
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException ex)
+    {
+        ErrorResponse response=new ErrorResponse(ErrorTag.VERSION_CONFLICT,ErrorTag.VERSION_CONFLICT.getTag());
+        return new ResponseEntity<>(response,HttpStatus.CONFLICT);
+    }
 }
@@ -0,0 +1,12 @@
+package com.iscp.backend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class SecurityComplianceAlreadyExistsException extends ServiceException {
+    public SecurityComplianceAlreadyExistsException() {
+        super(ErrorTag.SECURITY_COMPLIANCE_ALREADY_EXISTS, HttpStatus.CONFLICT);
+    }
+}
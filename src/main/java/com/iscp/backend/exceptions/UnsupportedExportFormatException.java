@@ -0,0 +1,11 @@
+package com.iscp.backend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_ACCEPTABLE)
+public class UnsupportedExportFormatException extends ServiceException {
+    public UnsupportedExportFormatException() {
+        super(ErrorTag.UNSUPPORTED_EXPORT_FORMAT, HttpStatus.NOT_ACCEPTABLE);
+    }
+}
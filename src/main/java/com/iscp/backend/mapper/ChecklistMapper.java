@@ -23,12 +23,14 @@ public interface ChecklistMapper {
     //Mapping from checkCreateDTO to checklist entity
     @Mapping(target = "checklistId", ignore = true)
     @Mapping(target = "control", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Checklist toChecklistEntity(ChecklistCreateDTO checklistCreateDTO);
 
 
     // Update existing checklist entity from checklistUpdateDTO
     @Mapping(target = "checklistId",ignore = true)
     @Mapping(target = "control", ignore = true)
+    @Mapping(target = "version", ignore = true)
     void updateChecklistEntityFromDTO(ChecklistUpdateDTO checklistUpdateDTO, @MappingTarget Checklist checklist);
 
     //Mapping from List of checklist entities to list of checklistDTO
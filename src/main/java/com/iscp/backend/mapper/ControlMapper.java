@@ -23,11 +23,13 @@ public interface ControlMapper {
     //Mapping from controlCreateDTO to control entity
     @Mapping(target = "controlCategory.controlCategoryName",source = "controlCategoryName")
     @Mapping(target = "controlId", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Control toControlEntity(ControlCreateDTO controlCreateDTO);
 
 
     // Update existing Control entity from ControlUpdateDTO
     @Mapping(target = "controlId",ignore = true)
+    @Mapping(target = "version", ignore = true)
 //    @Mapping(target = "controlCategory",ignore = true)
     void updateControlEntityFromDTO(ControlUpdateDTO controlUpdateDTO, @MappingTarget  Control control);
 
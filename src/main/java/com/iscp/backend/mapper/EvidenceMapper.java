@@ -21,6 +21,7 @@ public interface EvidenceMapper {
     @Mapping(target = "checklistName", source = "checklist.controlChecklist")
     @Mapping(target = "userId", source = "user.userId")
     @Mapping(target = "securityId", source = "securityCompliance.securityId")
+    @Mapping(target = "contentHash", source = "blob.contentHash")
     EvidenceDTO toEvidenceDto(Evidence evidence);
 
 
@@ -30,5 +31,6 @@ public interface EvidenceMapper {
      * @param evidenceDTO the Evidence DTO to convert.
      * @return the converted Evidence Entity.
      */
+    @Mapping(target = "blob", ignore = true)
     Evidence toEvidenceEntity(EvidenceDTO evidenceDTO);
 }
@@ -22,6 +22,7 @@ public interface FrameworkMapper {
      */
     @Mapping(target = "frameworkId", ignore = true)
     @Mapping(target = "frameworkCategory", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Framework toFrameworkEntity(FrameworkCreateDTO frameworkCreateDTO);
 
 
@@ -50,6 +51,7 @@ public interface FrameworkMapper {
      * @param framework the converted Framework Entity.
      */
     @Mapping(target = "frameworkId",ignore = true)
+    @Mapping(target = "version", ignore = true)
     void updateFrameworkEntityFromDTO(FrameworkUpdateDTO frameworkUpdateDTO, @MappingTarget Framework framework);
 
 
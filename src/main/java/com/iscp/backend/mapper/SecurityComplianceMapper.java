@@ -29,6 +29,7 @@ public interface SecurityComplianceMapper {
     @Mapping(target = "checklist", ignore = true)
     @Mapping(target = "departments", ignore = true)
     @Mapping(target = "creationTime", ignore = true)
+    @Mapping(target = "version", ignore = true)
     SecurityCompliance toSecurityComplianceEntity(SecurityComplianceCreateDTO securityComplianceCreateDTO);
 
 
@@ -55,6 +56,7 @@ public interface SecurityComplianceMapper {
     @Mapping(target = "frameworkCategory", source = "framework", qualifiedByName = "mapFrameworkEntityToCategory")
     @Mapping(target = "controlCategory", source = "control",qualifiedByName = "mapControlEntityToCategory")
     @Mapping(target = "evidenceList", ignore = true)
+    @Mapping(target = "evidenceIdList", ignore = true)
     SecurityComplianceDTO toSecurityComplianceDTO(SecurityCompliance securityCompliance);
 
 
@@ -73,6 +75,7 @@ public interface SecurityComplianceMapper {
     @Mapping(target = "frameworkCategory", source = "securityCompliance.framework", qualifiedByName = "mapFrameworkEntityToCategory")
     @Mapping(target = "controlCategory", source = "securityCompliance.control", qualifiedByName = "mapControlEntityToCategory")
     @Mapping(target = "evidenceList", source = "evidenceList")
+    @Mapping(target = "evidenceIdList", ignore = true)
     SecurityComplianceDTO toSecurityComplianceDTO(SecurityCompliance securityCompliance, List<String> evidenceList);
 
     //Custom mapping for Framework to String (frameworkName)
@@ -132,6 +135,7 @@ public interface SecurityComplianceMapper {
     @Mapping(target = "checklist", ignore = true)
     @Mapping(target = "departments", ignore = true)
     @Mapping(target = "creationTime", ignore = true)
+    @Mapping(target = "version", ignore = true)
     SecurityCompliance toSecurityComplianceEditEntity(SecurityComplianceEditDTO securityComplianceEditDTO);
 
 
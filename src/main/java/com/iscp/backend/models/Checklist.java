@@ -2,6 +2,7 @@ package com.iscp.backend.models;
 
 
 import com.iscp.backend.components.CustomIdGenerator;
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -18,6 +19,7 @@ import java.util.Set;
 @Builder
 @ToString
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name = "checklist")
 public class Checklist {
 
@@ -39,6 +41,10 @@ public class Checklist {
     @Column(name="creation_time", nullable = false)
     private LocalDateTime creationTime;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @OneToMany(mappedBy = "checklist", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<SecurityCompliance> securityCompliance;
 
@@ -2,6 +2,7 @@ package com.iscp.backend.models;
 
 
 import com.iscp.backend.components.CustomIdGenerator;
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -16,6 +17,7 @@ import java.util.List;
 @Builder
 @ToString(exclude = {"controlCategory", "securityCompliance", "checklists"})
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name = "controls")
 public class Control {
     @Id
@@ -36,6 +38,10 @@ public class Control {
     @Column(name="creation_time", nullable = false)
     private LocalDateTime creationTime;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "control_category_id",nullable = false)
     private ControlCategory controlCategory;
@@ -2,6 +2,7 @@ package com.iscp.backend.models;
 
 
 import com.iscp.backend.components.CustomIdGenerator;
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -15,6 +16,7 @@ import java.util.List;
 @Builder
 @ToString(exclude = "controlList")
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name = "control_category")
 public class ControlCategory {
     @Id
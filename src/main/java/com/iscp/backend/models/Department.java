@@ -1,6 +1,7 @@
 package com.iscp.backend.models;
 
 import com.iscp.backend.components.CustomIdGenerator;
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -14,6 +15,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name="department")
 public class Department {
     @Id
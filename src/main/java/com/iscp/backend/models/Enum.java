@@ -36,4 +36,29 @@ public interface Enum {
         OnEvent
     }
 
+    enum ExportEntity
+    {
+        SECURITY_COMPLIANCE,
+        CHECKLIST,
+        CONTROL,
+        FRAMEWORK,
+        ROLE,
+        USERS
+    }
+
+    enum ExportJobStatus
+    {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    enum UpsertAction
+    {
+        INSERTED,
+        UPDATED,
+        UNCHANGED
+    }
+
 }
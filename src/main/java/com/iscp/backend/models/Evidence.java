@@ -1,6 +1,7 @@
 package com.iscp.backend.models;
 
 import com.iscp.backend.components.CustomIdGenerator;
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -15,6 +16,7 @@ import java.sql.Timestamp;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name="evidence")
 public class Evidence {
     @Id
@@ -35,6 +37,11 @@ public class Evidence {
     @Column(name="file_reference", nullable = false)
     private String fileReference;
 
+    //Null for evidences stored before content addressed storage
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_hash")
+    private EvidenceBlob blob;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "checklist_id", nullable = false)
     private Checklist checklist;
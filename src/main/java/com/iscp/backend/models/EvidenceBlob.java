@@ -0,0 +1,42 @@
+package com.iscp.backend.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Timestamp;
+
+/**
+ * Content of an evidence file, stored once per SHA-256 hash and shared by every evidence with the same bytes.
+ * The hash and size are those of the original content, even when it is stored compressed.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name="evidence_blob")
+public class EvidenceBlob {
+    @Id
+    @Column(name = "content_hash", length = 64, unique = true, nullable = false)
+    private String contentHash;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "storage_path", nullable = false)
+    private String storagePath;
+
+    //Content-Encoding of the stored file, null when it is stored as is
+    @Column(name = "encoding", length = 16)
+    private String encoding;
+
+    //Size of the stored file, smaller than the size when compressed
+    @Column(name = "stored_size")
+    private Long storedSize;
+
+    @Column(name = "created_at", nullable = false)
+    private Timestamp createdAt;
+}
@@ -1,5 +1,6 @@
 package com.iscp.backend.models;
 
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -13,6 +14,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name = "framework")
 @Getter
 @Setter
@@ -45,6 +47,10 @@ public class Framework {
     @Column(name="creation_time", nullable = false)
     private LocalDateTime creationTime;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "framework_category_id",nullable = false)
     private FrameworkCategory frameworkCategory;
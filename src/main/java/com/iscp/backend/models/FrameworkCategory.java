@@ -1,5 +1,6 @@
 package com.iscp.backend.models;
 
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -10,6 +11,7 @@ import org.hibernate.annotations.GenericGenerator;
 import java.util.List;
 
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name = "framework_category")
 @Getter
 @Setter
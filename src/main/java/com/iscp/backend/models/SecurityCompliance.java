@@ -1,6 +1,7 @@
 package com.iscp.backend.models;
 
 
+import com.iscp.backend.components.ExportCacheListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -13,6 +14,7 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
+@EntityListeners(ExportCacheListener.class)
 @Table(name = "security_compliance")
 @Getter
 @Setter
@@ -56,6 +58,10 @@ public class SecurityCompliance {
     @Column(name = "periodicity", nullable = false)
     private Enum.Periodicity periodicity;
 
+    //Position of this record within its compliance series (1 to frequency)
+    @Column(name = "period_index")
+    private Integer periodIndex;
+
     @Column(name = "evidence_compliance_status")
     private Boolean evidenceComplianceStatus = true;
 
@@ -65,6 +71,10 @@ public class SecurityCompliance {
     @Column(name="creation_time", nullable = false)
     private LocalDateTime creationTime;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @OneToMany(mappedBy = "securityCompliance", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Evidence> evidences;
 
@@ -6,17 +6,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 
 @Repository
-public interface ChecklistRepository extends JpaRepository<Checklist,String> {
+public interface ChecklistRepository extends JpaRepository<Checklist,String>, JpaSpecificationExecutor<Checklist> {
     Optional<Checklist> findByControlChecklist(String controlChecklist);
 
     @Query("SELECT c FROM Checklist c WHERE c.controlChecklist IN :controlChecklists")
@@ -32,4 +34,10 @@ public interface ChecklistRepository extends JpaRepository<Checklist,String> {
     List<Checklist> findByControlList(@Param("controls") List<String> controls);
 
     Optional<Checklist> findByControlChecklistAndControl_ControlName(String controlChecklist, String controlName);
+
+    @Query("SELECT c FROM Checklist c JOIN FETCH c.control WHERE c.control.controlName IN :controlNames")
+    List<Checklist> findWithControlByControlNameIn(@Param("controlNames") Collection<String> controlNames);
+
+    @Query("SELECT c FROM Checklist c JOIN FETCH c.control WHERE c.checklistId IN :checklistIds")
+    List<Checklist> findWithControlByChecklistIdIn(@Param("checklistIds") Collection<String> checklistIds);
 }
@@ -4,8 +4,10 @@ import com.iscp.backend.models.Control;
 import com.iscp.backend.models.ControlCategory;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +18,9 @@ public interface ControlCategoryRepository extends JpaRepository<ControlCategory
   Optional<ControlCategory> findByControlCategoryName(String controlCategoryName);
 
   Optional<ControlCategory> findByControlCategoryId(String controlId);
+
+  List<ControlCategory> findByControlCategoryNameIn(Collection<String> controlCategoryNames);
+
+  @Query("SELECT c.controlCategoryName FROM ControlCategory c WHERE c.controlCategoryName IN :controlCategoryNames")
+  List<String> findControlCategoryNamesIn(@Param("controlCategoryNames") Collection<String> controlCategoryNames);
 }
@@ -6,16 +6,31 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 
 @Repository
-public interface ControlRepository extends JpaRepository<Control,String> {
+public interface ControlRepository extends JpaRepository<Control,String>, JpaSpecificationExecutor<Control> {
     Optional<Control> findByControlName(String controlName);
+
+    List<Control> findByControlNameIn(Collection<String> controlNames);
     List<Control> findByControlCategory_ControlCategoryName(String controlCategoryName, Sort controlName);
     Page<Control> findAll(Specification<Control> spec, Pageable pageable);
     Optional<Control> findByControlId(String controlId);
+
+    @Query("SELECT c.controlName FROM Control c WHERE c.controlName IN :controlNames")
+    List<String> findControlNamesIn(@Param("controlNames") Collection<String> controlNames);
+
+    @Query("SELECT c FROM Control c JOIN FETCH c.controlCategory WHERE c.controlName IN :controlNames")
+    List<Control> findWithCategoryByControlNameIn(@Param("controlNames") Collection<String> controlNames);
+
+    @Query("SELECT c FROM Control c JOIN FETCH c.controlCategory WHERE c.controlId IN :controlIds")
+    List<Control> findWithCategoryByControlIdIn(@Param("controlIds") Collection<String> controlIds);
 }
@@ -0,0 +1,26 @@
+package com.iscp.backend.repositories;
+
+import com.iscp.backend.models.EvidenceBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for accessing {@link EvidenceBlob} entities.
+ */
+@Repository
+public interface EvidenceBlobRepository extends JpaRepository<EvidenceBlob, String> {
+
+    /**
+     * Find which of the given content hashes are already stored.
+     *
+     * @param contentHashes the SHA-256 hashes to look for.
+     * @return the hashes among the given ones that have a stored blob.
+     */
+    @Query("SELECT b.contentHash FROM EvidenceBlob b WHERE b.contentHash IN :contentHashes")
+    List<String> findContentHashesIn(@Param("contentHashes") Collection<String> contentHashes);
+}
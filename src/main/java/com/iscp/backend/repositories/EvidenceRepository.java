@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -25,9 +26,31 @@ public interface EvidenceRepository extends JpaRepository<Evidence,String> {
 
 
     /**
-     * Retrieves an {@link Evidence} entity based on its filename.
+     * Find the IDs and filenames of the evidences of a security compliance.
+     *
+     * @param securityId the ID of the security compliance to find the Evidences.
+     * @return pairs of evidence ID and filename of each evidence.
+     */
+    @Query("SELECT e.evidenceId, e.fileName FROM Evidence e WHERE e.securityCompliance.securityId = :securityId")
+    List<Object[]> findIdAndFileNameBySecurityId(@Param("securityId") String securityId);
+
+
+    /**
+     * Find the evidences of several security compliance in a single query.
+     *
+     * @param securityIds the IDs of the security compliance to find the Evidences.
+     * @return pairs of security ID and filename of each evidence.
+     */
+    @Query("SELECT e.securityCompliance.securityId, e.fileName FROM Evidence e WHERE e.securityCompliance.securityId IN :securityIds")
+    List<Object[]> findFileNamesBySecurityIdIn(@Param("securityIds") Collection<String> securityIds);
+
+
+    /**
+     * Retrieves the latest {@link Evidence} entity with the given filename.
+     * Several evidences share a filename when the same file is attached to several security compliance.
+     *
      * @param filename the name of the evidence file to retrieve.
-     * @return an {@link Evidence} object associated with the given filename, or null if no evidence is found.
+     * @return the latest {@link Evidence} object with the given filename, or null if no evidence is found.
      */
-    Evidence findByFileName(@Param("filename") String filename);
+    Evidence findFirstByFileNameOrderByTimestampDesc(String filename);
 }
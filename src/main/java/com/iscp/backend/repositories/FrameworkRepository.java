@@ -6,15 +6,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FrameworkRepository extends JpaRepository<Framework, String> {
+public interface FrameworkRepository extends JpaRepository<Framework, String>, JpaSpecificationExecutor<Framework> {
     Optional<Framework> findByFrameworkName(String frameworkName);
 
+    List<Framework> findByFrameworkNameIn(Collection<String> frameworkNames);
+
     List<Framework> findByFrameworkCategory_FrameworkCategoryName(String frameworkCategoryName, Sort frameworkName);
 
     Page<Framework> findAll(Specification<Framework> spec, Pageable pageable);
@@ -7,14 +7,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
-
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface SecurityComplianceRepository extends JpaRepository<SecurityCompliance,String> {
+public interface SecurityComplianceRepository extends JpaRepository<SecurityCompliance,String>, JpaSpecificationExecutor<SecurityCompliance> {
 
     Optional<SecurityCompliance> findBySecurityId(String securityId);
 
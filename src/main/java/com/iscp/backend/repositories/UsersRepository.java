@@ -7,10 +7,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -19,7 +21,7 @@ import java.util.Set;
  * Repository interface for accessing {@link Users} entities.
  */
 @Repository
-public interface UsersRepository extends JpaRepository<Users, String> {
+public interface UsersRepository extends JpaRepository<Users, String>, JpaSpecificationExecutor<Users> {
 
     /**
      * Retrieves an {@link Users} entity based on its EmailId.
@@ -49,6 +51,26 @@ public interface UsersRepository extends JpaRepository<Users, String> {
     Optional<Users> findByempCode(String empCode);
 
 
+    /**
+     * Retrieves the email IDs among the given ones that already belong to a user.
+     *
+     * @param userEmailIds the Email IDs to check, at most {@link com.iscp.backend.components.Batches#IN_CLAUSE_SIZE} at a time.
+     * @return the Email IDs that are already taken.
+     */
+    @Query("SELECT u.userEmailId FROM Users u WHERE u.userEmailId IN :userEmailIds")
+    List<String> findUserEmailIdsIn(@Param("userEmailIds") Collection<String> userEmailIds);
+
+
+    /**
+     * Retrieves the EmpCodes among the given ones that already belong to a user.
+     *
+     * @param empCodes the EmpCodes to check, at most {@link com.iscp.backend.components.Batches#IN_CLAUSE_SIZE} at a time.
+     * @return the EmpCodes that are already taken.
+     */
+    @Query("SELECT u.empCode FROM Users u WHERE u.empCode IN :empCodes")
+    List<String> findEmpCodesIn(@Param("empCodes") Collection<String> empCodes);
+
+
     /**
      * Retrieves a paginated list of {@link Users} entities based on the provided {@link Specification} and {@link Pageable}.
      *
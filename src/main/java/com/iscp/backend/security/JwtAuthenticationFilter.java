@@ -64,25 +64,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (requestHeader != null && requestHeader.startsWith("Bearer")) {
             token = requestHeader.substring(7);
-            log.debug("JWT token extracted: {}", token);
-            log.debug("Authorization header detected: {}", requestHeader);
 
+            //Expired and malformed tokens are routine, log them without the stack trace
             try {
                 username = jwtHelper.getUsernameFromToken(token);
             } catch (IllegalArgumentException e) {
-                e.printStackTrace();
+                log.debug("Unable to read JWT token: {}", e.getMessage());
             } catch (ExpiredJwtException e) {
-                log.warn("JWT token has expired", e);
-                e.printStackTrace();
+                log.debug("JWT token has expired");
             } catch (MalformedJwtException e) {
-                log.warn("Invalid JWT token", e);
-                e.printStackTrace();
+                log.warn("Invalid JWT token: {}", e.getMessage());
             } catch (Exception e) {
                 log.error("Unable to process JWT token", e);
-                e.printStackTrace();
             }
         } else {
-            log.info("Invalid Header Value");
+            log.debug("No bearer token on {}", request.getRequestURI());
         }
 
         // If username is not null and the user is not already authenticated, validate the token
@@ -99,7 +95,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
             else {
-                log.info("Validation Fails");
+                log.debug("JWT token validation failed");
             }
 
         }
@@ -1,14 +1,15 @@
 package com.iscp.backend.services;
 
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSheet;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.ChecklistAlreadyExistsException;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
 import com.iscp.backend.exceptions.ControlNotFoundException;
 import com.iscp.backend.models.Checklist;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 
@@ -20,6 +21,8 @@ public interface ChecklistService {
     List<ChecklistDTO> getAllChecklists();
     List<ChecklistDTO> addEditCheckList(List<ChecklistCreateDTO> checklistCreateDTOList) throws ChecklistNotFoundException, ChecklistAlreadyExistsException, ControlNotFoundException;
 
+    List<UpsertResultDTO> upsertChecklists(List<ChecklistCreateDTO> checklistCreateDTOList) throws ChecklistNotFoundException, ControlNotFoundException;
+
     ChecklistDTO addChecklist(ChecklistCreateDTO checklistCreateDTO) throws ChecklistAlreadyExistsException, ControlNotFoundException;
 
     List<ChecklistDTO> updateChecklists(List<ChecklistUpdateDTO> checklistUpdateDTOs) throws ChecklistNotFoundException, ControlNotFoundException;
@@ -32,8 +35,8 @@ public interface ChecklistService {
 
     PaginatedResponse<ChecklistDTO> getFilterChecklistPaginated(ChecklistFilterDTO filterDTO);
 
-    ByteArrayResource exportExcelChecklist(ChecklistFilterDTO filter) throws IOException;
+    void exportExcelChecklist(ChecklistFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
 
-    List<ChecklistCreateDTO> parseCSVFile(MultipartFile file)  throws IOException;
+    ExportSheet getExportSheet() throws IOException;
 
 }
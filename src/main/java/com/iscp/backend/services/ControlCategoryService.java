@@ -20,5 +20,8 @@ public interface ControlCategoryService {
     ControlCategory updateSingleControlCategory(ControlCategoryUpdateDTO controlCategoryUpdateDTO) throws ControlCategoryNotFoundException;
     List<ControlCategoryDTO> addEditControlCategory(List<ControlCategoryCreateDTO> controlCategoryCreateDTOList) throws ControlCategoryAlreadyExistsException, ControlCategoryNotFoundException;
 
+    //FUNCTION TO INSERT OR UPDATE CONTROL CATEGORIES IN BULK
+    List<UpsertResultDTO> upsertControlCategories(List<ControlCategoryCreateDTO> controlCategoryCreateDTOList) throws ControlCategoryNotFoundException;
+
     List<ControlCategoryCreateDTO> parseCSVFile(MultipartFile file) throws IOException;
 }
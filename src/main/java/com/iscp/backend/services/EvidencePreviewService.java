@@ -0,0 +1,36 @@
+package com.iscp.backend.services;
+
+import java.nio.file.Path;
+
+/**
+ * Service Interface for the downscaled previews of evidence files.
+ */
+public interface EvidencePreviewService {
+
+    /**
+     * Checks whether previews can be generated for a content type.
+     *
+     * @param contentType the detected type of the evidence.
+     * @return true if the content can be previewed.
+     */
+    boolean isPreviewable(String contentType);
+
+
+    /**
+     * Retrieves the cached preview of some content.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @return the JPEG preview, or null if it isn't generated yet.
+     */
+    Path findPreview(String contentHash);
+
+
+    /**
+     * Generates the preview of some content in the background, unless it is cached or already being generated.
+     * Content of a type which can't be previewed is ignored.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @param contentType the detected type of the content.
+     */
+    void schedulePreview(String contentHash, String contentType);
+}
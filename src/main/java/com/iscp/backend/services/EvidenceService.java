@@ -1,7 +1,10 @@
 package com.iscp.backend.services;
 
+import com.iscp.backend.components.EvidenceBlobStore;
 import com.iscp.backend.dto.EvidenceDTO;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
+import com.iscp.backend.exceptions.EvidenceBlobNotFoundException;
+import com.iscp.backend.exceptions.EvidenceNotFoundException;
 import com.iscp.backend.exceptions.SecurityComplianceNotFoundException;
 import com.iscp.backend.exceptions.UserNotFoundException;
 import org.springframework.core.io.Resource;
@@ -19,6 +22,7 @@ public interface EvidenceService {
 
     /**
      * Upload and save evidences associated with a specific checklist and security compliance.
+     * Files are stored once per content hash, so a file uploaded again is referenced instead of copied.
      *
      * @param files an array of MultipartFile to be uploaded.
      * @param checklistName the name of the checklist to associate with the evidence.
@@ -32,6 +36,50 @@ public interface EvidenceService {
     List<EvidenceDTO> saveEvidence(MultipartFile[] files, String checklistName, String token, String securityId) throws IOException, ChecklistNotFoundException, UserNotFoundException, SecurityComplianceNotFoundException;
 
 
+    /**
+     * Saves an evidence for content already moved into the blob store, such as a completed chunked upload.
+     *
+     * @param stored the hash, size and location of the stored content.
+     * @param fileName the name the evidence is shown with.
+     * @param fileType the content type declared by the client, used when the content isn't recognized, or null.
+     * @param checklistName the name of the checklist to associate with the evidence.
+     * @param token JWT token used for authentication.
+     * @param securityId the ID of the security compliance to associate with the evidence.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     */
+    EvidenceDTO saveStoredEvidence(EvidenceBlobStore.StoredBlob stored, String fileName, String fileType, String checklistName, String token, String securityId) throws ChecklistNotFoundException, SecurityComplianceNotFoundException;
+
+
+    /**
+     * Finds which of the given content hashes are already stored, so that clients only upload the others.
+     *
+     * @param contentHashes the SHA-256 hashes of the files a client is about to upload.
+     * @return the hashes among the given ones whose content is stored, in lower case.
+     */
+    List<String> findStoredHashes(List<String> contentHashes);
+
+
+    /**
+     * Attaches already stored content as a new evidence of a specific checklist and security compliance,
+     * without uploading the file again.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @param fileName the name the evidence is shown with.
+     * @param fileType the content type declared by the client, used when the content isn't recognized, or null.
+     * @param checklistName the name of the checklist to associate with the evidence.
+     * @param token JWT token used for authentication.
+     * @param securityId the ID of the security compliance to associate with the evidence.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws EvidenceBlobNotFoundException if no content is stored with the given hash.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     * @throws IOException if the stored content cannot be read.
+     */
+    EvidenceDTO attachEvidence(String contentHash, String fileName, String fileType, String checklistName, String token, String securityId) throws EvidenceBlobNotFoundException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException;
+
+
     /**
      * Retrieves a resource representing an evidence with the specified name.
      *
@@ -53,6 +101,16 @@ public interface EvidenceService {
     String getEvidenceType(String filename) throws IOException;
 
 
+    /**
+     * Determines the type of an evidence, without reading its file once it is stored by content.
+     *
+     * @param evidence the evidence for which to determine the type.
+     * @return a String representing the type of the file.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    String getEvidenceType(Evidence evidence) throws IOException;
+
+
     /**
      * Retrieves an {@link Evidence} object by its name.
      *
@@ -60,4 +118,25 @@ public interface EvidenceService {
      * @return an {@link Evidence} object associated with the given filename, or null if no evidence is found.
      */
     Evidence getEvidenceByFilename(String filename);
+
+
+    /**
+     * Retrieves an {@link Evidence} object by its ID.
+     *
+     * @param evidenceId the ID of the evidence to retrieve.
+     * @return the {@link Evidence} with the given ID.
+     * @throws EvidenceNotFoundException if no evidence exists with the given ID.
+     */
+    Evidence getEvidenceById(String evidenceId) throws EvidenceNotFoundException;
+
+
+    /**
+     * Retrieves a resource representing the file of the given evidence.
+     *
+     * @param evidence the evidence to be viewed.
+     * @return a {@link Resource} representing the evidence.
+     * @throws IOException if an error occurs while accessing the file.
+     * @throws FileNotFoundException if the file does not exist or is not readable.
+     */
+    Resource viewEvidence(Evidence evidence) throws IOException;
 }
@@ -0,0 +1,81 @@
+package com.iscp.backend.services;
+
+import com.iscp.backend.dto.EvidenceDTO;
+import com.iscp.backend.dto.EvidenceUploadDTO;
+import com.iscp.backend.dto.EvidenceUploadRequestDTO;
+import com.iscp.backend.exceptions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Service Interface for uploading large evidence files in resumable chunks.
+ */
+public interface EvidenceUploadService {
+
+    /**
+     * Starts a chunked upload, preallocating a file of the announced size.
+     *
+     * @param request the name, type, size and owner of the evidence to upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} of the new upload, with its ID and suggested chunk size.
+     * @throws EvidenceUploadRejectedException if the size is empty or above the limit.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     * @throws IOException if the file cannot be allocated.
+     */
+    EvidenceUploadDTO initiateUpload(EvidenceUploadRequestDTO request, String token) throws EvidenceUploadRejectedException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException;
+
+
+    /**
+     * Writes one chunk of an upload at the given offset.
+     * Chunks may be sent in any order and in parallel, and sending a chunk again overwrites it.
+     *
+     * @param uploadId the ID of the upload.
+     * @param offset the position of the first byte of the chunk in the file.
+     * @param content the bytes of the chunk.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} with the bytes received so far.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user, or it is being completed.
+     * @throws EvidenceUploadRejectedException if the chunk goes past the end of the file.
+     * @throws IOException if the chunk cannot be read or written.
+     */
+    EvidenceUploadDTO writeChunk(String uploadId, long offset, InputStream content, String token) throws EvidenceUploadNotFoundException, EvidenceUploadRejectedException, IOException;
+
+
+    /**
+     * Retrieves the state of an upload, so that an interrupted upload can resume with the missing ranges.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} of the upload.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user.
+     */
+    EvidenceUploadDTO getUpload(String uploadId, String token) throws EvidenceUploadNotFoundException;
+
+
+    /**
+     * Completes an upload once every byte is received, storing the file and saving its evidence.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user.
+     * @throws EvidenceUploadIncompleteException if some bytes of the file are still missing or being written.
+     * @throws EvidenceUploadRejectedException if the content doesn't match the announced hash.
+     * @throws ChecklistNotFoundException if the checklist was deleted during the upload.
+     * @throws SecurityComplianceNotFoundException if the security compliance was deleted during the upload.
+     * @throws IOException if the file cannot be stored.
+     */
+    EvidenceDTO completeUpload(String uploadId, String token) throws EvidenceUploadNotFoundException, EvidenceUploadIncompleteException, EvidenceUploadRejectedException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException;
+
+
+    /**
+     * Cancels an upload and deletes the received bytes.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user.
+     */
+    void cancelUpload(String uploadId, String token) throws EvidenceUploadNotFoundException;
+}
@@ -0,0 +1,44 @@
+package com.iscp.backend.services;
+
+import com.iscp.backend.dto.ExportJobDTO;
+import com.iscp.backend.dto.ExportJobRequestDTO;
+import com.iscp.backend.exceptions.ExportJobNotFoundException;
+import com.iscp.backend.exceptions.ExportJobNotReadyException;
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
+import org.springframework.core.io.Resource;
+
+/**
+ * Service Interface for running exports in the background.
+ */
+public interface ExportJobService {
+
+    /**
+     * Submits an export job, or joins the pending or completed job of an identical export.
+     *
+     * @param request the entity, format and filter of the export.
+     * @return the {@link ExportJobDTO} of the job producing the export.
+     * @throws UnsupportedExportFormatException if the requested format is unknown.
+     */
+    ExportJobDTO submitExportJob(ExportJobRequestDTO request) throws UnsupportedExportFormatException;
+
+
+    /**
+     * Retrieves the state of an export job.
+     *
+     * @param jobId the ID of the export job.
+     * @return the {@link ExportJobDTO} of the job.
+     * @throws ExportJobNotFoundException if no job with the given ID is visible to the current user.
+     */
+    ExportJobDTO getExportJob(String jobId) throws ExportJobNotFoundException;
+
+
+    /**
+     * Retrieves the file produced by a completed export job.
+     *
+     * @param jobId the ID of the export job.
+     * @return a {@link Resource} representing the exported file.
+     * @throws ExportJobNotFoundException if no job with the given ID is visible to the current user.
+     * @throws ExportJobNotReadyException if the job has not completed.
+     */
+    Resource getExportFile(String jobId) throws ExportJobNotFoundException, ExportJobNotReadyException;
+}
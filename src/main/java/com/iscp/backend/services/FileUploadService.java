@@ -1,19 +1,34 @@
 package com.iscp.backend.services;
 
 
-import com.iscp.backend.dto.ChecklistCreateDTO;
-import com.iscp.backend.dto.ControlCategoryCreateDTO;
-import com.iscp.backend.dto.ControlCreateDTO;
+import com.iscp.backend.dto.CsvUploadResponse;
+import com.iscp.backend.dto.MasterUploadEntries;
+import com.iscp.backend.dto.MultiEntityUploadResponse;
+import com.iscp.backend.exceptions.ServiceException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStream;
 
 public interface FileUploadService {
-    //FUNCTION TO CREATE CONTROL CATEGORY ENTITY DTO FROM EXCEL CONTENT
-    List<ControlCategoryCreateDTO> parseControlCategoryEntries(MultipartFile file) throws IOException;
+    //FUNCTION TO CREATE CONTROL CATEGORY, CONTROL AND CHECKLIST ENTITY DTOS FROM EXCEL CONTENT IN A SINGLE PASS, COLLECTING THE ERRORS OF INVALID ROWS
+    MasterUploadEntries parseMasterUpload(MultipartFile file) throws IOException;
 
-    List<ControlCreateDTO> parseControlEntries(MultipartFile file) throws IOException;
+    //FUNCTION TO DIFF THE PARSED CONTROL CATEGORIES, CONTROLS AND CHECKLISTS AGAINST THE CURRENT DATA, AND WHEN APPLYING UPSERT THE CHANGED ROWS IN ONE TRANSACTION
+    MultiEntityUploadResponse importMasterUpload(MasterUploadEntries entries, boolean apply) throws ServiceException;
 
-    List<ChecklistCreateDTO> parseChecklistEntries(MultipartFile file) throws IOException;
+    //FUNCTION TO WRITE A COPY OF THE UPLOADED WORKBOOK WITH THE ERRORS OF EACH ROW
+    void writeMasterErrorReport(MultipartFile file, OutputStream outputStream) throws IOException;
+
+    //FUNCTION TO STREAM A CONTROL CSV FILE INTO THE BULK UPSERT IN BATCHES, WRITING ONLY A FULLY VALID FILE UNLESS VALID ROWS SHOULD BE COMMITTED ANYWAY
+    CsvUploadResponse importControlCSV(MultipartFile file, boolean commitValid) throws IOException, ServiceException;
+
+    //FUNCTION TO STREAM A CHECKLIST CSV FILE INTO THE BULK UPSERT IN BATCHES, WRITING ONLY A FULLY VALID FILE UNLESS VALID ROWS SHOULD BE COMMITTED ANYWAY
+    CsvUploadResponse importChecklistCSV(MultipartFile file, boolean commitValid) throws IOException, ServiceException;
+
+    //FUNCTION TO WRITE AN UPLOADED CONTROL CSV FILE AS A WORKBOOK WITH THE ERRORS OF EACH ROW
+    void writeControlCSVErrorReport(MultipartFile file, OutputStream outputStream) throws IOException;
+
+    //FUNCTION TO WRITE AN UPLOADED CHECKLIST CSV FILE AS A WORKBOOK WITH THE ERRORS OF EACH ROW
+    void writeChecklistCSVErrorReport(MultipartFile file, OutputStream outputStream) throws IOException;
 }
@@ -1,11 +1,13 @@
 package com.iscp.backend.services;
 
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSheet;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.FrameworkCategoryNotFoundException;
 import com.iscp.backend.exceptions.FrameworkNotFoundException;
-import org.springframework.core.io.ByteArrayResource;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 
@@ -25,5 +27,7 @@ public interface FrameworkService {
 
     List<FrameworkDTO> addEditFramework(List<FrameworkCreateDTO> frameworkCreateDTOList) throws FrameworkCategoryNotFoundException, FrameworkNotFoundException;
 
-    ByteArrayResource exportExcelFramework(FrameworkFilterDTO filter) throws IOException;
+    void exportExcelFramework(FrameworkFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
+
+    ExportSheet getExportSheet() throws IOException;
 }
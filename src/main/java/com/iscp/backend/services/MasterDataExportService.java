@@ -0,0 +1,18 @@
+package com.iscp.backend.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Service Interface for exporting all master data in a single workbook.
+ */
+public interface MasterDataExportService {
+
+    /**
+     * Exports frameworks, controls, checklists, roles and users to one Excel, with one sheet per entity.
+     *
+     * @param outputStream the stream the Excel is written to.
+     * @throws IOException if an error occurs during export.
+     */
+    void exportMasterData(OutputStream outputStream) throws IOException;
+}
@@ -1,5 +1,7 @@
 package com.iscp.backend.services;
 
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSheet;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.PermissionNotFoundException;
 import com.iscp.backend.exceptions.RoleAlreadyExistException;
@@ -7,9 +9,9 @@ import com.iscp.backend.exceptions.RoleNotFoundException;
 import com.iscp.backend.models.Enum;
 import com.iscp.backend.models.Permission;
 import com.iscp.backend.models.Role;
-import org.springframework.core.io.ByteArrayResource;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -81,8 +83,18 @@ public interface RoleService {
      * Exports role records to an Excel.
      *
      * @param filter RoleFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ByteArrayResource containing the Excel file data.
+     * @param format the format to export in.
+     * @param outputStream the stream the export is written to.
      * @throws IOException if an error occurs during export.
      */
-    ByteArrayResource exportExcelRole(RoleFilterDTO filter) throws IOException;
+    void exportExcelRole(RoleFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
+
+
+    /**
+     * Builds the sheet of all roles for the master data export.
+     *
+     * @return the {@link ExportSheet} with the spooled rows of all roles, which the caller closes.
+     * @throws IOException if the roles cannot be read.
+     */
+    ExportSheet getExportSheet() throws IOException;
 }
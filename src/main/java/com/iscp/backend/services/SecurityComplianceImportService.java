@@ -0,0 +1,24 @@
+package com.iscp.backend.services;
+
+import com.iscp.backend.dto.ImportResultDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Service Interface for importing Security Compliance schedules from files.
+ */
+public interface SecurityComplianceImportService {
+
+    /**
+     * Imports security compliance schedules from an Excel or CSV file, one row per framework and control with
+     * its checklists, departments, periodicity and event dates.
+     * Rows are streamed and created in batches, each in its own transaction, so invalid rows and failed batches
+     * are reported without stopping the import.
+     *
+     * @param file the .xlsx or .csv file to import.
+     * @return an {@link ImportResultDTO} with the number of rows imported and the errors of the others.
+     * @throws IOException if the file cannot be read.
+     */
+    ImportResultDTO importSecurityCompliance(MultipartFile file) throws IOException;
+}
@@ -1,10 +1,11 @@
 package com.iscp.backend.services;
 
+import com.iscp.backend.components.ExportFormat;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
-import org.springframework.core.io.ByteArrayResource;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -23,17 +24,20 @@ public interface SecurityComplianceService {
      * @throws DepartmentNotFoundException if any of the specified department does not exist.
      * @throws ControlNotFoundException if the specified control does not exist.
      * @throws PeriodicityUpdateDeniedException if the periodicity update is denied
+     * @throws SecurityComplianceAlreadyExistsException if the same compliance is added concurrently by another request.
      */
-    List<SecurityComplianceDTO> addEditSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws SecurityComplianceNotFoundException, FrameworkNotFoundException, ControlNotFoundException, ChecklistNotFoundException, DepartmentNotFoundException, PeriodicityUpdateDeniedException;
+    List<SecurityComplianceDTO> addEditSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws SecurityComplianceNotFoundException, FrameworkNotFoundException, ControlNotFoundException, ChecklistNotFoundException, DepartmentNotFoundException, PeriodicityUpdateDeniedException, SecurityComplianceAlreadyExistsException;
 
 
     /**
      * Add a list of security compliance based on the provided list of security compliance DTO.
+     * Compliance that is already active for the same framework, control, checklist and periodicity is skipped.
      *
      * @param securityComplianceCreateDTOList a list of SecurityComplianceCreateDTO containing security compliance details to be added.
      * @return a list of {@link SecurityComplianceDTO} containing added security compliance.
+     * @throws SecurityComplianceAlreadyExistsException if the same compliance is added concurrently by another request.
      */
-    List<SecurityComplianceDTO> addSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws FrameworkNotFoundException, ControlNotFoundException, ChecklistNotFoundException, DepartmentNotFoundException;
+    List<SecurityComplianceDTO> addSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws FrameworkNotFoundException, ControlNotFoundException, ChecklistNotFoundException, DepartmentNotFoundException, SecurityComplianceAlreadyExistsException;
 
 
     /**
@@ -44,8 +48,9 @@ public interface SecurityComplianceService {
      * @throws SecurityComplianceNotFoundException if a security ID is not found in the repository.
      * @throws FrameworkNotFoundException if the specified framework does not exist.
      * @throws PeriodicityUpdateDeniedException if the periodicity update is denied
+     * @throws SecurityComplianceAlreadyExistsException if an updated or added record takes the period of another active compliance.
      */
-    List<SecurityComplianceDTO> editSecurityCompliance(List<SecurityComplianceEditDTO> securityComplianceEditDTOList) throws SecurityComplianceNotFoundException, ChecklistNotFoundException, DepartmentNotFoundException, FrameworkNotFoundException, PeriodicityUpdateDeniedException;
+    List<SecurityComplianceDTO> editSecurityCompliance(List<SecurityComplianceEditDTO> securityComplianceEditDTOList) throws SecurityComplianceNotFoundException, ChecklistNotFoundException, DepartmentNotFoundException, FrameworkNotFoundException, PeriodicityUpdateDeniedException, SecurityComplianceAlreadyExistsException;
 
 
     /**
@@ -61,10 +66,11 @@ public interface SecurityComplianceService {
      * Exports security compliance to an Excel.
      *
      * @param filter SecurityComplianceFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ByteArrayResource containing the Excel file data.
+     * @param format the format to export in.
+     * @param outputStream the stream the export is written to.
      * @throws IOException if an error occurs during export.
      */
-    ByteArrayResource exportExcelSecurityCompliance(SecurityComplianceFilterDTO filter) throws IOException;
+    void exportExcelSecurityCompliance(SecurityComplianceFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
 
 
     /**
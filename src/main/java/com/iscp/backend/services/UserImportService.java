@@ -0,0 +1,25 @@
+package com.iscp.backend.services;
+
+import com.iscp.backend.dto.ImportResultDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Service Interface for provisioning Users in bulk from files.
+ */
+public interface UserImportService {
+
+    /**
+     * Imports users from an Excel, CSV or JSON file.
+     * Excel and CSV rows hold the name, EmpCode, EmailId, departments, roles and status of a user, a JSON file holds
+     * an array of the same objects as the add-edit endpoint.
+     * Users are streamed and created in batches, each in its own transaction, so invalid rows and failed batches are
+     * reported without stopping the import.
+     *
+     * @param file the .xlsx, .csv or .json file to import.
+     * @return an {@link ImportResultDTO} with the number of users imported and the errors of the others.
+     * @throws IOException if the file cannot be read.
+     */
+    ImportResultDTO importUsers(MultipartFile file) throws IOException;
+}
@@ -1,10 +1,12 @@
 package com.iscp.backend.services;
 
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSheet;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
-import org.springframework.core.io.ByteArrayResource;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -33,6 +35,32 @@ public interface UsersService{
     UsersDTO addUser(CreateUsersDTO createUsersDTO) throws DepartmentNotFoundException, RoleNotFoundException, UserEmailAlreadyExistsException, UserEmpCodeAlreadyExistsException;
 
 
+    /**
+     * Add a list of users at once, checking emails and EmpCodes with one IN query each and inserting the users
+     * and their department and role links in JDBC batches.
+     *
+     * @param createUsersDTOList a list of CreateUsersDTO containing user details to be added.
+     * @return a list of {@link UsersDTO} containing added users.
+     * @throws DepartmentNotFoundException if any of the specified department does not exist.
+     * @throws RoleNotFoundException if any of the specified role does not exist.
+     * @throws UserEmailAlreadyExistsException if any of the EmailIds already exists.
+     * @throws UserEmpCodeAlreadyExistsException if any of the EmpCodes already exists.
+     */
+    List<UsersDTO> addUsers(List<CreateUsersDTO> createUsersDTOList) throws DepartmentNotFoundException, RoleNotFoundException, UserEmailAlreadyExistsException, UserEmpCodeAlreadyExistsException;
+
+
+    /**
+     * Add a list of users whose emails and EmpCodes the caller already checked, inserting the users
+     * and their department and role links in JDBC batches.
+     *
+     * @param createUsersDTOList a list of CreateUsersDTO containing user details to be added.
+     * @return a list of {@link UsersDTO} containing added users.
+     * @throws DepartmentNotFoundException if any of the specified department does not exist.
+     * @throws RoleNotFoundException if any of the specified role does not exist.
+     */
+    List<UsersDTO> importUsers(List<CreateUsersDTO> createUsersDTOList) throws DepartmentNotFoundException, RoleNotFoundException;
+
+
     /**
      * Update a list of users based on the provided list of UsersDTO.
      *
@@ -74,8 +102,18 @@ public interface UsersService{
      * Exports user records to an Excel.
      *
      * @param filter UserFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ByteArrayResource containing the Excel file data.
+     * @param format the format to export in.
+     * @param outputStream the stream the export is written to.
      * @throws IOException if an error occurs during export.
      */
-    ByteArrayResource exportExcelUsers(UserFilterDTO filter) throws IOException;
+    void exportExcelUsers(UserFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException;
+
+
+    /**
+     * Builds the sheet of all users for the master data export.
+     *
+     * @return the {@link ExportSheet} with the spooled rows of all users, which the caller closes.
+     * @throws IOException if the users cannot be read.
+     */
+    ExportSheet getExportSheet() throws IOException;
 }
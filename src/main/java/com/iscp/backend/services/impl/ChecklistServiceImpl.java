@@ -1,33 +1,39 @@
 package com.iscp.backend.services.impl;
 
 
-import com.iscp.backend.components.ExportExcel;
+import com.iscp.backend.components.Batches;
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSchema;
+import com.iscp.backend.components.ExportSheet;
+import com.iscp.backend.components.ExportWriter;
+import com.iscp.backend.components.ExportWriterFactory;
+import com.iscp.backend.components.ExportCursor;
 import com.iscp.backend.components.Pagination;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.ChecklistAlreadyExistsException;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
 import com.iscp.backend.exceptions.ControlNotFoundException;
+import com.iscp.backend.exceptions.ServiceException;
 import com.iscp.backend.mapper.ChecklistMapper;
 import com.iscp.backend.models.Checklist;
 import com.iscp.backend.models.Control;
+import com.iscp.backend.models.Enum;
 import com.iscp.backend.repositories.ChecklistRepository;
 import com.iscp.backend.repositories.ControlRepository;
 import com.iscp.backend.services.ChecklistService;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -38,13 +44,24 @@ import java.util.stream.Collectors;
 public class ChecklistServiceImpl implements ChecklistService {
 
 
+    //Columns of the exports, in order, and their headers
+    private static final List<String> EXPORT_FIELDS = List.of("controlChecklist", "description", "status");
+
+    private static final Map<String, String> EXPORT_HEADERS = Map.of(
+            "controlChecklist", "COMPLIANCE CHECKLIST",
+            "description", "DESCRIPTION",
+            "status", "STATUS"
+    );
+
     private final ChecklistRepository checklistRepository;
 
     private final ChecklistMapper checklistMapper;
 
     private final ControlRepository controlRepository;
 
-    private final ExportExcel exportExcel;
+    private final ExportWriterFactory exportWriterFactory;
+
+    private final ExportCursor exportCursor;
 
 
     //FUNCTION TO GET  CHECKLIST DETAILS
@@ -76,7 +93,7 @@ public class ChecklistServiceImpl implements ChecklistService {
             log.info("No checklists found");
             return List.of();
         }
-        log.info("Fetched checklists :{}",checklists);
+        log.info("Fetched {} checklists",checklists.size());
 
         // Remove duplicates by name using Stream API
         List<Checklist> uniqueChecklists = checklists.stream()
@@ -124,6 +141,125 @@ public class ChecklistServiceImpl implements ChecklistService {
         return  checklistDTOList;
     }
 
+    //FUNCTION TO INSERT OR UPDATE CHECKLISTS IN BULK, MATCHING EXISTING ONES BY ID OR ELSE BY NAME WITHIN THEIR CONTROL
+    @Override
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<UpsertResultDTO> upsertChecklists(List<ChecklistCreateDTO> checklistCreateDTOList) throws ChecklistNotFoundException, ControlNotFoundException {
+        log.debug("Attempting to upsert {} checklists", checklistCreateDTOList.size());
+
+        // Preload every existing checklist and control the rows refer to, in a few queries
+        Set<String> ids = new HashSet<>();
+        Set<String> controlNames = new HashSet<>();
+        for (ChecklistCreateDTO dto : checklistCreateDTOList) {
+            if (dto.getChecklistId() != null && !dto.getChecklistId().isBlank()) {
+                ids.add(dto.getChecklistId());
+            }
+            controlNames.add(dto.getControlName());
+        }
+        Map<String, Checklist> checklistsById = new HashMap<>();
+        for (List<String> batch : Batches.partition(ids, Batches.IN_CLAUSE_SIZE)) {
+            checklistRepository.findWithControlByChecklistIdIn(batch).forEach(checklist -> checklistsById.put(checklist.getChecklistId(), checklist));
+        }
+        Map<String, Checklist> checklistsByKey = new HashMap<>();
+        Map<String, Control> controlsByName = new HashMap<>();
+        for (List<String> batch : Batches.partition(controlNames, Batches.IN_CLAUSE_SIZE)) {
+            checklistRepository.findWithControlByControlNameIn(batch).forEach(checklist -> checklistsByKey.put(checklistKey(checklist.getControl().getControlName(), checklist.getControlChecklist()), checklist));
+            controlRepository.findWithCategoryByControlNameIn(batch).forEach(control -> controlsByName.put(control.getControlName(), control));
+        }
+
+        // Work out the inserts and updates in memory
+        List<Checklist> rowChecklists = new ArrayList<>();
+        List<Enum.UpsertAction> rowActions = new ArrayList<>();
+        List<Checklist> insertedChecklists = new ArrayList<>();
+
+        for (ChecklistCreateDTO dto : checklistCreateDTOList) {
+            Control control = controlsByName.get(dto.getControlName());
+            if (control == null) {
+                log.error("Control not Found with name {}", dto.getControlName());
+                throw new ControlNotFoundException();
+            }
+
+            String id = dto.getChecklistId();
+            Checklist checklist;
+            Enum.UpsertAction action;
+
+            if (id != null && !id.isBlank()) {
+                checklist = checklistsById.get(id);
+                if (checklist == null) {
+                    log.error("Checklist not found with  id {}", id);
+                    throw new ChecklistNotFoundException();
+                }
+                action = applyChecklistChanges(checklist, dto, control);
+                checklistsByKey.put(checklistKey(control.getControlName(), checklist.getControlChecklist()), checklist);
+            }
+            else if ((checklist = checklistsByKey.get(checklistKey(dto.getControlName(), dto.getControlChecklist()))) != null) {
+                action = applyChecklistChanges(checklist, dto, control);
+            }
+            else {
+                checklist = Checklist.builder()
+                        .controlChecklist(dto.getControlChecklist())
+                        .description(dto.getDescription())
+                        .status(dto.getStatus() == null || dto.getStatus())
+                        .control(control)
+                        .creationTime(LocalDateTime.now())
+                        .build();
+                insertedChecklists.add(checklist);
+                checklistsByKey.put(checklistKey(control.getControlName(), checklist.getControlChecklist()), checklist);
+                action = Enum.UpsertAction.INSERTED;
+            }
+            rowChecklists.add(checklist);
+            rowActions.add(action);
+        }
+
+        // Insert the new checklists in JDBC batches, updates are flushed with the transaction
+        checklistRepository.saveAll(insertedChecklists);
+
+        List<UpsertResultDTO> results = new ArrayList<>();
+        for (int row = 0; row < rowChecklists.size(); row++) {
+            Checklist checklist = rowChecklists.get(row);
+            results.add(new UpsertResultDTO(row, checklist.getChecklistId(), checklist.getControlChecklist(), rowActions.get(row)));
+        }
+
+        log.info("Upserted {} checklists, {} inserted", results.size(), insertedChecklists.size());
+        return results;
+    }
+
+
+    //FUNCTION TO APPLY THE VALUES OF AN UPSERT ROW TO AN EXISTING CHECKLIST, BLANK VALUES LEAVE THE CURRENT ONES IN PLACE
+    private Enum.UpsertAction applyChecklistChanges(Checklist checklist, ChecklistCreateDTO dto, Control control) {
+        boolean changed = false;
+
+        if (!Objects.equals(checklist.getControlChecklist(), dto.getControlChecklist())) {
+            checklist.setControlChecklist(dto.getControlChecklist());
+            changed = true;
+        }
+        if (dto.getDescription() != null && !dto.getDescription().isBlank() && !dto.getDescription().equals(checklist.getDescription())) {
+            checklist.setDescription(dto.getDescription());
+            changed = true;
+        }
+        if (dto.getStatus() != null && !dto.getStatus().equals(checklist.getStatus())) {
+            checklist.setStatus(dto.getStatus());
+            changed = true;
+        }
+        if (!control.getControlId().equals(checklist.getControl().getControlId())) {
+            checklist.setControl(control);
+            changed = true;
+        }
+
+        if (!changed) {
+            return Enum.UpsertAction.UNCHANGED;
+        }
+        checklist.setCreationTime(LocalDateTime.now());
+        return Enum.UpsertAction.UPDATED;
+    }
+
+
+    //Checklist names are only unique within their control
+    private static String checklistKey(String controlName, String controlChecklist) {
+        return controlName + "\u0000" + controlChecklist;
+    }
+
+
     //FUNCTION TO ADD CHECKLIST
     @Override
     public ChecklistDTO addChecklist(ChecklistCreateDTO checklistCreateDTO) throws ChecklistAlreadyExistsException, ControlNotFoundException {
@@ -201,6 +337,12 @@ public class ChecklistServiceImpl implements ChecklistService {
             throw new ChecklistNotFoundException();
         }
 
+        // Reject the update if the checklist was modified after the client loaded it
+        if(checklistUpdateDTO.getVersion() != null && !checklistUpdateDTO.getVersion().equals(checklist.get().getVersion())) {
+            log.warn("Checklist {} was modified concurrently", checklistUpdateDTO.getChecklistId());
+            throw new ObjectOptimisticLockingFailureException(Checklist.class, checklistUpdateDTO.getChecklistId());
+        }
+
         Optional<Control> control = controlRepository.findByControlName(checklistUpdateDTO.getControlName());
         if(control.isEmpty())
         {
@@ -237,7 +379,7 @@ public class ChecklistServiceImpl implements ChecklistService {
     //FUNCTION TO GET ALL CHECKLIST ASSOCIATED TO LIST OF  CONTROL NAME
     @Override
     public List<ChecklistDTO> getChecklistFromControlList(List<String> controlName) throws ControlNotFoundException {
-        log.info("Attempting to get all the checklist by control name list {}",controlName);
+        log.debug("Attempting to get all the checklist by {} control names",controlName.size());
         for(String control: controlName)
         { Optional<Control> optionalControl = controlRepository.findByControlName(control);
             if(optionalControl.isEmpty())
@@ -258,15 +400,8 @@ public class ChecklistServiceImpl implements ChecklistService {
         Specification<Checklist> spec =  checklistFilter(filterDTO.getControl(),filterDTO.getChecklist(),filterDTO.getStatus());
 
 
-        String sortField = filterDTO.getSortField(); ;
-
-        if("controlName".equals(sortField))
-        {
-            sortField  = "control";
-        }
-
         //Pageable object for pagination and sorting
-        Pageable pageable = Pagination.createPageable(filterDTO.getPage(), filterDTO.getSize(), sortField,filterDTO.getSortOrder());
+        Pageable pageable = Pagination.createPageable(filterDTO.getPage(), filterDTO.getSize(), checklistSortField(filterDTO.getSortField()),filterDTO.getSortOrder());
 
         //Retrieve paginated list of users
         Page<Checklist> checklistPage = checklistRepository.findAll(spec,pageable);
@@ -278,6 +413,13 @@ public class ChecklistServiceImpl implements ChecklistService {
     }
 
 
+    //FUNCTION TO MAP SORT FIELD TO CHECKLIST ATTRIBUTE
+    private String checklistSortField(String sortField)
+    {
+        return "controlName".equals(sortField) ? "control" : sortField;
+    }
+
+
     //FUNCTION TO CREATE SPECIFICATION FOR SEARCH FUNCTIONALITY
     private Specification<Checklist> checklistFilter(List<String> controls,List<String> controlChecklist, Boolean status)
     {
@@ -290,12 +432,12 @@ public class ChecklistServiceImpl implements ChecklistService {
             if(controlChecklist != null && !controlChecklist.isEmpty())
             {
                 predicates.add(root.get("controlChecklist").in(controlChecklist));
-                log.info("Added predicate for check list: {}",controlChecklist);
+                log.debug("Added predicate for check list: {}",controlChecklist);
             }
             if(status!=null)
             {
                 predicates.add(criteriaBuilder.equal(root.get("status"),status));
-                log.info("Added predicate for status: {}", status);
+                log.debug("Added predicate for status: {}", status);
             }
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
@@ -304,83 +446,36 @@ public class ChecklistServiceImpl implements ChecklistService {
 
     //  FUNCTION TO EXPORT CHECKLIST
     @Override
-    public ByteArrayResource exportExcelChecklist(ChecklistFilterDTO filter) throws IOException {
+    public void exportExcelChecklist(ChecklistFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
         log.info("Starting export of checklist data to Excel");
 
-        // Retrieve all checklist DTOs
-        PaginatedResponse<ChecklistDTO> paginatedResponse= getFilterChecklistPaginated(filter);
-        List<ChecklistDTO> checklistList = paginatedResponse.getContent();
-        log.debug("Fetched {} checklist records for export", checklistList.size());
-
-        // Output stream and configuration for Excel export
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        List<String> fieldsToInclude = List.of(
-                "controlChecklist",
-                "description",
-                "status"
-        );
-        Map<String, String> customHeaders = new HashMap<>();
-        customHeaders.put("controlChecklist", "COMPLIANCE CHECKLIST");
-        customHeaders.put("description", "DESCRIPTION");
-        customHeaders.put("status", "STATUS");
-
-        // Use the existing export method
-        exportExcel.exportToExcel(outputStream, checklistList, "checklist", fieldsToInclude, customHeaders);
-        log.info("Successfully exported checklist data to Excel");
-
-        // Convert Output Stream to ByteArrayResource
-        byte[] excelContent = outputStream.toByteArray();
-        return new ByteArrayResource(excelContent);
-    }
-
-
-    //FUNCTION TO PARSE CSV FILE TO DTO
-    public List<ChecklistCreateDTO> parseCSVFile(MultipartFile file) throws IOException {
-        List<ChecklistCreateDTO> checklistCreateDTOS = new ArrayList<>();
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
-            boolean isFirstLine = true;
-            while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue; // Skip header row
-                }
-                String[] values = line.split(",");
-                ChecklistCreateDTO dto = new ChecklistCreateDTO();
-
-                // Handle the controlId field
-                String checklistId = values[0].trim();
-                if (checklistId.isEmpty() || checklistId.equals("\"\"")) {
-                    dto.setChecklistId(null);
-                } else {
-                    dto.setChecklistId(checklistId.replaceAll("^\"|\"$", ""));
-                }
+        // Filter and order of the exported checklist, the paging of the filter is ignored
+        Specification<Checklist> spec = checklistFilter(filter.getControl(), filter.getChecklist(), filter.getStatus());
+        Sort sort = Pagination.createSort(checklistSortField(filter.getSortField()), filter.getSortOrder());
 
-                dto.setControlChecklist(removeQuotes(values[1].trim()));
-                dto.setDescription(removeQuotes(values[2].trim()));
-                dto.setStatus(Boolean.parseBoolean(removeQuotes(values[3].trim())));
 
-
-                // Handle the controlCategoryName field specifically
-                String controlName = removeQuotes(values[4].trim());
-                if (controlName.endsWith("\"")) {
-                    controlName = controlName.substring(0, controlName.length() - 1);
-                }
-                dto.setControlName(controlName);
-                checklistCreateDTOS.add(dto);
-            }
+        //Stream the full filtered result into the export, chunk by chunk
+        try (ExportWriter<ChecklistDTO> writer = exportWriterFactory.open(format, outputStream, ChecklistDTO.class, "checklist", EXPORT_FIELDS, EXPORT_HEADERS)) {
+            long count = exportCursor.forEachChunk(checklistRepository, spec, sort, chunk -> writer.writeRows(checklistMapper.toChecklistDTOs(chunk)));
+            writer.finish();
+            log.debug("Exported {} checklist records", count);
         }
-
-        return checklistCreateDTOS;
+        log.info("Successfully exported checklist data to Excel");
     }
 
 
-    //FUNCTION TO REMOVE QUOTATION MARKS
-    private String removeQuotes(String value) {
-        if (value.startsWith("\"") && value.endsWith("\"")) {
-            return value.substring(1, value.length() - 1);
-        }
-        return value;
+    //FUNCTION TO BUILD THE CHECKLIST SHEET OF THE MASTER DATA EXPORT
+    @Override
+    public ExportSheet getExportSheet() throws IOException {
+        ExportSchema<ChecklistDTO> schema = ExportSchema.of(ChecklistDTO.class, EXPORT_FIELDS, EXPORT_HEADERS);
+
+        //Encode and spool all checklist into rows, ordered by name
+        return ExportSheet.spool("checklist", schema.getHeaders(), sheet ->
+                exportCursor.forEachChunk(checklistRepository, checklistFilter(null, null, null), Sort.by("controlChecklist"), chunk -> {
+                    for (ChecklistDTO checklistDTO : checklistMapper.toChecklistDTOs(chunk)) {
+                        sheet.addRow(schema.format(checklistDTO));
+                    }
+                }));
     }
+
 }
@@ -1,16 +1,20 @@
 package com.iscp.backend.services.impl;
 
+import com.iscp.backend.components.Batches;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
 import com.iscp.backend.exceptions.ControlCategoryAlreadyExistsException;
 import com.iscp.backend.exceptions.ControlCategoryNotFoundException;
 import com.iscp.backend.exceptions.ControlNotFoundException;
+import com.iscp.backend.exceptions.ServiceException;
 import com.iscp.backend.mapper.ControlCategoryMapper;
 import com.iscp.backend.models.Checklist;
 import com.iscp.backend.models.Control;
 import com.iscp.backend.models.ControlCategory;
+import com.iscp.backend.models.Enum;
 import com.iscp.backend.repositories.ControlCategoryRepository;
 import com.iscp.backend.services.ControlCategoryService;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Sort;
@@ -20,9 +24,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -49,7 +51,7 @@ public class ControlCategoryServiceImpl implements ControlCategoryService {
             log.info("No control categories found");
             return List.of();
         }
-        log.info("Fetched control categories :{}",controlCategories);
+        log.info("Fetched {} control categories",controlCategories.size());
         return  controlCategoryMapper.toControlCategoryDTOs(controlCategories);
     }
 
@@ -165,6 +167,82 @@ public class ControlCategoryServiceImpl implements ControlCategoryService {
         return  controlCategoryDTOList;
     }
 
+    //FUNCTION TO INSERT OR UPDATE CONTROL CATEGORIES IN BULK, MATCHING EXISTING ONES BY ID OR ELSE BY NAME
+    @Override
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<UpsertResultDTO> upsertControlCategories(List<ControlCategoryCreateDTO> controlCategoryCreateDTOList) throws ControlCategoryNotFoundException {
+        log.debug("Attempting to upsert {} control categories", controlCategoryCreateDTOList.size());
+
+        // Preload every existing category the rows refer to, in a few queries
+        Set<String> ids = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (ControlCategoryCreateDTO dto : controlCategoryCreateDTOList) {
+            if (dto.getControlCategoryId() != null && !dto.getControlCategoryId().isBlank()) {
+                ids.add(dto.getControlCategoryId());
+            }
+            names.add(dto.getControlCategoryName());
+        }
+        Map<String, ControlCategory> categoriesById = new HashMap<>();
+        for (List<String> batch : Batches.partition(ids, Batches.IN_CLAUSE_SIZE)) {
+            controlCategoryRepository.findAllById(batch).forEach(category -> categoriesById.put(category.getControlCategoryId(), category));
+        }
+        Map<String, ControlCategory> categoriesByName = new HashMap<>();
+        for (List<String> batch : Batches.partition(names, Batches.IN_CLAUSE_SIZE)) {
+            controlCategoryRepository.findByControlCategoryNameIn(batch).forEach(category -> categoriesByName.put(category.getControlCategoryName(), category));
+        }
+
+        // Work out the inserts and updates in memory
+        List<ControlCategory> rowCategories = new ArrayList<>();
+        List<Enum.UpsertAction> rowActions = new ArrayList<>();
+        List<ControlCategory> insertedCategories = new ArrayList<>();
+
+        for (ControlCategoryCreateDTO dto : controlCategoryCreateDTOList) {
+            String id = dto.getControlCategoryId();
+            ControlCategory category;
+            Enum.UpsertAction action;
+
+            if (id != null && !id.isBlank()) {
+                category = categoriesById.get(id);
+                if (category == null) {
+                    log.error("Control category not found with id {}", id);
+                    throw new ControlCategoryNotFoundException();
+                }
+                action = Enum.UpsertAction.UNCHANGED;
+                if (!category.getControlCategoryName().equals(dto.getControlCategoryName())) {
+                    category.setControlCategoryName(dto.getControlCategoryName());
+                    categoriesByName.put(category.getControlCategoryName(), category);
+                    action = Enum.UpsertAction.UPDATED;
+                }
+            }
+            else if ((category = categoriesByName.get(dto.getControlCategoryName())) != null) {
+                action = Enum.UpsertAction.UNCHANGED;
+            }
+            else {
+                category = ControlCategory.builder()
+                        .controlCategoryName(dto.getControlCategoryName())
+                        .build();
+                insertedCategories.add(category);
+                categoriesByName.put(category.getControlCategoryName(), category);
+                action = Enum.UpsertAction.INSERTED;
+            }
+            rowCategories.add(category);
+            rowActions.add(action);
+        }
+
+        // Insert the new categories in JDBC batches, updates are flushed with the transaction
+        controlCategoryRepository.saveAll(insertedCategories);
+
+        List<UpsertResultDTO> results = new ArrayList<>();
+        for (int row = 0; row < rowCategories.size(); row++) {
+            ControlCategory category = rowCategories.get(row);
+            results.add(new UpsertResultDTO(row, category.getControlCategoryId(), category.getControlCategoryName(), rowActions.get(row)));
+        }
+
+        log.info("Upserted {} control categories, {} inserted", results.size(), insertedCategories.size());
+        return results;
+    }
+
+
     @Override
     public List<ControlCategoryCreateDTO> parseCSVFile(MultipartFile file) throws IOException {
         List<ControlCategoryCreateDTO> controlCategoryCreateDTOS = new ArrayList<>();
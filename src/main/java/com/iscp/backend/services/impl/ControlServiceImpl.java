@@ -1,35 +1,41 @@
 package com.iscp.backend.services.impl;
 
 
-import com.iscp.backend.components.ExportExcel;
+import com.iscp.backend.components.Batches;
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSchema;
+import com.iscp.backend.components.ExportSheet;
+import com.iscp.backend.components.ExportWriter;
+import com.iscp.backend.components.ExportWriterFactory;
+import com.iscp.backend.components.ExportCursor;
 import com.iscp.backend.components.Pagination;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.ControlAlreadyExistsException;
 import com.iscp.backend.exceptions.ControlCategoryNotFoundException;
 import com.iscp.backend.exceptions.ControlNotFoundException;
+import com.iscp.backend.exceptions.ServiceException;
 import com.iscp.backend.models.Control;
 import com.iscp.backend.models.ControlCategory;
+import com.iscp.backend.models.Enum;
 import com.iscp.backend.mapper.ControlMapper;
 import com.iscp.backend.models.SecurityCompliance;
 import com.iscp.backend.repositories.ControlCategoryRepository;
 import com.iscp.backend.repositories.ControlRepository;
 import com.iscp.backend.services.ControlService;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -39,13 +45,25 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ControlServiceImpl implements ControlService {
 
+    //Columns of the exports, in order, and their headers
+    private static final List<String> EXPORT_FIELDS = List.of("controlCategory", "controlName", "description", "status");
+
+    private static final Map<String, String> EXPORT_HEADERS = Map.of(
+            "controlCategory", "CONTROL CATEGORY",
+            "controlName", "CONTROL",
+            "description", "DESCRIPTION",
+            "status", "STATUS"
+    );
+
     private final ControlRepository controlRepository;
 
     private final ControlCategoryRepository controlCategoryRepository;
 
     private final ControlMapper controlMapper;
 
-    private final ExportExcel exportExcel;
+    private final ExportWriterFactory exportWriterFactory;
+
+    private final ExportCursor exportCursor;
 
     //FUNCTION TO GET ALL CONTROLS
     @Override
@@ -61,7 +79,7 @@ public class ControlServiceImpl implements ControlService {
             log.info("No controls found");
             return List.of();
         }
-        log.info("Fetched controls :{}",controls);
+        log.info("Fetched {} controls",controls.size());
         return  controlMapper.toControlDTOs(controls);
     }
 
@@ -102,6 +120,123 @@ public class ControlServiceImpl implements ControlService {
         return  controlDTOList;
     }
 
+    //FUNCTION TO INSERT OR UPDATE CONTROLS IN BULK, MATCHING EXISTING ONES BY ID OR ELSE BY NAME
+    @Override
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<UpsertResultDTO> upsertControls(List<ControlCreateDTO> controlCreateDTOList) throws ControlCategoryNotFoundException, ControlNotFoundException {
+        log.debug("Attempting to upsert {} controls", controlCreateDTOList.size());
+
+        // Preload every existing control and category the rows refer to, in a few queries
+        Set<String> ids = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        Set<String> categoryNames = new HashSet<>();
+        for (ControlCreateDTO dto : controlCreateDTOList) {
+            if (dto.getControlId() != null && !dto.getControlId().isBlank()) {
+                ids.add(dto.getControlId());
+            }
+            names.add(dto.getControlName());
+            categoryNames.add(dto.getControlCategoryName());
+        }
+        Map<String, Control> controlsById = new HashMap<>();
+        for (List<String> batch : Batches.partition(ids, Batches.IN_CLAUSE_SIZE)) {
+            controlRepository.findWithCategoryByControlIdIn(batch).forEach(control -> controlsById.put(control.getControlId(), control));
+        }
+        Map<String, Control> controlsByName = new HashMap<>();
+        for (List<String> batch : Batches.partition(names, Batches.IN_CLAUSE_SIZE)) {
+            controlRepository.findWithCategoryByControlNameIn(batch).forEach(control -> controlsByName.put(control.getControlName(), control));
+        }
+        Map<String, ControlCategory> categoriesByName = new HashMap<>();
+        for (List<String> batch : Batches.partition(categoryNames, Batches.IN_CLAUSE_SIZE)) {
+            controlCategoryRepository.findByControlCategoryNameIn(batch).forEach(category -> categoriesByName.put(category.getControlCategoryName(), category));
+        }
+
+        // Work out the inserts and updates in memory
+        List<Control> rowControls = new ArrayList<>();
+        List<Enum.UpsertAction> rowActions = new ArrayList<>();
+        List<Control> insertedControls = new ArrayList<>();
+
+        for (ControlCreateDTO dto : controlCreateDTOList) {
+            ControlCategory category = categoriesByName.get(dto.getControlCategoryName());
+            if (category == null) {
+                log.warn("Control Category with name {}  not found", dto.getControlCategoryName());
+                throw new ControlCategoryNotFoundException();
+            }
+
+            String id = dto.getControlId();
+            Control control;
+            Enum.UpsertAction action;
+
+            if (id != null && !id.isBlank()) {
+                control = controlsById.get(id);
+                if (control == null) {
+                    log.error("Control not found with id {}", id);
+                    throw new ControlNotFoundException();
+                }
+                action = applyControlChanges(control, dto, category);
+                controlsByName.put(control.getControlName(), control);
+            }
+            else if ((control = controlsByName.get(dto.getControlName())) != null) {
+                action = applyControlChanges(control, dto, category);
+            }
+            else {
+                control = Control.builder()
+                        .controlName(dto.getControlName())
+                        .description(dto.getDescription() == null ? "" : dto.getDescription())
+                        .status(dto.getStatus() == null || dto.getStatus())
+                        .controlCategory(category)
+                        .creationTime(LocalDateTime.now())
+                        .build();
+                insertedControls.add(control);
+                controlsByName.put(control.getControlName(), control);
+                action = Enum.UpsertAction.INSERTED;
+            }
+            rowControls.add(control);
+            rowActions.add(action);
+        }
+
+        // Insert the new controls in JDBC batches, updates are flushed with the transaction
+        controlRepository.saveAll(insertedControls);
+
+        List<UpsertResultDTO> results = new ArrayList<>();
+        for (int row = 0; row < rowControls.size(); row++) {
+            Control control = rowControls.get(row);
+            results.add(new UpsertResultDTO(row, control.getControlId(), control.getControlName(), rowActions.get(row)));
+        }
+
+        log.info("Upserted {} controls, {} inserted", results.size(), insertedControls.size());
+        return results;
+    }
+
+
+    //FUNCTION TO APPLY THE VALUES OF AN UPSERT ROW TO AN EXISTING CONTROL, BLANK VALUES LEAVE THE CURRENT ONES IN PLACE
+    private Enum.UpsertAction applyControlChanges(Control control, ControlCreateDTO dto, ControlCategory category) {
+        boolean changed = false;
+
+        if (!Objects.equals(control.getControlName(), dto.getControlName())) {
+            control.setControlName(dto.getControlName());
+            changed = true;
+        }
+        if (dto.getDescription() != null && !dto.getDescription().isBlank() && !dto.getDescription().equals(control.getDescription())) {
+            control.setDescription(dto.getDescription());
+            changed = true;
+        }
+        if (dto.getStatus() != null && !dto.getStatus().equals(control.getStatus())) {
+            control.setStatus(dto.getStatus());
+            changed = true;
+        }
+        if (!category.getControlCategoryId().equals(control.getControlCategory().getControlCategoryId())) {
+            control.setControlCategory(category);
+            changed = true;
+        }
+
+        if (!changed) {
+            return Enum.UpsertAction.UNCHANGED;
+        }
+        control.setCreationTime(LocalDateTime.now());
+        return Enum.UpsertAction.UPDATED;
+    }
+
+
     //FUNCTION TO ADD CONTROL
     @Override
     public ControlDTO addControl(ControlCreateDTO controlCreateDTO) throws ControlCategoryNotFoundException, ControlAlreadyExistsException {
@@ -171,6 +306,12 @@ public class ControlServiceImpl implements ControlService {
             throw new ControlNotFoundException();
         }
 
+        // Reject the update if the control was modified after the client loaded it
+        if(controlUpdateDTO.getVersion() != null && !controlUpdateDTO.getVersion().equals(control.get().getVersion())) {
+            log.warn("Control {} was modified concurrently", controlUpdateDTO.getControlId());
+            throw new ObjectOptimisticLockingFailureException(Control.class, controlUpdateDTO.getControlId());
+        }
+
         // Map controlUpdateDTO to control entity
         controlMapper.updateControlEntityFromDTO(controlUpdateDTO,control.get());
         return control.get();
@@ -192,7 +333,7 @@ public class ControlServiceImpl implements ControlService {
         }
 
         List<Control> controlList = controlRepository.findByControlCategory_ControlCategoryName(controlCategoryName,Sort.by(Sort.Direction.ASC, "controlName"));
-        log.info("Fetched controls using control category name:{}",controlList);
+        log.info("Fetched {} controls using control category name",controlList.size());
 
         if(controlList.isEmpty())
         {
@@ -269,17 +410,17 @@ public class ControlServiceImpl implements ControlService {
 
             if (control != null && !control.isEmpty()) {
                 predicates.add(root.get("controlName").in(control));
-                log.info("Added predicate for control: {}", control);
+                log.debug("Added predicate for control: {}", control);
             }
 
             if (controlCategory != null && !controlCategory.isEmpty()) {
                 predicates.add(root.get("controlCategory").get("controlCategoryName").in(controlCategory));
-                log.info("Added predicate for control category: {}", controlCategory);
+                log.debug("Added predicate for control category: {}", controlCategory);
             }
 
             if (status != null) {
                 predicates.add(criteriaBuilder.equal(root.get("status"), status));
-                log.info("Added predicate for status: {}", status);
+                log.debug("Added predicate for status: {}", status);
             }
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
@@ -287,87 +428,37 @@ public class ControlServiceImpl implements ControlService {
     }
 
     @Override
-    public ByteArrayResource exportExcelControl(ControlFilterDTO filter) throws IOException {
+    public void exportExcelControl(ControlFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
         log.info("Starting export of control data to Excel");
 
 
-        // Retrieve all control DTOs
-        PaginatedResponse<ControlDTO> paginatedResponse = getFilterControlPaginated(filter);
-        List<ControlDTO> controlList = paginatedResponse.getContent();
-        log.debug("Fetched {} control records for export", controlList.size());
-
-        // Output stream and configuration for Excel export
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        List<String> fieldsToInclude = List.of(
-                "controlCategory",
-                "controlName",
-                "description",
-                "status"
-        );
-        //Custom headers for Excel Columns.
-        Map<String, String> customHeaders = new HashMap<>();
-        customHeaders.put("controlCategory", "CONTROL CATEGORY");
-        customHeaders.put("controlName", "CONTROL");
-        customHeaders.put("description", "DESCRIPTION");
-        customHeaders.put("status", "STATUS");
-
-        //Call exportExcel to export data to excel.
-        exportExcel.exportToExcel(outputStream, controlList, "control", fieldsToInclude, customHeaders);
-        log.info("Successfully exported control data to Excel");
-
-        // Convert Output Stream to ByteArrayResource
-        byte[] excelContent = outputStream.toByteArray();
-        ByteArrayResource resource = new ByteArrayResource(excelContent);
-        return resource;
-    }
-
-
-    //FUNCTION TO PARSE CSV FILE TO DTO
-    public List<ControlCreateDTO> parseCSVFile(MultipartFile file) throws IOException {
-        List<ControlCreateDTO> controlCreateDTOs = new ArrayList<>();
+        // Filter and order of the exported controls, the paging of the filter is ignored
+        Specification<Control> spec = controlFilter(filter.getControlCategory(), filter.getControl(), filter.getStatus());
+        Sort sort = Pagination.createSort(filter.getSortField(), filter.getSortOrder());
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
-            boolean isFirstLine = true;
-            while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue; // Skip header row
-                }
-                String[] values = line.split(",");
-                ControlCreateDTO dto = new ControlCreateDTO();
-
-                // Handle the controlId field
-                String controlId = values[0].trim();
-                if (controlId.isEmpty() || controlId.equals("\"\"")) {
-                    dto.setControlId(null);
-                } else {
-                    dto.setControlId(controlId.replaceAll("^\"|\"$", ""));
-                }
 
-                dto.setControlName(removeQuotes(values[1].trim()));
-                dto.setDescription(removeQuotes(values[2].trim()));
-                dto.setStatus(Boolean.parseBoolean(removeQuotes(values[3].trim())));
-
-
-                // Handle the controlCategoryName field specifically
-                String categoryName = removeQuotes(values[4].trim());
-                if (categoryName.endsWith("\"")) {
-                    categoryName = categoryName.substring(0, categoryName.length() - 1);
-                }
-                dto.setControlCategoryName(categoryName);
-                controlCreateDTOs.add(dto);
-            }
+        //Stream the full filtered result into the export, chunk by chunk
+        try (ExportWriter<ControlDTO> writer = exportWriterFactory.open(format, outputStream, ControlDTO.class, "control", EXPORT_FIELDS, EXPORT_HEADERS)) {
+            long count = exportCursor.forEachChunk(controlRepository, spec, sort, chunk -> writer.writeRows(controlMapper.toControlDTOs(chunk)));
+            writer.finish();
+            log.debug("Exported {} control records", count);
         }
-
-        return controlCreateDTOs;
+        log.info("Successfully exported control data to Excel");
     }
 
-    //FUNCTION TO REMOVE QUOTATION MARKS
-    private String removeQuotes(String value) {
-        if (value.startsWith("\"") && value.endsWith("\"")) {
-            return value.substring(1, value.length() - 1);
-        }
-        return value;
+
+    //FUNCTION TO BUILD THE CONTROL SHEET OF THE MASTER DATA EXPORT
+    @Override
+    public ExportSheet getExportSheet() throws IOException {
+        ExportSchema<ControlDTO> schema = ExportSchema.of(ControlDTO.class, EXPORT_FIELDS, EXPORT_HEADERS);
+
+        //Encode and spool all controls into rows, ordered by name
+        return ExportSheet.spool("control", schema.getHeaders(), sheet ->
+                exportCursor.forEachChunk(controlRepository, controlFilter(null, null, null), Sort.by("controlName"), chunk -> {
+                    for (ControlDTO controlDTO : controlMapper.toControlDTOs(chunk)) {
+                        sheet.addRow(schema.format(controlDTO));
+                    }
+                }));
     }
+
 }
@@ -66,11 +66,11 @@ public class DepartmentServiceImpl implements DepartmentService {
             log.warn("No authenticated user found");
         }
         else if (authentication.getPrincipal() instanceof LdapUserDetailsImpl ldapUserDetails) {
-            log.info("Authenticated LDAP user: {}", ldapUserDetails.getUsername());
+            log.debug("Authenticated LDAP user: {}", ldapUserDetails.getUsername());
 
             //Retrieve List of all Departments associated to the logged-in user
             userDepartments = usersRepository.findLogInUserDepartment(ldapUserDetails.getUsername());
-            log.info("users departments {}", userDepartments);
+            log.debug("users departments {}", userDepartments);
 
             //Check if user has admin role
             List<Role> roles = usersRepository.findAllRolesByUserEmailId(ldapUserDetails.getUsername());
@@ -79,12 +79,12 @@ public class DepartmentServiceImpl implements DepartmentService {
 
             //If user is admin, return list of all departments
             if (isAdmin) {
-                log.info("User is Admin. Fetching all departments.");
+                log.debug("User is Admin. Fetching all departments.");
                 return getAllDepartmentNames();
             }
             //Return Departments associated to LoggedIn User
             else {
-                log.info("User is noy Admin. Returning user's departments.");
+                log.debug("User is noy Admin. Returning user's departments.");
                 return departmentMapper.toDtoList(userDepartments);
             }
         }
@@ -0,0 +1,269 @@
+package com.iscp.backend.services.impl;
+
+import com.iscp.backend.components.EvidenceBlobStore;
+import com.iscp.backend.services.EvidencePreviewService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of the {@link EvidencePreviewService} interface generating previews of evidence images.
+ * Previews are JPEG files no larger than the configured dimension, generated on a background executor and keyed by
+ * the content hash, so evidences sharing content share their preview. The cache directory is bounded in size, and
+ * the least recently used previews are deleted first once it is full.
+ * Images are decoded with subsampling, so a large photo never has to be decoded at full size.
+ */
+@Service
+@Slf4j
+public class EvidencePreviewServiceImpl implements EvidencePreviewService {
+
+    private static final String PREVIEW_EXTENSION = ".jpg";
+
+    //Extension of previews being written, moved into the cache once complete
+    private static final String PART_EXTENSION = ".part";
+
+    //Types which can be decoded by the installed ImageIO readers
+    private static final Set<String> PREVIEWABLE_TYPES = Set.of(ImageIO.getReaderMIMETypes());
+
+    private final EvidenceBlobStore evidenceBlobStore;
+
+    private final ThreadPoolTaskExecutor previewTaskExecutor;
+
+    private final Path cacheDir;
+
+    private final long maxCacheSize;
+
+    private final int maxDimension;
+
+    //Size of each cached preview by content hash, in least recently used order
+    private final LinkedHashMap<String, Long> cached = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedSize;
+
+    //Content hashes whose preview is being generated
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public EvidencePreviewServiceImpl(EvidenceBlobStore evidenceBlobStore, @Qualifier("previewTaskExecutor") ThreadPoolTaskExecutor previewTaskExecutor, @Value("${preview.cache.directory}") String cacheDirectory, @Value("${preview.cache.max-size}") DataSize maxCacheSize, @Value("${preview.max-dimension}") int maxDimension) throws IOException {
+        this.evidenceBlobStore = evidenceBlobStore;
+        this.previewTaskExecutor = previewTaskExecutor;
+        this.cacheDir = Paths.get(cacheDirectory).toAbsolutePath().normalize();
+        this.maxCacheSize = maxCacheSize.toBytes();
+        this.maxDimension = maxDimension;
+
+        Files.createDirectories(cacheDir);
+        loadCachedPreviews();
+    }
+
+
+    /**
+     * Checks whether previews can be generated for a content type.
+     *
+     * @param contentType the detected type of the evidence.
+     * @return true if the content can be previewed.
+     */
+    @Override
+    public boolean isPreviewable(String contentType) {
+        return contentType != null && PREVIEWABLE_TYPES.contains(contentType);
+    }
+
+
+    /**
+     * Retrieves the cached preview of some content.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @return the JPEG preview, or null if it isn't generated yet.
+     */
+    @Override
+    public Path findPreview(String contentHash) {
+        synchronized (cached) {
+            //Marks the preview as recently used
+            if (cached.get(contentHash) == null) {
+                return null;
+            }
+        }
+        return previewPath(contentHash);
+    }
+
+
+    /**
+     * Generates the preview of some content in the background, unless it is cached or already being generated.
+     * Content of a type which can't be previewed is ignored.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @param contentType the detected type of the content.
+     */
+    @Override
+    public void schedulePreview(String contentHash, String contentType) {
+        if (!isPreviewable(contentType) || findPreview(contentHash) != null || !pending.add(contentHash)) {
+            return;
+        }
+        try {
+            previewTaskExecutor.execute(() -> generatePreview(contentHash));
+        }
+        catch (TaskRejectedException e) {
+            //Generated on a later request instead
+            log.warn("Preview of {} rejected, too many previews are queued", contentHash);
+            pending.remove(contentHash);
+        }
+    }
+
+
+    //Writes the preview to a temporary file, then moves it into the cache
+    private void generatePreview(String contentHash) {
+        Path partFile = cacheDir.resolve(contentHash + PART_EXTENSION);
+        try {
+            Path file = evidenceBlobStore.findStored(contentHash);
+            BufferedImage preview = file != null ? renderPreview(file) : null;
+            if (preview == null) {
+                log.debug("No preview available for {}", contentHash);
+                return;
+            }
+            ImageIO.write(preview, "jpg", partFile.toFile());
+            Path previewFile = previewPath(contentHash);
+            Files.move(partFile, previewFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            addToCache(contentHash, Files.size(previewFile));
+            log.debug("Generated preview of {}", contentHash);
+        }
+        catch (IOException | UncheckedIOException e) {
+            log.warn("Unable to generate preview of {}", contentHash, e);
+        }
+        finally {
+            deleteQuietly(partFile);
+            pending.remove(contentHash);
+        }
+    }
+
+
+    //Decodes the image at a reduced resolution and scales it to fit the preview dimension
+    private BufferedImage renderPreview(Path file) throws IOException {
+        //Compressed blobs are decoded on the fly, others are read straight from the file
+        try (InputStream content = EvidenceBlobStore.encodingOf(file) != null ? EvidenceBlobStore.openContent(file) : null;
+             ImageInputStream input = ImageIO.createImageInputStream(content != null ? content : file.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                //Read every n-th pixel, keeping about twice the preview resolution for a smooth downscale
+                int step = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(0, param);
+
+                double scale = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+                int previewWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+                int previewHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+                //JPEG has no transparency, draw on white
+                BufferedImage preview = new BufferedImage(previewWidth, previewHeight, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = preview.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, previewWidth, previewHeight);
+                    graphics.drawImage(image, 0, 0, previewWidth, previewHeight, null);
+                }
+                finally {
+                    graphics.dispose();
+                }
+                return preview;
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    private void addToCache(String contentHash, long size) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (cached) {
+            Long previous = cached.put(contentHash, size);
+            cachedSize += size - (previous != null ? previous : 0);
+
+            //Evict the least recently used previews, never the one just added
+            Iterator<Map.Entry<String, Long>> entries = cached.entrySet().iterator();
+            while (cachedSize > maxCacheSize && entries.hasNext()) {
+                Map.Entry<String, Long> entry = entries.next();
+                if (entry.getKey().equals(contentHash)) {
+                    break;
+                }
+                cachedSize -= entry.getValue();
+                evicted.add(entry.getKey());
+                entries.remove();
+            }
+        }
+        for (String hash : evicted) {
+            deleteQuietly(previewPath(hash));
+        }
+        if (!evicted.isEmpty()) {
+            log.debug("Evicted {} previews from the cache", evicted.size());
+        }
+    }
+
+
+    //Index the previews of a previous run, oldest first, and delete unfinished ones. Other files are left alone
+    private void loadCachedPreviews() throws IOException {
+        List<Path> previews = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PREVIEW_EXTENSION) && Files.isRegularFile(file)) {
+                    previews.add(file);
+                }
+                else if (name.endsWith(PART_EXTENSION)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+        previews.sort(Comparator.comparing(file -> file.toFile().lastModified()));
+        for (Path file : previews) {
+            String name = file.getFileName().toString();
+            addToCache(name.substring(0, name.length() - PREVIEW_EXTENSION.length()), Files.size(file));
+        }
+        log.info("Loaded {} cached previews", previews.size());
+    }
+
+
+    private Path previewPath(String contentHash) {
+        return cacheDir.resolve(contentHash + PREVIEW_EXTENSION);
+    }
+
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Unable to delete preview file {}", file, e);
+        }
+    }
+}
@@ -1,23 +1,31 @@
 package com.iscp.backend.services.impl;
 
+import com.iscp.backend.components.Batches;
+import com.iscp.backend.components.ContentTypeDetector;
+import com.iscp.backend.components.EvidenceBlobStore;
 import com.iscp.backend.dto.EvidenceDTO;
 import com.iscp.backend.exceptions.ChecklistNotFoundException;
+import com.iscp.backend.exceptions.EvidenceBlobNotFoundException;
+import com.iscp.backend.exceptions.EvidenceNotFoundException;
 import com.iscp.backend.exceptions.SecurityComplianceNotFoundException;
 import com.iscp.backend.mapper.EvidenceMapper;
 import com.iscp.backend.models.Checklist;
 import com.iscp.backend.models.Evidence;
+import com.iscp.backend.models.EvidenceBlob;
 import com.iscp.backend.models.SecurityCompliance;
 import com.iscp.backend.models.Users;
 import com.iscp.backend.repositories.ChecklistRepository;
+import com.iscp.backend.repositories.EvidenceBlobRepository;
 import com.iscp.backend.repositories.EvidenceRepository;
 import com.iscp.backend.repositories.SecurityComplianceRepository;
 import com.iscp.backend.repositories.UsersRepository;
 import com.iscp.backend.security.JwtHelper;
+import com.iscp.backend.services.EvidencePreviewService;
 import com.iscp.backend.services.EvidenceService;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.PathResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -28,11 +36,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Implementation of the {@link EvidenceService} interface for managing Evidences.
@@ -53,22 +62,35 @@ public class EvidenceServiceImpl implements EvidenceService {
 
     private final SecurityComplianceRepository securityComplianceRepository;
 
+    private final EvidenceBlobRepository evidenceBlobRepository;
+
+    private final EvidenceBlobStore evidenceBlobStore;
+
+    private final ContentTypeDetector contentTypeDetector;
+
+    private final EvidencePreviewService evidencePreviewService;
+
     @Value("${upload_directory}")
     private final String uploadDir;
 
-    public EvidenceServiceImpl(EvidenceRepository evidenceRepository, EvidenceMapper evidenceMapper, ChecklistRepository checklistRepository, JwtHelper jwtHelper, UsersRepository userRepository, SecurityComplianceRepository securityComplianceRepository, @Value("${upload_directory}") String uploadDir) {
+    public EvidenceServiceImpl(EvidenceRepository evidenceRepository, EvidenceMapper evidenceMapper, ChecklistRepository checklistRepository, JwtHelper jwtHelper, UsersRepository userRepository, SecurityComplianceRepository securityComplianceRepository, EvidenceBlobRepository evidenceBlobRepository, EvidenceBlobStore evidenceBlobStore, ContentTypeDetector contentTypeDetector, EvidencePreviewService evidencePreviewService, @Value("${upload_directory}") String uploadDir) {
         this.evidenceRepository = evidenceRepository;
         this.evidenceMapper = evidenceMapper;
         this.checklistRepository = checklistRepository;
         this.jwtHelper = jwtHelper;
         this.userRepository = userRepository;
         this.securityComplianceRepository = securityComplianceRepository;
+        this.evidenceBlobRepository = evidenceBlobRepository;
+        this.evidenceBlobStore = evidenceBlobStore;
+        this.contentTypeDetector = contentTypeDetector;
+        this.evidencePreviewService = evidencePreviewService;
         this.uploadDir =Paths.get(uploadDir).toAbsolutePath().normalize().toString();
     }
 
 
     /**
      * Upload and save evidences associated with a specific checklist and security compliance.
+     * Files are stored once per content hash, so a file uploaded again is referenced instead of copied.
      *
      * @param files an array of MultipartFile to be uploaded.
      * @param checklistName the name of the checklist to associate with the evidence.
@@ -81,6 +103,124 @@ public class EvidenceServiceImpl implements EvidenceService {
      */
     @Override
     public List<EvidenceDTO> saveEvidence(MultipartFile[] files, String checklistName, String token, String securityId) throws IOException, ChecklistNotFoundException, SecurityComplianceNotFoundException {
+        EvidenceOwner owner = resolveOwner(checklistName, token, securityId);
+
+        List<EvidenceDTO> evidenceDTOList = new ArrayList<>();
+
+        for(MultipartFile file:files){
+            //Get the original file name and clean the path
+            String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+
+            //Hash the file while writing it, the bytes are only kept if no blob has the same hash,
+            //and compressible files are gzipped on the way
+            EvidenceBlobStore.StoredBlob stored = evidenceBlobStore.store(file.getInputStream(), head -> contentTypeDetector.isCompressible(head, fileName));
+            EvidenceBlob blob = registerBlob(stored);
+
+            //Detect the type from the first bytes, the header sent by the client is only a fallback
+            String fileType = contentTypeDetector.detect(stored.head(), fileName, file.getContentType());
+
+            //Store the Evidence DTO into the list
+            evidenceDTOList.add(createEvidence(blob, fileName, fileType, owner));
+        }
+
+        completeEvidence(owner.securityCompliance());
+
+        //Return the list of EvidenceDTO
+        return evidenceDTOList;
+    }
+
+
+    /**
+     * Saves an evidence for content already moved into the blob store, such as a completed chunked upload.
+     *
+     * @param stored the hash, size and location of the stored content.
+     * @param fileName the name the evidence is shown with.
+     * @param fileType the content type declared by the client, used when the content isn't recognized, or null.
+     * @param checklistName the name of the checklist to associate with the evidence.
+     * @param token JWT token used for authentication.
+     * @param securityId the ID of the security compliance to associate with the evidence.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     */
+    @Override
+    public EvidenceDTO saveStoredEvidence(EvidenceBlobStore.StoredBlob stored, String fileName, String fileType, String checklistName, String token, String securityId) throws ChecklistNotFoundException, SecurityComplianceNotFoundException {
+        EvidenceOwner owner = resolveOwner(checklistName, token, securityId);
+        String cleanFileName = StringUtils.cleanPath(fileName);
+        String detectedType = contentTypeDetector.detect(stored.head(), cleanFileName, fileType);
+        EvidenceDTO evidenceDTO = createEvidence(registerBlob(stored), cleanFileName, detectedType, owner);
+        completeEvidence(owner.securityCompliance());
+        return evidenceDTO;
+    }
+
+
+    /**
+     * Finds which of the given content hashes are already stored, so that clients only upload the others.
+     *
+     * @param contentHashes the SHA-256 hashes of the files a client is about to upload.
+     * @return the hashes among the given ones whose content is stored, in lower case.
+     */
+    @Override
+    public List<String> findStoredHashes(List<String> contentHashes) {
+        //Ignore anything that isn't a hash, it can't be stored
+        Set<String> hashes = new LinkedHashSet<>();
+        for (String contentHash : contentHashes) {
+            String hash = EvidenceBlobStore.normalize(contentHash);
+            if (hash != null) {
+                hashes.add(hash);
+            }
+        }
+
+        List<String> stored = new ArrayList<>();
+        for (List<String> batch : Batches.partition(hashes, Batches.IN_CLAUSE_SIZE)) {
+            stored.addAll(evidenceBlobRepository.findContentHashesIn(batch));
+        }
+        log.debug("{} of {} evidence hashes already stored", stored.size(), hashes.size());
+        return stored;
+    }
+
+
+    /**
+     * Attaches already stored content as a new evidence of a specific checklist and security compliance,
+     * without uploading the file again.
+     *
+     * @param contentHash the SHA-256 hash of the stored content.
+     * @param fileName the name the evidence is shown with.
+     * @param fileType the content type declared by the client, used when the content isn't recognized, or null.
+     * @param checklistName the name of the checklist to associate with the evidence.
+     * @param token JWT token used for authentication.
+     * @param securityId the ID of the security compliance to associate with the evidence.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws EvidenceBlobNotFoundException if no content is stored with the given hash.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     * @throws IOException if the stored content cannot be read.
+     */
+    @Override
+    public EvidenceDTO attachEvidence(String contentHash, String fileName, String fileType, String checklistName, String token, String securityId) throws EvidenceBlobNotFoundException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException {
+        String hash = EvidenceBlobStore.normalize(contentHash);
+        Optional<EvidenceBlob> blobOpt = hash != null ? evidenceBlobRepository.findById(hash) : Optional.empty();
+        //The row is only written once the file is in place, but the file may have been removed since
+        if (blobOpt.isEmpty() || !Files.isReadable(Paths.get(blobOpt.get().getStoragePath()))) {
+            log.error("Evidence content Not found with hash: {}", contentHash);
+            throw new EvidenceBlobNotFoundException();
+        }
+
+        EvidenceOwner owner = resolveOwner(checklistName, token, securityId);
+
+        //The name may differ from earlier evidences of the same content, so detect again from the first bytes
+        String cleanFileName = StringUtils.cleanPath(fileName);
+        byte[] head = EvidenceBlobStore.readHead(Paths.get(blobOpt.get().getStoragePath()));
+        String detectedType = contentTypeDetector.detect(head, cleanFileName, fileType);
+
+        EvidenceDTO evidenceDTO = createEvidence(blobOpt.get(), cleanFileName, detectedType, owner);
+        completeEvidence(owner.securityCompliance());
+        return evidenceDTO;
+    }
+
+
+    //FUNCTION TO FIND THE CHECKLIST, SECURITY COMPLIANCE AND USER AN EVIDENCE BELONGS TO
+    private EvidenceOwner resolveOwner(String checklistName, String token, String securityId) throws ChecklistNotFoundException, SecurityComplianceNotFoundException {
         //Check if provided token is not null and starts with Bearer
         if (token != null && token.startsWith("Bearer ")) {
             token = token.substring(7);
@@ -88,7 +228,7 @@ public class EvidenceServiceImpl implements EvidenceService {
 
         //Fetch username(EmailId) from token using jwtHelper
         String username = jwtHelper.getUsernameFromToken(token);
-        log.info("username :{}",username);
+        log.debug("username :{}",username);
 
         //Check if checklist exist with the given name
         Optional<Checklist> checklistOpt = checklistRepository.findByControlChecklist(checklistName);
@@ -104,57 +244,71 @@ public class EvidenceServiceImpl implements EvidenceService {
             throw new SecurityComplianceNotFoundException();
         }
 
-        //Retrieves the checklist and security compliance object
-        Checklist checklist = checklistOpt.get();
-        SecurityCompliance securityCompliance=securityComplianceOpt.get();
-
         //Find User with the given username(Email Id)
         Users user=userRepository.findByUserEmailId(username);
-        log.info("user name :{}" , user);
+        log.debug("user name :{}" , user);
 
-        List<EvidenceDTO> evidenceDTOList = new ArrayList<>();
+        return new EvidenceOwner(checklistOpt.get(), securityComplianceOpt.get(), user);
+    }
 
-        for(MultipartFile file:files){
-            //Get the original file name and clean the path
-            String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-            //Get file type
-            String fileType = file.getContentType();
-            //Get storage path for the file
-            Path fileReference = Paths.get(uploadDir + fileName);
-            //create directory if it doesn't exist
-            Files.createDirectories(fileReference.getParent());
-            //If a file already exist at given location, then replace it with the new file
-            Files.copy(file.getInputStream(), fileReference, StandardCopyOption.REPLACE_EXISTING);
-
-            //create a new evidence entity
-            Evidence evidence = new Evidence();
-            //Set the attributes of the evidence entity
-            evidence.setFileName(fileName);
-            evidence.setFileReference(fileReference.toString());
-            evidence.setFileType(fileType);
-            Timestamp currentTimestamp = new Timestamp(System.currentTimeMillis());
-            evidence.setTimestamp(currentTimestamp);
-
-            evidence.setChecklist(checklist);
-            evidence.setUser(user);
-            evidence.setSecurityCompliance(securityCompliance);
-
-            //save the entity to the database
-            Evidence savedEvidence = evidenceRepository.save(evidence);
-            //Convert the Entity to DTO
-            EvidenceDTO evidenceDTO = evidenceMapper.toEvidenceDto(savedEvidence);
-            log.info("Evidence :{}", evidenceDTO);
 
-            //Store the Evidence DTO into the list
-            evidenceDTOList.add(evidenceDTO);
+    //FUNCTION TO RECORD A STORED BLOB, ONCE PER HASH
+    private EvidenceBlob registerBlob(EvidenceBlobStore.StoredBlob stored) {
+        Optional<EvidenceBlob> existing = evidenceBlobRepository.findById(stored.hash());
+        if (existing.isPresent()) {
+            log.debug("Evidence content {} already stored", stored.hash());
+            return existing.get();
         }
 
+        EvidenceBlob blob = new EvidenceBlob(stored.hash(), stored.size(), stored.path().toString(), stored.encoding(), stored.storedSize(), new Timestamp(System.currentTimeMillis()));
+        try {
+            return evidenceBlobRepository.saveAndFlush(blob);
+        }
+        catch (DataIntegrityViolationException e) {
+            //Same content registered by a concurrent upload
+            return evidenceBlobRepository.findById(stored.hash()).orElseThrow(() -> e);
+        }
+    }
+
+
+    //FUNCTION TO SAVE AN EVIDENCE REFERENCING A STORED BLOB
+    private EvidenceDTO createEvidence(EvidenceBlob blob, String fileName, String fileType, EvidenceOwner owner) {
+        //create a new evidence entity
+        Evidence evidence = new Evidence();
+        //Set the attributes of the evidence entity
+        evidence.setFileName(fileName);
+        evidence.setFileReference(blob.getStoragePath());
+        evidence.setFileType(fileType);
+        evidence.setBlob(blob);
+        Timestamp currentTimestamp = new Timestamp(System.currentTimeMillis());
+        evidence.setTimestamp(currentTimestamp);
+
+        evidence.setChecklist(owner.checklist());
+        evidence.setUser(owner.user());
+        evidence.setSecurityCompliance(owner.securityCompliance());
+
+        //save the entity to the database
+        Evidence savedEvidence = evidenceRepository.save(evidence);
+        //Convert the Entity to DTO
+        EvidenceDTO evidenceDTO = evidenceMapper.toEvidenceDto(savedEvidence);
+        log.debug("Evidence :{} with content {}", evidenceDTO.getFileName(), blob.getContentHash());
+
+        //Generate the preview in the background, so it is ready by the time the evidence is listed
+        evidencePreviewService.schedulePreview(blob.getContentHash(), fileType);
+        return evidenceDTO;
+    }
+
+
+    //FUNCTION TO MARK THE EVIDENCE OF A SECURITY COMPLIANCE AS COMPLETED
+    private void completeEvidence(SecurityCompliance securityCompliance) {
         //Set EvidenceComment as completed if evidence saved successfully
         securityCompliance.setEvidenceComments("completed");
         securityComplianceRepository.save(securityCompliance);
+    }
 
-        //Return the list of EvidenceDTO
-        return evidenceDTOList;
+
+    //Checklist, security compliance and uploading user of an evidence
+    private record EvidenceOwner(Checklist checklist, SecurityCompliance securityCompliance, Users user) {
     }
 
 
@@ -168,21 +322,15 @@ public class EvidenceServiceImpl implements EvidenceService {
      */
     @Override
     public Resource viewEvidence(String filename) throws IOException{
-        //Get the location of file by resolving filename
-        Path file = Paths.get(uploadDir).resolve(filename).normalize();
-        Resource resource = new PathResource(file);
-
+        //Get the location of the file from its evidence, the stored file is named after its content hash
         //If file with that name doesn't exist and is not readable, then throw an Exception
-        if (!resource.exists() || !resource.isReadable()) {
-            throw new FileNotFoundException("File not found with name: " + filename);
-        }
-        //return the resource representing the evidence
-        return resource;
+        return readableResource(resolveEvidencePath(filename), filename);
     }
 
 
     /**
      * Determines the type of the evidence based on its name and contents.
+     * The type is detected when the file is stored, so this only reads the file for evidences stored before.
      *
      * @param filename the name of the evidence file for which to determine the type.
      * @return a String representing the type of the file.
@@ -190,28 +338,31 @@ public class EvidenceServiceImpl implements EvidenceService {
      */
     @Override
     public String getEvidenceType(String filename) throws IOException {
-        //If file is of type mp4, then explicitly check it
-        if (filename.endsWith(".mp4")) {
-            return "video/mp4";
+        Evidence evidence = evidenceRepository.findFirstByFileNameOrderByTimestampDesc(filename);
+        if (evidence != null) {
+            return getEvidenceType(evidence);
         }
+        //A file without an evidence, detect from its first bytes
+        return contentTypeDetector.detect(EvidenceBlobStore.readHead(resolveEvidencePath(filename)), filename, null);
+    }
 
-        if (filename.endsWith(".mp3")) {
-            return "audio/mpeg";
-        }
 
-        if (filename.endsWith(".doc") || filename.endsWith(".docx")) {
-            return "application/msword";
+    /**
+     * Determines the type of an evidence, without reading its file once it is stored by content.
+     *
+     * @param evidence the evidence for which to determine the type.
+     * @return a String representing the type of the file.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    @Override
+    public String getEvidenceType(Evidence evidence) throws IOException {
+        //Detected when the content was stored
+        if (evidence.getBlob() != null) {
+            return evidence.getFileType();
         }
-
-        //Create a Tika instance to detect file type based on content
-        Tika tika = new Tika();
-
-        // Read the file to determine its type
-        Path path = Paths.get(uploadDir, filename);
-        byte[] fileBytes = Files.readAllBytes(path);
-
-        //return the file type
-        return tika.detect(fileBytes);
+        //Evidences stored before only have the type sent by the client, detect from the first bytes
+        byte[] head = EvidenceBlobStore.readHead(Paths.get(evidence.getFileReference()));
+        return contentTypeDetector.detect(head, evidence.getFileName(), evidence.getFileType());
     }
 
 
@@ -224,6 +375,58 @@ public class EvidenceServiceImpl implements EvidenceService {
     @Override
     public Evidence getEvidenceByFilename(String filename) {
         //Retrieves the Evidence from the repository
-        return evidenceRepository.findByFileName(filename);
+        return evidenceRepository.findFirstByFileNameOrderByTimestampDesc(filename);
+    }
+
+
+    /**
+     * Retrieves an {@link Evidence} object by its ID.
+     * Unlike the name, the ID tells apart different files uploaded under the same name.
+     *
+     * @param evidenceId the ID of the evidence to retrieve.
+     * @return the {@link Evidence} with the given ID.
+     * @throws EvidenceNotFoundException if no evidence exists with the given ID.
+     */
+    @Override
+    public Evidence getEvidenceById(String evidenceId) throws EvidenceNotFoundException {
+        return evidenceRepository.findById(evidenceId).orElseThrow(EvidenceNotFoundException::new);
+    }
+
+
+    /**
+     * Retrieves a resource representing the file of the given evidence.
+     *
+     * @param evidence the evidence to be viewed.
+     * @return a {@link Resource} representing the evidence.
+     * @throws IOException if an error occurs while accessing the file.
+     * @throws FileNotFoundException if the file does not exist or is not readable.
+     */
+    @Override
+    public Resource viewEvidence(Evidence evidence) throws IOException {
+        if (evidence.getFileReference() == null) {
+            throw new FileNotFoundException("File not found for evidence: " + evidence.getEvidenceId());
+        }
+        return readableResource(Paths.get(evidence.getFileReference()), evidence.getFileName());
+    }
+
+
+    //FUNCTION TO OPEN THE FILE OF AN EVIDENCE, IF IT EXISTS AND IS READABLE
+    private Resource readableResource(Path file, String filename) throws FileNotFoundException {
+        Resource resource = new PathResource(file);
+        if (!resource.exists() || !resource.isReadable()) {
+            throw new FileNotFoundException("File not found with name: " + filename);
+        }
+        return resource;
+    }
+
+
+    //FUNCTION TO FIND WHERE THE FILE OF AN EVIDENCE IS STORED
+    private Path resolveEvidencePath(String filename) {
+        Evidence evidence = evidenceRepository.findFirstByFileNameOrderByTimestampDesc(filename);
+        if (evidence != null && evidence.getFileReference() != null) {
+            return Paths.get(evidence.getFileReference());
+        }
+        //Fall back to the upload directory for files without an evidence
+        return Paths.get(uploadDir).resolve(filename).normalize();
     }
 }
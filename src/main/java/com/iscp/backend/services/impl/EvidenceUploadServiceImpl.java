@@ -0,0 +1,445 @@
+package com.iscp.backend.services.impl;
+
+import com.iscp.backend.components.ContentTypeDetector;
+import com.iscp.backend.components.EvidenceBlobStore;
+import com.iscp.backend.dto.EvidenceDTO;
+import com.iscp.backend.dto.EvidenceUploadDTO;
+import com.iscp.backend.dto.EvidenceUploadRequestDTO;
+import com.iscp.backend.exceptions.*;
+import com.iscp.backend.repositories.ChecklistRepository;
+import com.iscp.backend.repositories.SecurityComplianceRepository;
+import com.iscp.backend.security.JwtHelper;
+import com.iscp.backend.services.EvidenceService;
+import com.iscp.backend.services.EvidenceUploadService;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of the {@link EvidenceUploadService} interface for uploading evidences in chunks.
+ * Each upload writes its chunks straight into a file preallocated to the final size, at the offset given by the
+ * client, so chunks can arrive in parallel and out of order. The received byte ranges are tracked per upload, which
+ * lets an interrupted client ask for the missing ranges and resume. Uploads are kept in memory, so they don't survive
+ * a restart, and are dropped once idle for longer than the retention.
+ */
+@Service
+@Slf4j
+public class EvidenceUploadServiceImpl implements EvidenceUploadService {
+
+    private static final String FILE_PREFIX = "chunked-";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final EvidenceService evidenceService;
+
+    private final EvidenceBlobStore evidenceBlobStore;
+
+    private final ContentTypeDetector contentTypeDetector;
+
+    private final ChecklistRepository checklistRepository;
+
+    private final SecurityComplianceRepository securityComplianceRepository;
+
+    private final JwtHelper jwtHelper;
+
+    private final int chunkSize;
+
+    private final long maxFileSize;
+
+    private final long retentionMinutes;
+
+    //Every pending upload by ID
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public EvidenceUploadServiceImpl(EvidenceService evidenceService, EvidenceBlobStore evidenceBlobStore, ContentTypeDetector contentTypeDetector, ChecklistRepository checklistRepository, SecurityComplianceRepository securityComplianceRepository, JwtHelper jwtHelper, @Value("${upload.chunked.chunk-size}") DataSize chunkSize, @Value("${upload.chunked.max-file-size}") DataSize maxFileSize, @Value("${upload.chunked.retention-minutes}") long retentionMinutes) throws IOException {
+        this.evidenceService = evidenceService;
+        this.evidenceBlobStore = evidenceBlobStore;
+        this.contentTypeDetector = contentTypeDetector;
+        this.checklistRepository = checklistRepository;
+        this.securityComplianceRepository = securityComplianceRepository;
+        this.jwtHelper = jwtHelper;
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.maxFileSize = maxFileSize.toBytes();
+        this.retentionMinutes = retentionMinutes;
+
+        deleteFilesOfPreviousRun();
+    }
+
+
+    /**
+     * Starts a chunked upload, preallocating a file of the announced size.
+     *
+     * @param request the name, type, size and owner of the evidence to upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} of the new upload, with its ID and suggested chunk size.
+     * @throws EvidenceUploadRejectedException if the size is empty or above the limit.
+     * @throws ChecklistNotFoundException if no checklist exists with the given name.
+     * @throws SecurityComplianceNotFoundException if no security compliance exists with the given ID.
+     * @throws IOException if the file cannot be allocated.
+     */
+    @Override
+    public EvidenceUploadDTO initiateUpload(EvidenceUploadRequestDTO request, String token) throws EvidenceUploadRejectedException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException {
+        purgeExpiredSessions();
+
+        if (request.getSize() <= 0 || request.getSize() > maxFileSize || !StringUtils.hasText(request.getFileName())) {
+            log.error("Rejected chunked upload of {} bytes", request.getSize());
+            throw new EvidenceUploadRejectedException();
+        }
+        String contentHash = null;
+        if (StringUtils.hasText(request.getContentHash())) {
+            contentHash = EvidenceBlobStore.normalize(request.getContentHash());
+            if (contentHash == null) {
+                log.error("Rejected chunked upload with invalid hash");
+                throw new EvidenceUploadRejectedException();
+            }
+        }
+
+        //Fail before any byte is sent if the evidence can't be saved
+        if (checklistRepository.findByControlChecklist(request.getChecklistName()).isEmpty()) {
+            log.error("Checklist Not found with name: {}", request.getChecklistName());
+            throw new ChecklistNotFoundException();
+        }
+        if (securityComplianceRepository.findBySecurityId(request.getSecurityId()).isEmpty()) {
+            log.error("SecurityCompliance Not found with Id: {}", request.getSecurityId());
+            throw new SecurityComplianceNotFoundException();
+        }
+
+        //Reserve the whole file up front, chunks are then written in place
+        Path file = evidenceBlobStore.createTempFile(FILE_PREFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(request.getSize());
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), usernameOf(token), StringUtils.cleanPath(request.getFileName()), request.getFileType(), request.getSize(), contentHash, request.getChecklistName(), request.getSecurityId(), file);
+        sessions.put(session.getUploadId(), session);
+        log.info("Started chunked upload {} of {} bytes", session.getUploadId(), session.getSize());
+        return toEvidenceUploadDTO(session);
+    }
+
+
+    /**
+     * Writes one chunk of an upload at the given offset.
+     * Chunks may be sent in any order and in parallel, and sending a chunk again overwrites it.
+     *
+     * @param uploadId the ID of the upload.
+     * @param offset the position of the first byte of the chunk in the file.
+     * @param content the bytes of the chunk.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} with the bytes received so far.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user, or it is being completed.
+     * @throws EvidenceUploadRejectedException if the chunk goes past the end of the file.
+     * @throws IOException if the chunk cannot be read or written.
+     */
+    @Override
+    public EvidenceUploadDTO writeChunk(String uploadId, long offset, InputStream content, String token) throws EvidenceUploadNotFoundException, EvidenceUploadRejectedException, IOException {
+        UploadSession session = findSession(uploadId, token);
+        if (offset < 0 || offset >= session.getSize()) {
+            throw new EvidenceUploadRejectedException();
+        }
+        //The file is hashed and moved once the upload is completing, it must not be written anymore
+        if (!session.startWrite()) {
+            log.error("Chunk at {} sent while upload {} is completing", offset, uploadId);
+            throw new EvidenceUploadNotFoundException();
+        }
+
+        //Positional writes don't move a shared file position, so parallel chunks can't interfere
+        long limit = session.getSize() - offset;
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(session.getFile(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            int read;
+            while ((read = content.read(buffer.array())) != -1) {
+                if (written + read > limit) {
+                    log.error("Chunk at {} goes past the end of upload {}", offset, uploadId);
+                    throw new EvidenceUploadRejectedException();
+                }
+                buffer.position(0).limit(read);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + written + buffer.position());
+                }
+                written += read;
+            }
+
+            //Only count the range once it is fully written
+            if (written > 0) {
+                session.received(offset, offset + written);
+            }
+        }
+        finally {
+            session.endWrite();
+        }
+        log.debug("Received {} bytes at {} of upload {}", written, offset, uploadId);
+        return toEvidenceUploadDTO(session);
+    }
+
+
+    /**
+     * Retrieves the state of an upload, so that an interrupted upload can resume with the missing ranges.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceUploadDTO} of the upload.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user.
+     */
+    @Override
+    public EvidenceUploadDTO getUpload(String uploadId, String token) throws EvidenceUploadNotFoundException {
+        return toEvidenceUploadDTO(findSession(uploadId, token));
+    }
+
+
+    /**
+     * Completes an upload once every byte is received, storing the file and saving its evidence.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @return the {@link EvidenceDTO} representing the saved evidence.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user.
+     * @throws EvidenceUploadIncompleteException if some bytes of the file are still missing or being written.
+     * @throws EvidenceUploadRejectedException if the content doesn't match the announced hash.
+     * @throws ChecklistNotFoundException if the checklist was deleted during the upload.
+     * @throws SecurityComplianceNotFoundException if the security compliance was deleted during the upload.
+     * @throws IOException if the file cannot be stored.
+     */
+    @Override
+    public EvidenceDTO completeUpload(String uploadId, String token) throws EvidenceUploadNotFoundException, EvidenceUploadIncompleteException, EvidenceUploadRejectedException, ChecklistNotFoundException, SecurityComplianceNotFoundException, IOException {
+        UploadSession session = findSession(uploadId, token);
+        //Refused while bytes are missing or chunks are still being written, the client retries once they are done
+        if (!session.startCompleting()) {
+            throw new EvidenceUploadIncompleteException();
+        }
+        //Only one request can complete an upload
+        if (!sessions.remove(uploadId, session)) {
+            throw new EvidenceUploadNotFoundException();
+        }
+
+        try {
+            String hash = EvidenceBlobStore.hashOf(session.getFile());
+            if (session.getContentHash() != null && !session.getContentHash().equals(hash)) {
+                log.error("Upload {} doesn't match its announced hash", uploadId);
+                throw new EvidenceUploadRejectedException();
+            }
+
+            EvidenceBlobStore.StoredBlob stored = evidenceBlobStore.adopt(session.getFile(), hash, head -> contentTypeDetector.isCompressible(head, session.getFileName()));
+            EvidenceDTO evidenceDTO = evidenceService.saveStoredEvidence(stored, session.getFileName(), session.getFileType(), session.getChecklistName(), token, session.getSecurityId());
+            log.info("Completed chunked upload {}", uploadId);
+            return evidenceDTO;
+        }
+        finally {
+            //Left in place when the content was already stored, or on failure
+            deleteQuietly(session.getFile());
+        }
+    }
+
+
+    /**
+     * Cancels an upload and deletes the received bytes.
+     *
+     * @param uploadId the ID of the upload.
+     * @param token JWT token used for authentication.
+     * @throws EvidenceUploadNotFoundException if no upload with the given ID belongs to the current user.
+     */
+    @Override
+    public void cancelUpload(String uploadId, String token) throws EvidenceUploadNotFoundException {
+        UploadSession session = findSession(uploadId, token);
+        if (sessions.remove(uploadId, session)) {
+            deleteQuietly(session.getFile());
+            log.info("Cancelled chunked upload {}", uploadId);
+        }
+    }
+
+
+    //Uploads are only visible to the user who started them
+    private UploadSession findSession(String uploadId, String token) throws EvidenceUploadNotFoundException {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null || !session.getUsername().equals(usernameOf(token))) {
+            throw new EvidenceUploadNotFoundException();
+        }
+        session.touch();
+        return session;
+    }
+
+
+    private String usernameOf(String token) {
+        //Check if provided token is not null and starts with Bearer
+        if (token != null && token.startsWith("Bearer ")) {
+            token = token.substring(7);
+        }
+        return jwtHelper.getUsernameFromToken(token);
+    }
+
+
+    private void purgeExpiredSessions() {
+        LocalDateTime expiry = LocalDateTime.now().minusMinutes(retentionMinutes);
+        for (UploadSession session : sessions.values()) {
+            if (session.getLastActivity().isBefore(expiry) && sessions.remove(session.getUploadId(), session)) {
+                deleteQuietly(session.getFile());
+                log.debug("Purged expired upload {}", session.getUploadId());
+            }
+        }
+    }
+
+
+    //Uploads are only kept in memory, so files of a previous run can never be completed
+    private void deleteFilesOfPreviousRun() throws IOException {
+        Path tempDir = evidenceBlobStore.getTempDir();
+        Files.createDirectories(tempDir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tempDir, FILE_PREFIX + "*.part")) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Unable to delete upload file {}", file, e);
+        }
+    }
+
+
+    private EvidenceUploadDTO toEvidenceUploadDTO(UploadSession session) {
+        return new EvidenceUploadDTO(session.getUploadId(), session.getFileName(), session.getSize(), chunkSize, session.getReceivedBytes(), session.missingRanges());
+    }
+
+
+    /**
+     * State of a single chunked upload.
+     * Package-private so that the merge of received ranges can be tested on its own.
+     */
+    @Getter
+    static final class UploadSession {
+
+        private final String uploadId;
+
+        private final String username;
+
+        private final String fileName;
+
+        private final String fileType;
+
+        private final long size;
+
+        private final String contentHash;
+
+        private final String checklistName;
+
+        private final String securityId;
+
+        private final Path file;
+
+        private volatile LocalDateTime lastActivity = LocalDateTime.now();
+
+        //Received ranges by start, end exclusive, merged so that they never overlap or touch
+        @Getter(AccessLevel.NONE)
+        private final TreeMap<Long, Long> received = new TreeMap<>();
+
+        //Chunks being written, the upload can only complete once there are none
+        @Getter(AccessLevel.NONE)
+        private int writesInProgress = 0;
+
+        @Getter(AccessLevel.NONE)
+        private boolean completing = false;
+
+        UploadSession(String uploadId, String username, String fileName, String fileType, long size, String contentHash, String checklistName, String securityId, Path file) {
+            this.uploadId = uploadId;
+            this.username = username;
+            this.fileName = fileName;
+            this.fileType = fileType;
+            this.size = size;
+            this.contentHash = contentHash;
+            this.checklistName = checklistName;
+            this.securityId = securityId;
+            this.file = file;
+        }
+
+        void touch() {
+            this.lastActivity = LocalDateTime.now();
+        }
+
+        //Registers a chunk write, refused once the upload is completing
+        synchronized boolean startWrite() {
+            if (completing) {
+                return false;
+            }
+            writesInProgress++;
+            return true;
+        }
+
+        synchronized void endWrite() {
+            writesInProgress--;
+        }
+
+        //Stops accepting chunks if every byte is received and no chunk is being written
+        synchronized boolean startCompleting() {
+            if (completing || writesInProgress > 0 || getReceivedBytes() < size) {
+                return false;
+            }
+            completing = true;
+            return true;
+        }
+
+        synchronized void received(long start, long end) {
+            //Merge with the range starting before, and every range starting within
+            Map.Entry<Long, Long> before = received.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = received.ceilingEntry(start)) != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                received.remove(next.getKey());
+            }
+            received.put(start, end);
+        }
+
+        synchronized long getReceivedBytes() {
+            long total = 0;
+            for (Map.Entry<Long, Long> range : received.entrySet()) {
+                total += range.getValue() - range.getKey();
+            }
+            return total;
+        }
+
+        //Inclusive ranges, in the form of HTTP byte ranges
+        synchronized List<String> missingRanges() {
+            List<String> missing = new ArrayList<>();
+            long position = 0;
+            for (Map.Entry<Long, Long> range : received.entrySet()) {
+                if (range.getKey() > position) {
+                    missing.add(position + "-" + (range.getKey() - 1));
+                }
+                position = range.getValue();
+            }
+            if (position < size) {
+                missing.add(position + "-" + (size - 1));
+            }
+            return missing;
+        }
+    }
+}
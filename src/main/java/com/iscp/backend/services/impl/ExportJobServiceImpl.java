@@ -0,0 +1,372 @@
+package com.iscp.backend.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iscp.backend.components.ContentHash;
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportGenerations;
+import com.iscp.backend.dto.*;
+import com.iscp.backend.exceptions.ExportJobNotFoundException;
+import com.iscp.backend.exceptions.ExportJobNotReadyException;
+import com.iscp.backend.exceptions.UnsupportedExportFormatException;
+import com.iscp.backend.models.Enum;
+import com.iscp.backend.repositories.UsersRepository;
+import com.iscp.backend.services.*;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.ldap.userdetails.LdapUserDetailsImpl;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of the {@link ExportJobService} interface for running exports in the background.
+ * Exports are written to a local cache directory, keyed by entity, format, filter, data scope and data generation.
+ * Identical exports share a single job while it runs, and its file until the data is written to or the retention expires.
+ */
+@Service
+@Slf4j
+public class ExportJobServiceImpl implements ExportJobService {
+
+    //Scope of exports whose rows do not depend on the current user
+    private static final String GLOBAL_SCOPE = "*";
+
+    private final SecurityComplianceService securityComplianceService;
+
+    private final ChecklistService checklistService;
+
+    private final ControlService controlService;
+
+    private final FrameworkService frameworkService;
+
+    private final RoleService roleService;
+
+    private final UsersService usersService;
+
+    private final UsersRepository usersRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final ThreadPoolTaskExecutor exportJobExecutor;
+
+    private final Path exportDir;
+
+    private final long retentionMinutes;
+
+    //Every known job by ID
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    //The pending or completed job of each export key
+    private final Map<String, ExportJob> jobsByKey = new ConcurrentHashMap<>();
+
+    public ExportJobServiceImpl(SecurityComplianceService securityComplianceService, ChecklistService checklistService, ControlService controlService, FrameworkService frameworkService, RoleService roleService, UsersService usersService, UsersRepository usersRepository, ObjectMapper objectMapper, @Qualifier("exportJobExecutor") ThreadPoolTaskExecutor exportJobExecutor, @Value("${export.cache.directory}") String exportDirectory, @Value("${export.cache.retention-minutes}") long retentionMinutes) throws IOException {
+        this.securityComplianceService = securityComplianceService;
+        this.checklistService = checklistService;
+        this.controlService = controlService;
+        this.frameworkService = frameworkService;
+        this.roleService = roleService;
+        this.usersService = usersService;
+        this.usersRepository = usersRepository;
+        this.objectMapper = objectMapper;
+        this.exportJobExecutor = exportJobExecutor;
+        this.exportDir = Paths.get(exportDirectory).toAbsolutePath().normalize();
+        this.retentionMinutes = retentionMinutes;
+
+        Files.createDirectories(exportDir);
+        deleteFilesOfPreviousRun();
+    }
+
+
+    /**
+     * Submits an export job, or joins the pending or completed job of an identical export.
+     *
+     * @param request the entity, format and filter of the export.
+     * @return the {@link ExportJobDTO} of the job producing the export.
+     * @throws UnsupportedExportFormatException if the requested format is unknown.
+     */
+    @Override
+    public ExportJobDTO submitExportJob(ExportJobRequestDTO request) throws UnsupportedExportFormatException {
+        purgeExpiredJobs();
+
+        Enum.ExportEntity entity = request.getEntity();
+        ExportFormat format = ExportFormat.resolve(request.getFormat(), null);
+        Object filter = objectMapper.convertValue(request.getFilter() != null ? request.getFilter() : objectMapper.createObjectNode(), filterType(entity));
+        String scope = resolveScope(entity);
+
+        //Identical exports of the same data share a key, any write to the exported data changes the generation
+        String key = ContentHash.sha256Hex(String.join("|", entity.name(), format.name(), canonicalFilter(filter), scope, String.valueOf(ExportGenerations.current(entity))));
+
+        ExportJob[] created = new ExportJob[1];
+        ExportJob job = jobsByKey.compute(key, (k, existing) -> {
+            if (existing != null && existing.getStatus() != Enum.ExportJobStatus.FAILED) {
+                return existing;
+            }
+            created[0] = new ExportJob(UUID.randomUUID().toString(), k, entity, format, scope, exportDir.resolve(k + "." + format.getExtension()));
+            return created[0];
+        });
+
+        if (created[0] == null) {
+            log.info("Export of {} joined existing job {}", entity, job.getJobId());
+            return toExportJobDTO(job);
+        }
+
+        jobs.put(job.getJobId(), job);
+        try {
+            //Run with the security context of the requester, which the compliance filter depends on
+            exportJobExecutor.execute(new DelegatingSecurityContextRunnable(() -> runExportJob(job, filter)));
+            log.info("Submitted export job {} for {}", job.getJobId(), entity);
+        }
+        catch (TaskRejectedException e) {
+            log.warn("Export job {} rejected, too many exports are queued", job.getJobId());
+            job.finish(Enum.ExportJobStatus.FAILED);
+            jobsByKey.remove(key, job);
+        }
+        return toExportJobDTO(job);
+    }
+
+
+    /**
+     * Retrieves the state of an export job.
+     *
+     * @param jobId the ID of the export job.
+     * @return the {@link ExportJobDTO} of the job.
+     * @throws ExportJobNotFoundException if no job with the given ID is visible to the current user.
+     */
+    @Override
+    public ExportJobDTO getExportJob(String jobId) throws ExportJobNotFoundException {
+        return toExportJobDTO(findVisibleJob(jobId));
+    }
+
+
+    /**
+     * Retrieves the file produced by a completed export job.
+     *
+     * @param jobId the ID of the export job.
+     * @return a {@link Resource} representing the exported file.
+     * @throws ExportJobNotFoundException if no job with the given ID is visible to the current user.
+     * @throws ExportJobNotReadyException if the job has not completed.
+     */
+    @Override
+    public Resource getExportFile(String jobId) throws ExportJobNotFoundException, ExportJobNotReadyException {
+        ExportJob job = findVisibleJob(jobId);
+        if (job.getStatus() != Enum.ExportJobStatus.COMPLETED) {
+            throw new ExportJobNotReadyException();
+        }
+        if (!Files.exists(job.getFile())) {
+            throw new ExportJobNotFoundException();
+        }
+        return new PathResource(job.getFile());
+    }
+
+
+    /**
+     * Writes the export of a job to a temporary file, then moves it into the cache.
+     */
+    private void runExportJob(ExportJob job, Object filter) {
+        job.setStatus(Enum.ExportJobStatus.RUNNING);
+        Path partFile = exportDir.resolve(job.getKey() + ".part");
+
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(partFile))) {
+                export(job.getEntity(), filter, job.getFormat(), outputStream);
+            }
+            Files.move(partFile, job.getFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.finish(Enum.ExportJobStatus.COMPLETED);
+            log.info("Export job {} completed", job.getJobId());
+        }
+        catch (Exception e) {
+            log.error("Export job {} failed", job.getJobId(), e);
+            deleteQuietly(partFile);
+            job.finish(Enum.ExportJobStatus.FAILED);
+            jobsByKey.remove(job.getKey(), job);
+        }
+    }
+
+
+    private void export(Enum.ExportEntity entity, Object filter, ExportFormat format, OutputStream outputStream) throws IOException {
+        switch (entity) {
+            case SECURITY_COMPLIANCE:
+                securityComplianceService.exportExcelSecurityCompliance((SecurityComplianceFilterDTO) filter, format, outputStream);
+                break;
+            case CHECKLIST:
+                checklistService.exportExcelChecklist((ChecklistFilterDTO) filter, format, outputStream);
+                break;
+            case CONTROL:
+                controlService.exportExcelControl((ControlFilterDTO) filter, format, outputStream);
+                break;
+            case FRAMEWORK:
+                frameworkService.exportExcelFramework((FrameworkFilterDTO) filter, format, outputStream);
+                break;
+            case ROLE:
+                roleService.exportExcelRole((RoleFilterDTO) filter, format, outputStream);
+                break;
+            case USERS:
+                usersService.exportExcelUsers((UserFilterDTO) filter, format, outputStream);
+                break;
+        }
+    }
+
+
+    private Class<?> filterType(Enum.ExportEntity entity) {
+        switch (entity) {
+            case SECURITY_COMPLIANCE:
+                return SecurityComplianceFilterDTO.class;
+            case CHECKLIST:
+                return ChecklistFilterDTO.class;
+            case CONTROL:
+                return ControlFilterDTO.class;
+            case FRAMEWORK:
+                return FrameworkFilterDTO.class;
+            case ROLE:
+                return RoleFilterDTO.class;
+            default:
+                return UserFilterDTO.class;
+        }
+    }
+
+
+    //Serialize the filter with sorted keys, without the paging which exports ignore
+    private String canonicalFilter(Object filter) {
+        Map<String, Object> fields = new TreeMap<>(objectMapper.convertValue(filter, new TypeReference<Map<String, Object>>() {}));
+        fields.remove("page");
+        fields.remove("size");
+        try {
+            return objectMapper.writeValueAsString(fields);
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize export filter", e);
+        }
+    }
+
+
+    /**
+     * Resolves the data scope of the current user for an export.
+     * Security compliance is restricted to the departments of the user, every other export is the same for all users.
+     */
+    private String resolveScope(Enum.ExportEntity entity) {
+        if (entity != Enum.ExportEntity.SECURITY_COMPLIANCE) {
+            return GLOBAL_SCOPE;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof LdapUserDetailsImpl ldapUserDetails)) {
+            return "";
+        }
+
+        List<String> departments = new ArrayList<>(usersRepository.findAllDepartmentByUserEmailId(ldapUserDetails.getUsername()));
+        Collections.sort(departments);
+        return String.join(",", departments);
+    }
+
+
+    //Jobs are only visible to users with the same data scope
+    private ExportJob findVisibleJob(String jobId) throws ExportJobNotFoundException {
+        ExportJob job = jobs.get(jobId);
+        if (job == null || !job.getScope().equals(resolveScope(job.getEntity()))) {
+            throw new ExportJobNotFoundException();
+        }
+        return job;
+    }
+
+
+    private void purgeExpiredJobs() {
+        LocalDateTime expiry = LocalDateTime.now().minusMinutes(retentionMinutes);
+        for (ExportJob job : jobs.values()) {
+            if (job.getCompletedAt() != null && job.getCompletedAt().isBefore(expiry)) {
+                jobs.remove(job.getJobId());
+                jobsByKey.remove(job.getKey(), job);
+                deleteQuietly(job.getFile());
+                log.debug("Purged expired export job {}", job.getJobId());
+            }
+        }
+    }
+
+
+    //Generations restart on startup, so cached files of a previous run can never be reused
+    private void deleteFilesOfPreviousRun() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(exportDir, "*.{xlsx,csv,ndjson,part}")) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Unable to delete export file {}", file, e);
+        }
+    }
+
+
+    private ExportJobDTO toExportJobDTO(ExportJob job) {
+        return new ExportJobDTO(job.getJobId(), job.getEntity(), job.getFormat(), job.getStatus(), job.getCreatedAt(), job.getCompletedAt());
+    }
+
+
+    /**
+     * State of a single export job.
+     */
+    @Getter
+    private static final class ExportJob {
+
+        private final String jobId;
+
+        private final String key;
+
+        private final Enum.ExportEntity entity;
+
+        private final ExportFormat format;
+
+        private final String scope;
+
+        private final Path file;
+
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private volatile Enum.ExportJobStatus status = Enum.ExportJobStatus.PENDING;
+
+        private volatile LocalDateTime completedAt;
+
+        private ExportJob(String jobId, String key, Enum.ExportEntity entity, ExportFormat format, String scope, Path file) {
+            this.jobId = jobId;
+            this.key = key;
+            this.entity = entity;
+            this.format = format;
+            this.scope = scope;
+            this.file = file;
+        }
+
+        private void setStatus(Enum.ExportJobStatus status) {
+            this.status = status;
+        }
+
+        private void finish(Enum.ExportJobStatus status) {
+            this.completedAt = LocalDateTime.now();
+            this.status = status;
+        }
+    }
+}
@@ -1,19 +1,56 @@
 package com.iscp.backend.services.impl;
 
+import com.iscp.backend.components.Batches;
+import com.iscp.backend.components.ContentHash;
+import com.iscp.backend.components.CsvReader;
+import com.iscp.backend.components.ErrorReportSheet;
+import com.iscp.backend.components.ExcelRowReader;
+import com.iscp.backend.components.ExportExcel;
 import com.iscp.backend.dto.ChecklistCreateDTO;
 import com.iscp.backend.dto.ControlCategoryCreateDTO;
 import com.iscp.backend.dto.ControlCreateDTO;
+import com.iscp.backend.dto.CsvUploadResponse;
+import com.iscp.backend.dto.MasterUploadEntries;
+import com.iscp.backend.dto.MultiEntityUploadResponse;
+import com.iscp.backend.dto.RowErrorDTO;
+import com.iscp.backend.dto.SourceRowDTO;
+import com.iscp.backend.dto.UpsertCountsDTO;
+import com.iscp.backend.dto.UpsertResultDTO;
+import com.iscp.backend.exceptions.ServiceException;
+import com.iscp.backend.models.Checklist;
+import com.iscp.backend.models.Control;
+import com.iscp.backend.models.ControlCategory;
+import com.iscp.backend.models.Enum;
+import com.iscp.backend.repositories.ChecklistRepository;
+import com.iscp.backend.repositories.ControlCategoryRepository;
+import com.iscp.backend.repositories.ControlRepository;
+import com.iscp.backend.services.ChecklistService;
+import com.iscp.backend.services.ControlCategoryService;
+import com.iscp.backend.services.ControlService;
 import com.iscp.backend.services.FileUploadService;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.WorkbookUtil;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.util.*;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 
 @Service
@@ -21,249 +58,748 @@ import java.util.*;
 @Slf4j
 public class FileUploadServiceImpl implements FileUploadService {
 
-    //FUNCTION TO CREATE CONTROL CATEGORY ENTITY DTO FROM EXCEL CONTENT
+    //Number of CSV rows upserted per transaction
+    private static final int CSV_BATCH_SIZE = 500;
+
+    //Maximum length of the text columns of master data
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    //Separates the parts of composite keys and hashed content
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private final ExcelRowReader excelRowReader;
+
+    private final ControlCategoryService controlCategoryService;
+
+    private final ControlService controlService;
+
+    private final ChecklistService checklistService;
+
+    private final ControlCategoryRepository controlCategoryRepository;
+
+    private final ControlRepository controlRepository;
+
+    private final ChecklistRepository checklistRepository;
+
+    private final ExportExcel exportExcel;
+
+    private final PlatformTransactionManager transactionManager;
+
+
+    //FUNCTION TO CREATE CONTROL CATEGORY, CONTROL AND CHECKLIST ENTITY DTOS FROM EXCEL CONTENT IN A SINGLE PASS
     @Override
-    public List<ControlCategoryCreateDTO> parseControlCategoryEntries(MultipartFile file) throws IOException {
-        Set<String> uniqueCategories = new HashSet<>();
-        List<ControlCategoryCreateDTO> categoryEntries = new ArrayList<>();
+    public MasterUploadEntries parseMasterUpload(MultipartFile file) throws IOException {
+        List<MasterUploadEntries> sheetEntries;
+
+        // Parse the sheets concurrently, each with its own parser state
+        try (InputStream inputStream = file.getInputStream()) {
+            sheetEntries = excelRowReader.readSheets(inputStream, (sheetIndex, sheetName) -> new MasterUploadParser(sheetName));
+        }
 
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            // Iterate through all sheets in the workbook
-            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
-                Sheet sheet = workbook.getSheetAt(sheetIndex);
-                Iterator<Row> rowIterator = sheet.iterator();
+        MasterUploadEntries entries = mergeSheetEntries(sheetEntries);
+        checkChecklistControls(entries);
+        log.info("Parsed {} control categories, {} controls and {} checklists from {} sheets, with {} errors", entries.getControlCategoryEntries().size(), entries.getControlEntries().size(), entries.getChecklistEntries().size(), sheetEntries.size(), entries.getErrors().size());
+        return entries;
+    }
 
-                // Skip the first row
-                if (rowIterator.hasNext()) {
-                    rowIterator.next();
-                }
 
-                while (rowIterator.hasNext()) {
-                    Row row = rowIterator.next();
+    //FUNCTION TO WRITE A COPY OF THE UPLOADED WORKBOOK WITH THE ERRORS OF EACH ROW
+    @Override
+    public void writeMasterErrorReport(MultipartFile file, OutputStream outputStream) throws IOException {
+        Map<String, Map<Integer, String>> errorsBySheet = groupErrors(parseMasterUpload(file).getErrors());
+        List<ErrorReportSheet> sheets;
 
-                    // Check if row is empty or contains no meaningful data
-                    if (isEmptyRow(row)) {
-                        continue;
-                    }
+        // Copy every sheet with the errors of its rows
+        try (InputStream inputStream = file.getInputStream()) {
+            sheets = excelRowReader.readSheets(inputStream, (sheetIndex, sheetName) -> new ErrorReportCopier(new ErrorReportSheet(sheetName, errorsBySheet.getOrDefault(sheetName, Map.of()))));
+        }
+        exportExcel.exportErrorReport(outputStream, sheets);
+    }
 
-                    String category = getCellValueAsString(row.getCell(0));
 
-                    if (isEmpty(category)) {
-                        continue;
-                    }
+    //FUNCTION TO REPORT THE CHECKLISTS WHOSE CONTROL NEITHER EXISTS NOR IS CREATED BY THE UPLOAD, AND DROP THEM
+    private void checkChecklistControls(MasterUploadEntries entries) {
+        Set<String> knownControls = new HashSet<>();
+        entries.getControlEntries().forEach(dto -> knownControls.add(dto.getControlName()));
 
-                    // Only create category if it's not already processed
-                    if (uniqueCategories.add(category)) {
-                        ControlCategoryCreateDTO dto = new ControlCategoryCreateDTO();
-                        dto.setControlCategoryId(null);
-                        dto.setControlCategoryName(removeQuotes(category));
-                        categoryEntries.add(dto);
-                    }
-                }
+        Set<String> referencedControls = new HashSet<>();
+        entries.getChecklistEntries().forEach(dto -> referencedControls.add(dto.getControlName()));
+        referencedControls.removeAll(knownControls);
+        for (List<String> batch : Batches.partition(referencedControls, Batches.IN_CLAUSE_SIZE)) {
+            knownControls.addAll(controlRepository.findControlNamesIn(batch));
+        }
+
+        List<ChecklistCreateDTO> checklists = new ArrayList<>();
+        List<SourceRowDTO> sources = new ArrayList<>();
+        for (int i = 0; i < entries.getChecklistEntries().size(); i++) {
+            ChecklistCreateDTO dto = entries.getChecklistEntries().get(i);
+            SourceRowDTO source = entries.getChecklistSources().get(i);
+            if (knownControls.contains(dto.getControlName())) {
+                checklists.add(dto);
+                sources.add(source);
+            }
+            else {
+                entries.getErrors().add(new RowErrorDTO(source.getSheet(), source.getRow(), "A", "Control " + dto.getControlName() + " does not exist and the row has no control category to create it"));
             }
         }
-        return categoryEntries;
+        entries.setChecklistEntries(checklists);
+        entries.setChecklistSources(sources);
     }
 
-    //FUNCTION TO CREATE CONTROL ENTITY DTO FROM EXCEL CONTENT
-    @Override
-    public List<ControlCreateDTO> parseControlEntries(MultipartFile file) throws IOException {
-        List<ControlCreateDTO> controlEntries = new ArrayList<>();
+
+    //Error messages by sheet and zero-based row number, several errors of a row are joined
+    private static Map<String, Map<Integer, String>> groupErrors(List<RowErrorDTO> errors) {
+        Map<String, Map<Integer, String>> errorsBySheet = new HashMap<>();
+        for (RowErrorDTO error : errors) {
+            errorsBySheet.computeIfAbsent(error.getSheet(), sheet -> new HashMap<>())
+                    .merge(error.getRow() - 1, error.getColumn() + ": " + error.getMessage(), (first, second) -> first + "; " + second);
+        }
+        return errorsBySheet;
+    }
+
+
+    //FUNCTION TO MERGE THE ENTRIES OF EACH SHEET IN WORKBOOK ORDER, APPLYING THE DEDUPLICATION ACROSS SHEET BOUNDARIES
+    private MasterUploadEntries mergeSheetEntries(List<MasterUploadEntries> sheetEntries) {
+        MasterUploadEntries entries = new MasterUploadEntries();
+        Set<String> uniqueCategories = new HashSet<>();
         String previousControlName = null;
 
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            // Iterate through all sheets in the workbook
-            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
-                Sheet sheet = workbook.getSheetAt(sheetIndex);
-                Iterator<Row> rowIterator = sheet.iterator();
+        for (MasterUploadEntries sheet : sheetEntries) {
+            // Only keep the first occurrence of a category across all sheets
+            for (ControlCategoryCreateDTO category : sheet.getControlCategoryEntries()) {
+                if (uniqueCategories.add(category.getControlCategoryName())) {
+                    entries.getControlCategoryEntries().add(category);
+                }
+            }
 
-                // Skip the first row
-                if (rowIterator.hasNext()) {
-                    rowIterator.next();
+            // Consecutive duplicate controls may span the end of one sheet and the start of the next
+            for (ControlCreateDTO control : sheet.getControlEntries()) {
+                if (!control.getControlName().equals(previousControlName)) {
+                    entries.getControlEntries().add(control);
+                    previousControlName = control.getControlName();
                 }
+            }
+
+            entries.getChecklistEntries().addAll(sheet.getChecklistEntries());
+            entries.getChecklistSources().addAll(sheet.getChecklistSources());
+            entries.getErrors().addAll(sheet.getErrors());
+        }
+        return entries;
+    }
+
+
+    //FUNCTION TO DIFF THE PARSED CONTROL CATEGORIES, CONTROLS AND CHECKLISTS AGAINST THE CURRENT DATA, AND UPSERT THE CHANGED ROWS IN ONE TRANSACTION
+    @Override
+    @Transactional(rollbackOn = ServiceException.class)
+    public MultiEntityUploadResponse importMasterUpload(MasterUploadEntries entries, boolean apply) throws ServiceException {
+        // Compare the content hash of each row with the one of the current row with the same name
+        MasterDataSnapshot snapshot = loadSnapshot(entries);
+        List<UpsertResultDTO> categoryResults = diff(entries.getControlCategoryEntries(), snapshot.categories, ControlCategoryCreateDTO::getControlCategoryName, this::proposedCategory);
+        List<UpsertResultDTO> controlResults = diff(entries.getControlEntries(), snapshot.controls, ControlCreateDTO::getControlName, this::proposedControl);
+        List<UpsertResultDTO> checklistResults = diff(entries.getChecklistEntries(), snapshot.checklists, dto -> checklistKey(dto.getControlName(), dto.getControlChecklist()), this::proposedChecklist);
+
+        if (apply) {
+            // Only write the inserted and updated rows, categories first so controls can reference the new ones, then controls for the checklists
+            applyChanges(entries.getControlCategoryEntries(), categoryResults, controlCategoryService::upsertControlCategories);
+            applyChanges(entries.getControlEntries(), controlResults, controlService::upsertControls);
+            applyChanges(entries.getChecklistEntries(), checklistResults, checklistService::upsertChecklists);
+        }
+
+        MultiEntityUploadResponse response = new MultiEntityUploadResponse();
+        response.setApplied(apply);
+        response.setControlCategoryResults(categoryResults);
+        response.setControlResults(controlResults);
+        response.setChecklistResults(checklistResults);
+        response.setControlCategoryCounts(countActions(categoryResults));
+        response.setControlCounts(countActions(controlResults));
+        response.setChecklistCounts(countActions(checklistResults));
+        response.setErrors(entries.getErrors());
+
+        log.info("{} master upload: categories {}, controls {}, checklists {}", apply ? "Applied" : "Diffed", response.getControlCategoryCounts(), response.getControlCounts(), response.getChecklistCounts());
+        return response;
+    }
+
 
-                // Iterate through all rows
-                while (rowIterator.hasNext()) {
-                    Row row = rowIterator.next();
+    //FUNCTION TO LOAD THE CONTENT HASHES OF THE CURRENT CATEGORIES, CONTROLS AND CHECKLISTS THE UPLOAD REFERS TO
+    private MasterDataSnapshot loadSnapshot(MasterUploadEntries entries) {
+        MasterDataSnapshot snapshot = new MasterDataSnapshot();
 
-                    // Check if row is empty or contains no meaningful data
-                    if (isEmptyRow(row)) {
-                        continue;
-                    }
+        Set<String> categoryNames = new HashSet<>();
+        entries.getControlCategoryEntries().forEach(dto -> categoryNames.add(dto.getControlCategoryName()));
+        for (List<String> batch : Batches.partition(categoryNames, Batches.IN_CLAUSE_SIZE)) {
+            for (ControlCategory category : controlCategoryRepository.findByControlCategoryNameIn(batch)) {
+                snapshot.categories.put(category.getControlCategoryName(), new SnapshotEntry(category.getControlCategoryId(), ContentHash.sha256Hex(category.getControlCategoryName()), null));
+            }
+        }
 
-                    ControlCreateDTO dto = new ControlCreateDTO();
+        Set<String> controlNames = new HashSet<>();
+        entries.getControlEntries().forEach(dto -> controlNames.add(dto.getControlName()));
+        entries.getChecklistEntries().forEach(dto -> controlNames.add(dto.getControlName()));
+        for (List<String> batch : Batches.partition(controlNames, Batches.IN_CLAUSE_SIZE)) {
+            for (Control control : controlRepository.findWithCategoryByControlNameIn(batch)) {
+                snapshot.controls.put(control.getControlName(), new SnapshotEntry(control.getControlId(), controlHash(control.getControlCategory().getControlCategoryName(), control.getStatus()), control.getStatus()));
+            }
+            for (Checklist checklist : checklistRepository.findWithControlByControlNameIn(batch)) {
+                snapshot.checklists.put(checklistKey(checklist.getControl().getControlName(), checklist.getControlChecklist()), new SnapshotEntry(checklist.getChecklistId(), checklistHash(checklist.getDescription(), checklist.getStatus()), checklist.getStatus(), checklist.getDescription()));
+            }
+        }
+        return snapshot;
+    }
 
-                    log.info(String.valueOf(row.getCell(1)));
-                    // Get cell values (assuming same structure as CSV)
-                    String category = getCellValueAsString(row.getCell(0));
-                    String value1 = getCellValueAsString(row.getCell(1));
-                    String value2 = getCellValueAsString(row.getCell(2));
 
-                    // Additional validation to ensure required fields are present
-                    if (isEmpty(category) || isEmpty(value1) || isEmpty(value2)) {
-                        continue;
-                    }
+    //FUNCTION TO WORK OUT WHAT AN UPSERT WOULD DO WITH EACH ROW, WITHOUT WRITING ANYTHING
+    private <T> List<UpsertResultDTO> diff(List<T> rows, Map<String, SnapshotEntry> current, Function<T, String> keyOf, ProposedState<T> proposedOf) {
+        List<UpsertResultDTO> results = new ArrayList<>();
 
-                    String controlName = String.valueOf(value1) + ":" + String.valueOf(value2);
+        for (int row = 0; row < rows.size(); row++) {
+            T dto = rows.get(row);
+            String key = keyOf.apply(dto);
+            SnapshotEntry entry = current.get(key);
+            SnapshotEntry proposed = proposedOf.of(dto, entry);
 
-                    // Check if the controlName is the same as the previous one
-                    if (previousControlName != null && controlName.equals(previousControlName)) {
-                        continue;
-                    }
+            Enum.UpsertAction action;
+            if (entry == null) {
+                action = Enum.UpsertAction.INSERTED;
+            }
+            else if (entry.contentHash().equals(proposed.contentHash())) {
+                action = Enum.UpsertAction.UNCHANGED;
+            }
+            else {
+                action = Enum.UpsertAction.UPDATED;
+            }
 
-                    dto.setControlId(null);
-                    dto.setControlName(controlName);
-                    dto.setDescription("");
-                    dto.setStatus(true);
-                    dto.setControlCategoryName(removeQuotes(category));
+            // Later rows with the same name are compared with this one, as the upsert would
+            current.put(key, proposed);
+            results.add(new UpsertResultDTO(row, proposed.id(), key.substring(key.lastIndexOf(KEY_SEPARATOR) + 1), action));
+        }
+        return results;
+    }
 
-                    controlEntries.add(dto);
-                    previousControlName = controlName;
-                }
+
+    //FUNCTION TO UPSERT ONLY THE CHANGED ROWS, AND REPORT THEIR RESULTS AT THEIR POSITION IN THE UPLOAD
+    private <T> void applyChanges(List<T> rows, List<UpsertResultDTO> results, BatchUpsert<T> batchUpsert) throws ServiceException {
+        List<T> changedRows = new ArrayList<>();
+        List<UpsertResultDTO> changedResults = new ArrayList<>();
+        for (UpsertResultDTO result : results) {
+            if (result.getAction() != Enum.UpsertAction.UNCHANGED) {
+                changedRows.add(rows.get(result.getRow()));
+                changedResults.add(result);
+            }
+        }
+        if (changedRows.isEmpty()) {
+            return;
+        }
+
+        List<UpsertResultDTO> upserted = batchUpsert.apply(changedRows);
+        for (int i = 0; i < upserted.size(); i++) {
+            changedResults.get(i).setId(upserted.get(i).getId());
+            changedResults.get(i).setAction(upserted.get(i).getAction());
+        }
+    }
+
+
+    private UpsertCountsDTO countActions(List<UpsertResultDTO> results) {
+        UpsertCountsDTO counts = new UpsertCountsDTO();
+        for (UpsertResultDTO result : results) {
+            switch (result.getAction()) {
+                case INSERTED -> counts.setInserted(counts.getInserted() + 1);
+                case UPDATED -> counts.setUpdated(counts.getUpdated() + 1);
+                case UNCHANGED -> counts.setUnchanged(counts.getUnchanged() + 1);
             }
         }
+        return counts;
+    }
+
+
+    //Content hashes cover only the columns a master upload sets, a blank description or status keeps the current one
+    private SnapshotEntry proposedCategory(ControlCategoryCreateDTO dto, SnapshotEntry current) {
+        return new SnapshotEntry(current == null ? null : current.id(), ContentHash.sha256Hex(dto.getControlCategoryName()), null);
+    }
+
+    private SnapshotEntry proposedControl(ControlCreateDTO dto, SnapshotEntry current) {
+        Boolean status = dto.getStatus() != null ? dto.getStatus() : current == null || current.status();
+        return new SnapshotEntry(current == null ? null : current.id(), controlHash(dto.getControlCategoryName(), status), status);
+    }
+
+    private SnapshotEntry proposedChecklist(ChecklistCreateDTO dto, SnapshotEntry current) {
+        Boolean status = dto.getStatus() != null ? dto.getStatus() : current == null || current.status();
+        String description = isEmpty(dto.getDescription()) && current != null ? current.description() : dto.getDescription();
+        return new SnapshotEntry(current == null ? null : current.id(), checklistHash(description, status), status, description);
+    }
+
+    private static String controlHash(String categoryName, Boolean status) {
+        return ContentHash.sha256Hex(categoryName + KEY_SEPARATOR + status);
+    }
+
+    private static String checklistHash(String description, Boolean status) {
+        return ContentHash.sha256Hex((description == null ? "" : description) + KEY_SEPARATOR + status);
+    }
+
+
+    //Checklist names are only unique within their control
+    private static String checklistKey(String controlName, String controlChecklist) {
+        return controlName + KEY_SEPARATOR + controlChecklist;
+    }
+
+
+    //Id and content hash of a row, with the values a blank upload cell falls back to
+    private record SnapshotEntry(String id, String contentHash, Boolean status, String description) {
+
+        private SnapshotEntry(String id, String contentHash, Boolean status) {
+            this(id, contentHash, status, null);
+        }
+    }
+
+
+    //Current master data the upload refers to, by name
+    private static class MasterDataSnapshot {
+        private final Map<String, SnapshotEntry> categories = new HashMap<>();
+        private final Map<String, SnapshotEntry> controls = new HashMap<>();
+        private final Map<String, SnapshotEntry> checklists = new HashMap<>();
+    }
+
 
-        return controlEntries;
+    //State an upsert of the row would leave, given the current row with the same name if there is one
+    @FunctionalInterface
+    private interface ProposedState<T> {
+        SnapshotEntry of(T dto, SnapshotEntry current);
     }
 
-    //FUNCTION TO CREATE CHECKLIST ENTITY DTO FROM EXCEL CONTENT
+
+    //FUNCTION TO STREAM A CONTROL CSV FILE INTO THE BULK UPSERT IN BATCHES
     @Override
-    public List<ChecklistCreateDTO> parseChecklistEntries(MultipartFile file) throws IOException {
-        List<ChecklistCreateDTO> checklistEntries = new ArrayList<>();
-        String currentControlName = null;
-
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            // Iterate through all sheets in the workbook
-            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
-                Sheet sheet = workbook.getSheetAt(sheetIndex);
-                Iterator<Row> rowIterator = sheet.iterator();
-
-                // Skip the first row
-                if (rowIterator.hasNext()) {
-                    rowIterator.next();
-                }
+    public CsvUploadResponse importControlCSV(MultipartFile file, boolean commitValid) throws IOException, ServiceException {
+        return importCSV(file, commitValid, controlCSVRules(), this::toControlCreateDTO, controlService::upsertControls);
+    }
+
+
+    //FUNCTION TO STREAM A CHECKLIST CSV FILE INTO THE BULK UPSERT IN BATCHES
+    @Override
+    public CsvUploadResponse importChecklistCSV(MultipartFile file, boolean commitValid) throws IOException, ServiceException {
+        return importCSV(file, commitValid, checklistCSVRules(), this::toChecklistCreateDTO, checklistService::upsertChecklists);
+    }
+
+
+    //FUNCTION TO WRITE AN UPLOADED CONTROL CSV FILE AS A WORKBOOK WITH THE ERRORS OF EACH ROW
+    @Override
+    public void writeControlCSVErrorReport(MultipartFile file, OutputStream outputStream) throws IOException {
+        writeCSVErrorReport(file, controlCSVRules(), outputStream);
+    }
+
+
+    //FUNCTION TO WRITE AN UPLOADED CHECKLIST CSV FILE AS A WORKBOOK WITH THE ERRORS OF EACH ROW
+    @Override
+    public void writeChecklistCSVErrorReport(MultipartFile file, OutputStream outputStream) throws IOException {
+        writeCSVErrorReport(file, checklistCSVRules(), outputStream);
+    }
+
+
+    private CsvRules controlCSVRules() {
+        return new CsvRules("Control", "Control category",
+                ids -> ids(controlRepository.findAllById(ids), Control::getControlId),
+                controlCategoryRepository::findControlCategoryNamesIn);
+    }
+
+
+    private CsvRules checklistCSVRules() {
+        return new CsvRules("Checklist", "Control",
+                ids -> ids(checklistRepository.findAllById(ids), Checklist::getChecklistId),
+                controlRepository::findControlNamesIn);
+    }
+
+
+    //FUNCTION TO VALIDATE A CSV FILE AND COPY IT INTO A SINGLE SHEET WITH THE ERRORS OF EACH ROW
+    private void writeCSVErrorReport(MultipartFile file, CsvRules rules, OutputStream outputStream) throws IOException {
+        List<RowErrorDTO> errors = new ArrayList<>();
+        streamCSV(file, rules, errors, batch -> { });
+
+        String sheetName = csvSheetName(file);
+        ErrorReportSheet sheet = new ErrorReportSheet(WorkbookUtil.createSafeSheetName(sheetName), groupErrors(errors).getOrDefault(sheetName, Map.of()));
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            List<String> values;
+            while ((values = reader.readRecord()) != null) {
+                sheet.addRow((int) reader.getRecordNumber() - 1, values);
+            }
+        }
+        exportExcel.exportErrorReport(outputStream, List.of(sheet));
+    }
+
+
+    //FUNCTION TO IMPORT A CSV FILE, WRITING NOTHING UNLESS EVERY ROW IS VALID OR VALID ROWS SHOULD BE COMMITTED ANYWAY
+    private <T> CsvUploadResponse importCSV(MultipartFile file, boolean commitValid, CsvRules rules, Function<List<String>, T> rowMapper, BatchUpsert<T> batchUpsert) throws IOException, ServiceException {
+        List<RowErrorDTO> errors = new ArrayList<>();
+        List<UpsertResultDTO> results = new ArrayList<>();
 
-                // Iterate through all rows
-                while (rowIterator.hasNext()) {
-                    Row row = rowIterator.next();
+        if (commitValid) {
+            // Each batch of valid rows is committed on its own, invalid rows are reported
+            upsertCSV(file, rules, errors, results, rowMapper, batchUpsert);
+            log.info("Imported {} rows from CSV file {}, with {} errors", results.size(), file.getOriginalFilename(), errors.size());
+            return new CsvUploadResponse(true, results, errors);
+        }
 
-                    // Skip empty rows
-                    if (isEmptyRow(row)) {
-                        continue;
-                    }
+        // Validate the whole file first, so an invalid file leaves the data untouched
+        streamCSV(file, rules, errors, batch -> { });
+        if (!errors.isEmpty()) {
+            log.info("Rejected CSV file {} with {} errors", file.getOriginalFilename(), errors.size());
+            return new CsvUploadResponse(false, results, errors);
+        }
 
-                    ChecklistCreateDTO dto = new ChecklistCreateDTO();
+        // Upsert every batch in one transaction, so a failing batch, or a row invalidated since the validation, rolls back the whole file
+        TransactionStatus transaction = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        try {
+            upsertCSV(file, rules, errors, results, rowMapper, batchUpsert);
+        }
+        catch (IOException | ServiceException | RuntimeException e) {
+            transactionManager.rollback(transaction);
+            throw e;
+        }
+        if (!errors.isEmpty()) {
+            transactionManager.rollback(transaction);
+            log.info("Rolled back CSV file {} with {} errors found while importing", file.getOriginalFilename(), errors.size());
+            return new CsvUploadResponse(false, new ArrayList<>(), errors);
+        }
+        transactionManager.commit(transaction);
 
-                    // Get cell values
-                    String value1 = getCellValueAsString(row.getCell(1));
-                    String value2 = getCellValueAsString(row.getCell(2));
-                    String controlChecklist = getCellValueAsString(row.getCell(4));
-                    String description = getCellValueAsString(row.getCell(5));
+        log.info("Imported {} rows from CSV file {}", results.size(), file.getOriginalFilename());
+        return new CsvUploadResponse(true, results, errors);
+    }
 
-                    // Skip row if required fields are missing
-                    if (isEmpty(value1) || isEmpty(value2) || isEmpty(controlChecklist)) {
-                        continue;
-                    }
 
-                    String controlName = String.valueOf(value1) + ":" + String.valueOf(value2);
+    //FUNCTION TO UPSERT THE VALID ROWS OF A CSV FILE BATCH BY BATCH, COLLECTING THE ERRORS OF THE OTHERS
+    private <T> void upsertCSV(MultipartFile file, CsvRules rules, List<RowErrorDTO> errors, List<UpsertResultDTO> results, Function<List<String>, T> rowMapper, BatchUpsert<T> batchUpsert) throws IOException, ServiceException {
+        streamCSV(file, rules, errors, batch -> {
+            List<T> rows = new ArrayList<>();
+            batch.records().forEach(values -> rows.add(rowMapper.apply(values)));
 
-                    // If the control name has changed, reset the currentControlName
-                    if (!controlName.equals(currentControlName)) {
-                        currentControlName = controlName;
-                    }
+            // Rows of a batch are numbered from zero, report them at their record number in the file like the errors
+            List<UpsertResultDTO> batchResults = batchUpsert.apply(rows);
+            for (int i = 0; i < batchResults.size(); i++) {
+                batchResults.get(i).setRow(batch.rowNumbers().get(i));
+                results.add(batchResults.get(i));
+            }
+        });
+    }
 
-                    dto.setChecklistId(null);
-                    dto.setControlChecklist(removeQuotes(controlChecklist));
-                    dto.setDescription(removeQuotes(description));
-                    dto.setStatus(true);
-                    dto.setControlName(controlName);
 
-                    checklistEntries.add(dto);
+    //FUNCTION TO READ A CSV FILE RECORD BY RECORD AND HAND THE VALID ROWS OVER IN BATCHES, EACH UPSERTED IN ITS OWN TRANSACTION UNLESS ONE IS ALREADY ACTIVE
+    private <E extends Exception> void streamCSV(MultipartFile file, CsvRules rules, List<RowErrorDTO> errors, CsvBatchHandler<E> handler) throws IOException, E {
+        String sheetName = csvSheetName(file);
+        CsvBatch batch = new CsvBatch(new ArrayList<>(), new ArrayList<>());
+
+        try (CsvReader reader = new CsvReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            // Skip header row
+            reader.readRecord();
+
+            List<String> values;
+            while ((values = reader.readRecord()) != null) {
+                // Skip blank lines
+                if (values.size() == 1 && isEmpty(values.get(0))) {
+                    continue;
+                }
+                batch.records().add(new ArrayList<>(values));
+                batch.rowNumbers().add((int) reader.getRecordNumber());
+
+                if (batch.records().size() == CSV_BATCH_SIZE) {
+                    handler.accept(validateCSVBatch(batch, rules, sheetName, errors));
+                    batch = new CsvBatch(new ArrayList<>(), new ArrayList<>());
                 }
             }
         }
+        if (!batch.records().isEmpty()) {
+            handler.accept(validateCSVBatch(batch, rules, sheetName, errors));
+        }
+    }
+
+
+    //FUNCTION TO CHECK EACH ROW OF A BATCH, COLLECTING THE ERRORS AND RETURNING THE VALID ROWS
+    private CsvBatch validateCSVBatch(CsvBatch batch, CsvRules rules, String sheetName, List<RowErrorDTO> errors) {
+        // Preload the ids and parent names the batch refers to
+        Set<String> ids = new HashSet<>();
+        Set<String> parentNames = new HashSet<>();
+        for (List<String> values : batch.records()) {
+            String id = toId(getCell(values, 0));
+            if (id != null) {
+                ids.add(id);
+            }
+            parentNames.add(getCell(values, 4).trim());
+        }
+        Set<String> existingIds = ids.isEmpty() ? Set.of() : new HashSet<>(rules.existingIds().apply(ids));
+        Set<String> existingParents = new HashSet<>(rules.existingParentNames().apply(parentNames));
+
+        CsvBatch validRows = new CsvBatch(new ArrayList<>(), new ArrayList<>());
+        for (int i = 0; i < batch.records().size(); i++) {
+            List<String> values = batch.records().get(i);
+            int row = batch.rowNumbers().get(i);
+            int errorCount = errors.size();
+
+            String id = toId(getCell(values, 0));
+            if (id != null && !existingIds.contains(id)) {
+                errors.add(new RowErrorDTO(sheetName, row, "A", rules.entity() + " " + id + " does not exist"));
+            }
+            String name = getCell(values, 1).trim();
+            if (name.isEmpty()) {
+                errors.add(new RowErrorDTO(sheetName, row, "B", rules.entity() + " name is required"));
+            }
+            else if (name.length() > MAX_TEXT_LENGTH) {
+                errors.add(new RowErrorDTO(sheetName, row, "B", "Must be at most " + MAX_TEXT_LENGTH + " characters"));
+            }
+            if (getCell(values, 2).trim().length() > MAX_TEXT_LENGTH) {
+                errors.add(new RowErrorDTO(sheetName, row, "C", "Must be at most " + MAX_TEXT_LENGTH + " characters"));
+            }
+            String status = getCell(values, 3).trim();
+            if (!status.equalsIgnoreCase("true") && !status.equalsIgnoreCase("false")) {
+                errors.add(new RowErrorDTO(sheetName, row, "D", "Status must be true or false"));
+            }
+            String parentName = getCell(values, 4).trim();
+            if (parentName.isEmpty()) {
+                errors.add(new RowErrorDTO(sheetName, row, "E", rules.parent() + " is required"));
+            }
+            else if (!existingParents.contains(parentName)) {
+                errors.add(new RowErrorDTO(sheetName, row, "E", rules.parent() + " " + parentName + " does not exist"));
+            }
 
-        return checklistEntries;
+            if (errors.size() == errorCount) {
+                validRows.records().add(values);
+                validRows.rowNumbers().add(row);
+            }
+        }
+        return validRows;
     }
 
-    /**
-     * Safely converts an Excel cell value to String, handling different data types
-     * @param cell The Excel cell to read
-     * @return String representation of the cell value, or empty string if cell is null
-     */
-//    public static String getCellValueAsString(Cell cell) {
-//        if (cell == null) {
-//            return "";
-//        }
-//
-//        switch (cell.getCellType()) {
-//            case STRING:
-//                return cell.getStringCellValue();
-//            case NUMERIC:
-//                if (DateUtil.isCellDateFormatted(cell)) {
-//                    return cell.getDateCellValue().toString();
-//                }
-//                // Check if the numeric value has a decimal point
-//                double numericValue = cell.getNumericCellValue();
-//                if (numericValue % 1 == 0) {
-//                    // If the numeric value is a whole number, return it as a string
-//                    return String.format("%.0f", numericValue);
-//                } else {
-//                    // If the numeric value has a decimal point, return it as is
-//                    return String.valueOf(numericValue);
-//                }
-//            case BOOLEAN:
-//                return String.valueOf(cell.getBooleanCellValue());
-//            case FORMULA:
-//                try {
-//                    return cell.getStringCellValue();
-//                } catch (IllegalStateException e) {
-//                    // If formula results in a numeric value
-//                    return String.valueOf(cell.getNumericCellValue());
-//                }
-//            default:
-//                return "";
-//        }
-//    }
-
-    public static String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
+
+    //Errors of a CSV upload are reported against the name of the file
+    private static String csvSheetName(MultipartFile file) {
+        return file.getOriginalFilename() == null || file.getOriginalFilename().isBlank() ? "CSV" : file.getOriginalFilename();
+    }
+
+
+    private static <E> List<String> ids(List<E> entities, Function<E, String> idOf) {
+        return entities.stream().map(idOf).toList();
+    }
+
+
+    //Labels and lookups used to validate the rows of a CSV upload
+    private record CsvRules(String entity, String parent, Function<Collection<String>, List<String>> existingIds, Function<Collection<String>, List<String>> existingParentNames) {
+    }
+
+
+    //Rows of a CSV file with their one-based record numbers
+    private record CsvBatch(List<List<String>> records, List<Integer> rowNumbers) {
+    }
+
+
+    //Receives the valid rows of each batch of a CSV file
+    @FunctionalInterface
+    private interface CsvBatchHandler<E extends Exception> {
+        void accept(CsvBatch batch) throws E;
+    }
+
+
+    //FUNCTION TO CREATE A CONTROL DTO FROM A CSV RECORD: ID, NAME, DESCRIPTION, STATUS, CONTROL CATEGORY
+    private ControlCreateDTO toControlCreateDTO(List<String> values) {
+        ControlCreateDTO dto = new ControlCreateDTO();
+        dto.setControlId(toId(getCell(values, 0)));
+        dto.setControlName(getCell(values, 1).trim());
+        dto.setDescription(getCell(values, 2).trim());
+        dto.setStatus(Boolean.parseBoolean(getCell(values, 3).trim()));
+        dto.setControlCategoryName(getCell(values, 4).trim());
+        return dto;
+    }
+
+
+    //FUNCTION TO CREATE A CHECKLIST DTO FROM A CSV RECORD: ID, CHECKLIST, DESCRIPTION, STATUS, CONTROL
+    private ChecklistCreateDTO toChecklistCreateDTO(List<String> values) {
+        ChecklistCreateDTO dto = new ChecklistCreateDTO();
+        dto.setChecklistId(toId(getCell(values, 0)));
+        dto.setControlChecklist(getCell(values, 1).trim());
+        dto.setDescription(getCell(values, 2).trim());
+        dto.setStatus(Boolean.parseBoolean(getCell(values, 3).trim()));
+        dto.setControlName(getCell(values, 4).trim());
+        return dto;
+    }
+
+
+    // Helper method to treat a blank id column as a new row
+    private static String toId(String value) {
+        return isEmpty(value) ? null : value.trim();
+    }
+
+
+    //Upsert of one batch of rows, returning one result per row
+    @FunctionalInterface
+    private interface BatchUpsert<T> {
+        List<UpsertResultDTO> apply(List<T> batch) throws ServiceException;
+    }
+
+
+    //Builds the category, control and checklist entries from each valid row of one sheet as it is read, and the errors of the others
+    private static class MasterUploadParser implements ExcelRowReader.SheetParser<MasterUploadEntries> {
+
+        private final String sheetName;
+
+        private final MasterUploadEntries entries = new MasterUploadEntries();
+
+        private final Set<String> uniqueCategories = new HashSet<>();
+
+        private String previousControlName = null;
+
+        private boolean headerSkipped = false;
+
+        private MasterUploadParser(String sheetName) {
+            this.sheetName = sheetName;
         }
 
-        log.info("Cell Type: " + cell.getCellType());
-        log.info("Cell Value: " + cell.toString());
-
-
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                double numericValue = cell.getNumericCellValue();
-
-                // Use DecimalFormat to handle decimal representations consistently
-                DecimalFormat df = new DecimalFormat("#.##");
-                // Remove any trailing zeros while preserving meaningful decimal places
-                df.setDecimalSeparatorAlwaysShown(false);
-
-                return df.format(numericValue);
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    return cell.getStringCellValue();
-                } catch (IllegalStateException e) {
-                    // If formula results in a numeric value
-                    double formulaNumericValue = cell.getNumericCellValue();
-                    DecimalFormat dfFormula = new DecimalFormat("#.##");
-                    dfFormula.setDecimalSeparatorAlwaysShown(false);
-                    return dfFormula.format(formulaNumericValue);
-                }
-            default:
-                return "";
+        @Override
+        public MasterUploadEntries finish() {
+            return entries;
+        }
+
+        @Override
+        public void accept(int rowNum, List<String> cells) {
+            // Skip the first row of the sheet
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+
+            // Check if row is empty or contains no meaningful data
+            if (isEmptyRow(cells)) {
+                return;
+            }
+
+            String category = getCell(cells, 0);
+            String value1 = getCell(cells, 1);
+            String value2 = getCell(cells, 2);
+            String controlChecklist = getCell(cells, 4);
+            String description = getCell(cells, 5);
+
+            // A row with an error adds nothing, so the other rows can still be committed
+            int row = rowNum + 1;
+            if (!validateRow(row, category, value1, value2, controlChecklist, description)) {
+                return;
+            }
+
+            addControlCategory(category);
+            addControl(category, value1, value2);
+            addChecklist(value1, value2, controlChecklist, description, row);
+        }
+
+        private boolean validateRow(int row, String category, String value1, String value2, String controlChecklist, String description) {
+            int errorCount = entries.getErrors().size();
+
+            // A control needs both its number and its name, and a checklist needs its control
+            if (isEmpty(value1) && (!isEmpty(value2) || !isEmpty(controlChecklist))) {
+                addError(row, "B", "Control number is required");
+            }
+            if (isEmpty(value2) && (!isEmpty(value1) || !isEmpty(controlChecklist))) {
+                addError(row, "C", "Control name is required");
+            }
+            if (isEmpty(category) && isEmpty(controlChecklist) && !isEmpty(value1) && !isEmpty(value2)) {
+                addError(row, "A", "Control category is required");
+            }
+
+            checkLength(row, "A", removeQuotes(category));
+            checkLength(row, "C", value1 + ":" + value2);
+            checkLength(row, "E", removeQuotes(controlChecklist));
+            checkLength(row, "F", removeQuotes(description));
+
+            return entries.getErrors().size() == errorCount;
+        }
+
+        private void checkLength(int row, String column, String value) {
+            if (value.length() > MAX_TEXT_LENGTH) {
+                addError(row, column, "Must be at most " + MAX_TEXT_LENGTH + " characters");
+            }
+        }
+
+        private void addError(int row, String column, String message) {
+            entries.getErrors().add(new RowErrorDTO(sheetName, row, column, message));
+        }
+
+        private void addControlCategory(String category) {
+            if (isEmpty(category)) {
+                return;
+            }
+
+            // Only create category if it's not already processed
+            if (uniqueCategories.add(category)) {
+                ControlCategoryCreateDTO dto = new ControlCategoryCreateDTO();
+                dto.setControlCategoryId(null);
+                dto.setControlCategoryName(removeQuotes(category));
+                entries.getControlCategoryEntries().add(dto);
+            }
+        }
+
+        private void addControl(String category, String value1, String value2) {
+            // Additional validation to ensure required fields are present
+            if (isEmpty(category) || isEmpty(value1) || isEmpty(value2)) {
+                return;
+            }
+
+            String controlName = value1 + ":" + value2;
+
+            // Check if the controlName is the same as the previous one
+            if (controlName.equals(previousControlName)) {
+                return;
+            }
+
+            ControlCreateDTO dto = new ControlCreateDTO();
+            dto.setControlId(null);
+            dto.setControlName(controlName);
+            dto.setDescription("");
+            dto.setStatus(true);
+            dto.setControlCategoryName(removeQuotes(category));
+
+            entries.getControlEntries().add(dto);
+            previousControlName = controlName;
+        }
+
+        private void addChecklist(String value1, String value2, String controlChecklist, String description, int row) {
+            // Skip row if required fields are missing
+            if (isEmpty(value1) || isEmpty(value2) || isEmpty(controlChecklist)) {
+                return;
+            }
+
+            ChecklistCreateDTO dto = new ChecklistCreateDTO();
+            dto.setChecklistId(null);
+            dto.setControlChecklist(removeQuotes(controlChecklist));
+            dto.setDescription(removeQuotes(description));
+            dto.setStatus(true);
+            dto.setControlName(value1 + ":" + value2);
+
+            entries.getChecklistEntries().add(dto);
+            entries.getChecklistSources().add(new SourceRowDTO(sheetName, row));
         }
     }
 
+
+    //Copies every row of one sheet into an error report
+    private static class ErrorReportCopier implements ExcelRowReader.SheetParser<ErrorReportSheet> {
+
+        private final ErrorReportSheet sheet;
+
+        private ErrorReportCopier(ErrorReportSheet sheet) {
+            this.sheet = sheet;
+        }
+
+        @Override
+        public void accept(int rowNum, List<String> cells) {
+            sheet.addRow(rowNum, cells);
+        }
+
+        @Override
+        public ErrorReportSheet finish() {
+            return sheet;
+        }
+    }
+
+
+    // Helper method to read a cell of a streamed row, which omits trailing blank cells
+    private static String getCell(List<String> cells, int index) {
+        return index < cells.size() ? cells.get(index) : "";
+    }
+
     /**
      * Removes quotes from the beginning and end of a string if they exist
      * @param value The string to process
@@ -277,15 +813,10 @@ public class FileUploadServiceImpl implements FileUploadService {
     }
 
     // Helper method to check if a row is empty
-    private boolean isEmptyRow(Row row) {
-        if (row == null) {
-            return true;
-        }
-
+    private static boolean isEmptyRow(List<String> cells) {
         // Check if all cells in the first few columns are empty
         for (int i = 0; i <= 2; i++) {
-            Cell cell = row.getCell(i);
-            if (cell != null && !isEmpty(getCellValueAsString(cell))) {
+            if (!isEmpty(getCell(cells, i))) {
                 return false;
             }
         }
@@ -293,7 +824,7 @@ public class FileUploadServiceImpl implements FileUploadService {
     }
 
     // Helper method to check if a string is empty or null
-    private boolean isEmpty(String str) {
+    private static boolean isEmpty(String str) {
         return str == null || str.trim().isEmpty();
     }
 }
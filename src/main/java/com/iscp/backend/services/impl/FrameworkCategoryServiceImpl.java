@@ -117,7 +117,7 @@ public class FrameworkCategoryServiceImpl implements FrameworkCategoryService {
             log.info("No framework categories found");
             return List.of();
         }
-        log.info("Fetched framework categories :{}",frameworkCategories);
+        log.info("Fetched {} framework categories",frameworkCategories.size());
         return  frameworkCategoryMapper.toFrameworkCategoryDTO(frameworkCategories);
     }
 }
@@ -1,6 +1,11 @@
 package com.iscp.backend.services.impl;
 
-import com.iscp.backend.components.ExportExcel;
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSchema;
+import com.iscp.backend.components.ExportSheet;
+import com.iscp.backend.components.ExportWriter;
+import com.iscp.backend.components.ExportWriterFactory;
+import com.iscp.backend.components.ExportCursor;
 import com.iscp.backend.components.Pagination;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.FrameworkCategoryNotFoundException;
@@ -14,15 +19,15 @@ import com.iscp.backend.services.FrameworkService;
 import jakarta.persistence.criteria.Predicate;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -33,13 +38,26 @@ import java.util.stream.Collectors;
 @Slf4j
 public class FrameworkServiceImpl implements FrameworkService {
 
+    //Columns of the exports, in order, and their headers
+    private static final List<String> EXPORT_FIELDS = List.of("frameworkCategory", "frameworkName", "startDate", "description", "status");
+
+    private static final Map<String, String> EXPORT_HEADERS = Map.of(
+            "frameworkCategory", "FRAMEWORK CATEGORY",
+            "frameworkName", "FRAMEWORK",
+            "startDate", "COMPLIANCE CALENDAR",
+            "description", "DESCRIPTION",
+            "status", "STATUS"
+    );
+
     private final FrameworkMapper frameworkMapper;
 
     private final FrameworkRepository frameworkRepository;
 
     private final FrameworkCategoryRepository frameworkCategoryRepository;
 
-    private final ExportExcel exportExcel;
+    private final ExportWriterFactory exportWriterFactory;
+
+    private final ExportCursor exportCursor;
 
 
     //FUNCTION TO ADD/UPDATE FRAMEWORK
@@ -124,6 +142,13 @@ public class FrameworkServiceImpl implements FrameworkService {
                 throw new FrameworkNotFoundException();
             }
 
+            // Reject the update if the framework was modified after the client loaded it
+            if (updateDTO.getVersion() != null && !updateDTO.getVersion().equals(optionalFramework.get().getVersion()))
+            {
+                log.warn("Framework {} was modified concurrently", updateDTO.getFrameworkId());
+                throw new ObjectOptimisticLockingFailureException(Framework.class, updateDTO.getFrameworkId());
+            }
+
             // Check for Framework category is present or not
             Optional<FrameworkCategory> frameworkCategory = frameworkCategoryRepository.findByFrameworkCategoryName(updateDTO.getFrameworkCategoryName());
 
@@ -200,42 +225,45 @@ public class FrameworkServiceImpl implements FrameworkService {
     }
 
     @Override
-    public ByteArrayResource exportExcelFramework(FrameworkFilterDTO filter) throws IOException {
+    public void exportExcelFramework(FrameworkFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
         log.info("Starting export of framework data to Excel");
 
-        // Retrieve all Framework DTOs
-        PaginatedResponse<FrameworkDTO> paginatedResponse = getFilterFrameworkPaginated(filter);
-        List<FrameworkDTO> frameworksList=paginatedResponse.getContent();
-        log.debug("Fetched {} framework records for export", frameworksList.size());
-
-        for (FrameworkDTO frameworkDTO : frameworksList) {
-            // Set the complianceCalendar field by concatenating startDate and endDate
-            frameworkDTO.setStartDate(filter.getStartDate()+ " - " + filter.getEndDate());
+        // Filter and order of the exported frameworks, the paging of the filter is ignored
+        Specification<Framework> spec = frameworkFilter(filter.getFrameworkCategory(), filter.getFramework(), filter.getStatus(), filter.getStartDate(), filter.getEndDate());
+        Sort sort = Pagination.createSort(filter.getSortField(), filter.getSortOrder());
+        String complianceCalendar = filter.getStartDate() + " - " + filter.getEndDate();
+
+        //Stream the full filtered result into the export, chunk by chunk
+        try (ExportWriter<FrameworkDTO> writer = exportWriterFactory.open(format, outputStream, FrameworkDTO.class, "framework", EXPORT_FIELDS, EXPORT_HEADERS)) {
+            long count = exportCursor.forEachChunk(frameworkRepository, spec, sort, chunk -> {
+                List<FrameworkDTO> frameworksList = frameworkMapper.toFrameworkDTO(chunk);
+                for (FrameworkDTO frameworkDTO : frameworksList) {
+                    // Set the complianceCalendar field by concatenating startDate and endDate
+                    frameworkDTO.setStartDate(complianceCalendar);
+                }
+                writer.writeRows(frameworksList);
+            });
+            writer.finish();
+            log.debug("Exported {} framework records", count);
         }
-        // Output stream and configuration for Excel export
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        List<String> fieldsToInclude = List.of(
-                "frameworkCategory",
-                "frameworkName",
-                "startDate",
-                "description",
-                "status"
-        );
-        Map<String, String> customHeaders = new HashMap<>();
-        customHeaders.put("frameworkCategory", "FRAMEWORK CATEGORY");
-        customHeaders.put("frameworkName", "FRAMEWORK");
-        customHeaders.put("startDate", "COMPLIANCE CALENDAR");
-        customHeaders.put("description", "DESCRIPTION");
-        customHeaders.put("status", "STATUS");
-
-        // Use the existing export method
-        exportExcel.exportToExcel(outputStream, frameworksList, "framework", fieldsToInclude, customHeaders);
         log.info("Successfully exported framework data to Excel");
+    }
 
-        // Convert Output Stream to ByteArrayResource
-        byte[] excelContent = outputStream.toByteArray();
-        ByteArrayResource resource = new ByteArrayResource(excelContent);
-        return resource;
+
+    //FUNCTION TO BUILD THE FRAMEWORK SHEET OF THE MASTER DATA EXPORT
+    @Override
+    public ExportSheet getExportSheet() throws IOException {
+        ExportSchema<FrameworkDTO> schema = ExportSchema.of(FrameworkDTO.class, EXPORT_FIELDS, EXPORT_HEADERS);
+
+        //Encode and spool all frameworks into rows, ordered by name
+        return ExportSheet.spool("framework", schema.getHeaders(), sheet ->
+                exportCursor.forEachChunk(frameworkRepository, frameworkFilter(null, null, null, null, null), Sort.by("frameworkName"), chunk -> {
+                    for (FrameworkDTO frameworkDTO : frameworkMapper.toFrameworkDTO(chunk)) {
+                        // Set the complianceCalendar field by concatenating startDate and endDate of the framework
+                        frameworkDTO.setStartDate(frameworkDTO.getStartDate() + " - " + frameworkDTO.getEndDate());
+                        sheet.addRow(schema.format(frameworkDTO));
+                    }
+                }));
     }
 
 
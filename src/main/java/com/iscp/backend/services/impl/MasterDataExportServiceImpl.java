@@ -0,0 +1,155 @@
+package com.iscp.backend.services.impl;
+
+import com.iscp.backend.components.ExportExcel;
+import com.iscp.backend.components.ExportSheet;
+import com.iscp.backend.services.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Implementation of the {@link MasterDataExportService} interface.
+ * The sheets are queried and encoded concurrently on a bounded executor, each spooling its rows to a temp file, then
+ * written in order into one workbook, so the export takes about as long as its slowest sheet and memory doesn't grow
+ * with the number of rows.
+ */
+@Service
+@Slf4j
+public class MasterDataExportServiceImpl implements MasterDataExportService {
+
+    private final FrameworkService frameworkService;
+
+    private final ControlService controlService;
+
+    private final ChecklistService checklistService;
+
+    private final RoleService roleService;
+
+    private final UsersService usersService;
+
+    private final ExportExcel exportExcel;
+
+    private final ThreadPoolTaskExecutor masterDataExportExecutor;
+
+    public MasterDataExportServiceImpl(FrameworkService frameworkService, ControlService controlService, ChecklistService checklistService, RoleService roleService, UsersService usersService, ExportExcel exportExcel, @Qualifier("masterDataExportExecutor") ThreadPoolTaskExecutor masterDataExportExecutor) {
+        this.frameworkService = frameworkService;
+        this.controlService = controlService;
+        this.checklistService = checklistService;
+        this.roleService = roleService;
+        this.usersService = usersService;
+        this.exportExcel = exportExcel;
+        this.masterDataExportExecutor = masterDataExportExecutor;
+    }
+
+
+    /**
+     * Exports frameworks, controls, checklists, roles and users to one Excel, with one sheet per entity.
+     *
+     * @param outputStream the stream the Excel is written to.
+     * @throws IOException if an error occurs during export.
+     */
+    @Override
+    public void exportMasterData(OutputStream outputStream) throws IOException {
+        long startTime = System.nanoTime();
+
+        //Sheets in the order they appear in the workbook
+        List<Callable<ExportSheet>> sheetTasks = List.of(
+                frameworkService::getExportSheet,
+                controlService::getExportSheet,
+                checklistService::getExportSheet,
+                roleService::getExportSheet,
+                usersService::getExportSheet
+        );
+
+        //Query and encode every sheet concurrently, each spooling its rows to its own temp file
+        List<Future<ExportSheet>> futures = new ArrayList<>();
+        for (Callable<ExportSheet> sheetTask : sheetTasks) {
+            futures.add(masterDataExportExecutor.submit(new DelegatingSecurityContextCallable<>(() -> discardIfCancelled(sheetTask.call()))));
+        }
+
+        List<ExportSheet> sheets = new ArrayList<>();
+        try {
+            for (Future<ExportSheet> future : futures) {
+                sheets.add(awaitSheet(future));
+            }
+            log.debug("Built {} master data sheets in {} ms", sheets.size(), (System.nanoTime() - startTime) / 1_000_000);
+
+            exportExcel.exportSheets(outputStream, sheets);
+        }
+        finally {
+            //Stop the remaining sheets when one of them failed, and delete the spooled rows
+            futures.forEach(future -> future.cancel(true));
+            for (Future<ExportSheet> future : futures) {
+                if (future.isDone() && !future.isCancelled()) {
+                    closeQuietly(awaitQuietly(future));
+                }
+            }
+        }
+        log.info("Successfully exported master data to Excel");
+    }
+
+
+    //A sheet finished after the export was cancelled is never written, delete its rows right away
+    private ExportSheet discardIfCancelled(ExportSheet sheet) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            sheet.close();
+            throw new InterruptedIOException("Master data export cancelled");
+        }
+        return sheet;
+    }
+
+
+    //The sheet of a completed task, null if the task failed
+    private ExportSheet awaitQuietly(Future<ExportSheet> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+
+    private void closeQuietly(ExportSheet sheet) {
+        if (sheet == null) {
+            return;
+        }
+        try {
+            sheet.close();
+        }
+        catch (IOException e) {
+            log.warn("Unable to delete the rows of master data sheet {}", sheet.getName(), e);
+        }
+    }
+
+
+    private ExportSheet awaitSheet(Future<ExportSheet> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Master data export interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Unable to build master data sheet", e.getCause());
+        }
+    }
+}
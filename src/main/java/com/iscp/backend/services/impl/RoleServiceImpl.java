@@ -1,6 +1,11 @@
 package com.iscp.backend.services.impl;
 
-import com.iscp.backend.components.ExportExcel;
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSchema;
+import com.iscp.backend.components.ExportSheet;
+import com.iscp.backend.components.ExportWriter;
+import com.iscp.backend.components.ExportWriterFactory;
+import com.iscp.backend.components.ExportCursor;
 import com.iscp.backend.components.Pagination;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
@@ -15,15 +20,14 @@ import jakarta.persistence.criteria.Predicate;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -36,13 +40,24 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RoleServiceImpl implements RoleService {
 
+    //Columns of the exports, in order, and their headers
+    private static final List<String> EXPORT_FIELDS = List.of("roleName", "permissions", "status");
+
+    private static final Map<String, String> EXPORT_HEADERS = Map.of(
+            "roleName", "ROLE NAME",
+            "permissions", "PERMISSIONS",
+            "status", "STATUS"
+    );
+
     private final RoleRepository roleRepository;
 
     private final PermissionRepository permissionRepository;
 
     private final RoleMapper roleMapper;
 
-    private final ExportExcel exportExcel;
+    private final ExportWriterFactory exportWriterFactory;
+
+    private final ExportCursor exportCursor;
 
 
     /**
@@ -62,7 +77,7 @@ public class RoleServiceImpl implements RoleService {
             log.info("No roles found");
             return List.of();
         }
-        log.info("Fetched roles :{}", roles);
+        log.info("Fetched {} roles", roles.size());
 
         //Convert list of Role Entity to list of Role DTO and return
         return roleMapper.toRoleDTOs(roles);
@@ -280,37 +295,45 @@ public class RoleServiceImpl implements RoleService {
      * Exports role records to an Excel.
      *
      * @param filter RoleFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ByteArrayResource containing the Excel file data.
+     * @param format the format to export in.
+     * @param outputStream the stream the export is written to.
      * @throws IOException if an error occurs during export.
      */
     @Override
-    public ByteArrayResource exportExcelRole(RoleFilterDTO filter) throws IOException {
+    public void exportExcelRole(RoleFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
         log.info("Starting export of role data to Excel");
 
-        // Retrieve all role DTOs
-        PaginatedResponse<RoleDTO> paginatedResponse = getAllRolesPaginatedSearchFilter(filter);
-        List<RoleDTO> roleList = paginatedResponse.getContent();
-        log.debug("Fetched {} role records for export", roleList.size());
-
-        // Output stream and configuration for Excel export
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        List<String> fieldsToInclude = List.of(
-                "roleName",
-                "permissions",
-                "status"
-        );
-        Map<String, String> customHeaders = new HashMap<>();
-        customHeaders.put("roleName", "ROLE NAME");
-        customHeaders.put("permissions", "PERMISSIONS");
-        customHeaders.put("status", "STATUS");
-
-        // Use the existing export method
-        exportExcel.exportToExcel(outputStream, roleList, "roles", fieldsToInclude, customHeaders);
+        // Filter and order of the exported roles, the paging of the filter is ignored
+        Specification<Role> spec = roleFilter(filter.getRoleName(), filter.getStatus());
+        Sort sort = Pagination.createSort(filter.getSortField(), filter.getSortOrder());
+
+
+        //Stream the full filtered result into the export, chunk by chunk
+        try (ExportWriter<RoleDTO> writer = exportWriterFactory.open(format, outputStream, RoleDTO.class, "roles", EXPORT_FIELDS, EXPORT_HEADERS)) {
+            long count = exportCursor.forEachChunk(roleRepository, spec, sort, chunk -> writer.writeRows(roleMapper.toRoleDTOs(chunk)));
+            writer.finish();
+            log.debug("Exported {} role records", count);
+        }
         log.info("Successfully exported role data to Excel");
+    }
+
 
-        // Convert Output Stream to ByteArrayResource
-        byte[] excelContent = outputStream.toByteArray();
-        ByteArrayResource resource = new ByteArrayResource(excelContent);
-        return resource;
+    /**
+     * Builds the sheet of all roles for the master data export.
+     *
+     * @return the {@link ExportSheet} with the spooled rows of all roles, which the caller closes.
+     * @throws IOException if the roles cannot be read.
+     */
+    @Override
+    public ExportSheet getExportSheet() throws IOException {
+        ExportSchema<RoleDTO> schema = ExportSchema.of(RoleDTO.class, EXPORT_FIELDS, EXPORT_HEADERS);
+
+        //Encode and spool all roles into rows, ordered by name
+        return ExportSheet.spool("roles", schema.getHeaders(), sheet ->
+                exportCursor.forEachChunk(roleRepository, roleFilter(null, null), Sort.by("roleName"), chunk -> {
+                    for (RoleDTO roleDTO : roleMapper.toRoleDTOs(chunk)) {
+                        sheet.addRow(schema.format(roleDTO));
+                    }
+                }));
     }
 }
\ No newline at end of file
@@ -0,0 +1,421 @@
+package com.iscp.backend.services.impl;
+
+import com.iscp.backend.components.Batches;
+import com.iscp.backend.components.CsvReader;
+import com.iscp.backend.components.ExcelRowReader;
+import com.iscp.backend.components.PeriodicityManager;
+import com.iscp.backend.dto.ImportResultDTO;
+import com.iscp.backend.dto.RowErrorDTO;
+import com.iscp.backend.dto.SecurityComplianceCreateDTO;
+import com.iscp.backend.dto.SourceRowDTO;
+import com.iscp.backend.exceptions.ServiceException;
+import com.iscp.backend.models.Checklist;
+import com.iscp.backend.models.Department;
+import com.iscp.backend.models.Enum;
+import com.iscp.backend.models.Framework;
+import com.iscp.backend.repositories.ChecklistRepository;
+import com.iscp.backend.repositories.ControlRepository;
+import com.iscp.backend.repositories.DepartmentRepository;
+import com.iscp.backend.repositories.FrameworkRepository;
+import com.iscp.backend.services.SecurityComplianceImportService;
+import com.iscp.backend.services.SecurityComplianceService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of the {@link SecurityComplianceImportService} interface for importing SecurityCompliance schedules.
+ * Each row has the framework, control, checklists, departments, periodicity and event dates of one compliance line,
+ * with several checklists, departments or event dates separated by semicolons or line breaks.
+ */
+@Service
+@Slf4j
+@AllArgsConstructor
+public class SecurityComplianceImportServiceImpl implements SecurityComplianceImportService {
+
+    //Number of rows created per transaction, each row may expand into several checklists and periods
+    private static final int IMPORT_BATCH_SIZE = 200;
+
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("[;\\r\\n]+");
+
+    //Event dates are written like "May 2024", as in the add-edit form
+    private static final DateTimeFormatter EVENT_DATE_FORMATTER = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("MMMM yyyy")
+            .toFormatter(Locale.ENGLISH);
+
+    private final ExcelRowReader excelRowReader;
+
+    private final PeriodicityManager periodicityManager;
+
+    private final SecurityComplianceService securityComplianceService;
+
+    private final FrameworkRepository frameworkRepository;
+
+    private final ControlRepository controlRepository;
+
+    private final ChecklistRepository checklistRepository;
+
+    private final DepartmentRepository departmentRepository;
+
+
+    /**
+     * Imports security compliance schedules from an Excel or CSV file, streaming the rows into batches.
+     *
+     * @param file the .xlsx or .csv file to import.
+     * @return an {@link ImportResultDTO} with the number of rows imported and the errors of the others.
+     * @throws IOException if the file cannot be read.
+     */
+    @Override
+    public ImportResultDTO importSecurityCompliance(MultipartFile file) throws IOException {
+        String fileName = file.getOriginalFilename() == null ? "" : file.getOriginalFilename();
+        ComplianceImport complianceImport = new ComplianceImport();
+
+        if (fileName.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            try (CsvReader reader = new CsvReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                //Skip header row
+                reader.readRecord();
+
+                //Errors of a CSV file are reported against the name of the file
+                String sheetName = fileName.isBlank() ? "CSV" : fileName;
+                List<String> values;
+                while ((values = reader.readRecord()) != null) {
+                    complianceImport.accept(sheetName, (int) reader.getRecordNumber(), values);
+                }
+            }
+        }
+        else {
+            //Rows are created on the calling thread as the sheets are read, one sheet after the other
+            try (InputStream inputStream = file.getInputStream()) {
+                excelRowReader.readSheetsInOrder(inputStream, (sheetIndex, sheetName) -> new ComplianceSheetParser(sheetName, complianceImport));
+            }
+        }
+        complianceImport.flush();
+
+        ImportResultDTO result = complianceImport.result;
+        log.info("Imported {} of {} security compliance rows from {}, creating {} records, with {} errors", result.getRowsImported(), result.getRowsRead(), fileName, result.getRecordsCreated(), result.getErrors().size());
+        return result;
+    }
+
+
+    /**
+     * Builds the DTO of one row, or reports why it cannot be imported.
+     *
+     * @param cells the cells of the row: framework, control, checklists, departments, periodicity and event dates.
+     * @param source the sheet and one-based row number of the row.
+     * @param errors the list to add the errors of the row to.
+     * @return the {@link SecurityComplianceCreateDTO} of the row, or {@code null} if the row is invalid.
+     */
+    private SecurityComplianceCreateDTO toSecurityComplianceCreateDTO(List<String> cells, SourceRowDTO source, List<RowErrorDTO> errors) {
+        int errorCount = errors.size();
+
+        String frameworkName = getCell(cells, 0);
+        if (frameworkName.isEmpty()) {
+            errors.add(error(source, "A", "Framework is required"));
+        }
+        String controlName = getCell(cells, 1);
+        if (controlName.isEmpty()) {
+            errors.add(error(source, "B", "Control is required"));
+        }
+        Set<String> checklistNames = new LinkedHashSet<>(splitList(getCell(cells, 2)));
+        if (checklistNames.isEmpty()) {
+            errors.add(error(source, "C", "At least one checklist is required"));
+        }
+
+        Set<Enum.DepartmentType> departments = EnumSet.noneOf(Enum.DepartmentType.class);
+        List<String> departmentNames = splitList(getCell(cells, 3));
+        if (departmentNames.isEmpty()) {
+            errors.add(error(source, "D", "At least one department is required"));
+        }
+        for (String departmentName : departmentNames) {
+            Enum.DepartmentType departmentType = toDepartmentType(departmentName);
+            if (departmentType == null) {
+                errors.add(error(source, "D", "Unknown department " + departmentName));
+            }
+            else {
+                departments.add(departmentType);
+            }
+        }
+
+        Enum.Periodicity periodicity = toPeriodicity(getCell(cells, 4));
+        if (periodicity == null) {
+            errors.add(error(source, "E", "Periodicity must be one of Annually, Bi_Annually, Quarterly, Monthly or OnEvent"));
+        }
+
+        //Annual, bi-annual and quarterly compliance start at each of their event dates
+        List<String> eventDates = new ArrayList<>();
+        for (String eventDate : splitList(getCell(cells, 5))) {
+            try {
+                eventDates.add(YearMonth.parse(eventDate, EVENT_DATE_FORMATTER).format(EVENT_DATE_FORMATTER));
+            }
+            catch (DateTimeParseException e) {
+                errors.add(error(source, "F", "Event date " + eventDate + " must be a month and year, like May 2024"));
+            }
+        }
+        if (periodicity != null && periodicity != Enum.Periodicity.Monthly && periodicity != Enum.Periodicity.OnEvent
+                && eventDates.size() < periodicityManager.getFrequency(periodicity)) {
+            errors.add(error(source, "F", periodicity + " compliance needs " + periodicityManager.getFrequency(periodicity) + " event dates"));
+        }
+
+        if (errors.size() != errorCount) {
+            return null;
+        }
+
+        SecurityComplianceCreateDTO dto = new SecurityComplianceCreateDTO();
+        dto.setSecurityId("");
+        dto.setFrameworkName(frameworkName);
+        dto.setControlName(controlName);
+        dto.setChecklistName(checklistNames);
+        dto.setDepartments(departments);
+        dto.setPeriodicity(periodicity);
+        dto.setEventDate(eventDates);
+        dto.setEvidenceComplianceStatus(true);
+        return dto;
+    }
+
+
+    /**
+     * Reports the rows of a batch whose framework, control, checklists or departments do not exist.
+     * The references of the whole batch are checked with one IN query per entity.
+     *
+     * @param rows the rows of the batch.
+     * @param sources the sheet and row number of each row.
+     * @param existingDepartments the departments that exist.
+     * @param errors the list to add the errors to.
+     * @return the indexes of the valid rows.
+     */
+    private List<Integer> checkReferences(List<SecurityComplianceCreateDTO> rows, List<SourceRowDTO> sources, Set<Enum.DepartmentType> existingDepartments, List<RowErrorDTO> errors) {
+        Set<String> frameworkNames = new HashSet<>();
+        Set<String> controlNames = new HashSet<>();
+        rows.forEach(dto -> {
+            frameworkNames.add(dto.getFrameworkName());
+            controlNames.add(dto.getControlName());
+        });
+
+        Map<String, Framework> frameworks = new HashMap<>();
+        for (List<String> batch : Batches.partition(frameworkNames, Batches.IN_CLAUSE_SIZE)) {
+            frameworkRepository.findByFrameworkNameIn(batch).forEach(framework -> frameworks.put(framework.getFrameworkName(), framework));
+        }
+        Set<String> controls = new HashSet<>();
+        Map<String, Set<String>> checklistsByControl = new HashMap<>();
+        for (List<String> batch : Batches.partition(controlNames, Batches.IN_CLAUSE_SIZE)) {
+            controls.addAll(controlRepository.findControlNamesIn(batch));
+            for (Checklist checklist : checklistRepository.findWithControlByControlNameIn(batch)) {
+                checklistsByControl.computeIfAbsent(checklist.getControl().getControlName(), name -> new HashSet<>()).add(checklist.getControlChecklist());
+            }
+        }
+
+        List<Integer> validRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            SecurityComplianceCreateDTO dto = rows.get(i);
+            SourceRowDTO source = sources.get(i);
+            int errorCount = errors.size();
+
+            Framework framework = frameworks.get(dto.getFrameworkName());
+            if (framework == null) {
+                errors.add(error(source, "A", "Framework " + dto.getFrameworkName() + " does not exist"));
+            }
+            //Monthly compliance start at the start date of the framework
+            else if (dto.getPeriodicity() == Enum.Periodicity.Monthly && (framework.getStartDate() == null || framework.getStartDate().isBlank())) {
+                errors.add(error(source, "A", "Framework " + dto.getFrameworkName() + " has no start date for monthly compliance"));
+            }
+            if (!controls.contains(dto.getControlName())) {
+                errors.add(error(source, "B", "Control " + dto.getControlName() + " does not exist"));
+            }
+            else {
+                Set<String> checklists = checklistsByControl.getOrDefault(dto.getControlName(), Set.of());
+                for (String checklistName : dto.getChecklistName()) {
+                    if (!checklists.contains(checklistName)) {
+                        errors.add(error(source, "C", "Checklist " + checklistName + " does not exist for control " + dto.getControlName()));
+                    }
+                }
+            }
+            for (Enum.DepartmentType departmentType : dto.getDepartments()) {
+                if (!existingDepartments.contains(departmentType)) {
+                    errors.add(error(source, "D", "Department " + departmentType.getDisplayName() + " does not exist"));
+                }
+            }
+
+            if (errors.size() == errorCount) {
+                validRows.add(i);
+            }
+        }
+        return validRows;
+    }
+
+
+    //Split a cell holding several values separated by semicolons or line breaks
+    private static List<String> splitList(String value) {
+        List<String> values = new ArrayList<>();
+        for (String part : LIST_SEPARATOR.split(value)) {
+            if (!part.isBlank()) {
+                values.add(part.trim());
+            }
+        }
+        return values;
+    }
+
+
+    //Match a department by its name or display name, ignoring case
+    private static Enum.DepartmentType toDepartmentType(String value) {
+        for (Enum.DepartmentType departmentType : Enum.DepartmentType.values()) {
+            if (departmentType.name().equalsIgnoreCase(value) || departmentType.getDisplayName().equalsIgnoreCase(value)) {
+                return departmentType;
+            }
+        }
+        return null;
+    }
+
+
+    //Match a periodicity ignoring case, spaces, hyphens and underscores, so "Bi-Annually" and "On Event" are accepted
+    private static Enum.Periodicity toPeriodicity(String value) {
+        String normalized = normalizePeriodicity(value);
+        for (Enum.Periodicity periodicity : Enum.Periodicity.values()) {
+            if (normalizePeriodicity(periodicity.name()).equals(normalized)) {
+                return periodicity;
+            }
+        }
+        return null;
+    }
+
+
+    private static String normalizePeriodicity(String value) {
+        return value.replaceAll("[\\s_-]", "").toLowerCase(Locale.ROOT);
+    }
+
+
+    private static RowErrorDTO error(SourceRowDTO source, String column, String message) {
+        return new RowErrorDTO(source.getSheet(), source.getRow(), column, message);
+    }
+
+
+    //Read a trimmed cell of a row, which may omit trailing blank cells
+    private static String getCell(List<String> cells, int index) {
+        return index < cells.size() && cells.get(index) != null ? cells.get(index).trim() : "";
+    }
+
+
+    private static boolean isEmptyRow(List<String> cells) {
+        for (String cell : cells) {
+            if (cell != null && !cell.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Collects the valid rows of the file and creates them in batches, each in its own transaction.
+     */
+    private class ComplianceImport {
+
+        private final ImportResultDTO result = new ImportResultDTO();
+
+        private final List<SecurityComplianceCreateDTO> rows = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        private final List<SourceRowDTO> sources = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        private Set<Enum.DepartmentType> existingDepartments;
+
+        //Parse one data row, creating the pending rows once a batch is full
+        private void accept(String sheet, int row, List<String> cells) {
+            if (isEmptyRow(cells)) {
+                return;
+            }
+            result.setRowsRead(result.getRowsRead() + 1);
+
+            SourceRowDTO source = new SourceRowDTO(sheet, row);
+            SecurityComplianceCreateDTO dto = toSecurityComplianceCreateDTO(cells, source, result.getErrors());
+            if (dto != null) {
+                rows.add(dto);
+                sources.add(source);
+            }
+            if (rows.size() == IMPORT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        //Create the valid pending rows, a failed batch is reported against each of its rows
+        private void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            if (existingDepartments == null) {
+                existingDepartments = EnumSet.noneOf(Enum.DepartmentType.class);
+                departmentRepository.findAll().stream().map(Department::getDepartmentName).forEach(existingDepartments::add);
+            }
+
+            List<SecurityComplianceCreateDTO> validRows = new ArrayList<>();
+            List<SourceRowDTO> validSources = new ArrayList<>();
+            for (int index : checkReferences(rows, sources, existingDepartments, result.getErrors())) {
+                validRows.add(rows.get(index));
+                validSources.add(sources.get(index));
+            }
+
+            if (!validRows.isEmpty()) {
+                try {
+                    int created = securityComplianceService.addSecurityCompliance(validRows).size();
+                    result.setRowsImported(result.getRowsImported() + validRows.size());
+                    result.setRecordsCreated(result.getRecordsCreated() + created);
+                }
+                catch (ServiceException e) {
+                    log.warn("Security compliance import batch of {} rows failed: {}", validRows.size(), e.getMessage());
+                    validSources.forEach(source -> result.getErrors().add(error(source, "A", "Not imported: " + e.getMessage())));
+                }
+            }
+            rows.clear();
+            sources.clear();
+        }
+    }
+
+
+    //Hands the data rows of one sheet over to the import, skipping its header row
+    private static class ComplianceSheetParser implements ExcelRowReader.SheetParser<Void> {
+
+        private final String sheetName;
+
+        private final ComplianceImport complianceImport;
+
+        private boolean headerSkipped = false;
+
+        private ComplianceSheetParser(String sheetName, ComplianceImport complianceImport) {
+            this.sheetName = sheetName;
+            this.complianceImport = complianceImport;
+        }
+
+        @Override
+        public void accept(int rowNum, List<String> cells) {
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            complianceImport.accept(sheetName, rowNum + 1, cells);
+        }
+
+        @Override
+        public Void finish() {
+            return null;
+        }
+    }
+}
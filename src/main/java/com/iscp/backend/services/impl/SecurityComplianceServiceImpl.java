@@ -9,20 +9,24 @@ import com.iscp.backend.models.Enum;
 import com.iscp.backend.repositories.*;
 import com.iscp.backend.services.SecurityComplianceService;
 import jakarta.persistence.criteria.*;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.ldap.userdetails.LdapUserDetailsImpl;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -53,7 +57,9 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
 
     private final SecurityComplianceMapper securityComplianceMapper;
 
-    private  final ExportExcel exportExcel;
+    private final ExportWriterFactory exportWriterFactory;
+
+    private final ExportCursor exportCursor;
 
     private final DateTimeFormatter INPUT_FORMATTER = DateTimeFormatter.ofPattern("MMMM yyyy dd");
 
@@ -61,6 +67,20 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
 
     private final UsersRepository usersRepository;
 
+    private final JdbcTemplate jdbcTemplate;
+
+    //Inserts a record unless an active record of another series holds any period slot of its series. The range lock
+    //taken by UPDLOCK, HOLDLOCK keeps the slots of the series free until the transaction ends, so a concurrent
+    //request waits and then skips the series instead of inserting part of it
+    private static final String INSERT_SECURITY_COMPLIANCE_IF_ABSENT = "INSERT INTO security_compliance (security_id, record_id, compliance_id, " +
+            "framework_id, control_id, checklist_id, periodicity, period_index, evidence_compliance_status, evidence_comments, creation_time, version) " +
+            "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0 " +
+            "WHERE NOT EXISTS (SELECT 1 FROM security_compliance existing WITH (UPDLOCK, HOLDLOCK) " +
+            "WHERE existing.framework_id = ? AND existing.control_id = ? AND existing.checklist_id = ? AND existing.periodicity = ? " +
+            "AND existing.period_index BETWEEN 1 AND ? AND existing.evidence_compliance_status = 1 AND existing.compliance_id <> ?)";
+
+    private static final String INSERT_SECURITY_COMPLIANCE_DEPARTMENT = "INSERT INTO security_compliance_department (security_id, department_id) VALUES (?, ?)";
+
 
     /**
      * Add or update a list of security compliance based on the provided list of security compliance DTO.
@@ -73,9 +93,11 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
      * @throws DepartmentNotFoundException if any of the specified department does not exist.
      * @throws ControlNotFoundException if the specified control does not exist.
      * @throws PeriodicityUpdateDeniedException if the periodicity update is denied
+     * @throws SecurityComplianceAlreadyExistsException if the same compliance is added concurrently by another request.
      */
     @Override
-    public List<SecurityComplianceDTO> addEditSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws SecurityComplianceNotFoundException, ChecklistNotFoundException, FrameworkNotFoundException, DepartmentNotFoundException, ControlNotFoundException, PeriodicityUpdateDeniedException {
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<SecurityComplianceDTO> addEditSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws SecurityComplianceNotFoundException, ChecklistNotFoundException, FrameworkNotFoundException, DepartmentNotFoundException, ControlNotFoundException, PeriodicityUpdateDeniedException, SecurityComplianceAlreadyExistsException {
         //List to store security compliance which needs to be updated
         List<SecurityComplianceEditDTO> securityComplianceEditDTOS = new ArrayList<>();
 
@@ -116,23 +138,30 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
 
     /**
      * Add a list of security compliance based on the provided list of security compliance DTO.
+     * Compliance that is already active for the same framework, control, checklist and periodicity is skipped.
      *
      * @param securityComplianceCreateDTOList a list of SecurityComplianceCreateDTO containing security compliance details to be added.
      * @return a list of {@link SecurityComplianceDTO} containing added security compliance.
+     * @throws SecurityComplianceAlreadyExistsException if the same compliance is added concurrently by another request.
      */
     @Override
-    public List<SecurityComplianceDTO> addSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) {
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<SecurityComplianceDTO> addSecurityCompliance(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) throws SecurityComplianceAlreadyExistsException {
         log.debug("Attempting to add security Compliance");
 
-        List<SecurityCompliance> securityComplianceList = new ArrayList<>();
+        //The records of each checklist's compliance series, inserted together once all are built
+        List<List<SecurityCompliance>> complianceSeriesList = new ArrayList<>();
+
+        //Fetch the frameworks, controls, checklists and departments of the whole list at once
+        ComplianceReferences references = loadComplianceReferences(securityComplianceCreateDTOList);
 
         for(SecurityComplianceCreateDTO securityComplianceCreateDTO:securityComplianceCreateDTOList) {
 
-            //Fetch the associated framework, control, checklist and department
-            Optional<Framework> framework = frameworkRepository.findByFrameworkName(securityComplianceCreateDTO.getFrameworkName());
-            Optional<Control> control =  controlRepository.findByControlName(securityComplianceCreateDTO.getControlName());
-            Set<Checklist> checklists = checklistRepository.findByControlChecklistInAndControl_ControlName(securityComplianceCreateDTO.getChecklistName(), securityComplianceCreateDTO.getControlName());
-            Set<Department> departments = departmentRepository.findAllByName(securityComplianceCreateDTO.getDepartments());
+            //Look up the associated framework, control, checklist and department
+            Optional<Framework> framework = Optional.ofNullable(references.frameworks().get(securityComplianceCreateDTO.getFrameworkName()));
+            Optional<Control> control = Optional.ofNullable(references.controls().get(securityComplianceCreateDTO.getControlName()));
+            Set<Checklist> checklists = references.checklists(securityComplianceCreateDTO.getChecklistName(), securityComplianceCreateDTO.getControlName());
+            Set<Department> departments = references.departments(securityComplianceCreateDTO.getDepartments());
 
             //Determine the frequency based on periodicity
             Integer frequency = periodicityManager.getFrequency(securityComplianceCreateDTO.getPeriodicity());
@@ -141,23 +170,21 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
             String startDate = findStartDate(securityComplianceCreateDTO.getPeriodicity(), framework, eventDateList);
 
             for(Checklist checklist : checklists) {
-                //Check if the security compliance already exists
-                SecurityComplianceCheckDTO securityComplianceCheckDTO=securityComplianceMapper.toCheckDTO(securityComplianceCreateDTO);
-                Boolean ifExists = isSecurityComplianceAlreadyExists(securityComplianceCheckDTO);
-                if(ifExists)
-                    continue;
-
                 String complianceId = CustomIdGenerator.generateComplianceId();
 
                 //Generate initial record Id
                 String recordId = RecordIdGenerator.generateRecordId(securityComplianceCreateDTO.getPeriodicity(),startDate);
                 LocalDateTime now = LocalDateTime.now();
+                List<SecurityCompliance> complianceSeries = new ArrayList<>(frequency);
 
                 for(int i =1;i<=frequency;i++) {
                     SecurityCompliance securityCompliance = securityComplianceMapper.toSecurityComplianceEntity(securityComplianceCreateDTO);
                     now = now.minusSeconds(1);
                     //Set the attributes of the security compliance entity
+                    securityCompliance.setSecurityId(CustomIdGenerator.generateSecurityId());
                     securityCompliance.setRecordId(recordId);
+                    securityCompliance.setPeriodIndex(i);
+                    securityCompliance.setVersion(0L);
                     securityCompliance.setEvidenceComments("pending");
                     securityCompliance.setCreationTime(now);
                     securityCompliance.setComplianceId(complianceId);
@@ -165,7 +192,8 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
                     securityCompliance.setControl(control.get());
                     securityCompliance.setDepartments(departments);
                     securityCompliance.setChecklist(checklist);
-                    securityComplianceList.add(securityCompliance);
+                    complianceSeries.add(securityCompliance);
+
                     //Increment record ID for next record
                     if(securityCompliance.getPeriodicity().equals(Enum.Periodicity.Monthly)) {
                         recordId = RecordIdGenerator.incrementRecordIdMonthly(recordId, i + 1);
@@ -177,10 +205,13 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
                         recordId = RecordIdGenerator.incrementRecordId(recordId, startDate, i + 1);
                     }
                 }
+                complianceSeriesList.add(complianceSeries);
             }
         }
-        //save added compliance to the database
-        List<SecurityCompliance> securityComplianceCreatedList =  securityComplianceRepository.saveAll(securityComplianceList);
+
+        //Insert the records unless the same compliance is already active
+        List<SecurityCompliance> securityComplianceCreatedList = insertSecurityComplianceIfAbsent(complianceSeriesList);
+
         List<SecurityComplianceDTO> securityCompAddedList = new ArrayList<>();
 
         for(SecurityCompliance securityCompliance : securityComplianceCreatedList) {
@@ -188,13 +219,165 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
             //Add the compliance to the list
             securityCompAddedList.add(securityCompAdded);
         }
-        log.info("security compliance added successfully: {}",securityCompAddedList);
+        log.info("{} security compliance added successfully",securityCompAddedList.size());
 
         //Return the list of added security compliance
         return securityCompAddedList;
     }
 
 
+    /**
+     * Loads the frameworks, controls, checklists and departments referred to by the given security compliance
+     * with one IN query per entity, instead of four queries per compliance.
+     *
+     * @param securityComplianceCreateDTOList a list of SecurityComplianceCreateDTO to load the references of.
+     * @return the {@link ComplianceReferences} of the list.
+     */
+    private ComplianceReferences loadComplianceReferences(List<SecurityComplianceCreateDTO> securityComplianceCreateDTOList) {
+        Set<String> frameworkNames = new HashSet<>();
+        Set<String> controlNames = new HashSet<>();
+        for(SecurityComplianceCreateDTO securityComplianceCreateDTO : securityComplianceCreateDTOList) {
+            frameworkNames.add(securityComplianceCreateDTO.getFrameworkName());
+            controlNames.add(securityComplianceCreateDTO.getControlName());
+        }
+        frameworkNames.remove(null);
+        controlNames.remove(null);
+
+        Map<String, Framework> frameworks = new HashMap<>();
+        for(List<String> batch : Batches.partition(frameworkNames, Batches.IN_CLAUSE_SIZE)) {
+            frameworkRepository.findByFrameworkNameIn(batch).forEach(framework -> frameworks.put(framework.getFrameworkName(), framework));
+        }
+
+        Map<String, Control> controls = new HashMap<>();
+        Map<String, List<Checklist>> checklistsByControl = new HashMap<>();
+        for(List<String> batch : Batches.partition(controlNames, Batches.IN_CLAUSE_SIZE)) {
+            controlRepository.findByControlNameIn(batch).forEach(control -> controls.put(control.getControlName(), control));
+            checklistRepository.findWithControlByControlNameIn(batch).forEach(checklist -> checklistsByControl.computeIfAbsent(checklist.getControl().getControlName(), name -> new ArrayList<>()).add(checklist));
+        }
+
+        //There are only a handful of departments
+        Map<Enum.DepartmentType, Department> departments = new EnumMap<>(Enum.DepartmentType.class);
+        departmentRepository.findAll().forEach(department -> departments.put(department.getDepartmentName(), department));
+
+        return new ComplianceReferences(frameworks, controls, checklistsByControl, departments);
+    }
+
+
+    /**
+     * Frameworks and controls by name, checklists by control name and departments by type, loaded once per list of compliance.
+     */
+    private record ComplianceReferences(Map<String, Framework> frameworks, Map<String, Control> controls,
+                                        Map<String, List<Checklist>> checklistsByControl, Map<Enum.DepartmentType, Department> departmentsByType) {
+
+        //The checklists of the control with the given names
+        private Set<Checklist> checklists(Set<String> checklistNames, String controlName) {
+            Set<Checklist> checklists = new LinkedHashSet<>();
+            if(checklistNames == null) {
+                return checklists;
+            }
+            for(Checklist checklist : checklistsByControl.getOrDefault(controlName, List.of())) {
+                if(checklistNames.contains(checklist.getControlChecklist())) {
+                    checklists.add(checklist);
+                }
+            }
+            return checklists;
+        }
+
+        //The existing departments of the given types
+        private Set<Department> departments(Set<Enum.DepartmentType> departmentTypes) {
+            Set<Department> departments = new HashSet<>();
+            if(departmentTypes == null) {
+                return departments;
+            }
+            for(Enum.DepartmentType departmentType : departmentTypes) {
+                Department department = departmentsByType.get(departmentType);
+                if(department != null) {
+                    departments.add(department);
+                }
+            }
+            return departments;
+        }
+    }
+
+
+    /**
+     * Inserts the given compliance series and their department links, skipping every series with a period slot
+     * already held by an active compliance of another series for the same framework, control, checklist and periodicity.
+     * The check and the insert are a single statement per record, sent in JDBC batches, and the update count of each
+     * statement tells which records were inserted.
+     *
+     * @param complianceSeriesList the records of each checklist's compliance series.
+     * @return the inserted records.
+     * @throws SecurityComplianceAlreadyExistsException if a concurrent request inserted the same record first.
+     */
+    private List<SecurityCompliance> insertSecurityComplianceIfAbsent(List<List<SecurityCompliance>> complianceSeriesList) throws SecurityComplianceAlreadyExistsException {
+        List<SecurityCompliance> securityComplianceList = new ArrayList<>();
+        complianceSeriesList.forEach(securityComplianceList::addAll);
+        if(securityComplianceList.isEmpty()) {
+            return securityComplianceList;
+        }
+
+        List<SecurityCompliance> insertedList = new ArrayList<>();
+        try {
+            int[][] updateCounts = jdbcTemplate.batchUpdate(INSERT_SECURITY_COMPLIANCE_IF_ABSENT, securityComplianceList, Batches.JDBC_BATCH_SIZE, (statement, securityCompliance) -> {
+                statement.setString(1, securityCompliance.getSecurityId());
+                statement.setString(2, securityCompliance.getRecordId());
+                statement.setString(3, securityCompliance.getComplianceId());
+                statement.setString(4, securityCompliance.getFramework().getFrameworkId());
+                statement.setString(5, securityCompliance.getControl().getControlId());
+                statement.setString(6, securityCompliance.getChecklist().getChecklistId());
+                statement.setInt(7, securityCompliance.getPeriodicity().ordinal());
+                statement.setInt(8, securityCompliance.getPeriodIndex());
+                statement.setObject(9, securityCompliance.getEvidenceComplianceStatus());
+                statement.setString(10, securityCompliance.getEvidenceComments());
+                statement.setObject(11, securityCompliance.getCreationTime());
+                //Period slots of the whole series, held by another series
+                statement.setString(12, securityCompliance.getFramework().getFrameworkId());
+                statement.setString(13, securityCompliance.getControl().getControlId());
+                statement.setString(14, securityCompliance.getChecklist().getChecklistId());
+                statement.setInt(15, securityCompliance.getPeriodicity().ordinal());
+                statement.setInt(16, periodicityManager.getFrequency(securityCompliance.getPeriodicity()));
+                statement.setString(17, securityCompliance.getComplianceId());
+            });
+
+            //Update counts come back batch by batch, in the order of the records
+            int index = 0;
+            for(int[] batchCounts : updateCounts) {
+                for(int count : batchCounts) {
+                    if(count > 0) {
+                        insertedList.add(securityComplianceList.get(index));
+                    }
+                    index++;
+                }
+            }
+
+            List<Object[]> departmentLinks = new ArrayList<>();
+            for(SecurityCompliance securityCompliance : insertedList) {
+                for(Department department : securityCompliance.getDepartments()) {
+                    departmentLinks.add(new Object[] {securityCompliance.getSecurityId(), department.getDepartmentId()});
+                }
+            }
+            for(List<Object[]> batch : Batches.partition(departmentLinks, Batches.JDBC_BATCH_SIZE)) {
+                jdbcTemplate.batchUpdate(INSERT_SECURITY_COMPLIANCE_DEPARTMENT, batch);
+            }
+        }
+        catch (DataIntegrityViolationException e) {
+            //The unique index rejected a record the statement could not see, such as one of an uncommitted series
+            log.warn("Concurrent insert of security compliance rejected");
+            throw new SecurityComplianceAlreadyExistsException();
+        }
+
+        if(insertedList.size() < securityComplianceList.size()) {
+            log.debug("Skipped {} security compliance records already active", securityComplianceList.size() - insertedList.size());
+        }
+        if(!insertedList.isEmpty()) {
+            //JDBC inserts bypass the entity listeners, invalidate cached exports explicitly
+            ExportGenerations.invalidate(SecurityCompliance.class);
+        }
+        return insertedList;
+    }
+
+
     /**
      * Validates the SecurityComplianceCreateDTO to ensure all required entities exist.
      *
@@ -244,63 +427,80 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
      * @throws SecurityComplianceNotFoundException if a security ID is not found in the repository.
      * @throws FrameworkNotFoundException if the specified framework does not exist.
      * @throws PeriodicityUpdateDeniedException if the periodicity update is denied
+     * @throws SecurityComplianceAlreadyExistsException if an updated or added record takes the period of another active compliance.
      */
     @Override
-    public List<SecurityComplianceDTO> editSecurityCompliance(List<SecurityComplianceEditDTO> securityComplianceEditDTOList) throws SecurityComplianceNotFoundException, FrameworkNotFoundException, PeriodicityUpdateDeniedException {
+    public List<SecurityComplianceDTO> editSecurityCompliance(List<SecurityComplianceEditDTO> securityComplianceEditDTOList) throws SecurityComplianceNotFoundException, FrameworkNotFoundException, PeriodicityUpdateDeniedException, SecurityComplianceAlreadyExistsException {
         log.debug("Attempting to edit {} security compliance", securityComplianceEditDTOList.size());
 
         //List to store all updated security compliance
         List<SecurityComplianceDTO> updatedComplianceList = new ArrayList<>();
         String recordId;
 
-        for (SecurityComplianceEditDTO securityComplianceEditDTO : securityComplianceEditDTOList) {
-            log.info("Compliance is {}", securityComplianceEditDTO);
+        //Records moved onto an active period slot are rejected by the filtered unique index when flushed,
+        //either by a query of a later edit or explicitly below
+        try {
+            for (SecurityComplianceEditDTO securityComplianceEditDTO : securityComplianceEditDTOList) {
+                log.debug("Editing security compliance {}", securityComplianceEditDTO.getSecurityId());
 
-            //Check if the given security compliance exist in the database
-            SecurityCompliance existingCompliance = securityComplianceRepository.findById(securityComplianceEditDTO.getSecurityId())
-                    .orElseThrow(SecurityComplianceNotFoundException::new);
+                //Check if the given security compliance exist in the database
+                SecurityCompliance existingCompliance = securityComplianceRepository.findById(securityComplianceEditDTO.getSecurityId())
+                        .orElseThrow(SecurityComplianceNotFoundException::new);
 
-            //Fetch the associated checklist, department and framework
-            Set<Checklist> checklists = checklistRepository.findByControlChecklistInAndControl_ControlName(securityComplianceEditDTO.getChecklistName(), securityComplianceEditDTO.getControlName());
-            Set<Department> departments = departmentRepository.findAllByName(securityComplianceEditDTO.getDepartments());
-            Optional<Framework> framework = frameworkRepository.findByFrameworkName(securityComplianceEditDTO.getFrameworkName());
+                //Reject the update if the compliance was modified after the client loaded it
+                if (securityComplianceEditDTO.getVersion() != null && !securityComplianceEditDTO.getVersion().equals(existingCompliance.getVersion())) {
+                    log.warn("Security compliance {} was modified concurrently", securityComplianceEditDTO.getSecurityId());
+                    throw new ObjectOptimisticLockingFailureException(SecurityCompliance.class, securityComplianceEditDTO.getSecurityId());
+                }
 
-            //Fetch all compliance related to given complianceId
-            List<SecurityCompliance> complianceList = securityComplianceRepository.findAllByComplianceId(securityComplianceEditDTO.getComplianceId());
-            if (complianceList.isEmpty()) {
-                throw new SecurityComplianceNotFoundException();
-            }
+                //Fetch the associated checklist, department and framework
+                Set<Checklist> checklists = checklistRepository.findByControlChecklistInAndControl_ControlName(securityComplianceEditDTO.getChecklistName(), securityComplianceEditDTO.getControlName());
+                Set<Department> departments = departmentRepository.findAllByName(securityComplianceEditDTO.getDepartments());
+                Optional<Framework> framework = frameworkRepository.findByFrameworkName(securityComplianceEditDTO.getFrameworkName());
+
+                //Fetch all compliance related to given complianceId
+                List<SecurityCompliance> complianceList = securityComplianceRepository.findAllByComplianceId(securityComplianceEditDTO.getComplianceId());
+                if (complianceList.isEmpty()) {
+                    throw new SecurityComplianceNotFoundException();
+                }
 
-            //Find the start date for recordId
-            List<String> eventDateList = securityComplianceEditDTO.getEventDate();
-            String startDate = findStartDate(securityComplianceEditDTO.getPeriodicity(), framework, eventDateList);
+                //Find the start date for recordId
+                List<String> eventDateList = securityComplianceEditDTO.getEventDate();
+                String startDate = findStartDate(securityComplianceEditDTO.getPeriodicity(), framework, eventDateList);
 
-            //Determine exiting and new frequency (e.g. 2 - BI_Annually, 4 - Quarterly)
-            Integer existingFrequency = findFrequency(securityComplianceEditDTO, complianceList, false);
-            Integer newFrequency = findFrequency(securityComplianceEditDTO, complianceList, true);
+                //Determine exiting and new frequency (e.g. 2 - BI_Annually, 4 - Quarterly)
+                Integer existingFrequency = findFrequency(securityComplianceEditDTO, complianceList, false);
+                Integer newFrequency = findFrequency(securityComplianceEditDTO, complianceList, true);
 
-            //used to increment recordId and traverse eventList
-            int frequencyIndex = 2, eventListIndex=1;
+                //used to increment recordId and traverse eventList
+                int frequencyIndex = 2, eventListIndex=1;
 
-            for (Checklist checklist : checklists) {
-                //If compliance status is true, then allows to edit
-                if (existingCompliance.getEvidenceComplianceStatus()) {
+                for (Checklist checklist : checklists) {
+                    //If compliance status is true, then allows to edit
+                    if (existingCompliance.getEvidenceComplianceStatus()) {
 
-                    //Validate that NewFrequency is greater than or equal to ExistingFrequency
-                    if (newFrequency >= existingFrequency) {
-                        //Generate initial record Id
-                        recordId = RecordIdGenerator.generateRecordId(securityComplianceEditDTO.getPeriodicity(), startDate);
-                        LocalDateTime creationTime = LocalDateTime.now();
+                        //Validate that NewFrequency is greater than or equal to ExistingFrequency
+                        if (newFrequency >= existingFrequency) {
+                            //Generate initial record Id
+                            recordId = RecordIdGenerator.generateRecordId(securityComplianceEditDTO.getPeriodicity(), startDate);
+                            LocalDateTime creationTime = LocalDateTime.now();
 
-                        //Update existing compliance records
-                        updateExistingComplianceRecords(securityComplianceEditDTO, complianceList, checklist, departments, existingCompliance, recordId, creationTime, newFrequency, existingFrequency, startDate, updatedComplianceList, frequencyIndex, eventListIndex);
+                            //Update existing compliance records
+                            updateExistingComplianceRecords(securityComplianceEditDTO, complianceList, checklist, departments, existingCompliance, recordId, creationTime, newFrequency, existingFrequency, startDate, updatedComplianceList, frequencyIndex, eventListIndex);
 
-                    }
-                    else {
-                        throw new PeriodicityUpdateDeniedException();
+                        }
+                        else {
+                            throw new PeriodicityUpdateDeniedException();
+                        }
                     }
                 }
             }
+
+            securityComplianceRepository.flush();
+        }
+        catch (DataIntegrityViolationException e) {
+            log.warn("Edit of security compliance rejected, an active compliance already holds the period: {}", e.getMostSpecificCause().getMessage());
+            throw new SecurityComplianceAlreadyExistsException();
         }
         //Return list of updated security compliance
         log.debug("Edited All Security Compliance");
@@ -391,6 +591,7 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
             compliance.setChecklist(checklist);
             compliance.setDepartments(departments);
             compliance.setRecordId(recordId);
+            compliance.setPeriodIndex(frequencyIndex - 1);
             compliance.setEvidenceComplianceStatus(securityComplianceEditDTO.getEvidenceComplianceStatus());
 
             // If evidences are uploaded to the corresponding compliance, then map all of them
@@ -448,6 +649,7 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
             newCompliance.setControl(existingCompliance.getControl());
             newCompliance.setEvidenceComplianceStatus(true);
             newCompliance.setRecordId(recordId);
+            newCompliance.setPeriodIndex(frequencyIndex - 1);
 
             // Save the compliance to the database
             SecurityCompliance savedNewCompliance = securityComplianceRepository.save(newCompliance);
@@ -513,8 +715,15 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
 
         //Retrieve and set evidences for each DTO
         for(SecurityComplianceDTO securityComplianceDTO: securityComplianceDTOPage) {
-            List<String> evidences = evidenceRepository.findFileNameBySecurityId(securityComplianceDTO.getSecurityId());
+            //The IDs reach each evidence, the names of several evidences may be the same
+            List<String> evidences = new ArrayList<>();
+            List<String> evidenceIds = new ArrayList<>();
+            for(Object[] row : evidenceRepository.findIdAndFileNameBySecurityId(securityComplianceDTO.getSecurityId())) {
+                evidenceIds.add((String) row[0]);
+                evidences.add((String) row[1]);
+            }
             securityComplianceDTO.setEvidenceList(evidences);
+            securityComplianceDTO.setEvidenceIdList(evidenceIds);
         }
         return Pagination.createdPaginatedContent(securityComplianceDTOPage);
     }
@@ -550,11 +759,11 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
             }
             //If authenticated, check for LDAP user details
             else if (authentication.getPrincipal() instanceof LdapUserDetailsImpl ldapUserDetails) {
-                log.info("Authenticated LDAP user: {}", ldapUserDetails.getUsername());
+                log.debug("Authenticated LDAP user: {}", ldapUserDetails.getUsername());
 
                 //Retrieve List of all Departments associated to the logged-in user
                 departmentList = usersRepository.findAllDepartmentByUserEmailId(ldapUserDetails.getUsername());
-                log.info("users departments {}", departmentList);
+                log.debug("users departments {}", departmentList);
             } else {
                 log.error("Principal is not of type LdapUserDetailsImpl, but of type: {}", authentication.getPrincipal().getClass().getName());
             }
@@ -566,7 +775,7 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
 
             //Frameworks Filter
             if (frameworks != null && !frameworks.isEmpty()) {
-                log.info("in framework filter now");
+                log.debug("in framework filter now");
                 predicates.add(root.get("framework").get("frameworkName").in(frameworks));
             }
 
@@ -644,7 +853,7 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
                 else {
                     // If not an admin, filter by user-specific departments
                     if(!departmentList.contains(String.valueOf(Enum.DepartmentType.Administration))) {
-                        log.info("else departments is null {}", departmentList);
+                        log.debug("else departments is null {}", departmentList);
                         Predicate departmentPredicate = root.join("departments").get("departmentName").in(departmentList);
                         predicates.add(departmentPredicate);
                     }
@@ -755,6 +964,66 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
     }
 
 
+    /**
+     * Creates the order of an export, matching the order of {@link #sortComplianceList} on the whole result.
+     *
+     * @param sortField the field to sort by.
+     * @param sortOrder the order to sort, either ascending or descending.
+     * @return the sort over the security compliance attributes.
+     */
+    private Sort complianceSort(String sortField, String sortOrder) {
+        Sort byCreationTime = Sort.by(Sort.Order.desc("creationTime"));
+        if (sortField.equals("creationTime")) {
+            return byCreationTime;
+        }
+
+        String property;
+        switch (sortField) {
+            case "recordId":
+                property = "recordId";
+                break;
+            case "frameworkName":
+                property = "framework.frameworkName";
+                break;
+            case "frameworkCategory":
+                property = "framework.frameworkCategory.frameworkCategoryName";
+                break;
+            case "controlName":
+                property = "control.controlName";
+                break;
+            case "controlCategory":
+                property = "control.controlCategory.controlCategoryName";
+                break;
+            case "periodicity":
+                property = "periodicity";
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid sort field: " + sortField);
+        }
+
+        //sortComplianceList reverses the comparator for "asc", keep exports consistent with the listing
+        Sort.Direction direction = "asc".equalsIgnoreCase(sortOrder) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return Sort.by(direction, property).and(byCreationTime);
+    }
+
+
+    /**
+     * Retrieves the evidence filenames of the given security compliance, grouped by security ID.
+     *
+     * @param complianceList the security compliance to find the evidences of.
+     * @return the evidence filenames per security ID.
+     */
+    private Map<String, List<String>> findEvidenceFileNames(List<SecurityCompliance> complianceList) {
+        List<String> securityIds = complianceList.stream().map(SecurityCompliance::getSecurityId).collect(Collectors.toList());
+
+        Map<String, List<String>> evidences = new HashMap<>();
+        for (Object[] row : evidenceRepository.findFileNamesBySecurityIdIn(securityIds)) {
+            evidences.computeIfAbsent((String) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        return evidences;
+    }
+
+
     /**
      * Compares two Comparable values and handling nulls.
      *
@@ -781,20 +1050,19 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
      * Exports security compliance to an Excel.
      *
      * @param filter SecurityComplianceFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ByteArrayResource containing the Excel file data.
+     * @param format the format to export in.
+     * @param outputStream the stream the export is written to.
      * @throws IOException if an error occurs during export.
      */
-    public ByteArrayResource exportExcelSecurityCompliance(SecurityComplianceFilterDTO filter) throws IOException {
+    public void exportExcelSecurityCompliance(SecurityComplianceFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
         log.info("Starting export of security compliance data to Excel");
 
-        // Retrieve paginated list of filtered security compliance DTO.
-        PaginatedResponse<SecurityComplianceDTO> paginatedResponse = getFilterSecurityCompliancePaginated(filter);
-        List<SecurityComplianceDTO> securityComplianceList = paginatedResponse.getContent(); // Get the content from the paginated response
-        log.debug("Fetched {} security compliance records for export", securityComplianceList.size());
+        // Filter and order of the exported security compliance, the paging of the filter is ignored
+        Specification<SecurityCompliance> spec = complianceFilter(filter.getFrameworkCategory(), filter.getFramework(), filter.getControl(), filter.getControlCategory(), filter.getComplianceChecklist(), filter.getDepartment(), filter.getEvidenceStatus(), filter.getStatus(), filter.getStartDate(), filter.getEndDate());
+        Sort sort = complianceSort(filter.getSortField(), filter.getSortOrder());
 
 
-        // Output stream and configuration for Excel export
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        // Configuration for Excel export
         List<String> fieldsToInclude = List.of(
                 "recordId",
                 "frameworkName",
@@ -823,14 +1091,20 @@ public class SecurityComplianceServiceImpl implements SecurityComplianceService
         customHeaders.put("evidenceComplianceStatus", "STATUS");
         customHeaders.put("evidenceComments", "EVIDENCE STATUS");
 
-        //Call exportExcel to export data to excel.
-        exportExcel.exportToExcel(outputStream, securityComplianceList, "security-compliance", fieldsToInclude, customHeaders);
+        //Stream the full filtered result into the export, chunk by chunk
+        try (ExportWriter<SecurityComplianceDTO> writer = exportWriterFactory.open(format, outputStream, SecurityComplianceDTO.class, "security-compliance", fieldsToInclude, customHeaders)) {
+            long count = exportCursor.forEachChunk(securityComplianceRepository, spec, sort, chunk -> {
+                //Retrieve the evidences of the whole chunk at once
+                Map<String, List<String>> evidences = findEvidenceFileNames(chunk);
+                List<SecurityComplianceDTO> securityComplianceList = chunk.stream()
+                        .map(compliance -> securityComplianceMapper.toSecurityComplianceDTO(compliance, evidences.getOrDefault(compliance.getSecurityId(), List.of())))
+                        .collect(Collectors.toList());
+                writer.writeRows(securityComplianceList);
+            });
+            writer.finish();
+            log.debug("Exported {} security compliance records", count);
+        }
         log.info("Successfully exported security compliance data to Excel");
-
-        //Convert Output Stream to ByteArrayResource
-        byte[] excelContent = outputStream.toByteArray();
-        ByteArrayResource resource = new ByteArrayResource(excelContent);
-        return resource;
     }
 
 
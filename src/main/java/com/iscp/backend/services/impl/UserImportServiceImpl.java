@@ -0,0 +1,447 @@
+package com.iscp.backend.services.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iscp.backend.components.Batches;
+import com.iscp.backend.components.CsvReader;
+import com.iscp.backend.components.ExcelRowReader;
+import com.iscp.backend.dto.CreateUsersDTO;
+import com.iscp.backend.dto.ImportResultDTO;
+import com.iscp.backend.dto.RowErrorDTO;
+import com.iscp.backend.dto.SourceRowDTO;
+import com.iscp.backend.exceptions.ServiceException;
+import com.iscp.backend.models.Department;
+import com.iscp.backend.models.Enum;
+import com.iscp.backend.models.Role;
+import com.iscp.backend.repositories.DepartmentRepository;
+import com.iscp.backend.repositories.RoleRepository;
+import com.iscp.backend.repositories.UsersRepository;
+import com.iscp.backend.services.UserImportService;
+import com.iscp.backend.services.UsersService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of the {@link UserImportService} interface for provisioning Users in bulk.
+ * Excel and CSV rows hold the name, EmpCode, EmailId, departments, roles and status of a user, with several
+ * departments or roles separated by semicolons or line breaks.
+ */
+@Service
+@Slf4j
+@AllArgsConstructor
+public class UserImportServiceImpl implements UserImportService {
+
+    //Number of users inserted per transaction
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("[;\\r\\n]+");
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private final ExcelRowReader excelRowReader;
+
+    private final ObjectMapper objectMapper;
+
+    private final UsersService usersService;
+
+    private final UsersRepository usersRepository;
+
+    private final DepartmentRepository departmentRepository;
+
+    private final RoleRepository roleRepository;
+
+
+    /**
+     * Imports users from an Excel, CSV or JSON file, streaming them into batches.
+     *
+     * @param file the .xlsx, .csv or .json file to import.
+     * @return an {@link ImportResultDTO} with the number of users imported and the errors of the others.
+     * @throws IOException if the file cannot be read.
+     */
+    @Override
+    public ImportResultDTO importUsers(MultipartFile file) throws IOException {
+        String fileName = file.getOriginalFilename() == null ? "" : file.getOriginalFilename();
+        String extension = fileName.toLowerCase(Locale.ROOT);
+        //Errors of CSV and JSON files are reported against the name of the file
+        String sheetName = fileName.isBlank() ? "Users" : fileName;
+        UserImport userImport = new UserImport();
+
+        if (extension.endsWith(".json")) {
+            readJson(file, sheetName, userImport);
+        }
+        else if (extension.endsWith(".csv")) {
+            try (CsvReader reader = new CsvReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                //Skip header row
+                reader.readRecord();
+
+                List<String> values;
+                while ((values = reader.readRecord()) != null) {
+                    userImport.acceptRow(sheetName, (int) reader.getRecordNumber(), values);
+                }
+            }
+        }
+        else {
+            //Users are created on the calling thread as the sheets are read, one sheet after the other
+            try (InputStream inputStream = file.getInputStream()) {
+                excelRowReader.readSheetsInOrder(inputStream, (sheetIndex, name) -> new UserSheetParser(name, userImport));
+            }
+        }
+        userImport.flush();
+
+        ImportResultDTO result = userImport.result;
+        log.info("Imported {} of {} users from {}, with {} errors", result.getRowsImported(), result.getRowsRead(), fileName, result.getErrors().size());
+        return result;
+    }
+
+
+    /**
+     * Reads a JSON array of users one element at a time, so the whole array is never held in memory.
+     * An element that cannot be mapped, like an unknown department or role, is reported against its position, and
+     * the errors of its fields against the column the field has in the Excel and CSV files.
+     *
+     * @param file the .json file.
+     * @param sheetName the name to report errors against.
+     * @param userImport the import to hand each user over to.
+     * @throws IOException if the file is not a JSON array.
+     */
+    private void readJson(MultipartFile file, String sheetName, UserImport userImport) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(file.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of users");
+            }
+
+            int index = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                index++;
+                SourceRowDTO source = new SourceRowDTO(sheetName, index);
+                JsonNode node = objectMapper.readTree(parser);
+                try {
+                    userImport.accept(objectMapper.treeToValue(node, CreateUsersDTO.class), source);
+                }
+                catch (JsonProcessingException e) {
+                    userImport.result.setRowsRead(userImport.result.getRowsRead() + 1);
+                    userImport.result.getErrors().add(error(source, "", "Invalid user: " + e.getOriginalMessage()));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Builds the DTO of one Excel or CSV row, or reports why it cannot be imported.
+     *
+     * @param cells the cells of the row: name, EmpCode, EmailId, departments, roles and status.
+     * @param source the sheet and one-based row number of the row.
+     * @param errors the list to add the errors of the row to.
+     * @return the {@link CreateUsersDTO} of the row, or {@code null} if the row is invalid.
+     */
+    private CreateUsersDTO toCreateUsersDTO(List<String> cells, SourceRowDTO source, List<RowErrorDTO> errors) {
+        int errorCount = errors.size();
+
+        Set<Enum.DepartmentType> departments = EnumSet.noneOf(Enum.DepartmentType.class);
+        for (String departmentName : splitList(getCell(cells, 3))) {
+            Enum.DepartmentType departmentType = toDepartmentType(departmentName);
+            if (departmentType == null) {
+                errors.add(error(source, "D", "Unknown department " + departmentName));
+            }
+            else {
+                departments.add(departmentType);
+            }
+        }
+
+        Set<Enum.RoleType> roles = EnumSet.noneOf(Enum.RoleType.class);
+        for (String roleName : splitList(getCell(cells, 4))) {
+            Enum.RoleType roleType = toRoleType(roleName);
+            if (roleType == null) {
+                errors.add(error(source, "E", "Unknown role " + roleName));
+            }
+            else {
+                roles.add(roleType);
+            }
+        }
+
+        //Users are active unless the status says otherwise
+        String status = getCell(cells, 5);
+        if (!status.isEmpty() && !status.equalsIgnoreCase("true") && !status.equalsIgnoreCase("false")) {
+            errors.add(error(source, "F", "Status must be true or false"));
+        }
+
+        if (errors.size() != errorCount) {
+            return null;
+        }
+
+        CreateUsersDTO dto = new CreateUsersDTO();
+        dto.setName(getCell(cells, 0));
+        dto.setEmpCode(getCell(cells, 1));
+        dto.setUserEmailId(getCell(cells, 2));
+        dto.setDepartments(departments);
+        dto.setRoles(roles);
+        dto.setStatus(status.isEmpty() || Boolean.parseBoolean(status));
+        return dto;
+    }
+
+
+    //Split a cell holding several values separated by semicolons or line breaks
+    private static List<String> splitList(String value) {
+        List<String> values = new ArrayList<>();
+        for (String part : LIST_SEPARATOR.split(value)) {
+            if (!part.isBlank()) {
+                values.add(part.trim());
+            }
+        }
+        return values;
+    }
+
+
+    //Match a department by its name or display name, ignoring case
+    private static Enum.DepartmentType toDepartmentType(String value) {
+        for (Enum.DepartmentType departmentType : Enum.DepartmentType.values()) {
+            if (departmentType.name().equalsIgnoreCase(value) || departmentType.getDisplayName().equalsIgnoreCase(value)) {
+                return departmentType;
+            }
+        }
+        return null;
+    }
+
+
+    //Match a role by its name, ignoring case
+    private static Enum.RoleType toRoleType(String value) {
+        for (Enum.RoleType roleType : Enum.RoleType.values()) {
+            if (roleType.name().equalsIgnoreCase(value)) {
+                return roleType;
+            }
+        }
+        return null;
+    }
+
+
+    private static RowErrorDTO error(SourceRowDTO source, String column, String message) {
+        return new RowErrorDTO(source.getSheet(), source.getRow(), column, message);
+    }
+
+
+    //Read a trimmed cell of a row, which may omit trailing blank cells
+    private static String getCell(List<String> cells, int index) {
+        return index < cells.size() && cells.get(index) != null ? cells.get(index).trim() : "";
+    }
+
+
+    private static boolean isEmptyRow(List<String> cells) {
+        for (String cell : cells) {
+            if (cell != null && !cell.isBlank()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    //Emails are unique whatever their case
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * Collects the valid users of the file and creates them in batches, each in its own transaction.
+     * Emails and EmpCodes are checked against the database with one IN query per batch, and against the earlier
+     * rows of the file with in-memory sets.
+     */
+    private class UserImport {
+
+        private final ImportResultDTO result = new ImportResultDTO();
+
+        private final List<CreateUsersDTO> users = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        private final List<SourceRowDTO> sources = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        private final Set<String> fileEmails = new HashSet<>();
+
+        private final Set<String> fileEmpCodes = new HashSet<>();
+
+        private Set<Enum.DepartmentType> existingDepartments;
+
+        private Set<Enum.RoleType> existingRoles;
+
+        //Parse one Excel or CSV data row
+        private void acceptRow(String sheet, int row, List<String> cells) {
+            if (isEmptyRow(cells)) {
+                return;
+            }
+            SourceRowDTO source = new SourceRowDTO(sheet, row);
+            CreateUsersDTO dto = toCreateUsersDTO(cells, source, result.getErrors());
+            if (dto != null) {
+                accept(dto, source);
+            }
+            else {
+                result.setRowsRead(result.getRowsRead() + 1);
+            }
+        }
+
+        //Check the fields of one user, creating the pending users once a batch is full
+        private void accept(CreateUsersDTO dto, SourceRowDTO source) {
+            result.setRowsRead(result.getRowsRead() + 1);
+            int errorCount = result.getErrors().size();
+
+            if (dto.getName() == null || dto.getName().isBlank()) {
+                result.getErrors().add(error(source, "A", "Name is required"));
+            }
+            if (dto.getUserEmailId() == null || !EMAIL_PATTERN.matcher(dto.getUserEmailId().trim()).matches()) {
+                result.getErrors().add(error(source, "C", "A valid email is required"));
+            }
+            else if (!fileEmails.add(emailKey(dto.getUserEmailId().trim()))) {
+                result.getErrors().add(error(source, "C", "Email " + dto.getUserEmailId() + " appears more than once in the file"));
+            }
+            if (dto.getEmpCode() != null && !dto.getEmpCode().isBlank() && !fileEmpCodes.add(dto.getEmpCode().trim())) {
+                result.getErrors().add(error(source, "B", "EmpCode " + dto.getEmpCode() + " appears more than once in the file"));
+            }
+            if (dto.getDepartments() == null || dto.getDepartments().isEmpty()) {
+                result.getErrors().add(error(source, "D", "At least one department is required"));
+            }
+            if (dto.getRoles() == null || dto.getRoles().isEmpty()) {
+                result.getErrors().add(error(source, "E", "At least one role is required"));
+            }
+
+            if (result.getErrors().size() == errorCount) {
+                dto.setUserEmailId(dto.getUserEmailId().trim());
+                dto.setEmpCode(dto.getEmpCode() == null || dto.getEmpCode().isBlank() ? null : dto.getEmpCode().trim());
+                if (dto.getStatus() == null) {
+                    dto.setStatus(true);
+                }
+                users.add(dto);
+                sources.add(source);
+            }
+            if (users.size() == IMPORT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        //Create the valid pending users, a failed batch is reported against each of its users
+        private void flush() {
+            if (users.isEmpty()) {
+                return;
+            }
+            List<CreateUsersDTO> validUsers = new ArrayList<>();
+            List<SourceRowDTO> validSources = new ArrayList<>();
+            checkExisting(validUsers, validSources);
+
+            if (!validUsers.isEmpty()) {
+                try {
+                    //Emails and EmpCodes were checked by checkExisting
+                    usersService.importUsers(validUsers);
+                    result.setRowsImported(result.getRowsImported() + validUsers.size());
+                    result.setRecordsCreated(result.getRecordsCreated() + validUsers.size());
+                }
+                catch (ServiceException e) {
+                    log.warn("User import batch of {} users failed: {}", validUsers.size(), e.getMessage());
+                    validSources.forEach(source -> result.getErrors().add(error(source, "", "Not imported: " + e.getMessage())));
+                }
+            }
+            users.clear();
+            sources.clear();
+        }
+
+        //Keep the pending users whose email and EmpCode are free and whose departments and roles exist
+        private void checkExisting(List<CreateUsersDTO> validUsers, List<SourceRowDTO> validSources) {
+            //Departments and roles are loaded once for the whole import
+            if (existingDepartments == null) {
+                existingDepartments = EnumSet.noneOf(Enum.DepartmentType.class);
+                departmentRepository.findAll().stream().map(Department::getDepartmentName).forEach(existingDepartments::add);
+                existingRoles = EnumSet.noneOf(Enum.RoleType.class);
+                roleRepository.findAll().stream().map(Role::getRoleName).forEach(existingRoles::add);
+            }
+
+            Set<String> emails = new HashSet<>();
+            Set<String> empCodes = new HashSet<>();
+            users.forEach(dto -> {
+                emails.add(dto.getUserEmailId());
+                if (dto.getEmpCode() != null) {
+                    empCodes.add(dto.getEmpCode());
+                }
+            });
+            Set<String> takenEmails = new HashSet<>();
+            for (List<String> batch : Batches.partition(emails, Batches.IN_CLAUSE_SIZE)) {
+                usersRepository.findUserEmailIdsIn(batch).forEach(email -> takenEmails.add(emailKey(email)));
+            }
+            Set<String> takenEmpCodes = new HashSet<>();
+            for (List<String> batch : Batches.partition(empCodes, Batches.IN_CLAUSE_SIZE)) {
+                takenEmpCodes.addAll(usersRepository.findEmpCodesIn(batch));
+            }
+
+            for (int i = 0; i < users.size(); i++) {
+                CreateUsersDTO dto = users.get(i);
+                SourceRowDTO source = sources.get(i);
+                int errorCount = result.getErrors().size();
+
+                if (takenEmails.contains(emailKey(dto.getUserEmailId()))) {
+                    result.getErrors().add(error(source, "C", "A user with email " + dto.getUserEmailId() + " already exists"));
+                }
+                if (dto.getEmpCode() != null && takenEmpCodes.contains(dto.getEmpCode())) {
+                    result.getErrors().add(error(source, "B", "A user with EmpCode " + dto.getEmpCode() + " already exists"));
+                }
+                for (Enum.DepartmentType departmentType : dto.getDepartments()) {
+                    if (!existingDepartments.contains(departmentType)) {
+                        result.getErrors().add(error(source, "D", "Department " + departmentType.getDisplayName() + " does not exist"));
+                    }
+                }
+                for (Enum.RoleType roleType : dto.getRoles()) {
+                    if (!existingRoles.contains(roleType)) {
+                        result.getErrors().add(error(source, "E", "Role " + roleType + " does not exist"));
+                    }
+                }
+
+                if (result.getErrors().size() == errorCount) {
+                    validUsers.add(dto);
+                    validSources.add(source);
+                }
+            }
+        }
+    }
+
+
+    //Hands the data rows of one sheet over to the import, skipping its header row
+    private static class UserSheetParser implements ExcelRowReader.SheetParser<Void> {
+
+        private final String sheetName;
+
+        private final UserImport userImport;
+
+        private boolean headerSkipped = false;
+
+        private UserSheetParser(String sheetName, UserImport userImport) {
+            this.sheetName = sheetName;
+            this.userImport = userImport;
+        }
+
+        @Override
+        public void accept(int rowNum, List<String> cells) {
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            userImport.acceptRow(sheetName, rowNum + 1, cells);
+        }
+
+        @Override
+        public Void finish() {
+            return null;
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package com.iscp.backend.services.impl;
 
-import com.iscp.backend.components.ExportExcel;
+import com.iscp.backend.components.ExportFormat;
+import com.iscp.backend.components.ExportSchema;
+import com.iscp.backend.components.ExportSheet;
+import com.iscp.backend.components.ExportWriter;
+import com.iscp.backend.components.ExportWriterFactory;
+import com.iscp.backend.components.ExportCursor;
+import com.iscp.backend.components.Batches;
 import com.iscp.backend.components.Pagination;
 import com.iscp.backend.dto.*;
 import com.iscp.backend.exceptions.*;
 import com.iscp.backend.models.*;
+import com.iscp.backend.models.Enum;
 import com.iscp.backend.mapper.UserMapper;
 import com.iscp.backend.repositories.DepartmentRepository;
 import com.iscp.backend.repositories.RoleRepository;
 import com.iscp.backend.repositories.UsersRepository;
 import com.iscp.backend.services.UsersService;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -22,8 +29,8 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -36,6 +43,16 @@ import java.util.stream.Collectors;
 @Slf4j
 public class UsersServiceImpl implements UsersService {
 
+    //Columns of the exports, in order, and their headers
+    private static final List<String> EXPORT_FIELDS = List.of("name", "departments", "roles", "status");
+
+    private static final Map<String, String> EXPORT_HEADERS = Map.of(
+            "name", "NAME",
+            "departments", "DEPARTMENTS",
+            "roles", "ROLES",
+            "status", "STATUS"
+    );
+
     private final UsersRepository userRepository;
 
     private final DepartmentRepository departmentRepository;
@@ -46,7 +63,9 @@ public class UsersServiceImpl implements UsersService {
 
     private final BCryptPasswordEncoder passwordEncoder;
 
-    private final ExportExcel exportExcel;
+    private final ExportWriterFactory exportWriterFactory;
+
+    private final ExportCursor exportCursor;
 
     /**
      * Retrieves a list of all users from the database.
@@ -63,7 +82,7 @@ public class UsersServiceImpl implements UsersService {
             log.info("No Users found");
             return List.of();
         }
-        log.info("Fetched users :{}", users);
+        log.info("Fetched {} users", users.size());
         //Convert User Entity to User DTO
         return userMapper.DTO_LIST(users);
     }
@@ -141,7 +160,7 @@ public class UsersServiceImpl implements UsersService {
 
         // Fetch given department names
         Set<Department> departments = departmentRepository.findAllByName(createUsersDTO.getDepartments());
-        log.info("Department names received: {}", departments);
+        log.debug("Departments received: {}", departments.size());
         if (departments.size() < createUsersDTO.getDepartments().size()) {
             throw new DepartmentNotFoundException();
         }
@@ -164,6 +183,105 @@ public class UsersServiceImpl implements UsersService {
     }
 
 
+    /**
+     * Add a list of users at once, checking emails and EmpCodes with one IN query each and inserting the users
+     * and their department and role links in JDBC batches.
+     *
+     * @param createUsersDTOList a list of CreateUsersDTO containing user details to be added.
+     * @return a list of {@link UsersDTO} containing added users.
+     * @throws DepartmentNotFoundException if any of the specified department does not exist.
+     * @throws RoleNotFoundException if any of the specified role does not exist.
+     * @throws UserEmailAlreadyExistsException if any of the EmailIds already exists.
+     * @throws UserEmpCodeAlreadyExistsException if any of the EmpCodes already exists.
+     */
+    @Override
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<UsersDTO> addUsers(List<CreateUsersDTO> createUsersDTOList) throws DepartmentNotFoundException, RoleNotFoundException, UserEmailAlreadyExistsException, UserEmpCodeAlreadyExistsException {
+        Set<String> emailIds = new HashSet<>();
+        Set<String> empCodes = new HashSet<>();
+        for(CreateUsersDTO createUsersDTO : createUsersDTOList) {
+            emailIds.add(createUsersDTO.getUserEmailId());
+            if(createUsersDTO.getEmpCode() != null && !createUsersDTO.getEmpCode().isBlank()) {
+                empCodes.add(createUsersDTO.getEmpCode());
+            }
+        }
+
+        //Check if any Email or EmpCode already exists, one query per IN batch instead of one per user
+        for(List<String> batch : Batches.partition(emailIds, Batches.IN_CLAUSE_SIZE)) {
+            List<String> existingEmails = userRepository.findUserEmailIdsIn(batch);
+            if(!existingEmails.isEmpty()) {
+                log.warn("Users with emails {} already exist", existingEmails);
+                throw new UserEmailAlreadyExistsException();
+            }
+        }
+        for(List<String> batch : Batches.partition(empCodes, Batches.IN_CLAUSE_SIZE)) {
+            List<String> existingEmpCodes = userRepository.findEmpCodesIn(batch);
+            if(!existingEmpCodes.isEmpty()) {
+                log.warn("Users with empcodes {} already exist", existingEmpCodes);
+                throw new UserEmpCodeAlreadyExistsException();
+            }
+        }
+
+        return importUsers(createUsersDTOList);
+    }
+
+
+    /**
+     * Add a list of users whose emails and EmpCodes the caller already checked, inserting the users
+     * and their department and role links in JDBC batches.
+     *
+     * @param createUsersDTOList a list of CreateUsersDTO containing user details to be added.
+     * @return a list of {@link UsersDTO} containing added users.
+     * @throws DepartmentNotFoundException if any of the specified department does not exist.
+     * @throws RoleNotFoundException if any of the specified role does not exist.
+     */
+    @Override
+    @Transactional(rollbackOn = ServiceException.class)
+    public List<UsersDTO> importUsers(List<CreateUsersDTO> createUsersDTOList) throws DepartmentNotFoundException, RoleNotFoundException {
+        //Resolve departments and roles from maps loaded once for the whole list
+        Map<Enum.DepartmentType, Department> departmentsByName = new EnumMap<>(Enum.DepartmentType.class);
+        departmentRepository.findAll().forEach(department -> departmentsByName.put(department.getDepartmentName(), department));
+        Map<Enum.RoleType, Role> rolesByName = new EnumMap<>(Enum.RoleType.class);
+        roleRepository.findAll().forEach(role -> rolesByName.put(role.getRoleName(), role));
+
+        List<Users> users = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for(CreateUsersDTO createUsersDTO : createUsersDTOList) {
+            Users user = userMapper.toCreateUserEntity(createUsersDTO);
+            //A blank ID would make saveAll merge, selecting each user before inserting it
+            user.setUserId(null);
+
+            Set<Department> departments = new HashSet<>();
+            for(Enum.DepartmentType departmentType : createUsersDTO.getDepartments()) {
+                Department department = departmentsByName.get(departmentType);
+                if(department == null) {
+                    throw new DepartmentNotFoundException();
+                }
+                departments.add(department);
+            }
+            user.setDepartments(departments);
+
+            Set<Role> roles = new HashSet<>();
+            for(Enum.RoleType roleType : createUsersDTO.getRoles()) {
+                Role role = rolesByName.get(roleType);
+                if(role == null) {
+                    throw new RoleNotFoundException();
+                }
+                roles.add(role);
+            }
+            user.setRoles(roles);
+            user.setCreationTime(now);
+            users.add(user);
+        }
+
+        // Save the users, Hibernate batches the user and join table inserts
+        List<Users> savedUsers = userRepository.saveAll(users);
+        log.info("{} users added successfully", savedUsers.size());
+
+        return userMapper.DTO_LIST(savedUsers);
+    }
+
+
     /**
      * Update a list of users based on the provided list of UsersDTO.
      *
@@ -272,22 +390,22 @@ public class UsersServiceImpl implements UsersService {
             // Check if the username filter is provided
             if(user != null && !user.isEmpty()) {
                 predicates.add(root.get("name").in(user));
-                log.info("Added predicate for user: {}", user );
+                log.debug("Added predicate for user: {}", user );
             }
             // Check if the department filter is provided
             if(department!= null && !department.isEmpty()) {
                 predicates.add(root.get("departments").get("departmentName").in(department));
-                log.info("Added predicate for department: {}", department);
+                log.debug("Added predicate for department: {}", department);
             }
             // Check if the role filter is provided
             if(role !=null && !role.isEmpty()) {
                 predicates.add(root.get("roles").get("roleName").in(role));
-                log.info("Added predicate for role: {}", role);
+                log.debug("Added predicate for role: {}", role);
             }
             // Check if the status filter is provided
             if(status!=null) {
                 predicates.add(criteriaBuilder.equal(root.get("status"), status));
-                log.info("Added predicate for status: {}", status);
+                log.debug("Added predicate for status: {}", status);
             }
 
             query.distinct(true);
@@ -364,39 +482,45 @@ public class UsersServiceImpl implements UsersService {
      * Exports user records to an Excel.
      *
      * @param filter UserFilterDTO containing the filtering criteria to be encapsulated.
-     * @return a ByteArrayResource containing the Excel file data.
+     * @param format the format to export in.
+     * @param outputStream the stream the export is written to.
      * @throws IOException if an error occurs during export.
      */
     @Override
-    public ByteArrayResource exportExcelUsers(UserFilterDTO filter) throws IOException {
+    public void exportExcelUsers(UserFilterDTO filter, ExportFormat format, OutputStream outputStream) throws IOException {
         log.info("Starting export of users data to Excel");
 
-        // Retrieve all user DTOs
-        PaginatedResponse<UsersDTO> paginatedResponse = getFilterUsersPaginated(filter);
-        List<UsersDTO> usersList = paginatedResponse.getContent();
-        log.debug("Fetched {} users records for export", usersList.size());
-
-        // Output stream and configuration for Excel export
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        List<String> fieldsToInclude = List.of(
-                "name",
-                "departments",
-                "roles",
-                "status"
-        );
-        Map<String, String> customHeaders = new HashMap<>();
-        customHeaders.put("name", "NAME");
-        customHeaders.put("departments", "DEPARTMENTS");
-        customHeaders.put("roles", "ROLES");
-        customHeaders.put("status", "STATUS");
-
-        // Use the existing export method
-        exportExcel.exportToExcel(outputStream, usersList, "users", fieldsToInclude, customHeaders);
+        // Filter and order of the exported users, the paging of the filter is ignored
+        Specification<Users> spec = usersFilter(filter.getName(), filter.getDepartments(), filter.getRoles(), filter.getStatus());
+        Sort sort = Pagination.createSort(filter.getSortField(), filter.getSortOrder());
+
+
+        //Stream the full filtered result into the export, chunk by chunk
+        try (ExportWriter<UsersDTO> writer = exportWriterFactory.open(format, outputStream, UsersDTO.class, "users", EXPORT_FIELDS, EXPORT_HEADERS)) {
+            long count = exportCursor.forEachChunk(userRepository, spec, sort, chunk -> writer.writeRows(userMapper.DTO_LIST(chunk)));
+            writer.finish();
+            log.debug("Exported {} users records", count);
+        }
         log.info("Successfully exported user data to Excel");
+    }
+
 
-        // Convert Output Stream to ByteArrayResource
-        byte[] excelContent = outputStream.toByteArray();
-        ByteArrayResource resource = new ByteArrayResource(excelContent);
-        return resource;
+    /**
+     * Builds the sheet of all users for the master data export.
+     *
+     * @return the {@link ExportSheet} with the spooled rows of all users, which the caller closes.
+     * @throws IOException if the users cannot be read.
+     */
+    @Override
+    public ExportSheet getExportSheet() throws IOException {
+        ExportSchema<UsersDTO> schema = ExportSchema.of(UsersDTO.class, EXPORT_FIELDS, EXPORT_HEADERS);
+
+        //Encode and spool all users into rows, ordered by name
+        return ExportSheet.spool("users", schema.getHeaders(), sheet ->
+                exportCursor.forEachChunk(userRepository, usersFilter(null, null, null, null), Sort.by("name"), chunk -> {
+                    for (UsersDTO usersDTO : userMapper.DTO_LIST(chunk)) {
+                        sheet.addRow(schema.format(usersDTO));
+                    }
+                }));
     }
 }
\ No newline at end of file
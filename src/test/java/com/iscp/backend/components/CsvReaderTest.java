@@ -0,0 +1,139 @@
+package com.iscp.backend.components;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvReaderTest {
+
+    //Size of the character buffer of the reader
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Test
+    void keepsCommasInsideQuotedFields() throws IOException {
+        List<List<String>> records = readAll("name,departments\n\"Doe, John\",\"SysAdmin,NOC\"\n");
+
+        assertEquals(List.of(List.of("name", "departments"), List.of("Doe, John", "SysAdmin,NOC")), records);
+    }
+
+    @Test
+    void readsDoubledQuotesAsLiteralQuotes() throws IOException {
+        List<List<String>> records = readAll("\"He said \"\"hi\"\"\",\"\"\"\",\"\"\n");
+
+        assertEquals(List.of(List.of("He said \"hi\"", "\"", "")), records);
+    }
+
+    @Test
+    void keepsLineBreaksInsideQuotedFields() throws IOException {
+        List<List<String>> records = readAll("a,\"first line\nsecond line\r\nthird line\",c\nd,e,f\n");
+
+        assertEquals(List.of(List.of("a", "first line\nsecond line\r\nthird line", "c"), List.of("d", "e", "f")), records);
+    }
+
+    @Test
+    void splitsRecordsOnCrlfAndLf() throws IOException {
+        List<List<String>> records = readAll("a,b\r\nc,d\ne,f\r\n");
+
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d"), List.of("e", "f")), records);
+    }
+
+    @Test
+    void readsTheLastRecordWithoutLineBreak() throws IOException {
+        List<List<String>> records = readAll("a,b\r\nc,");
+
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "")), records);
+    }
+
+    @Test
+    void skipsTheByteOrderMark() throws IOException {
+        List<List<String>> records = readAll("\uFEFFname,status\r\nJohn,true\r\n");
+
+        assertEquals(List.of(List.of("name", "status"), List.of("John", "true")), records);
+    }
+
+    @Test
+    void keepsByteOrderMarksAfterTheFirstCharacter() throws IOException {
+        List<List<String>> records = readAll("a\n\uFEFFb\n");
+
+        assertEquals(List.of(List.of("a"), List.of("\uFEFFb")), records);
+    }
+
+    @Test
+    void readsRecordsStraddlingTheBuffer() throws IOException {
+        //Place the doubled quote of the first record across the end of the buffer
+        String prefix = "x".repeat(BUFFER_SIZE - 2);
+        String content = "\"" + prefix + "\"\"\"\r\nnext,\"quoted\n" + "y".repeat(BUFFER_SIZE) + "\"\r\n";
+
+        List<List<String>> records = readAll(content);
+
+        assertEquals(2, records.size());
+        assertEquals(List.of(prefix + "\""), records.get(0));
+        assertEquals(List.of("next", "quoted\n" + "y".repeat(BUFFER_SIZE)), records.get(1));
+    }
+
+    @Test
+    void splitsCrlfAcrossTheBufferAsOneLineBreak() throws IOException {
+        String first = "z".repeat(BUFFER_SIZE - 1);
+
+        List<List<String>> records = readAll(first + "\r\nlast\r\n");
+
+        assertEquals(List.of(List.of(first), List.of("last")), records);
+    }
+
+    @Test
+    void countsRecordsRatherThanLines() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader("header\r\n\"multi\r\nline\"\r\nthird\r\n"))) {
+            reader.readRecord();
+            assertEquals(1, reader.getRecordNumber());
+
+            //Row errors are reported against the record number, which a quoted line break does not advance
+            assertEquals(List.of("multi\r\nline"), reader.readRecord());
+            assertEquals(2, reader.getRecordNumber());
+
+            assertEquals(List.of("third"), reader.readRecord());
+            assertEquals(3, reader.getRecordNumber());
+
+            assertNull(reader.readRecord());
+            assertEquals(3, reader.getRecordNumber());
+        }
+    }
+
+    @Test
+    void reportsTheRecordOfAnUnterminatedQuote() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader("header\na,b\n\"open,c\n"))) {
+            reader.readRecord();
+            reader.readRecord();
+
+            IOException exception = assertThrows(IOException.class, reader::readRecord);
+            assertTrue(exception.getMessage().contains("record 3"));
+        }
+    }
+
+    @Test
+    void returnsNullForAnEmptyDocument() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader(""))) {
+            assertNull(reader.readRecord());
+            assertEquals(0, reader.getRecordNumber());
+        }
+    }
+
+    private static List<List<String>> readAll(String content) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(content))) {
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                //The reader reuses the returned list
+                records.add(List.copyOf(record));
+            }
+        }
+        return records;
+    }
+}
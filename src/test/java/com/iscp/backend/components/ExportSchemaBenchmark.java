@@ -0,0 +1,143 @@
+package com.iscp.backend.components;
+
+import com.iscp.backend.dto.ControlCategoryCreateDTO;
+import com.iscp.backend.dto.ControlDTO;
+import com.iscp.backend.dto.FrameworkCategoryCreateDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the rows/sec of formatting export rows through {@link ExportSchema} against the reflection path it
+ * replaced, which looked up the DTO fields and read them through {@link Field#get} for every row.
+ * The per-field logging of the old path is left out, so only the field access and formatting are measured.
+ * Run it with {@code main}, after compiling the test sources so the benchmark is generated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportSchemaBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final List<String> FIELDS = List.of("controlName", "description", "status", "controlCategory");
+
+    private static final Map<String, String> HEADERS = Map.of(
+            "controlName", "Control Name",
+            "description", "Description",
+            "status", "Status",
+            "controlCategory", "Control Category");
+
+    private List<ControlDTO> rows;
+
+    private ExportSchema<ControlDTO> schema;
+
+
+    @Setup
+    public void setUp() {
+        rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(ControlDTO.builder()
+                    .controlId("control-" + i)
+                    .controlName("Control " + i)
+                    .description(i % 10 == 0 ? null : "Description of control " + i)
+                    .status(i % 2 == 0)
+                    .controlCategory(new ControlCategoryCreateDTO("category-" + (i % 5), "ISMS " + (i % 5)))
+                    .version(0L)
+                    .build());
+        }
+        schema = ExportSchema.of(ControlDTO.class, FIELDS, HEADERS);
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void exportSchema(Blackhole blackhole) {
+        for (ControlDTO row : rows) {
+            blackhole.consume(schema.format(row));
+        }
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void reflection(Blackhole blackhole) {
+        //The old path resolved the selected fields from the first row on every export
+        List<Field> selectedFields = Stream.of(rows.get(0).getClass().getDeclaredFields())
+                .filter(field -> FIELDS.contains(field.getName()))
+                .collect(Collectors.toList());
+
+        for (ControlDTO row : rows) {
+            String[] values = new String[selectedFields.size()];
+            for (int i = 0; i < values.length; i++) {
+                Field field = selectedFields.get(i);
+                field.setAccessible(true);
+                try {
+                    values[i] = formatReflectively(field.getName(), field.get(row));
+                }
+                catch (IllegalAccessException e) {
+                    values[i] = "N/A";
+                }
+            }
+            blackhole.consume(values);
+        }
+    }
+
+
+    //Formatting of the old path, dispatched on the field name and the runtime type of the value
+    @SuppressWarnings("unchecked")
+    private static String formatReflectively(String fieldName, Object value) {
+        if ("controlCategory".equals(fieldName)) {
+            if (value instanceof ControlCategoryCreateDTO category) {
+                return category.getControlCategoryName() != null ? category.getControlCategoryName() : "N/A";
+            }
+            return value instanceof String string ? string : "N/A";
+        }
+        if ("frameworkCategory".equals(fieldName)) {
+            if (value instanceof FrameworkCategoryCreateDTO category) {
+                return category.getFrameworkCategoryName() != null ? category.getFrameworkCategoryName() : "N/A";
+            }
+            return value instanceof String string ? string : "N/A";
+        }
+        if ("evidenceComplianceStatus".equals(fieldName) || "status".equals(fieldName)) {
+            return value instanceof Boolean status ? (status ? "Active" : "Inactive") : "N/A";
+        }
+        if (value instanceof Set) {
+            return String.join(",", (Set<String>) value);
+        }
+        return value != null ? value.toString() : "N/A";
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExportSchemaBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
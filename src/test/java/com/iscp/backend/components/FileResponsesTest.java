@@ -0,0 +1,190 @@
+package com.iscp.backend.components;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileResponsesTest {
+
+    private static final byte[] CONTENT = "abcdefghijklmnopqrstuvwxyz".repeat(4).getBytes(StandardCharsets.US_ASCII);
+
+    private static final String CONTENT_HASH = "0123abcd";
+
+    private static final String ETAG = "\"" + CONTENT_HASH + "\"";
+
+    @TempDir
+    Path directory;
+
+    private byte[] compressed;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path file = Files.write(directory.resolve("evidence.txt"), CONTENT);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(CONTENT);
+        }
+        compressed = bytes.toByteArray();
+        Path compressedFile = Files.write(directory.resolve("evidence.txt.gz"), compressed);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileController(file, compressedFile)).build();
+    }
+
+    @Test
+    void servesTheWholeFileWithValidators() throws Exception {
+        mockMvc.perform(get("/file"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void answersAMatchingIfNoneMatchWithNotModified() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void servesASingleRangeAsPartialContent() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/" + CONTENT.length))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("cdef"));
+    }
+
+    @Test
+    void servesASuffixRangeAsPartialContent() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 101-103/" + CONTENT.length))
+                .andExpect(content().string("xyz"));
+    }
+
+    @Test
+    void rejectsARangePastTheEndOfTheFile() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.RANGE, "bytes=" + CONTENT.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + CONTENT.length))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void servesTheRangeOfAMatchingIfRange() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, ETAG))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("cdef"));
+    }
+
+    @Test
+    void servesTheWholeFileForAStaleIfRange() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void servesMultipleRangesAsByteranges() throws Exception {
+        mockMvc.perform(get("/file").header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges")))
+                .andExpect(content().string(containsString("Content-Range: bytes 0-1/" + CONTENT.length)))
+                .andExpect(content().string(containsString("Content-Range: bytes 4-5/" + CONTENT.length)));
+    }
+
+    @Test
+    void servesCompressedFilesAsIsToClientsAcceptingTheEncoding() throws Exception {
+        mockMvc.perform(get("/encoded").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + CONTENT_HASH + "-gzip\""))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().bytes(compressed));
+    }
+
+    @Test
+    void decompressesFilesForClientsNotAcceptingTheEncoding() throws Exception {
+        mockMvc.perform(get("/encoded"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "none"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void decompressesFilesForClientsRefusingTheEncoding() throws Exception {
+        mockMvc.perform(get("/encoded").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+
+    @RestController
+    static class FileController {
+
+        private final Path file;
+
+        private final Path compressedFile;
+
+        FileController(Path file, Path compressedFile) {
+            this.file = file;
+            this.compressedFile = compressedFile;
+        }
+
+        @GetMapping("/file")
+        public ResponseEntity<Resource> file(ServletWebRequest webRequest) throws IOException {
+            return FileResponses.of(webRequest, new PathResource(file), CONTENT_HASH, headers());
+        }
+
+        @GetMapping("/encoded")
+        public ResponseEntity<Resource> encoded(ServletWebRequest webRequest) throws IOException {
+            return FileResponses.ofEncoded(webRequest, new PathResource(compressedFile), CONTENT_HASH, "gzip", CONTENT.length, headers());
+        }
+
+        private static HttpHeaders headers() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.TEXT_PLAIN);
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.iscp.backend.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvidenceUploadServiceImplTest {
+
+    private static final long SIZE = 100;
+
+    @Test
+    void reportsTheWholeFileMissingBeforeAnyChunk() {
+        EvidenceUploadServiceImpl.UploadSession session = session();
+
+        assertEquals(0, session.getReceivedBytes());
+        assertEquals(List.of("0-99"), session.missingRanges());
+    }
+
+    @Test
+    void mergesOverlappingChunks() {
+        EvidenceUploadServiceImpl.UploadSession session = session();
+
+        session.received(10, 30);
+        session.received(20, 40);
+        session.received(15, 25);
+
+        assertEquals(30, session.getReceivedBytes());
+        assertEquals(List.of("0-9", "40-99"), session.missingRanges());
+    }
+
+    @Test
+    void mergesAdjacentChunks() {
+        EvidenceUploadServiceImpl.UploadSession session = session();
+
+        session.received(0, 25);
+        session.received(25, 50);
+        session.received(75, 100);
+        session.received(50, 75);
+
+        assertEquals(SIZE, session.getReceivedBytes());
+        assertEquals(List.of(), session.missingRanges());
+    }
+
+    @Test
+    void mergesChunksReceivedOutOfOrder() {
+        EvidenceUploadServiceImpl.UploadSession session = session();
+
+        session.received(80, 90);
+        session.received(40, 50);
+        session.received(0, 10);
+
+        assertEquals(30, session.getReceivedBytes());
+        assertEquals(List.of("10-39", "50-79", "90-99"), session.missingRanges());
+
+        //A chunk spanning several received ranges merges them all
+        session.received(5, 85);
+
+        assertEquals(90, session.getReceivedBytes());
+        assertEquals(List.of("90-99"), session.missingRanges());
+    }
+
+    @Test
+    void countsAChunkSentAgainOnce() {
+        EvidenceUploadServiceImpl.UploadSession session = session();
+
+        session.received(30, 60);
+        session.received(30, 60);
+        session.received(40, 50);
+
+        assertEquals(30, session.getReceivedBytes());
+        assertEquals(List.of("0-29", "60-99"), session.missingRanges());
+    }
+
+    @Test
+    void completesOnlyOnceEveryByteIsReceivedAndNoChunkIsBeingWritten() {
+        EvidenceUploadServiceImpl.UploadSession session = session();
+        session.received(0, 60);
+        assertFalse(session.startCompleting());
+
+        assertTrue(session.startWrite());
+        session.received(60, 100);
+        assertFalse(session.startCompleting());
+
+        session.endWrite();
+        assertTrue(session.startCompleting());
+
+        //No chunk is written once the upload is completing, and it completes only once
+        assertFalse(session.startWrite());
+        assertFalse(session.startCompleting());
+    }
+
+    private static EvidenceUploadServiceImpl.UploadSession session() {
+        return new EvidenceUploadServiceImpl.UploadSession("upload", "user", "evidence.pdf", "application/pdf", SIZE, null, "CCTV", "security", Path.of("evidence.part"));
+    }
+}
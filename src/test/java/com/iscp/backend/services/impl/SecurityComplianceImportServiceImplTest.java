@@ -0,0 +1,139 @@
+package com.iscp.backend.services.impl;
+
+import com.iscp.backend.components.ExcelRowReader;
+import com.iscp.backend.components.PeriodicityManager;
+import com.iscp.backend.dto.ImportResultDTO;
+import com.iscp.backend.dto.SecurityComplianceCreateDTO;
+import com.iscp.backend.dto.SecurityComplianceDTO;
+import com.iscp.backend.models.Checklist;
+import com.iscp.backend.models.Control;
+import com.iscp.backend.models.Department;
+import com.iscp.backend.models.Enum;
+import com.iscp.backend.models.Framework;
+import com.iscp.backend.repositories.ChecklistRepository;
+import com.iscp.backend.repositories.ControlRepository;
+import com.iscp.backend.repositories.DepartmentRepository;
+import com.iscp.backend.repositories.FrameworkRepository;
+import com.iscp.backend.services.SecurityComplianceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SecurityComplianceImportServiceImplTest {
+
+    private static final String CSV = "Framework,Control,Checklists,Departments,Periodicity,Event dates\r\n"
+            + "ISO27001,Access Control,CCTV;GATE,SysAdmin,Quarterly,May 2024;August 2024;November 2024;February 2025\r\n";
+
+    private SecurityComplianceServiceStub securityComplianceService;
+
+    private SecurityComplianceImportServiceImpl importService;
+
+    @BeforeEach
+    void setUp() {
+        Framework framework = new Framework();
+        framework.setFrameworkName("ISO27001");
+        framework.setStartDate("January 2024 01");
+
+        Control control = new Control();
+        control.setControlName("Access Control");
+
+        Department department = new Department();
+        department.setDepartmentName(Enum.DepartmentType.SysAdmin);
+
+        FrameworkRepository frameworkRepository = mock(FrameworkRepository.class);
+        when(frameworkRepository.findByFrameworkNameIn(anyCollection())).thenReturn(List.of(framework));
+        ControlRepository controlRepository = mock(ControlRepository.class);
+        when(controlRepository.findControlNamesIn(anyCollection())).thenReturn(List.of("Access Control"));
+        ChecklistRepository checklistRepository = mock(ChecklistRepository.class);
+        when(checklistRepository.findWithControlByControlNameIn(anyCollection())).thenReturn(List.of(checklist("CCTV", control), checklist("GATE", control)));
+        DepartmentRepository departmentRepository = mock(DepartmentRepository.class);
+        when(departmentRepository.findAll()).thenReturn(List.of(department));
+
+        securityComplianceService = new SecurityComplianceServiceStub();
+        importService = new SecurityComplianceImportServiceImpl(mock(ExcelRowReader.class), new PeriodicityManager(),
+                securityComplianceService.mock, frameworkRepository, controlRepository, checklistRepository, departmentRepository);
+    }
+
+    @Test
+    void importsRowsAsActiveCompliance() throws Exception {
+        ImportResultDTO result = importService.importSecurityCompliance(csvFile());
+
+        assertEquals(1, result.getRowsImported());
+        assertTrue(result.getErrors().isEmpty());
+        assertTrue(securityComplianceService.received.stream().allMatch(dto -> Boolean.TRUE.equals(dto.getEvidenceComplianceStatus())));
+    }
+
+    @Test
+    void importingTheSameFileTwiceCreatesNoDuplicates() throws Exception {
+        ImportResultDTO first = importService.importSecurityCompliance(csvFile());
+        ImportResultDTO second = importService.importSecurityCompliance(csvFile());
+
+        //Two checklists of four quarters each
+        assertEquals(8, first.getRecordsCreated());
+        assertEquals(1, second.getRowsImported());
+        assertEquals(0, second.getRecordsCreated());
+        assertEquals(8, securityComplianceService.active.size());
+    }
+
+    private static MockMultipartFile csvFile() {
+        return new MockMultipartFile("file", "compliance.csv", "text/csv", CSV.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Checklist checklist(String name, Control control) {
+        Checklist checklist = new Checklist();
+        checklist.setControlChecklist(name);
+        checklist.setControl(control);
+        return checklist;
+    }
+
+
+    /**
+     * Stands in for the insert-if-absent of the service: a period slot is only created
+     * if no active compliance holds it, as the filtered unique index enforces.
+     */
+    private static class SecurityComplianceServiceStub {
+
+        private final SecurityComplianceService mock = mock(SecurityComplianceService.class);
+
+        private final List<SecurityComplianceCreateDTO> received = new ArrayList<>();
+
+        private final Set<String> active = new HashSet<>();
+
+        private SecurityComplianceServiceStub() {
+            try {
+                when(mock.addSecurityCompliance(any())).thenAnswer(invocation -> {
+                    List<SecurityComplianceCreateDTO> dtos = invocation.getArgument(0);
+                    List<SecurityComplianceDTO> created = new ArrayList<>();
+                    for (SecurityComplianceCreateDTO dto : dtos) {
+                        received.add(dto);
+                        for (String checklistName : dto.getChecklistName()) {
+                            for (int periodIndex = 1; periodIndex <= dto.getEventDate().size(); periodIndex++) {
+                                String slot = dto.getFrameworkName() + "|" + dto.getControlName() + "|" + checklistName + "|" + dto.getPeriodicity() + "|" + periodIndex;
+                                if (!Boolean.TRUE.equals(dto.getEvidenceComplianceStatus()) || active.add(slot)) {
+                                    created.add(new SecurityComplianceDTO());
+                                }
+                            }
+                        }
+                    }
+                    return created;
+                });
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}